@@ -0,0 +1,73 @@
+package szewoj.race2d.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import szewoj.race2d.model.AiDriver;
+import szewoj.race2d.model.FrictionGrid;
+import szewoj.race2d.model.RaceSession;
+import szewoj.race2d.model.RacingLine;
+import szewoj.race2d.model.Track;
+import szewoj.race2d.model.TrackCompiler;
+import szewoj.race2d.model.Vehicle;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures one tick of a race on default track with all cars driven by AiDriver, including physics and collisions.
+ * A tick of 50 cars should take well under a millisecond. Cars are put back on the grid every RACE_TICKS ticks,
+ * so the benchmark covers both the packed start and the field spread along the track.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AiDriverBenchmark {
+
+    private static final int RACE_TICKS = 3600;
+
+    @Param({ "10", "50" })
+    private int cars;
+
+    private Track track;
+    private FrictionGrid friction;
+    private RacingLine line;
+    private RaceSession session;
+
+    /**
+     * Computes racing line of default track once for all races.
+     */
+    @Setup
+    public void setup() throws IOException {
+        track = TrackCompiler.compile( AiDriverBenchmark.class.getResource( "/default.track" ) );
+        friction = FrictionGrid.load( track, Runnable::run );
+        line = RacingLine.compute( track, friction );
+        startRace();
+    }
+
+    private void startRace(){
+        session = new RaceSession( track, friction, Vehicle.DEFAULT_TIME_STEP, cars );
+        for( int i = 0; i < cars; ++i )
+            session.setDriver( session.addCar(), new AiDriver( line ) );
+    }
+
+    @Benchmark
+    public long tick(){
+        if( session.getTicks() == RACE_TICKS )
+            startRace();
+        session.tick();
+        return session.getTicks();
+    }
+
+}
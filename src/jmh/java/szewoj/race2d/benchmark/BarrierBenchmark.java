@@ -0,0 +1,90 @@
+package szewoj.race2d.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import szewoj.race2d.model.BarrierIndex;
+import szewoj.race2d.model.Contact;
+import szewoj.race2d.model.OrientedBox;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures collision query of a car against barriers of a track: square loop of 1 km
+ * split into given number of segments. Poses of the car are cycled along the loop, close to the barrier.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BarrierBenchmark {
+
+    private static final int POSES = 256;
+
+    @Param({ "40", "4000" })
+    private int segments;
+
+    private BarrierIndex index;
+    private double[] coordinates;
+    private OrientedBox[] boxes;
+    private Contact contact;
+    private int pose;
+
+    /**
+     * Builds the loop and poses of the car.
+     */
+    @Setup
+    public void setup(){
+        coordinates = new double[4 * segments];
+        for( int i = 0; i < segments; ++i ){
+            pointOnLoop( (double) i / segments, coordinates, 4*i );
+            pointOnLoop( (double)( i + 1 ) / segments, coordinates, 4*i + 2 );
+        }
+        index = new BarrierIndex( coordinates, 1, 16 );
+
+        Random random = new Random( 3 );
+        double[] point = new double[2];
+        boxes = new OrientedBox[POSES];
+        for( int i = 0; i < POSES; ++i ){
+            pointOnLoop( random.nextDouble(), point, 0 );
+            boxes[i] = new OrientedBox();
+            boxes[i].setCar( point[0] + random.nextGaussian() * 4, point[1] + random.nextGaussian() * 4, random.nextDouble() * 2 * Math.PI );
+        }
+        contact = new Contact();
+    }
+
+    private static void pointOnLoop( double position, double[] out, int offset ){
+        double side = position * 4;
+        int edge = (int) side % 4;
+        double along = (side - Math.floor( side )) * 250;
+        out[offset] = edge == 0 ? along : edge == 1 ? 250 : edge == 2 ? 250 - along : 0;
+        out[offset + 1] = edge == 0 ? 0 : edge == 1 ? along : edge == 2 ? 250 : 250 - along;
+    }
+
+    @Benchmark
+    public boolean gridIndex(){
+        pose = (pose + 1) % POSES;
+        return index.collide( boxes[pose], contact );
+    }
+
+    @Benchmark
+    public boolean bruteForce(){
+        pose = (pose + 1) % POSES;
+        boolean hit = false;
+        for( int i = 0; i < segments; ++i )
+            hit |= BarrierIndex.collide( boxes[pose], coordinates[4*i], coordinates[4*i + 1], coordinates[4*i + 2], coordinates[4*i + 3], 1, contact );
+        return hit;
+    }
+
+}
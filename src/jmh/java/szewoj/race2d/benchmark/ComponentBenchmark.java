@@ -0,0 +1,185 @@
+package szewoj.race2d.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import szewoj.race2d.model.Engine;
+import szewoj.race2d.model.LinearTireCompound;
+import szewoj.race2d.model.PacejkaTireCompound;
+import szewoj.race2d.model.TireCompound;
+import szewoj.race2d.model.TireForceTable;
+import szewoj.race2d.model.WeightTransfer;
+import szewoj.race2d.model.Wheel;
+import szewoj.race2d.utilities.Vector2;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures cost of sub-models called by Vehicle during every tick.
+ * Inputs are cycled through small tables, so branches are not perfectly predicted.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ComponentBenchmark {
+
+    private static final int SAMPLES = 64;
+
+    private Wheel frontWheel;
+    private Wheel rearWheel;
+    private Engine[] engines;
+    private WeightTransfer weight;
+    private Vector2[] velocities;
+    private double[] forces;
+    private Vector2 vector;
+    private TireCompound pacejka;
+    private TireCompound pacejkaTable;
+    private double[] slipAngles;
+    private double[] slipRatios;
+    private int index;
+
+    /**
+     * Prepares tables of inputs covering typical range of values.
+     */
+    @Setup
+    public void setup(){
+        frontWheel = new Wheel( Wheel.FRONT, 0, 2.6 );
+        rearWheel = new Wheel( Wheel.REAR, 0, -1.4 );
+        frontWheel.setRotationSpeed( 40 );
+        rearWheel.setRotationSpeed( 45 );
+        weight = new WeightTransfer( 1420, 2.4, 0.5, 1.6 );
+        vector = new Vector2( 1, 0 );
+
+        engines = new Engine[SAMPLES];
+        velocities = new Vector2[SAMPLES];
+        forces = new double[SAMPLES];
+        pacejka = new PacejkaTireCompound();
+        pacejkaTable = new TireForceTable( pacejka );
+        slipAngles = new double[SAMPLES];
+        slipRatios = new double[SAMPLES];
+
+        for( int i = 0; i < SAMPLES; ++i ){
+            engines[i] = new Engine();
+            //engine inertia needs a few calls to reach desired rpm
+            for( int j = 0; j < 100; ++j )
+                engines[i].setRpm( 1000 + i * 6500.0 / SAMPLES );
+
+            velocities[i] = new Vector2( (i % 8) * 0.25 - 1, 1 + i * 0.7 );
+            forces[i] = (i - SAMPLES / 2) * 300.0;
+            slipAngles[i] = ((i * 37) % SAMPLES - SAMPLES / 2) * 0.15 / SAMPLES;
+            slipRatios[i] = ((i * 23) % SAMPLES - SAMPLES / 2) * 0.1 / SAMPLES;
+        }
+    }
+
+    private int next(){
+        index = (index + 1) & (SAMPLES - 1);
+        return index;
+    }
+
+    /**
+     * Slip angle of steering and fixed wheel.
+     *
+     * @param blackhole     consumer of results
+     */
+    @Benchmark
+    public void wheelSlipAngle( Blackhole blackhole ){
+        Vector2 velocity = velocities[next()];
+        blackhole.consume( frontWheel.getSlipAngle( velocity, 0.2, 0.1 ) );
+        blackhole.consume( rearWheel.getSlipAngle( velocity, 0.2 ) );
+    }
+
+    /**
+     * Slip ratio of front and rear wheel.
+     *
+     * @param blackhole     consumer of results
+     */
+    @Benchmark
+    public void wheelSlipRatio( Blackhole blackhole ){
+        double longitudinalVelocity = velocities[next()].getY();
+        blackhole.consume( frontWheel.getSlipRatio( longitudinalVelocity ) );
+        blackhole.consume( rearWheel.getSlipRatio( longitudinalVelocity ) );
+    }
+
+    /**
+     * Torque curve of engine across whole rpm range.
+     *
+     * @return  torque value
+     */
+    @Benchmark
+    public double engineTorque(){
+        return engines[next()].getTorque();
+    }
+
+    /**
+     * Combined slip forces of original linear tire model.
+     *
+     * @param blackhole     consumer of results
+     */
+    @Benchmark
+    public void tireLinear( Blackhole blackhole ){
+        consumeTireForces( LinearTireCompound.INSTANCE, blackhole );
+    }
+
+    /**
+     * Combined slip forces of magic formula evaluated directly.
+     *
+     * @param blackhole     consumer of results
+     */
+    @Benchmark
+    public void tirePacejka( Blackhole blackhole ){
+        consumeTireForces( pacejka, blackhole );
+    }
+
+    /**
+     * Combined slip forces of magic formula read from precomputed grid.
+     *
+     * @param blackhole     consumer of results
+     */
+    @Benchmark
+    public void tirePacejkaTable( Blackhole blackhole ){
+        consumeTireForces( pacejkaTable, blackhole );
+    }
+
+    private void consumeTireForces( TireCompound compound, Blackhole blackhole ){
+        int i = next();
+        double slipAngle = compound.limitSlipAngle( slipAngles[i] );
+        double slipRatio = compound.limitSlipRatio( slipRatios[i] );
+        blackhole.consume( compound.getLateralCoefficient( slipAngle, slipRatio ) );
+        blackhole.consume( compound.getLongitudinalCoefficient( slipAngle, slipRatio ) );
+    }
+
+    /**
+     * Effective weight on both axes.
+     *
+     * @param blackhole     consumer of results
+     */
+    @Benchmark
+    public void weightTransfer( Blackhole blackhole ){
+        double force = forces[next()];
+        blackhole.consume( weight.getEffectiveWeightOnRear( force ) );
+        blackhole.consume( weight.getEffectiveWeightOnFront( force ) );
+    }
+
+    /**
+     * In place rotation of vector.
+     *
+     * @return  rotated vector
+     */
+    @Benchmark
+    public Vector2 vectorRotate(){
+        vector.rotateInRadians( 0.01 );
+        return vector;
+    }
+
+}
@@ -0,0 +1,97 @@
+package szewoj.race2d.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import szewoj.race2d.model.EngineDefinition;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares piecewise torque curve evaluated with branches against lookup table of EngineDefinition.
+ * Rpm samples are shuffled, so branches of piecewise curve are not predicted.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EngineCurveBenchmark {
+
+    private static final int SAMPLES = 1024;
+    private static final double MAX_RPM = 6800;
+
+    private EngineDefinition definition;
+    private double[] rpm;
+    private int index;
+
+    /**
+     * Prepares shuffled rpm samples covering whole range of engine.
+     */
+    @Setup
+    public void setup(){
+        definition = EngineDefinition.getDefault();
+        rpm = new double[SAMPLES];
+
+        Random random = new Random( 7 );
+        for( int i = 0; i < SAMPLES; ++i )
+            rpm[i] = 1000 + random.nextDouble() * 6500;
+    }
+
+    private int next(){
+        index = (index + 1) & (SAMPLES - 1);
+        return index;
+    }
+
+    /**
+     * Torque curve as it was hard-coded in Engine before curves were moved to data.
+     *
+     * @param rpm   engine rpm
+     * @return      torque in newton metres
+     */
+    private static double legacyTorque( double rpm ){
+        if(rpm < 2500)
+            return 210 + rpm * 20/500;
+        else if(rpm < 3750)
+            return 310;
+        else if(rpm < 4400)
+            return 167 + rpm * 30/650;
+        else if(rpm < 6000)
+            return 444;
+        else if(rpm < MAX_RPM)
+            return 1368 - rpm*154/1000;
+        else
+            return (1000-rpm)/(MAX_RPM-1000) * 150 + (MAX_RPM-rpm) * 0.75;
+    }
+
+    /**
+     * Piecewise torque curve with branches.
+     *
+     * @param blackhole     consumer of results
+     */
+    @Benchmark
+    public void legacyCurve( Blackhole blackhole ){
+        blackhole.consume( legacyTorque( rpm[next()] ) );
+    }
+
+    /**
+     * Torque read from lookup table.
+     *
+     * @param blackhole     consumer of results
+     */
+    @Benchmark
+    public void lookupTable( Blackhole blackhole ){
+        blackhole.consume( definition.getTorque( rpm[next()] ) );
+    }
+
+}
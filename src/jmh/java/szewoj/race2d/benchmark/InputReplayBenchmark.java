@@ -0,0 +1,83 @@
+package szewoj.race2d.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import szewoj.race2d.controller.InputEvent;
+import szewoj.race2d.controller.InputRecorder;
+import szewoj.race2d.controller.InputReplayer;
+import szewoj.race2d.model.Vehicle;
+import szewoj.race2d.model.VehicleState;
+import szewoj.race2d.utilities.TrigBackend;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures replay of one minute of recorded random driving with InputReplayer, including decoding of the log.
+ * Replay should run far faster than real time.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class InputReplayBenchmark {
+
+    private static final int RATE = 60;
+    private static final int TICKS = 60 * RATE;
+
+    private byte[] log;
+
+    /**
+     * Records random driving with shifting and changing inputs once for all replays.
+     */
+    @Setup
+    public void setup() throws IOException {
+        Vehicle vehicle = new Vehicle( 1.0 / RATE );
+        VehicleState state = new VehicleState();
+        byte[] events = new byte[2];
+        Random random = new Random( 42 );
+        int inputMask = Vehicle.INPUT_THROTTLE;
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        try( InputRecorder recorder = new InputRecorder( output, RATE, TrigBackend.JAVA ) ){
+            for( int tick = 0; tick < TICKS; ++tick ){
+                int eventCount = 0;
+                if( random.nextInt( 40 ) == 0 )
+                    inputMask = random.nextInt( 32 );
+                if( random.nextInt( 600 ) == 0 ){
+                    events[eventCount++] = random.nextBoolean() ? InputEvent.UP_SHIFT_READY : InputEvent.DOWN_SHIFT_READY;
+                    events[eventCount++] = InputEvent.SHIFT;
+                }
+
+                vehicle.setFrontFriction( 1 );
+                vehicle.setRearFriction( 1 );
+                for( int i = 0; i < eventCount; ++i )
+                    InputEvent.apply( events[i], vehicle );
+                vehicle.updateInputs( inputMask );
+                vehicle.step( state );
+
+                recorder.record( inputMask, events, eventCount, 1, 1, 0, 0 );
+            }
+        }
+        log = output.toByteArray();
+    }
+
+    @Benchmark
+    public VehicleState replay() throws IOException {
+        return new InputReplayer( new ByteArrayInputStream( log ) ).replay();
+    }
+
+}
@@ -0,0 +1,72 @@
+package szewoj.race2d.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import szewoj.race2d.model.ParallelStepper;
+import szewoj.race2d.model.VehicleBatch;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures throughput of parallel batch stepping for different number of threads.
+ * One operation is one tick of whole batch, so scaling is visible as growing ops/s.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParallelStepperBenchmark {
+
+    @Param({ "1", "2", "4", "8", "16", "32" })
+    public int threads;
+
+    @Param({ "4096" })
+    public int cars;
+
+    private VehicleBatch batch;
+    private ParallelStepper stepper;
+
+    /**
+     * Creates batch of cars driving in circles, so they stay in the same regime.
+     */
+    @Setup
+    public void setup(){
+        batch = new VehicleBatch( cars );
+        for( int i = 0; i < cars; ++i ){
+            batch.setFriction( i, 1, 1 );
+            batch.upShiftReady( i );
+            batch.shift( i );
+            batch.setControls( i, 0.6, 0, 0.2, false );
+        }
+        stepper = new ParallelStepper( threads );
+    }
+
+    /**
+     * Shuts down worker threads.
+     */
+    @TearDown
+    public void tearDown(){
+        stepper.close();
+    }
+
+    /**
+     * One tick of every car in batch.
+     */
+    @Benchmark
+    public void tick(){
+        stepper.step( batch );
+    }
+
+}
@@ -0,0 +1,75 @@
+package szewoj.race2d.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import szewoj.race2d.model.FrictionGrid;
+import szewoj.race2d.model.RaceSession;
+import szewoj.race2d.model.Track;
+import szewoj.race2d.model.TrackCompiler;
+import szewoj.race2d.model.Vehicle;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures one tick of a race with given number of cars, packed on starting grid of a wide straight
+ * and weaving left and right, so neighbours keep touching. Time per car should stay about the same for every count.
+ * Cars are put back on the grid every RACE_TICKS ticks, so they do not spread out along the straight.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RaceSessionBenchmark {
+
+    private static final int WEAVE_TICKS = 30;
+    private static final int RACE_TICKS = 600;
+
+    @Param({ "20", "60", "240" })
+    private int cars;
+
+    private FrictionGrid friction;
+    private Track track;
+    private RaceSession session;
+
+    /**
+     * Places the cars on a straight between two barriers.
+     */
+    @Setup
+    public void setup() throws IOException {
+        track = TrackCompiler.compile( RaceSessionBenchmark.class.getResource( "/straight.track" ) );
+        friction = FrictionGrid.load( track, Runnable::run );
+        startRace();
+    }
+
+    private void startRace(){
+        session = new RaceSession( track, friction, Vehicle.DEFAULT_TIME_STEP, cars );
+        for( int i = 0; i < cars; ++i ){
+            session.getVehicle( session.addCar() ).upShiftReady();
+            session.getVehicle( i ).shift();
+        }
+    }
+
+    @Benchmark
+    public long tick(){
+        if( session.getTicks() == RACE_TICKS )
+            startRace();
+        int steering = session.getTicks() / WEAVE_TICKS % 2 == 0 ? Vehicle.INPUT_LEFT : Vehicle.INPUT_RIGHT;
+        for( int car = 0; car < cars; ++car )
+            session.setInputMask( car, Vehicle.INPUT_THROTTLE | ( car % 2 == 0 ? steering : steering ^ ( Vehicle.INPUT_LEFT | Vehicle.INPUT_RIGHT ) ) );
+        session.tick();
+        return session.getTicks();
+    }
+
+}
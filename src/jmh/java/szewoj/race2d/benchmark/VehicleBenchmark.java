@@ -0,0 +1,154 @@
+package szewoj.race2d.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import szewoj.race2d.model.Vehicle;
+import szewoj.race2d.model.VehicleState;
+import szewoj.race2d.utilities.TrigBackend;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures cost of one tick of Vehicle physics in each of its regimes.
+ * Velocity is restored before every tick, so the car never leaves measured regime.
+ * Every regime is measured with each implementation of trigonometric functions.
+ * Mixed driving covers all regimes in the proportions of a real run, with shifting and alternating full steering lock,
+ * so its scores of STRICT and FAST backends give the speedup of the whole simulation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class VehicleBenchmark {
+
+    private static final int RUN_TICKS = 3600;
+    private static final int STRAIGHT = Vehicle.INPUT_THROTTLE;
+    private static final int LEFT = Vehicle.INPUT_THROTTLE | Vehicle.INPUT_LEFT;
+    private static final int RIGHT = Vehicle.INPUT_THROTTLE | Vehicle.INPUT_RIGHT;
+
+    @Param({ "JAVA", "STRICT", "FAST" })
+    public TrigBackend trig;
+
+    private Vehicle slipVehicle;
+    private Vehicle slideVehicle;
+    private Vehicle turningVehicle;
+    private Vehicle mixedVehicle;
+    private int mixedTick;
+    private VehicleState state;
+
+    /**
+     * Creates vehicles in third gear with full throttle, and turning one with full steering lock.
+     */
+    @Setup
+    public void setup(){
+        int throttle = Vehicle.INPUT_THROTTLE;
+        int steer = Vehicle.INPUT_THROTTLE | Vehicle.INPUT_RIGHT;
+
+        slipVehicle = createVehicle( throttle );
+        slideVehicle = createVehicle( throttle );
+        turningVehicle = createVehicle( steer );
+        mixedVehicle = new Vehicle();
+        mixedVehicle.setTrigBackend( trig );
+        mixedVehicle.setFrontFriction( 1 );
+        mixedVehicle.setRearFriction( 1 );
+        state = new VehicleState();
+    }
+
+    //stops the mixed run car in neutral at the start with full tank and new tires, without allocating a new car
+    private void restartMixedRun(){
+        while( mixedVehicle.getGear() > 0 ){
+            mixedVehicle.downShiftReady();
+            mixedVehicle.shift();
+        }
+        while( mixedVehicle.getFuel() < 1 )
+            mixedVehicle.refuel();
+        mixedVehicle.changeTires();
+        mixedVehicle.setPose( 0, 0, 0 );
+        mixedVehicle.setVelocity( 0, 0 );
+        mixedVehicle.setYawRate( 0 );
+        mixedTick = 0;
+    }
+
+    private Vehicle createVehicle( int inputs ){
+        Vehicle vehicle = new Vehicle();
+        vehicle.setTrigBackend( trig );
+        vehicle.setFrontFriction( 1 );
+        vehicle.setRearFriction( 1 );
+        for( int gear = 0; gear < 3; ++gear ){
+            vehicle.upShiftReady();
+            vehicle.shift();
+        }
+        //input inertia needs a few ticks to reach full value
+        for( int i = 0; i < 60; ++i )
+            vehicle.updateInputs( inputs );
+        return vehicle;
+    }
+
+    /**
+     * Tick over critical speed, where slip angles and slip ratios are used.
+     *
+     * @return  state of the car
+     */
+    @Benchmark
+    public VehicleState slipPhysics(){
+        slipVehicle.setVelocity( 0.5, 25 );
+        slipVehicle.setYawRate( 0.1 );
+        return slipVehicle.step( state );
+    }
+
+    /**
+     * Tick under critical speed with lateral velocity, where car slides freely.
+     *
+     * @return  state of the car
+     */
+    @Benchmark
+    public VehicleState freeSlide(){
+        slideVehicle.setVelocity( 2, 8 );
+        slideVehicle.setYawRate( 0.3 );
+        return slideVehicle.step( state );
+    }
+
+    /**
+     * Tick under critical speed without lateral velocity, where car turns around turn radius.
+     *
+     * @return  state of the car
+     */
+    @Benchmark
+    public VehicleState lowSpeedTurning(){
+        turningVehicle.setVelocity( 0, 5 );
+        turningVehicle.setYawRate( 0 );
+        return turningVehicle.step( state );
+    }
+
+    /**
+     * Tick of a run shifting up every 300 ticks and alternating straight driving with full steering lock
+     * every 120 ticks. The same car is stopped and put back at the start every RUN_TICKS ticks.
+     *
+     * @return  state of the car
+     */
+    @Benchmark
+    public VehicleState mixedDriving(){
+        if( mixedTick == RUN_TICKS )
+            restartMixedRun();
+        if( mixedTick % 300 == 0 && mixedVehicle.getGear() < 4 ){
+            mixedVehicle.upShiftReady();
+            mixedVehicle.shift();
+        }
+        int phase = mixedTick / 120 % 4;
+        mixedVehicle.updateInputs( phase == 1 ? LEFT : phase == 3 ? RIGHT : STRAIGHT );
+        ++mixedTick;
+        return mixedVehicle.step( state );
+    }
+
+}
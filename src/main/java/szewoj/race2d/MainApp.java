@@ -2,41 +2,170 @@ package szewoj.race2d;
 
 import javafx.animation.AnimationTimer;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
+import szewoj.race2d.controller.AssetLoader;
 import szewoj.race2d.controller.GameController;
+import szewoj.race2d.model.FrictionGrid;
+import szewoj.race2d.model.RacingLine;
+import szewoj.race2d.model.Track;
+import szewoj.race2d.utilities.StartupTimer;
+import szewoj.race2d.utilities.TileSet;
+import szewoj.race2d.utilities.TrigBackend;
 import szewoj.race2d.view.ViewManager;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
 public class MainApp extends Application {
+    private GameController mainGameController;
 
     @Override
     public void start(Stage primaryStage) throws Exception
     {
+        StartupTimer startup = new StartupTimer();
+        ExecutorService executor = AssetLoader.createExecutor();
+        AssetLoader assets = new AssetLoader( executor, startup, System.getProperty( "race2d.track" ) );
+        CompletableFuture<RacingLine> racingLine = loadRacingLine( assets, executor, startup );
+
         FXMLLoader loader = new FXMLLoader();
         loader.setLocation(getClass().getResource("layout.fxml"));
         Parent root = loader.load();
-        primaryStage.setTitle("Racing Game 2D");
-        primaryStage.setScene(new Scene(root));
+        startup.mark( "layout" );
 
+        Scene scene = new Scene(root);
+        primaryStage.setTitle("Racing Game 2D");
+        primaryStage.setScene(scene);
         ViewManager mainView = loader.getController();
+        primaryStage.show();
+        startup.mark( "window shown" );
+
+        scene.addPostLayoutPulseListener( new Runnable() {
+            @Override
+            public void run() {
+                startup.recordSinceStart( "first frame" );
+                scene.removePostLayoutPulseListener( this );
+            }
+        });
+
+        assets.getHomeImage().thenAcceptAsync( image -> {
+            mainView.setHomeImage( image );
+            startup.recordSinceStart( "home screen" );
+        }, Platform::runLater );
+
+        //home screen can be left only when track is ready
+        CompletableFuture.allOf( assets.getHomeImage(), assets.getTrackImage(), assets.getCarImage(), assets.getFrictionGrid(), assets.getTrackTiles(), racingLine )
+                .thenRunAsync( () -> {
+                    try {
+                        startGame( mainView, assets, racingLine.join() );
+                    } catch( IOException e ){
+                        throw new UncheckedIOException( e );
+                    }
+                    startup.mark( "game ready" );
+                    startup.report( System.out );
+                }, Platform::runLater )
+                .exceptionally( e -> {
+                    System.err.println( "Cannot start game: " + e.getMessage() );
+                    Platform.exit();
+                    return null;
+                });
+    }
+
+    /**
+     * Loads racing line of computer drivers from file given by race2d.racingLine, or computes it on background thread,
+     * when race2d.cars adds computer drivers. Computed line uses own friction grid, so tiles of tiled track are loaded
+     * on background thread instead of being waited for on JavaFX thread.
+     *
+     * @return  future of racing line, completed with null without computer drivers
+     */
+    private static CompletableFuture<RacingLine> loadRacingLine( AssetLoader assets, ExecutorService executor, StartupTimer timer ){
+        if( Integer.getInteger( "race2d.cars", 1 ) <= 1 )
+            return CompletableFuture.completedFuture( null );
+
+        String racingLine = System.getProperty( "race2d.racingLine" );
+        return assets.getFrictionGrid().thenApplyAsync( grid -> {
+            long start = System.nanoTime();
+            try {
+                Track track = assets.getTrack().join();
+                RacingLine line = racingLine != null ? RacingLine.load( new File( racingLine ) )
+                        : RacingLine.compute( track, grid != null ? grid.copy() : FrictionGrid.load( track, Runnable::run ) );
+                timer.record( "racing line", start, System.nanoTime() );
+                return line;
+            } catch( IOException e ){
+                throw new UncheckedIOException( e );
+            }
+        }, executor );
+    }
+
+    /**
+     * Creates game controller on JavaFX thread, when all assets are decoded and racing line is ready.
+     */
+    private void startGame( ViewManager mainView, AssetLoader assets, RacingLine racingLine ) throws IOException
+    {
+        mainView.setSpriteImages( assets.getTrackImage().join(), assets.getCarImage().join() );
+        TileSet tiles = assets.getTrackTiles().join();
+        ExecutorService tileLoader = tiles == null ? null : TileSet.createLoader();
+        FrictionGrid frictionGrid = tiles == null ? assets.getFrictionGrid().join() : GameController.createTiledFrictionGrid( tiles, tileLoader );
+        mainGameController = new GameController( mainView, Integer.getInteger( "race2d.physicsRate", GameController.DEFAULT_PHYSICS_RATE ),
+                                                 assets.getTrack().join(), frictionGrid );
+        if( tiles != null )
+            mainView.setTrackTiles( tiles, tileLoader );
+        mainGameController.setTrigBackend( TrigBackend.valueOf( System.getProperty( "race2d.trig", TrigBackend.JAVA.name() ) ) );
+        mainGameController.setBilinearFriction( Boolean.getBoolean( "race2d.bilinearFriction" ) );
+        int cars = Integer.getInteger( "race2d.cars", 1 );
+        if( cars > 1 )
+            mainGameController.addCars( cars - 1, racingLine );
+
+        mainView.setSlowHudPeriod( Integer.getInteger( "race2d.hudSlowPeriod", 1 ) );
+        if( "canvas".equals( System.getProperty( "race2d.renderer" ) ) )
+            mainGameController.setRenderer( mainView.createCanvasRenderer() );
+
+        String keyBindings = System.getProperty( "race2d.bindings" );
+        if( keyBindings != null ){
+            try( FileInputStream input = new FileInputStream( keyBindings ) ){
+                mainGameController.getKeyBindings().load( input );
+            }
+        }
 
-        GameController mainGameController = new GameController( mainView );
+        String inputLog = System.getProperty( "race2d.record" );
+        if( inputLog != null )
+            mainGameController.startRecording( new FileOutputStream( inputLog ) );
 
         new AnimationTimer()
         {
             @Override
             public void handle(long currentNanoTime)
             {
-                mainGameController.refresh();
+                mainGameController.refresh( currentNanoTime );
             }
         }.start();
+    }
 
-        primaryStage.show();
 
-    }
+    @Override
+    public void stop(){
+        if( mainGameController == null )
+            return;
+        mainGameController.stopRecording();
 
+        String report = System.getProperty( "race2d.latencyReport" );
+        if( report != null && mainGameController.getTracedInputCount() > 0 ){
+            try( PrintWriter writer = new PrintWriter( report ) ){
+                mainGameController.writeLatencyReport( writer );
+            } catch( IOException e ){
+                System.err.println( "Cannot write latency report: " + e.getMessage() );
+            }
+        }
+    }
 
     public static void main(String[] args) {
         launch(args);
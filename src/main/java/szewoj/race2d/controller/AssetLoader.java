@@ -0,0 +1,179 @@
+package szewoj.race2d.controller;
+
+import javafx.scene.image.Image;
+import szewoj.race2d.model.FrictionGrid;
+import szewoj.race2d.model.TiledFrictionGrid;
+import szewoj.race2d.model.Track;
+import szewoj.race2d.model.TrackCompiler;
+import szewoj.race2d.utilities.StartupTimer;
+import szewoj.race2d.utilities.TileSet;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decodes images and track mask in parallel on background threads, while JavaFX thread loads layout and shows the window.
+ * Every asset is available as a future completed outside of JavaFX thread, and its decoding time is recorded in StartupTimer.
+ * Home screen image is decoded directly at its displayed size, instead of full resolution of the file.
+ * Track is loaded first, as it names its image and friction mask, or its tiles.
+ */
+public class AssetLoader {
+    static final String HOME_IMAGE = "/homepage.png";
+    static final String CAR_IMAGE = "/car.png";
+    public static final double HOME_WIDTH = 1280;
+    public static final double HOME_HEIGHT = 800;
+
+    private final CompletableFuture<Image> homeImage;
+    private final CompletableFuture<Track> track;
+    private final CompletableFuture<Image> trackImage;
+    private final CompletableFuture<Image> carImage;
+    private final CompletableFuture<FrictionGrid> frictionGrid;
+    private final CompletableFuture<TileSet> trackTiles;
+
+    /**
+     * Constructor of AssetLoader, starts decoding of all assets.
+     *
+     * @param executor  executor of decoding, with a few threads
+     * @param timer     timer receiving decoding time of every asset
+     * @param trackFile track definition (*.track) or compiled track, null for default track
+     */
+    public AssetLoader( ExecutorService executor, StartupTimer timer, String trackFile ){
+        homeImage = loadImage( getResource( HOME_IMAGE ), HOME_WIDTH, HOME_HEIGHT, executor, timer );
+        carImage = loadImage( getResource( CAR_IMAGE ), 0, 0, executor, timer );
+        track = CompletableFuture.supplyAsync( () -> {
+            long start = System.nanoTime();
+            try {
+                Track loaded = TrackCompiler.load( trackFile );
+                timer.record( "track", start, System.nanoTime() );
+                return loaded;
+            } catch( IOException e ){
+                throw new UncheckedIOException( e );
+            }
+        }, executor );
+
+        trackImage = track.thenComposeAsync( loaded -> loaded.getImage() == null ? CompletableFuture.completedFuture( null )
+                : loadImage( resolve( loaded, loaded.getImage() ), 0, 0, executor, timer ), executor );
+        frictionGrid = track.thenApplyAsync( loaded -> {
+            if( loaded.getFriction() == null )
+                return null;
+            long start = System.nanoTime();
+            try {
+                FrictionGrid grid = FrictionGrid.load( loaded, executor );
+                timer.record( "track mask", start, System.nanoTime() );
+                return grid;
+            } catch( IOException e ){
+                throw new UncheckedIOException( e );
+            }
+        }, executor );
+        trackTiles = track.thenApplyAsync( loaded -> {
+            if( loaded.getTiles() == null )
+                return null;
+            try {
+                return TiledFrictionGrid.openTiles( loaded );
+            } catch( IOException e ){
+                throw new UncheckedIOException( e );
+            }
+        }, executor );
+    }
+
+    /**
+     * Creates pool of daemon threads for decoding, one for every asset, limited by number of processors.
+     *
+     * @return  executor of decoding
+     */
+    public static ExecutorService createExecutor(){
+        AtomicInteger count = new AtomicInteger();
+        return Executors.newFixedThreadPool( Math.max( 1, Math.min( 4, Runtime.getRuntime().availableProcessors() ) ), runnable -> {
+            Thread thread = new Thread( runnable, "asset-loader-" + count.incrementAndGet() );
+            thread.setDaemon( true );
+            return thread;
+        });
+    }
+
+    private static URL getResource( String resource ){
+        URL url = AssetLoader.class.getResource( resource );
+        if( url == null )
+            throw new UncheckedIOException( new IOException( "Missing resource " + resource ) );
+        return url;
+    }
+
+    private static URL resolve( Track track, String reference ){
+        try {
+            return track.resolve( reference );
+        } catch( IOException e ){
+            throw new UncheckedIOException( e );
+        }
+    }
+
+    private static CompletableFuture<Image> loadImage( URL url, double width, double height, ExecutorService executor, StartupTimer timer ){
+        return CompletableFuture.supplyAsync( () -> {
+            long start = System.nanoTime();
+            String path = url.getPath();
+            Image image = new Image( url.toExternalForm(), width, height, true, true );
+            if( image.isError() )
+                throw new UncheckedIOException( new IOException( "Cannot decode " + url, image.getException() ) );
+            timer.record( path.substring( path.lastIndexOf( '/' ) + 1 ), start, System.nanoTime() );
+            return image;
+        }, executor );
+    }
+
+    /**
+     * Getter of homeImage property.
+     *
+     * @return  future of home screen image, decoded at HOME_WIDTH x HOME_HEIGHT
+     */
+    public CompletableFuture<Image> getHomeImage(){
+        return homeImage;
+    }
+
+    /**
+     * Getter of track property.
+     *
+     * @return  future of track
+     */
+    public CompletableFuture<Track> getTrack(){
+        return track;
+    }
+
+    /**
+     * Getter of trackImage property.
+     *
+     * @return  future of track image, completed with null for tiled track
+     */
+    public CompletableFuture<Image> getTrackImage(){
+        return trackImage;
+    }
+
+    /**
+     * Getter of carImage property.
+     *
+     * @return  future of car image
+     */
+    public CompletableFuture<Image> getCarImage(){
+        return carImage;
+    }
+
+    /**
+     * Getter of frictionGrid property.
+     *
+     * @return  future of friction grid decoded from track mask, completed with null for tiled track
+     */
+    public CompletableFuture<FrictionGrid> getFrictionGrid(){
+        return frictionGrid;
+    }
+
+    /**
+     * Getter of trackTiles property.
+     *
+     * @return  future of tiles of track, completed with null if track is not tiled
+     */
+    public CompletableFuture<TileSet> getTrackTiles(){
+        return trackTiles;
+    }
+
+}
@@ -0,0 +1,92 @@
+package szewoj.race2d.controller;
+
+/**
+ * Accumulator of frame time deciding how many fixed physics ticks have to be simulated in a frame.
+ * Leftover time is exposed as interpolation factor between the last two physics states.
+ */
+public class FixedStepScheduler {
+    private static final int MAX_STEPS_PER_FRAME = 8;  //prevents endless catching up after long hitches
+    private final int rate;
+    private final long stepNanos;
+    private long lastFrameTime;
+    private long accumulator;
+    private int steps;
+
+    /**
+     * Constructor of FixedStepScheduler.
+     *
+     * @param rate  number of physics ticks per second, for example 60, 120 or 240
+     */
+    public FixedStepScheduler( int rate ){
+        if( rate <= 0 )
+            throw new IllegalArgumentException( "Physics rate has to be positive: " + rate );
+
+        this.rate = rate;
+        stepNanos = 1000000000L / rate;
+        lastFrameTime = -1;
+        accumulator = 0;
+    }
+
+    /**
+     * Adds time elapsed since previous frame to accumulator and consumes whole ticks from it.
+     * First call only starts measuring time.
+     *
+     * @param frameTime     time of current frame in nanoseconds
+     * @return              number of physics ticks to simulate in current frame
+     */
+    public int advance( long frameTime ){
+        if( lastFrameTime < 0 ){
+            lastFrameTime = frameTime;
+            steps = 0;
+            return 0;
+        }
+
+        accumulator += frameTime - lastFrameTime;
+        lastFrameTime = frameTime;
+
+        if( accumulator > MAX_STEPS_PER_FRAME * stepNanos )
+            accumulator = MAX_STEPS_PER_FRAME * stepNanos;
+
+        steps = (int)( accumulator / stepNanos );
+        accumulator -= steps * stepNanos;
+        return steps;
+    }
+
+    /**
+     * Returns time at which simulated time reaches the end of a tick of the last advance.
+     *
+     * @param tick  index of tick in range 0 - number of ticks returned by advance
+     * @return      time of the end of the tick in nanoseconds
+     */
+    public long getTickEndTime( int tick ){
+        return lastFrameTime - accumulator - (steps - 1 - tick) * stepNanos;
+    }
+
+    /**
+     * Returns part of tick that has elapsed since the last simulated tick.
+     *
+     * @return  interpolation factor in range 0.0 - 1.0
+     */
+    public double getAlpha(){
+        return (double) accumulator / stepNanos;
+    }
+
+    /**
+     * Returns number of physics ticks per second.
+     *
+     * @return  physics rate
+     */
+    public int getRate(){
+        return rate;
+    }
+
+    /**
+     * Returns time of one tick.
+     *
+     * @return  time of one tick in seconds
+     */
+    public double getTimeStep(){
+        return stepNanos / 1e9;
+    }
+
+}
@@ -2,112 +2,412 @@ package szewoj.race2d.controller;
 
 import javafx.scene.input.KeyCode;
 import javafx.scene.input.KeyEvent;
-import javafx.scene.transform.Rotate;
-import javafx.scene.transform.Translate;
-import szewoj.race2d.model.LapTimer;
+import szewoj.race2d.model.AiDriver;
+import szewoj.race2d.model.FrictionGrid;
+import szewoj.race2d.model.RaceSession;
+import szewoj.race2d.model.RacingLine;
+import szewoj.race2d.model.TiledFrictionGrid;
+import szewoj.race2d.model.Track;
+import szewoj.race2d.model.TrackCompiler;
 import szewoj.race2d.model.Vehicle;
+import szewoj.race2d.model.VehicleState;
+import szewoj.race2d.utilities.LatencyHistogram;
 import szewoj.race2d.utilities.Percent;
+import szewoj.race2d.utilities.TileSet;
+import szewoj.race2d.utilities.TrigBackend;
+import szewoj.race2d.view.HudState;
+import szewoj.race2d.view.Renderer;
 import szewoj.race2d.view.ViewManager;
-import java.util.ArrayList;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.util.Arrays;
 import java.util.LinkedList;
-import java.util.List;
+import java.util.concurrent.Executor;
 
 /**
  * Controller class of application.
  * Manages user inputs and communication between view and model classes.
+ * Physics is simulated in fixed ticks independent of frame rate by RaceSession, in which the player drives the first car,
+ * and view shows the cars in poses interpolated between the last two ticks.
+ * World pose of the car is kept by the model and passed with HUD values to Renderer once per frame,
+ * which is ViewManager itself by default, or a CanvasRenderer.
+ * Time of every key event is traced until the tick which consumed it and the first frame showing its result,
+ * latencies are collected in histograms shown in overlay toggled with F3.
  */
 public class GameController {
 
-    private List<String> input;
+    public static final int DEFAULT_PHYSICS_RATE = 60;
+    private static final int LATENCY_OVERLAY_PERIOD = 30;
+    private static final double FRICTION_PREFETCH_RADIUS = 50;     //metres around the car
+    private static final double OPPONENT_MAX_PACE = 0.97;           //fraction of target speed of racing line
+    private static final double OPPONENT_PACE_SPREAD = 0.12;
+    private static final int OPPONENT_PACE_LEVELS = 7;
+    private InputState inputState;
     private Vehicle raceCarModel;
+    private VehicleState raceCarState;
+    private VehicleState previousRaceCarState;
+    private FixedStepScheduler scheduler;
+    private double timeStep;
     private ViewManager mainViewManager;
-    private Translate memTrans;
-    private Rotate memRot;
-    private Rotate memTurn;
+    private Renderer renderer;
+    private HudState hud;
+    private double[] carPoses;
+    private FrictionGrid frictionGrid;
+    private RaceSession session;
+    private TrigBackend trigBackend;
+    private InputRecorder recorder;
     private Percent tireChangeProgress;
-    private LapTimer timer;
+    private int completedLaps;
     private LinkedList<Long> recentTimes;
-    private long bestTime;
+    private LatencyHistogram inputToTickLatency;
+    private LatencyHistogram inputToFrameLatency;
+    private LatencyHistogram frameTimes;
+    private long lastFrameTime;
+    private long[] pendingInputTimes;               //times of key events already simulated, but not shown yet
+    private int pendingInputCount;
+    private int latencyOverlayFrames;
 
     /**
-     * Constructor of GameController initializes object with default values
+     * Constructor of GameController initializes object with default values.
+     * Simulates physics with default rate.
      *
      * @param view  instance of ViewManager managed by GameController
      */
     public GameController(ViewManager view ){
-        input = new ArrayList<>();
-        raceCarModel = new Vehicle();
+        this( view, DEFAULT_PHYSICS_RATE );
+    }
+
+    /**
+     * Constructor of GameController initializes object with default values.
+     * Compiles default track and decodes its friction mask on calling thread.
+     *
+     * @param view          instance of ViewManager managed by GameController
+     * @param physicsRate   number of physics ticks per second, for example 60, 120 or 240
+     */
+    public GameController(ViewManager view, int physicsRate ){
+        this( view, physicsRate, loadDefaultTrack() );
+    }
+
+    private GameController(ViewManager view, int physicsRate, Track track ){
+        this( view, physicsRate, track, loadFrictionGrid( track ) );
+    }
+
+    /**
+     * Constructor of GameController initializes object with default values, track and its friction mask loaded in advance.
+     * Places the track in view.
+     *
+     * @param view          instance of ViewManager managed by GameController
+     * @param physicsRate   number of physics ticks per second, for example 60, 120 or 240
+     * @param track         compiled track, for example loaded by AssetLoader
+     * @param frictionGrid  friction grid of track mask, in track coordinates
+     */
+    public GameController(ViewManager view, int physicsRate, Track track, FrictionGrid frictionGrid ){
+        inputState = new InputState( KeyBindings.createDefault() );
+        scheduler = new FixedStepScheduler( physicsRate );
+        timeStep = 1.0 / physicsRate;
         mainViewManager = view;
-        memTrans = new Translate(0, 0, 0 );
-        memRot = new Rotate( 0 );
-        memTurn = new Rotate( 0 );
+        renderer = view;
+        hud = new HudState();
+        carPoses = new double[3];
+        trigBackend = TrigBackend.JAVA;
+        this.frictionGrid = frictionGrid;
+        frictionGrid.setWorldTransform( track );
+        session = new RaceSession( track, frictionGrid, timeStep, 1 );
+        session.addCar();
+        raceCarModel = session.getVehicle( 0 );
+        raceCarState = session.getState( 0 );
+        previousRaceCarState = session.getPreviousState( 0 );
+        mainViewManager.setTrack( track );
         tireChangeProgress = new Percent();
         mainViewManager.setupKeyListeners( this );
-        timer = new LapTimer(3);
         recentTimes = new LinkedList<>();
         recentTimes.add(-1L);
         recentTimes.add(-1L);
         recentTimes.add(-1L);
-        bestTime = -1;
+        inputToTickLatency = new LatencyHistogram( "input-to-tick" );
+        inputToFrameLatency = new LatencyHistogram( "input-to-frame" );
+        frameTimes = new LatencyHistogram( "frame-time" );
+        pendingInputTimes = new long[16];
+        mainViewManager.addFrameListener( this::onFrameLaidOut );
+    }
+
+    private static Track loadDefaultTrack(){
+        try {
+            return TrackCompiler.load( null );
+        } catch( IOException e ){
+            throw new IllegalStateException( "Cannot load " + TrackCompiler.DEFAULT_TRACK, e );
+        }
+    }
+
+    private static FrictionGrid loadFrictionGrid( Track track ){
+        try {
+            return FrictionGrid.load( track, Runnable::run );
+        } catch( IOException e ){
+            throw new IllegalStateException( "Cannot load friction of track", e );
+        }
+    }
+
+    /**
+     * Creates friction grid of tiled track, streaming tiles of mask around the car instead of decoding the whole mask.
+     *
+     * @param tiles     description of tiled track, in track coordinates
+     * @param executor  executor loading tiles in the background
+     * @return          friction grid to be passed to constructor
+     */
+    public static FrictionGrid createTiledFrictionGrid( TileSet tiles, Executor executor ){
+        return new TiledFrictionGrid( tiles, TiledFrictionGrid.DEFAULT_CAPACITY, executor, false );
+    }
+
+    /**
+     * Adds cars behind the player on starting grid of the race, driven by computer along the racing line.
+     * Each driver keeps a slightly different fraction of target speed, so the field spreads out.
+     * Without racing line cars stand still, but they collide with the player and each other.
+     * Tiles of tiled friction grid are cached for every car, so cars far apart do not evict tiles of each other.
+     * Has to be called before the race starts.
+     *
+     * @param count     number of added cars
+     * @param line      racing line of the track followed by drivers, or null to leave cars without drivers
+     */
+    public void addCars( int count, RacingLine line ){
+        for( int i = 0; i < count; ++i ){
+            int car = session.addCar();
+            if( line != null ){
+                AiDriver driver = new AiDriver( line );
+                driver.setSpeedScale( OPPONENT_MAX_PACE - OPPONENT_PACE_SPREAD * ( car % OPPONENT_PACE_LEVELS ) / OPPONENT_PACE_LEVELS );
+                session.setDriver( car, driver );
+            }
+        }
+        carPoses = new double[3 * session.getCarCount()];
+        if( frictionGrid instanceof TiledFrictionGrid )
+            ( (TiledFrictionGrid) frictionGrid ).getCache().setCapacity( TiledFrictionGrid.DEFAULT_CAPACITY * session.getCarCount() );
+    }
+
+    /**
+     * Getter of session property.
+     *
+     * @return  race session simulating all cars, the player drives the first one
+     */
+    public RaceSession getSession(){
+        return session;
+    }
+
+    /**
+     * Switches filtering of track friction between the nearest mask pixel and bilinear interpolation.
+     *
+     * @param bilinear  true to interpolate friction between pixels of track mask
+     */
+    public void setBilinearFriction( boolean bilinear ){
+        frictionGrid.setBilinear( bilinear );
+    }
+
+    /**
+     * Sets renderer drawing the race in every frame. Pitstop options, latency overlay and home screen
+     * are always shown by ViewManager.
+     *
+     * @param renderer  renderer of track, cars and HUD
+     */
+    public void setRenderer( Renderer renderer ){
+        this.renderer = renderer;
+    }
+
+    /**
+     * Sets implementation of trigonometric functions used by physics of the car.
+     *
+     * @param backend   implementation of trigonometric functions
+     */
+    public void setTrigBackend( TrigBackend backend ){
+        trigBackend = backend;
+        session.setTrigBackend( backend );
+    }
+
+    /**
+     * Starts recording inputs of every tick to a log, which can be replayed by InputReplayer.
+     * Has to be called before the race starts.
+     *
+     * @param output        stream receiving the log
+     * @throws IOException  when header of the log cannot be written
+     */
+    public void startRecording( OutputStream output ) throws IOException {
+        recorder = new InputRecorder( output, scheduler.getRate(), trigBackend );
+    }
+
+    /**
+     * Finishes recording started with startRecording.
+     */
+    public void stopRecording(){
+        if( recorder == null )
+            return;
+        try {
+            recorder.close();
+        } catch( IOException e ){
+            System.err.println( "Cannot finish input log: " + e.getMessage() );
+        }
+        recorder = null;
     }
 
     /**
      * Main game loop function. Has to be put in any repetitive method of application for it to work.
+     * Simulates as many physics ticks as fit in time elapsed since previous frame.
+     *
+     * @param frameTime     time of current frame in nanoseconds
      */
-    public void refresh(){
+    public void refresh( long frameTime ){
         if( mainViewManager.isHomeScreenDisabled() ) {
-            raceCarModel.updateInputs(input);
-            handleButtonInputs();
+
+            int steps = scheduler.advance( frameTime );
+            for( int i = 0; i < steps; ++i )
+                tick( scheduler.getTickEndTime( i ) );
+            for( int car = 0; car < session.getCarCount(); ++car )
+                frictionGrid.prefetch( session.getState( car ).getX(), session.getState( car ).getY(), FRICTION_PREFETCH_RADIUS );
+
             handleLapTimes();
-            mainViewManager.setThrottleProgress(raceCarModel.getThrottle());
-            mainViewManager.setBrakeProgress(raceCarModel.getBrake());
-            mainViewManager.setSteeringProgress(raceCarModel.getSteering());
+            hud.setInputs( raceCarModel.getThrottle(), raceCarModel.getBrake(), raceCarModel.getSteering() );
+            hud.setDashboard( raceCarState.getSpeed(), raceCarState.getGear(), raceCarState.getRpm(), raceCarState.getFuel(),
+                              raceCarState.getFrontDurability(), raceCarState.getRearDurability() );
 
-            mainViewManager.applyCarTransformsReversed(memTrans, memTurn, memRot);
-            mainViewManager.applyBackgroundTransformsAdjustedReversed(memTrans, memTurn, memRot);
+            applyInterpolatedPose( scheduler.getAlpha() );
+            renderer.render( carPoses, session.getCarCount(), hud );
 
-            memTrans = new Translate(0, 0, 0);
-            memTurn = new Rotate(0);
-            memRot = new Rotate(0);
+            mainViewManager.updatePitstopPane( session.isInPitZone( 0 ), raceCarState.getFuel(), tireChangeProgress.getPercent() );
+
+            if( mainViewManager.isLatencyOverlayVisible() && ++latencyOverlayFrames >= LATENCY_OVERLAY_PERIOD ){
+                latencyOverlayFrames = 0;
+                mainViewManager.displayLatency( inputToTickLatency.getSummary() + "\n" + inputToFrameLatency.getSummary()
+                                                + "\n" + frameTimes.getSummary() );
+            }
+        }
+    }
+
+    /**
+     * Simulates one physics tick of all cars.
+     * Key events which happened before the end of the tick and button events are applied to the first car first,
+     * then the session samples friction under wheels in pose of the previous tick, applies inputs, physics and collision,
+     * in the same order as InputReplayer does it, and passes crossed checkpoints to lap timers.
+     *
+     * @param tickEndTime   time of the end of the tick in nanoseconds
+     */
+    private void tick( long tickEndTime ){
+        inputState.beginTick( tickEndTime );
+        handleButtonInputs();
+        byte[] events = inputState.getEvents();
+        int eventCount = inputState.getEventCount();
+        for( int i = 0; i < eventCount; ++i )
+            InputEvent.apply( events[i], raceCarModel );
 
-            raceCarModel.setFrontFriction(mainViewManager.getFrontFriction());
-            raceCarModel.setRearFriction(mainViewManager.getRearFriction());
+        int inputMask = inputState.getInputMask();
+        session.setInputMask( 0, inputMask );
+        session.tick();
+        traceInputLatency();
 
-            raceCarModel.calculateTransformation(memTrans, memTurn, memRot);
+        if( session.getCompletedLaps( 0 ) != completedLaps ){
+            completedLaps = session.getCompletedLaps( 0 );
+            recentTimes.addFirst( session.getLastLapTime( 0 ) );
+            recentTimes.removeLast();
+        }
 
-            mainViewManager.applyCarTransforms(memTrans, memTurn, memRot);
+        if( recorder != null ){
+            try {
+                recorder.record( inputMask, events, eventCount, session.getFrontFriction( 0 ), session.getRearFriction( 0 ),
+                                 session.getCollisionX( 0 ), session.getCollisionY( 0 ) );
+            } catch( IOException e ){
+                System.err.println( "Input recording stopped: " + e.getMessage() );
+                recorder = null;
+            }
+        }
+    }
 
-            mainViewManager.displaySpeed(raceCarModel.getSpeed());
-            mainViewManager.setGearDisplay(raceCarModel.getGear());
-            mainViewManager.setRpmPosition(raceCarModel.getRpm());
-            mainViewManager.setFuelProgress(raceCarModel.getFuel());
-            mainViewManager.setTireDurabilityProgress(raceCarModel.getFrontWheelDurability(), raceCarModel.getFrontWheelDurability(), raceCarModel.getRearWheelDurability(), raceCarModel.getRearWheelDurability());
-            mainViewManager.setTireChangeProgress(tireChangeProgress.getPercent());
+    /**
+     * Records latency of key events consumed by current tick and keeps their times until the next frame.
+     */
+    private void traceInputLatency(){
+        int count = inputState.getEventTimeCount();
+        if( count == 0 )
+            return;
 
-            mainViewManager.showPitstopPane();
-            raceCarModel.addCollision(mainViewManager.getBarrierCollisionVector());
+        long[] times = inputState.getEventTimes();
+        long now = System.nanoTime();
+        if( pendingInputCount + count > pendingInputTimes.length )
+            pendingInputTimes = Arrays.copyOf( pendingInputTimes, Math.max( 2 * pendingInputTimes.length, pendingInputCount + count ) );
+        for( int i = 0; i < count; ++i ){
+            inputToTickLatency.record( now - times[i] );
+            pendingInputTimes[pendingInputCount++] = times[i];
         }
     }
 
     /**
-     * Handle of KeyPressed event.
+     * Called after layout of every frame, when transforms applied by refresh are about to be rendered.
+     * Records interval between frames and latency of key events simulated before this frame.
+     */
+    private void onFrameLaidOut(){
+        long now = System.nanoTime();
+        if( lastFrameTime != 0 && mainViewManager.isHomeScreenDisabled() )
+            frameTimes.record( now - lastFrameTime );
+        lastFrameTime = now;
+
+        for( int i = 0; i < pendingInputCount; ++i )
+            inputToFrameLatency.record( now - pendingInputTimes[i] );
+        pendingInputCount = 0;
+    }
+
+    /**
+     * Writes percentiles of input latency and frame time as CSV lines: stage, percentile and latency in microseconds.
      *
-     * @param e     KeyEvent passed to handle
+     * @param writer    destination of report
      */
-    public void onKeyPressedHandle(KeyEvent e){
-        String keyCode = e.getCode().toString();
+    public void writeLatencyReport( PrintWriter writer ){
+        writer.println( "stage,percentile,microseconds" );
+        inputToTickLatency.writeReport( writer );
+        inputToFrameLatency.writeReport( writer );
+        frameTimes.writeReport( writer );
+    }
+
+    /**
+     * Returns number of key events traced until a frame.
+     *
+     * @return  number of traced key events
+     */
+    public long getTracedInputCount(){
+        return inputToFrameLatency.getCount();
+    }
 
-        if(!input.contains(keyCode))
-            input.add(keyCode);
+    /**
+     * Fills poses of cars passed to renderer with poses interpolated between the last two ticks.
+     *
+     * @param alpha     interpolation factor in range 0.0 - 1.0
+     */
+    private void applyInterpolatedPose( double alpha ){
+        for( int car = 0; car < session.getCarCount(); ++car ){
+            VehicleState previous = session.getPreviousState( car );
+            VehicleState state = session.getState( car );
+            carPoses[3*car] = previous.getX() + ( state.getX() - previous.getX() ) * alpha;
+            carPoses[3*car + 1] = previous.getY() + ( state.getY() - previous.getY() ) * alpha;
+            carPoses[3*car + 2] = previous.getHeading() + ( state.getHeading() - previous.getHeading() ) * alpha;
+        }
+    }
 
-        if( keyCode.equals("M") )
-            raceCarModel.upShiftReady();
+    /**
+     * Returns state of the car after the last tick, including its world pose.
+     * Returned instance is owned by GameController and overwritten by every tick.
+     *
+     * @return  state of the car
+     */
+    public VehicleState getCarState(){
+        return raceCarState;
+    }
 
-        if( keyCode.equals("N") )
-            raceCarModel.downShiftReady();
+    /**
+     * Handle of KeyPressed event.
+     *
+     * @param e     KeyEvent passed to handle
+     */
+    public void onKeyPressedHandle(KeyEvent e){
+        inputState.keyPressed( e.getCode(), System.nanoTime() );
 
         if( e.getCode().equals(KeyCode.ENTER) )
             mainViewManager.disableHomeScreen();
+        if( e.getCode().equals(KeyCode.F3) )
+            mainViewManager.setLatencyOverlayVisible( !mainViewManager.isLatencyOverlayVisible() );
     }
 
     /**
@@ -116,26 +416,31 @@ public class GameController {
      * @param e     KeyEvent passed to handle
      */
     public void onKeyReleasedHandle(KeyEvent e){
-        String keyCode = e.getCode().toString();
-        input.remove(keyCode);
+        inputState.keyReleased( e.getCode(), System.nanoTime() );
+    }
 
-        if( keyCode.equals("M") || keyCode.equals("N") )
-            raceCarModel.shift();
+    /**
+     * Getter of keyBindings property. Bindings can be changed at any time.
+     *
+     * @return  table mapping keys to actions
+     */
+    public KeyBindings getKeyBindings(){
+        return inputState.getBindings();
     }
 
     /**
-     * Performs button management.
+     * Performs button management. Called once per physics tick, queues events applied in the same tick.
      */
     public void handleButtonInputs(){
         if(mainViewManager.isFuelButtonPressed()){
-            raceCarModel.refuel();
+            inputState.queueEvent( InputEvent.REFUEL );
         }
         if(mainViewManager.isTiresButtonPressed()){
 
-            tireChangeProgress.addPercent( 1.0/90 );
+            tireChangeProgress.addPercent( timeStep / 1.5 );
 
             if( tireChangeProgress.getPercent() == 1 ){
-                raceCarModel.changeTires();
+                inputState.queueEvent( InputEvent.CHANGE_TIRES );
                 tireChangeProgress.setPercent( 0 );
             }
 
@@ -145,22 +450,10 @@ public class GameController {
     }
 
     /**
-     * Performs lap time management.
+     * Performs lap time display. Checkpoints are crossed in physics ticks.
      */
     public void handleLapTimes(){
-        mainViewManager.displayTimes( timer.getCurrentLapTime(), bestTime, recentTimes );
-
-        int cpIndex = mainViewManager.getCrossedCheckpoint();
-        if( cpIndex > -1 ){
-            timer.checkpointCrossed(cpIndex);
-            if(timer.isReady()){
-                long newTime = timer.pullFinishedLapTime();
-                recentTimes.addFirst(newTime);
-                recentTimes.removeLast();
-                if(newTime < bestTime | bestTime < 0)
-                    bestTime = newTime;
-            }
-        }
+        hud.setTimes( session.getCurrentLapTime( 0 ), session.getBestLapTime( 0 ), recentTimes );
     }
 
 }
@@ -0,0 +1,34 @@
+package szewoj.race2d.controller;
+
+import szewoj.race2d.model.Vehicle;
+
+/**
+ * Logical actions of player, to which keys are bound.
+ * Driving actions are held while key is pressed and map to bits of Vehicle input mask,
+ * shift actions make gearbox ready when key is pressed and shift when it is released.
+ */
+public enum InputAction {
+    THROTTLE( Vehicle.INPUT_THROTTLE ),
+    BRAKE( Vehicle.INPUT_BRAKE ),
+    STEER_LEFT( Vehicle.INPUT_LEFT ),
+    STEER_RIGHT( Vehicle.INPUT_RIGHT ),
+    HANDBRAKE( Vehicle.INPUT_HANDBRAKE ),
+    SHIFT_UP( 0 ),
+    SHIFT_DOWN( 0 );
+
+    private final int inputBit;
+
+    InputAction( int inputBit ){
+        this.inputBit = inputBit;
+    }
+
+    /**
+     * Returns bit of Vehicle input mask set while action is held.
+     *
+     * @return  Vehicle.INPUT_ constant, or 0 for actions not held
+     */
+    public int getInputBit(){
+        return inputBit;
+    }
+
+}
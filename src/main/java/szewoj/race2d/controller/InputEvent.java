@@ -0,0 +1,47 @@
+package szewoj.race2d.controller;
+
+import szewoj.race2d.model.Vehicle;
+
+/**
+ * Discrete actions of player applied to the car at the beginning of a physics tick.
+ * Codes are stored in input logs, so their values must not change.
+ */
+public final class InputEvent {
+    public static final byte UP_SHIFT_READY = 1;
+    public static final byte DOWN_SHIFT_READY = 2;
+    public static final byte SHIFT = 3;
+    public static final byte REFUEL = 4;
+    public static final byte CHANGE_TIRES = 5;
+
+    private InputEvent(){
+    }
+
+    /**
+     * Applies action to the car.
+     *
+     * @param event     code of action
+     * @param vehicle   controlled car
+     */
+    public static void apply( byte event, Vehicle vehicle ){
+        switch( event ){
+            case UP_SHIFT_READY:
+                vehicle.upShiftReady();
+                break;
+            case DOWN_SHIFT_READY:
+                vehicle.downShiftReady();
+                break;
+            case SHIFT:
+                vehicle.shift();
+                break;
+            case REFUEL:
+                vehicle.refuel();
+                break;
+            case CHANGE_TIRES:
+                vehicle.changeTires();
+                break;
+            default:
+                throw new IllegalArgumentException( "Unknown input event: " + event );
+        }
+    }
+
+}
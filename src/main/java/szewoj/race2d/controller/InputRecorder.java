@@ -0,0 +1,149 @@
+package szewoj.race2d.controller;
+
+import szewoj.race2d.utilities.TrigBackend;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Writes everything the physics of a car consumes in every tick to a compact binary log,
+ * so a session can be replayed exactly by InputReplayer.
+ * <p>
+ * Log starts with header: magic number, format version, physics rate and ordinal of TrigBackend.
+ * It is followed by runs of identical ticks, every run written as:
+ * number of ticks (variable length int, 0 ends the log), input mask, number of events (variable length int), event codes,
+ * flags, and then friction of front and rear wheels if it changed and collision vector if it is not zero.
+ */
+public class InputRecorder implements AutoCloseable {
+    static final int MAGIC = 0x5232444C;           //"R2DL"
+    static final int VERSION = 1;
+    static final int FLAG_FRICTION = 1;
+    static final int FLAG_COLLISION = 2;
+    private final DataOutputStream out;
+
+    //Run of identical ticks waiting to be written:
+    private int runLength;
+    private int inputMask;
+    private byte[] events;
+    private int eventCount;
+    private double frontFriction;
+    private double rearFriction;
+    private double collisionX;
+    private double collisionY;
+    private double writtenFrontFriction;
+    private double writtenRearFriction;
+
+    /**
+     * Constructor of InputRecorder. Writes header of the log.
+     *
+     * @param output        stream receiving the log
+     * @param physicsRate   number of physics ticks per second
+     * @param trig          implementation of trigonometric functions used by physics
+     * @throws IOException  when header cannot be written
+     */
+    public InputRecorder( OutputStream output, int physicsRate, TrigBackend trig ) throws IOException {
+        out = new DataOutputStream( new BufferedOutputStream( output ) );
+        events = new byte[8];
+        writtenFrontFriction = Double.NaN;
+        writtenRearFriction = Double.NaN;
+
+        out.writeInt( MAGIC );
+        out.writeByte( VERSION );
+        out.writeInt( physicsRate );
+        out.writeByte( trig.ordinal() );
+    }
+
+    /**
+     * Records one physics tick. Tick equal to the previous one only extends its run.
+     *
+     * @param inputMask         bit mask of pressed Vehicle.INPUT_ constants
+     * @param tickEvents        codes of InputEvent applied in this tick, in order of application
+     * @param tickEventCount    number of events
+     * @param front             friction under front wheels
+     * @param rear              friction under rear wheels
+     * @param x                 x coordinate of collision vector passed to the car
+     * @param y                 y coordinate of collision vector passed to the car
+     * @throws IOException      when previous run cannot be written
+     */
+    public void record( int inputMask, byte[] tickEvents, int tickEventCount, double front, double rear, double x, double y ) throws IOException {
+        if( runLength > 0 && inputMask == this.inputMask && tickEventCount == 0 && eventCount == 0
+                && same( front, frontFriction ) && same( rear, rearFriction ) && same( x, collisionX ) && same( y, collisionY ) ){
+            ++runLength;
+            return;
+        }
+
+        flush();
+        runLength = 1;
+        this.inputMask = inputMask;
+        if( events.length < tickEventCount )
+            events = Arrays.copyOf( tickEvents, tickEventCount );
+        else
+            System.arraycopy( tickEvents, 0, events, 0, tickEventCount );
+        eventCount = tickEventCount;
+        frontFriction = front;
+        rearFriction = rear;
+        collisionX = x;
+        collisionY = y;
+    }
+
+    /**
+     * Compares doubles bit by bit, so replay gets exactly the recorded values.
+     */
+    private static boolean same( double a, double b ){
+        return Double.doubleToRawLongBits( a ) == Double.doubleToRawLongBits( b );
+    }
+
+    /**
+     * Writes pending run of ticks.
+     *
+     * @throws IOException  when run cannot be written
+     */
+    private void flush() throws IOException {
+        if( runLength == 0 )
+            return;
+
+        writeVarInt( runLength );
+        out.writeByte( inputMask );
+        writeVarInt( eventCount );
+        out.write( events, 0, eventCount );
+
+        boolean frictionChanged = !same( frontFriction, writtenFrontFriction ) || !same( rearFriction, writtenRearFriction );
+        boolean collision = !same( collisionX, 0 ) || !same( collisionY, 0 );
+        out.writeByte( (frictionChanged ? FLAG_FRICTION : 0) | (collision ? FLAG_COLLISION : 0) );
+        if( frictionChanged ){
+            out.writeDouble( frontFriction );
+            out.writeDouble( rearFriction );
+            writtenFrontFriction = frontFriction;
+            writtenRearFriction = rearFriction;
+        }
+        if( collision ){
+            out.writeDouble( collisionX );
+            out.writeDouble( collisionY );
+        }
+        runLength = 0;
+    }
+
+    private void writeVarInt( int value ) throws IOException {
+        while( (value & ~0x7F) != 0 ){
+            out.writeByte( (value & 0x7F) | 0x80 );
+            value >>>= 7;
+        }
+        out.writeByte( value );
+    }
+
+    /**
+     * Writes pending run and end of the log, then closes the stream.
+     *
+     * @throws IOException  when log cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        flush();
+        writeVarInt( 0 );
+        out.close();
+    }
+
+}
@@ -0,0 +1,163 @@
+package szewoj.race2d.controller;
+
+import szewoj.race2d.model.Vehicle;
+import szewoj.race2d.model.VehicleState;
+import szewoj.race2d.utilities.TrigBackend;
+import szewoj.race2d.utilities.Vector2;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Replays log written by InputRecorder without view, as fast as physics can be simulated.
+ * Every tick is simulated in the same order as in GameController, so the final state of the car
+ * is identical to the recorded session.
+ */
+public class InputReplayer {
+    private final DataInputStream in;
+    private final int physicsRate;
+    private final TrigBackend trig;
+    private byte[] events;
+    private final Vector2 collision;
+    private long ticks;
+
+    /**
+     * Constructor of InputReplayer. Reads header of the log.
+     *
+     * @param input         stream of the log
+     * @throws IOException  when stream is not a log of supported version
+     */
+    public InputReplayer( InputStream input ) throws IOException {
+        in = new DataInputStream( new BufferedInputStream( input ) );
+        if( in.readInt() != InputRecorder.MAGIC )
+            throw new IOException( "Stream is not an input log" );
+        int version = in.readUnsignedByte();
+        if( version != InputRecorder.VERSION )
+            throw new IOException( "Unsupported input log version: " + version );
+
+        physicsRate = in.readInt();
+        trig = TrigBackend.values()[in.readUnsignedByte()];
+        events = new byte[8];
+        collision = new Vector2();
+    }
+
+    /**
+     * Creates car with settings of recorded session and replays the whole log on it.
+     *
+     * @return              state of the car after the last tick
+     * @throws IOException  when log cannot be read
+     */
+    public VehicleState replay() throws IOException {
+        Vehicle vehicle = new Vehicle( 1.0 / physicsRate );
+        vehicle.setTrigBackend( trig );
+        return replay( vehicle );
+    }
+
+    /**
+     * Replays the whole log on given car.
+     *
+     * @param vehicle       car in the state from the beginning of recording
+     * @return              state of the car after the last tick
+     * @throws IOException  when log cannot be read
+     */
+    public VehicleState replay( Vehicle vehicle ) throws IOException {
+        VehicleState state = new VehicleState();
+        vehicle.getState( state );
+        double collisionX = 0;
+        double collisionY = 0;
+
+        for( int runLength = readVarInt(); runLength != 0; runLength = readVarInt() ){
+            int inputMask = in.readUnsignedByte();
+            int eventCount = readVarInt();
+            if( events.length < eventCount )
+                events = new byte[eventCount];
+            in.readFully( events, 0, eventCount );
+            int flags = in.readUnsignedByte();
+
+            if( (flags & InputRecorder.FLAG_FRICTION) != 0 ){
+                vehicle.setFrontFriction( in.readDouble() );
+                vehicle.setRearFriction( in.readDouble() );
+            }
+            if( (flags & InputRecorder.FLAG_COLLISION) != 0 ){
+                collisionX = in.readDouble();
+                collisionY = in.readDouble();
+            } else {
+                collisionX = 0;
+                collisionY = 0;
+            }
+
+            for( int tick = 0; tick < runLength; ++tick ){
+                //events are recorded only in the first tick of a run
+                if( tick == 0 ){
+                    for( int i = 0; i < eventCount; ++i )
+                        InputEvent.apply( events[i], vehicle );
+                }
+                vehicle.updateInputs( inputMask );
+                vehicle.step( state );
+
+                collision.setX( collisionX );
+                collision.setY( collisionY );
+                vehicle.addCollision( collision );
+            }
+            ticks += runLength;
+        }
+        return state;
+    }
+
+    private int readVarInt() throws IOException {
+        int value = 0;
+        for( int shift = 0; ; shift += 7 ){
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if( (b & 0x80) == 0 )
+                return value;
+        }
+    }
+
+    /**
+     * Returns number of ticks replayed so far.
+     *
+     * @return  number of ticks
+     */
+    public long getTicks(){
+        return ticks;
+    }
+
+    /**
+     * Returns number of physics ticks per second of recorded session.
+     *
+     * @return  physics rate
+     */
+    public int getPhysicsRate(){
+        return physicsRate;
+    }
+
+    /**
+     * Replays log given as the first argument and prints final state of the car with time of replay.
+     *
+     * @param args          path of the log
+     * @throws IOException  when log cannot be read
+     */
+    public static void main( String[] args ) throws IOException {
+        if( args.length != 1 ){
+            System.err.println( "Usage: InputReplayer <input log>" );
+            System.exit( 2 );
+        }
+
+        try( InputStream input = new FileInputStream( args[0] ) ){
+            InputReplayer replayer = new InputReplayer( input );
+            long start = System.nanoTime();
+            VehicleState state = replayer.replay();
+            long elapsed = System.nanoTime() - start;
+
+            System.out.printf( "Replayed %d ticks (%.1f s of game) in %.3f s%n",
+                    replayer.getTicks(), (double) replayer.getTicks() / replayer.getPhysicsRate(), elapsed / 1e9 );
+            System.out.printf( "x=%s y=%s heading=%s speed=%d km/h gear=%d rpm=%s fuel=%s%n",
+                    state.getX(), state.getY(), state.getHeading(), state.getSpeed(), state.getGear(), state.getRpm(), state.getFuel() );
+        }
+    }
+
+}
@@ -0,0 +1,224 @@
+package szewoj.race2d.controller;
+
+import javafx.scene.input.KeyCode;
+
+import java.util.Arrays;
+
+/**
+ * Keeps state of player inputs between physics ticks.
+ * Key events are translated to actions by KeyBindings and queued with their time,
+ * then every tick consumes events that happened before its end, in order.
+ * Held driving actions are kept as Vehicle input mask, and an action pressed and released within one tick
+ * still counts as held in that tick. Shifting produces InputEvents applied at the beginning of the tick.
+ */
+public class InputState {
+    private final KeyBindings bindings;
+    private final boolean[] heldKeys;
+    private final InputAction[] pressedActions;     //action of every held key at the time it was pressed
+    private final int[] heldActions;                //number of held keys bound to every action
+
+    //Ring buffer of key events waiting for their tick:
+    private long[] eventTimes;
+    private InputAction[] eventActions;
+    private boolean[] eventPresses;
+    private int head;
+    private int size;
+
+    private int heldMask;
+    private int tickMask;
+    private byte[] tickEvents;
+    private int tickEventCount;
+    private long[] tickEventTimes;                  //times of key events consumed in current tick, for latency tracing
+    private int tickEventTimeCount;
+
+    /**
+     * Constructor of InputState.
+     *
+     * @param bindings  table mapping keys to actions
+     */
+    public InputState( KeyBindings bindings ){
+        this.bindings = bindings;
+        heldKeys = new boolean[KeyCode.values().length];
+        pressedActions = new InputAction[KeyCode.values().length];
+        heldActions = new int[InputAction.values().length];
+        eventTimes = new long[16];
+        eventActions = new InputAction[16];
+        eventPresses = new boolean[16];
+        tickEvents = new byte[8];
+        tickEventTimes = new long[8];
+    }
+
+    /**
+     * Getter of bindings property.
+     *
+     * @return  table mapping keys to actions
+     */
+    public KeyBindings getBindings(){
+        return bindings;
+    }
+
+    /**
+     * Queues press of a key. Repeated presses of held key are ignored.
+     *
+     * @param key   pressed key
+     * @param time  time of event in nanoseconds, in the same time base as frame times
+     */
+    public void keyPressed( KeyCode key, long time ){
+        if( heldKeys[key.ordinal()] )
+            return;
+        heldKeys[key.ordinal()] = true;
+
+        InputAction action = bindings.getAction( key );
+        pressedActions[key.ordinal()] = action;
+        if( action != null )
+            enqueue( time, action, true );
+    }
+
+    /**
+     * Queues release of a key.
+     *
+     * @param key   released key
+     * @param time  time of event in nanoseconds, in the same time base as frame times
+     */
+    public void keyReleased( KeyCode key, long time ){
+        if( !heldKeys[key.ordinal()] )
+            return;
+        heldKeys[key.ordinal()] = false;
+
+        InputAction action = pressedActions[key.ordinal()];
+        pressedActions[key.ordinal()] = null;
+        if( action != null )
+            enqueue( time, action, false );
+    }
+
+    private void enqueue( long time, InputAction action, boolean pressed ){
+        if( size == eventTimes.length ){
+            eventTimes = unwrap( eventTimes );
+            eventActions = unwrap( eventActions );
+            eventPresses = unwrap( eventPresses );
+            head = 0;
+        }
+        int index = (head + size) % eventTimes.length;
+        eventTimes[index] = time;
+        eventActions[index] = action;
+        eventPresses[index] = pressed;
+        ++size;
+    }
+
+    private long[] unwrap( long[] ring ){
+        long[] result = new long[2 * ring.length];
+        for( int i = 0; i < size; ++i )
+            result[i] = ring[(head + i) % ring.length];
+        return result;
+    }
+
+    private InputAction[] unwrap( InputAction[] ring ){
+        InputAction[] result = new InputAction[2 * ring.length];
+        for( int i = 0; i < size; ++i )
+            result[i] = ring[(head + i) % ring.length];
+        return result;
+    }
+
+    private boolean[] unwrap( boolean[] ring ){
+        boolean[] result = new boolean[2 * ring.length];
+        for( int i = 0; i < size; ++i )
+            result[i] = ring[(head + i) % ring.length];
+        return result;
+    }
+
+    /**
+     * Starts new tick. Consumes key events which happened before the end of the tick,
+     * updating input mask and collecting shift events.
+     *
+     * @param tickEndTime   time of the end of the tick in nanoseconds
+     */
+    public void beginTick( long tickEndTime ){
+        tickEventCount = 0;
+        tickEventTimeCount = 0;
+        tickMask = heldMask;
+
+        while( size > 0 && eventTimes[head] <= tickEndTime ){
+            if( tickEventTimeCount == tickEventTimes.length )
+                tickEventTimes = Arrays.copyOf( tickEventTimes, 2 * tickEventTimes.length );
+            tickEventTimes[tickEventTimeCount++] = eventTimes[head];
+            InputAction action = eventActions[head];
+            boolean pressed = eventPresses[head];
+            eventActions[head] = null;
+            head = (head + 1) % eventTimes.length;
+            --size;
+
+            if( pressed ){
+                ++heldActions[action.ordinal()];
+                heldMask |= action.getInputBit();
+                tickMask |= action.getInputBit();
+                if( action == InputAction.SHIFT_UP )
+                    queueEvent( InputEvent.UP_SHIFT_READY );
+                else if( action == InputAction.SHIFT_DOWN )
+                    queueEvent( InputEvent.DOWN_SHIFT_READY );
+            } else {
+                //action stays held while another key bound to it is pressed
+                if( --heldActions[action.ordinal()] == 0 )
+                    heldMask &= ~action.getInputBit();
+                if( action == InputAction.SHIFT_UP || action == InputAction.SHIFT_DOWN )
+                    queueEvent( InputEvent.SHIFT );
+            }
+        }
+    }
+
+    /**
+     * Adds event applied to the car in current tick.
+     *
+     * @param event     code of InputEvent
+     */
+    public void queueEvent( byte event ){
+        if( tickEventCount == tickEvents.length )
+            tickEvents = Arrays.copyOf( tickEvents, 2 * tickEvents.length );
+        tickEvents[tickEventCount++] = event;
+    }
+
+    /**
+     * Returns input mask of current tick.
+     *
+     * @return  bit mask of Vehicle.INPUT_ constants
+     */
+    public int getInputMask(){
+        return tickMask;
+    }
+
+    /**
+     * Returns events of current tick. Only the first getEventCount() entries are valid.
+     *
+     * @return  codes of InputEvent in order of application
+     */
+    public byte[] getEvents(){
+        return tickEvents;
+    }
+
+    /**
+     * Returns number of events of current tick.
+     *
+     * @return  number of events
+     */
+    public int getEventCount(){
+        return tickEventCount;
+    }
+
+    /**
+     * Returns times of key events consumed by current tick. Only the first getEventTimeCount() entries are valid.
+     *
+     * @return  times of key events in nanoseconds
+     */
+    public long[] getEventTimes(){
+        return tickEventTimes;
+    }
+
+    /**
+     * Returns number of key events consumed by current tick.
+     *
+     * @return  number of key events
+     */
+    public int getEventTimeCount(){
+        return tickEventTimeCount;
+    }
+
+}
@@ -0,0 +1,101 @@
+package szewoj.race2d.controller;
+
+import javafx.scene.input.KeyCode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * Table mapping keys to actions of player. Key can be bound to at most one action,
+ * while action can have any number of keys.
+ * Lookup is a single array access indexed by ordinal of KeyCode.
+ */
+public class KeyBindings {
+    private final InputAction[] actions;
+
+    /**
+     * Constructor of KeyBindings with no key bound.
+     */
+    public KeyBindings(){
+        actions = new InputAction[KeyCode.values().length];
+    }
+
+    /**
+     * Creates default bindings: WSAD and arrows for driving, space for handbrake, M and N for shifting.
+     *
+     * @return  default bindings
+     */
+    public static KeyBindings createDefault(){
+        KeyBindings bindings = new KeyBindings();
+        bindings.bind( KeyCode.W, InputAction.THROTTLE );
+        bindings.bind( KeyCode.UP, InputAction.THROTTLE );
+        bindings.bind( KeyCode.S, InputAction.BRAKE );
+        bindings.bind( KeyCode.DOWN, InputAction.BRAKE );
+        bindings.bind( KeyCode.A, InputAction.STEER_LEFT );
+        bindings.bind( KeyCode.LEFT, InputAction.STEER_LEFT );
+        bindings.bind( KeyCode.D, InputAction.STEER_RIGHT );
+        bindings.bind( KeyCode.RIGHT, InputAction.STEER_RIGHT );
+        bindings.bind( KeyCode.SPACE, InputAction.HANDBRAKE );
+        bindings.bind( KeyCode.M, InputAction.SHIFT_UP );
+        bindings.bind( KeyCode.N, InputAction.SHIFT_DOWN );
+        return bindings;
+    }
+
+    /**
+     * Binds key to action, replacing previous action of the key.
+     *
+     * @param key       bound key
+     * @param action    action triggered by the key
+     */
+    public void bind( KeyCode key, InputAction action ){
+        actions[key.ordinal()] = action;
+    }
+
+    /**
+     * Removes all keys bound to action.
+     *
+     * @param action    action left without keys
+     */
+    public void unbindAll( InputAction action ){
+        for( int i = 0; i < actions.length; ++i ){
+            if( actions[i] == action )
+                actions[i] = null;
+        }
+    }
+
+    /**
+     * Returns action bound to key.
+     *
+     * @param key   pressed key
+     * @return      bound action, or null if key is not bound
+     */
+    public InputAction getAction( KeyCode key ){
+        return actions[key.ordinal()];
+    }
+
+    /**
+     * Rebinds actions listed in properties file, for example "THROTTLE = W, UP".
+     * Keys of actions missing in the file stay unchanged.
+     *
+     * @param input         stream of properties file
+     * @throws IOException  when file cannot be read
+     */
+    public void load( InputStream input ) throws IOException {
+        Properties properties = new Properties();
+        properties.load( input );
+
+        for( InputAction action : InputAction.values() ){
+            String keys = properties.getProperty( action.name() );
+            if( keys == null )
+                continue;
+
+            unbindAll( action );
+            for( String key : keys.split( "," ) ){
+                if( !key.trim().isEmpty() )
+                    bind( KeyCode.valueOf( key.trim() ), action );
+            }
+        }
+    }
+
+}
@@ -0,0 +1,297 @@
+package szewoj.race2d.controller;
+
+import szewoj.race2d.model.Vehicle;
+import szewoj.race2d.utilities.LatencyHistogram;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Locale;
+
+/**
+ * Simulates many players connected to RaceServer from one thread, for measuring the server under load.
+ * Every player shifts into the first gear, drives with full throttle weaving left and right,
+ * decodes every snapshot against its own history of snapshots, exactly like a game client, and acknowledges it
+ * with its input. Counts received bytes of every player and collects durations of server ticks sent in snapshots.
+ */
+public class LoadTestClient implements AutoCloseable {
+    public static final int DEFAULT_PLAYERS = 64;
+    private static final int WEAVE_TICKS = 45;              //ticks of steering to one side
+    private static final int INPUT_CAPACITY = 4 * RaceServer.MAX_MESSAGE;
+
+    private final Selector selector;
+    private final Player[] players;
+    private final LatencyHistogram serverTickTimes;
+
+    /**
+     * Constructor of LoadTestClient. Starts connecting all players.
+     *
+     * @param server        address of RaceServer
+     * @param players       number of simulated players
+     * @throws IOException  when connections cannot be opened
+     */
+    public LoadTestClient( InetSocketAddress server, int players ) throws IOException {
+        if( players <= 0 || players > RaceServer.MAX_CLIENTS )
+            throw new IllegalArgumentException( "Number of players has to be between 1 and " + RaceServer.MAX_CLIENTS + ": " + players );
+
+        selector = Selector.open();
+        this.players = new Player[players];
+        serverTickTimes = new LatencyHistogram( "server-tick" );
+        for( int i = 0; i < players; ++i ){
+            SocketChannel channel = SocketChannel.open();
+            channel.configureBlocking( false );
+            channel.setOption( StandardSocketOptions.TCP_NODELAY, true );
+            this.players[i] = new Player( channel, i );
+            channel.connect( server );
+            channel.register( selector, SelectionKey.OP_CONNECT, this.players[i] );
+        }
+    }
+
+    /**
+     * Receives snapshots and sends inputs of all players for given time.
+     *
+     * @param seconds       time of the test
+     * @throws IOException  when a player loses connection
+     */
+    public void run( double seconds ) throws IOException {
+        long end = System.nanoTime() + (long)( seconds * 1e9 );
+        while( System.nanoTime() < end ){
+            selector.select( Math.max( 1, ( end - System.nanoTime() ) / 1000000 ) );
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while( keys.hasNext() ){
+                SelectionKey key = keys.next();
+                keys.remove();
+                Player player = (Player) key.attachment();
+                if( key.isConnectable() ){
+                    player.channel.finishConnect();
+                    key.interestOps( SelectionKey.OP_READ );
+                    player.connectedTime = System.nanoTime();
+                } else if( key.isReadable() ){
+                    receive( player );
+                }
+            }
+        }
+    }
+
+    private void receive( Player player ) throws IOException {
+        ByteBuffer input = player.input;
+        int read = player.channel.read( input );
+        if( read < 0 )
+            throw new IOException( "Server closed connection of player " + player.index );
+        player.bytesReceived += read;
+
+        input.flip();
+        while( input.remaining() >= 2 && input.remaining() >= 2 + ( input.getShort( input.position() ) & 0xFFFF ) ){
+            int end = input.position() + 2 + ( input.getShort() & 0xFFFF );
+            byte type = input.get();
+            if( type == RaceServer.MESSAGE_WELCOME ){
+                player.car = input.getShort() & 0xFFFF;
+            } else if( type == RaceServer.MESSAGE_SNAPSHOT ){
+                receiveSnapshot( player, input );
+                sendInput( player );
+            } else {
+                throw new IOException( "Unknown message type " + type + " of player " + player.index );
+            }
+            input.position( end );
+        }
+        input.compact();
+    }
+
+    private void receiveSnapshot( Player player, ByteBuffer input ) throws IOException {
+        int tick = input.getInt();
+        int baseTick = input.getInt();
+        serverTickTimes.record( SnapshotCodec.readVarInt( input ) * 1000L );
+
+        int slot = tick % RaceServer.HISTORY;
+        if( baseTick < 0 ){
+            player.historyCars[slot] = SnapshotCodec.readDelta( input, null, 0, player.history[slot] );
+            ++player.fullSnapshots;
+        } else {
+            int baseSlot = baseTick % RaceServer.HISTORY;
+            if( player.historyTicks[baseSlot] != baseTick )
+                throw new IOException( "Player " + player.index + " does not have base tick " + baseTick );
+            player.historyCars[slot] = SnapshotCodec.readDelta( input, player.history[baseSlot], player.historyCars[baseSlot], player.history[slot] );
+        }
+        player.historyTicks[slot] = tick;
+        player.lastTick = tick;
+        ++player.snapshots;
+    }
+
+    private void sendInput( Player player ) throws IOException {
+        int mask = Vehicle.INPUT_THROTTLE | ( ( player.lastTick + player.index * 7 ) / WEAVE_TICKS % 2 == 0 ? Vehicle.INPUT_LEFT : Vehicle.INPUT_RIGHT );
+        ByteBuffer output = player.output;
+        output.clear();
+        output.putShort( (short)( player.shifted ? 7 : 9 ) );
+        output.put( RaceServer.MESSAGE_INPUT );
+        output.putInt( player.lastTick );
+        output.put( (byte) mask );
+        if( player.shifted ){
+            output.put( (byte) 0 );
+        } else {
+            output.put( (byte) 2 );
+            output.put( InputEvent.UP_SHIFT_READY );
+            output.put( InputEvent.SHIFT );
+            player.shifted = true;
+        }
+        output.flip();
+        player.channel.write( output );
+    }
+
+    /**
+     * Closes connections of all players.
+     *
+     * @throws IOException  when a connection cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        for( Player player : players )
+            player.channel.close();
+        selector.close();
+    }
+
+    /**
+     * Returns mean number of bytes received by one player per second since it connected.
+     *
+     * @return  bytes per second per player
+     */
+    public double getBytesPerPlayerPerSecond(){
+        long now = System.nanoTime();
+        double sum = 0;
+        for( Player player : players )
+            if( player.connectedTime > 0 )
+                sum += player.bytesReceived / ( ( now - player.connectedTime ) / 1e9 );
+        return sum / players.length;
+    }
+
+    /**
+     * Returns histogram of durations of server ticks, as reported in snapshots received by all players.
+     *
+     * @return  histogram of server tick durations
+     */
+    public LatencyHistogram getServerTickTimes(){
+        return serverTickTimes;
+    }
+
+    /**
+     * Returns number of snapshots received by a player.
+     *
+     * @param player    index of player
+     * @return          number of snapshots
+     */
+    public int getSnapshotCount( int player ){
+        return players[player].snapshots;
+    }
+
+    /**
+     * Returns number of full snapshots, not encoded against an acknowledged one, received by a player.
+     *
+     * @param player    index of player
+     * @return          number of full snapshots
+     */
+    public int getFullSnapshotCount( int player ){
+        return players[player].fullSnapshots;
+    }
+
+    /**
+     * Returns index of car driven by a player.
+     *
+     * @param player    index of player
+     * @return          index of car, or -1 before the player was welcomed
+     */
+    public int getCar( int player ){
+        return players[player].car;
+    }
+
+    /**
+     * Returns quantized fields of cars of the last snapshot received by a player, decoded by SnapshotCodec.
+     *
+     * @param player    index of player
+     * @return          quantized fields of cars, or null before the first snapshot
+     */
+    public int[] getLastSnapshot( int player ){
+        return players[player].lastTick < 0 ? null : players[player].history[players[player].lastTick % RaceServer.HISTORY];
+    }
+
+    /**
+     * Returns number of cars of the last snapshot received by a player.
+     *
+     * @param player    index of player
+     * @return          number of cars
+     */
+    public int getLastCarCount( int player ){
+        return players[player].lastTick < 0 ? 0 : players[player].historyCars[players[player].lastTick % RaceServer.HISTORY];
+    }
+
+    /**
+     * Connects players given as the second argument to server given as the first one (host:port),
+     * drives for number of seconds given as the third argument and prints bandwidth and server tick time.
+     *
+     * @param args          optional server address, number of players and duration in seconds
+     * @throws IOException  when connection fails
+     */
+    public static void main( String[] args ) throws IOException {
+        if( args.length > 3 ){
+            System.err.println( "Usage: LoadTestClient [host:port] [players] [seconds]" );
+            System.exit( 2 );
+        }
+        String address = args.length > 0 ? args[0] : "localhost:" + RaceServer.DEFAULT_PORT;
+        int separator = address.lastIndexOf( ':' );
+        InetSocketAddress server = separator < 0 ? new InetSocketAddress( address, RaceServer.DEFAULT_PORT )
+                : new InetSocketAddress( address.substring( 0, separator ), Integer.parseInt( address.substring( separator + 1 ) ) );
+        int players = args.length > 1 ? Integer.parseInt( args[1] ) : DEFAULT_PLAYERS;
+        double seconds = args.length > 2 ? Double.parseDouble( args[2] ) : 10;
+
+        try( LoadTestClient client = new LoadTestClient( server, players ) ){
+            client.run( seconds );
+            long snapshots = 0;
+            long fullSnapshots = 0;
+            for( int player = 0; player < players; ++player ){
+                snapshots += client.getSnapshotCount( player );
+                fullSnapshots += client.getFullSnapshotCount( player );
+            }
+            System.out.println( String.format( Locale.ROOT, "%d players: %.1f kB/s per client, %.1f snapshots/s per client, %d full snapshots, %d cars",
+                    players, client.getBytesPerPlayerPerSecond() / 1024, snapshots / seconds / players, fullSnapshots, client.getLastCarCount( 0 ) ) );
+            System.out.println( client.getServerTickTimes().getSummary() );
+        }
+    }
+
+    /**
+     * Connection of one simulated player with its history of decoded snapshots.
+     */
+    private static class Player {
+        private final SocketChannel channel;
+        private final int index;
+        private final ByteBuffer input;
+        private final ByteBuffer output;
+        private final int[][] history;
+        private final int[] historyCars;
+        private final int[] historyTicks;
+        private int car;
+        private int lastTick;
+        private boolean shifted;
+        private long bytesReceived;
+        private long connectedTime;
+        private int snapshots;
+        private int fullSnapshots;
+
+        Player( SocketChannel channel, int index ){
+            this.channel = channel;
+            this.index = index;
+            input = ByteBuffer.allocate( INPUT_CAPACITY );
+            output = ByteBuffer.allocate( 2 + 7 + RaceServer.MAX_EVENTS );
+            history = new int[RaceServer.HISTORY][RaceServer.MAX_CLIENTS * SnapshotCodec.FIELDS];
+            historyCars = new int[RaceServer.HISTORY];
+            historyTicks = new int[RaceServer.HISTORY];
+            Arrays.fill( historyTicks, -1 );
+            car = -1;
+            lastTick = -1;
+        }
+    }
+
+}
@@ -0,0 +1,453 @@
+package szewoj.race2d.controller;
+
+import szewoj.race2d.model.FrictionGrid;
+import szewoj.race2d.model.RaceSession;
+import szewoj.race2d.model.Track;
+import szewoj.race2d.model.TrackCompiler;
+import szewoj.race2d.model.Vehicle;
+import szewoj.race2d.utilities.LatencyHistogram;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Authoritative race simulated without view for clients connected over TCP, served by one thread with non-blocking NIO.
+ * Every connected client drives one car of a RaceSession with input bitmasks and input events,
+ * and receives a snapshot of all cars after every physics tick, quantized by SnapshotCodec
+ * and delta-compressed against the last snapshot it acknowledged. Snapshots of the last HISTORY ticks are kept,
+ * a client acknowledging an older one, or none, gets a full snapshot. All clients acknowledging the same tick
+ * share one encoded snapshot, so a tick encodes only a few of them regardless of number of clients.
+ * Snapshot is not queued for a client whose socket is not keeping up, it gets a later one against its last acknowledgement.
+ * <p>
+ * Every message starts with its length as unsigned short, not counting the length itself, and type byte:
+ * <ul>
+ *     <li>MESSAGE_WELCOME from server: index of car of the client and physics rate, both unsigned shorts,</li>
+ *     <li>MESSAGE_SNAPSHOT from server: tick and base tick as ints (base -1 for full snapshot),
+ *     duration of the previous server tick in microseconds as variable length int, and cars encoded by SnapshotCodec,</li>
+ *     <li>MESSAGE_INPUT from client: acknowledged tick as int (-1 for none), input mask byte,
+ *     number of input events byte and codes of InputEvent applied before the next tick.</li>
+ * </ul>
+ * Car of a disconnected client stays on track without inputs and is given to the next client that connects.
+ */
+public class RaceServer implements AutoCloseable {
+    public static final int DEFAULT_PORT = 47474;
+    public static final int MAX_CLIENTS = 256;
+    public static final byte MESSAGE_WELCOME = 1;
+    public static final byte MESSAGE_SNAPSHOT = 2;
+    public static final byte MESSAGE_INPUT = 3;
+    public static final int MAX_EVENTS = 16;                //input events of one tick
+    static final int HISTORY = 64;                          //ticks of snapshots kept as bases of deltas
+    static final int MAX_MESSAGE = 0xFFFF;
+    private static final int OUTPUT_CAPACITY = 4 * MAX_MESSAGE;
+    private static final int MAX_PENDING = MAX_MESSAGE;     //bytes waiting in output, above which snapshots are skipped
+    private static final int INPUT_CAPACITY = 512;
+    private static final int REPORT_PERIOD = 5;             //seconds between reports of main
+
+    private final RaceSession session;
+    private final FixedStepScheduler scheduler;
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final List<Client> clients;
+    private final boolean[] occupied;
+    private final int[][] history;
+    private final int[] historyCars;
+    private final long[] historyTicks;
+    private final ByteBuffer[] encoded;         //snapshot of the current tick against every history slot, the last one full
+    private final long[] encodedTicks;
+    private final LatencyHistogram tickTimes;
+    private long lastTickMicros;
+    private long bytesSent;
+    private volatile boolean running;
+    private boolean started;
+
+    /**
+     * Constructor of RaceServer. Binds server socket, clients are served by run.
+     *
+     * @param track         compiled track
+     * @param friction      friction grid of track, with world transform of the track
+     * @param physicsRate   number of physics ticks per second, and of snapshots sent to every client
+     * @param address       address to listen on, port 0 chooses a free port
+     * @throws IOException  when socket cannot be bound
+     */
+    public RaceServer( Track track, FrictionGrid friction, int physicsRate, InetSocketAddress address ) throws IOException {
+        scheduler = new FixedStepScheduler( physicsRate );
+        session = new RaceSession( track, friction, scheduler.getTimeStep(), 16 );
+        clients = new ArrayList<>();
+        occupied = new boolean[MAX_CLIENTS];
+        history = new int[HISTORY][MAX_CLIENTS * SnapshotCodec.FIELDS];
+        historyCars = new int[HISTORY];
+        historyTicks = new long[HISTORY];
+        encoded = new ByteBuffer[HISTORY + 1];
+        encodedTicks = new long[HISTORY + 1];
+        for( int slot = 0; slot <= HISTORY; ++slot ){
+            encoded[slot] = ByteBuffer.allocate( MAX_MESSAGE + 2 );
+            encodedTicks[slot] = -1;
+            if( slot < HISTORY )
+                historyTicks[slot] = -1;
+        }
+        tickTimes = new LatencyHistogram( "server-tick" );
+
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        try {
+            serverChannel.bind( address );
+            serverChannel.configureBlocking( false );
+            serverChannel.register( selector, SelectionKey.OP_ACCEPT );
+        } catch( IOException e ){
+            serverChannel.close();
+            selector.close();
+            throw e;
+        }
+        running = true;
+    }
+
+    /**
+     * Serves clients and simulates the race in real time on calling thread, until close is called from another thread.
+     *
+     * @throws IOException  when server socket fails
+     */
+    public void run() throws IOException {
+        run( null );
+    }
+
+    /**
+     * Serves clients and simulates the race in real time on calling thread, until close is called from another thread.
+     * Callback is run on calling thread after every tick, when statistics of the server can be read.
+     *
+     * @param afterTick     callback run after every tick, may be null
+     * @throws IOException  when server socket fails
+     */
+    public void run( Runnable afterTick ) throws IOException {
+        synchronized( this ){
+            if( !running )
+                return;
+            started = true;
+        }
+        try {
+            scheduler.advance( System.nanoTime() );
+            while( running ){
+                long untilTick = (long)( ( 1 - scheduler.getAlpha() ) * scheduler.getTimeStep() * 1000 );
+                selector.select( Math.max( 1, untilTick ) );
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while( keys.hasNext() ){
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if( !key.isValid() )
+                        continue;
+                    if( key.isAcceptable() )
+                        accept();
+                    else if( key.isReadable() )
+                        read( (Client) key.attachment() );
+                }
+
+                int ticks = scheduler.advance( System.nanoTime() );
+                for( int i = 0; i < ticks; ++i ){
+                    tick();
+                    if( afterTick != null )
+                        afterTick.run();
+                }
+            }
+        } finally {
+            for( Client client : clients )
+                client.channel.close();
+            serverChannel.close();
+            selector.close();
+        }
+    }
+
+    /**
+     * Stops run, which closes all connections. Closes server socket if run was not called.
+     *
+     * @throws IOException  when server socket cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized( this ){
+            running = false;
+            if( started ){
+                selector.wakeup();
+                return;
+            }
+        }
+        serverChannel.close();
+        selector.close();
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if( channel == null )
+            return;
+        if( clients.size() == MAX_CLIENTS ){
+            channel.close();
+            return;
+        }
+
+        int car = 0;
+        while( car < session.getCarCount() && occupied[car] )
+            ++car;
+        if( car == session.getCarCount() )
+            session.addCar();
+        occupied[car] = true;
+
+        channel.configureBlocking( false );
+        channel.setOption( StandardSocketOptions.TCP_NODELAY, true );
+        Client client = new Client( channel, car );
+        channel.register( selector, SelectionKey.OP_READ, client );
+        clients.add( client );
+
+        client.output.putShort( (short) 5 );
+        client.output.put( MESSAGE_WELCOME );
+        client.output.putShort( (short) car );
+        client.output.putShort( (short) scheduler.getRate() );
+        flush( client );
+    }
+
+    private void disconnect( Client client ){
+        try {
+            client.channel.close();
+        } catch( IOException e ){
+            //connection is dropped anyway
+        }
+        clients.remove( client );
+        occupied[client.car] = false;
+        session.setInputMask( client.car, 0 );
+    }
+
+    /**
+     * Reads available bytes of a client and handles its complete messages. Malformed message drops the client.
+     */
+    private void read( Client client ){
+        ByteBuffer input = client.input;
+        try {
+            if( client.channel.read( input ) < 0 ){
+                disconnect( client );
+                return;
+            }
+        } catch( IOException e ){
+            disconnect( client );
+            return;
+        }
+
+        input.flip();
+        while( input.remaining() >= 2 ){
+            int length = input.getShort( input.position() ) & 0xFFFF;
+            if( length < 7 || length > INPUT_CAPACITY - 2 ){
+                disconnect( client );
+                return;
+            }
+            if( input.remaining() < 2 + length )
+                break;
+
+            int end = input.position() + 2 + length;
+            input.position( input.position() + 2 );
+            int ackTick = input.getInt( input.position() + 1 );
+            int events = input.get( input.position() + 6 ) & 0xFF;
+            if( input.get() != MESSAGE_INPUT || length != 7 + events ){
+                disconnect( client );
+                return;
+            }
+            if( ackTick > client.ackTick && ackTick <= session.getTicks() )
+                client.ackTick = ackTick;
+            session.setInputMask( client.car, input.get( input.position() + 4 ) & 0xFF );
+            for( int i = 0; i < events; ++i ){
+                byte event = input.get( input.position() + 6 + i );
+                if( event < InputEvent.UP_SHIFT_READY || event > InputEvent.CHANGE_TIRES ){
+                    disconnect( client );
+                    return;
+                }
+                //events beyond capacity of one tick are dropped, like keys pressed too fast
+                if( client.eventCount < MAX_EVENTS )
+                    client.events[client.eventCount++] = event;
+            }
+            input.position( end );
+        }
+        input.compact();
+    }
+
+    /**
+     * Simulates one tick and sends its snapshot to every client.
+     */
+    private void tick(){
+        long start = System.nanoTime();
+        for( Client client : clients ){
+            Vehicle vehicle = session.getVehicle( client.car );
+            for( int i = 0; i < client.eventCount; ++i )
+                InputEvent.apply( client.events[i], vehicle );
+            client.eventCount = 0;
+        }
+        session.tick();
+
+        long tick = session.getTicks();
+        int slot = (int)( tick % HISTORY );
+        historyCars[slot] = SnapshotCodec.quantize( session, history[slot] );
+        historyTicks[slot] = tick;
+
+        //backwards, as clients failing to receive are removed
+        for( int i = clients.size() - 1; i >= 0; --i )
+            sendSnapshot( clients.get( i ), tick );
+
+        long elapsed = System.nanoTime() - start;
+        tickTimes.record( elapsed );
+        lastTickMicros = elapsed / 1000;
+    }
+
+    private void sendSnapshot( Client client, long tick ){
+        if( client.output.position() > MAX_PENDING ){
+            flush( client );
+            return;
+        }
+
+        int baseSlot = HISTORY;
+        if( client.ackTick >= 0 && tick - client.ackTick < HISTORY && historyTicks[(int)( client.ackTick % HISTORY )] == client.ackTick )
+            baseSlot = (int)( client.ackTick % HISTORY );
+        ByteBuffer message = encode( baseSlot, tick );
+        client.output.put( message.duplicate() );
+        flush( client );
+    }
+
+    /**
+     * Returns snapshot of the current tick encoded against a history slot, encoding it only for the first client asking for it.
+     */
+    private ByteBuffer encode( int baseSlot, long tick ){
+        ByteBuffer message = encoded[baseSlot];
+        if( encodedTicks[baseSlot] == tick )
+            return message;
+
+        int slot = (int)( tick % HISTORY );
+        boolean full = baseSlot == HISTORY;
+        message.clear();
+        message.putShort( (short) 0 );
+        message.put( MESSAGE_SNAPSHOT );
+        message.putInt( (int) tick );
+        message.putInt( full ? -1 : (int) historyTicks[baseSlot] );
+        SnapshotCodec.writeVarInt( message, (int) lastTickMicros );
+        SnapshotCodec.writeDelta( history[slot], historyCars[slot], full ? null : history[baseSlot], full ? 0 : historyCars[baseSlot], message );
+        message.putShort( 0, (short)( message.position() - 2 ) );
+        message.flip();
+        encodedTicks[baseSlot] = tick;
+        return message;
+    }
+
+    private void flush( Client client ){
+        ByteBuffer output = client.output;
+        output.flip();
+        try {
+            bytesSent += client.channel.write( output );
+        } catch( IOException e ){
+            disconnect( client );
+            return;
+        } finally {
+            output.compact();
+        }
+    }
+
+    /**
+     * Returns number of connected clients.
+     *
+     * @return  number of clients
+     */
+    public int getClientCount(){
+        return clients.size();
+    }
+
+    /**
+     * Returns number of simulated ticks.
+     *
+     * @return  number of ticks
+     */
+    public long getTicks(){
+        return session.getTicks();
+    }
+
+    /**
+     * Returns histogram of durations of ticks: simulation of all cars, encoding and sending their snapshots.
+     *
+     * @return  histogram of tick durations
+     */
+    public LatencyHistogram getTickTimes(){
+        return tickTimes;
+    }
+
+    /**
+     * Returns number of bytes written to all clients.
+     *
+     * @return  number of bytes
+     */
+    public long getBytesSent(){
+        return bytesSent;
+    }
+
+    /**
+     * Returns port the server listens on.
+     *
+     * @return  port number
+     * @throws IOException  when server socket is closed
+     */
+    public int getPort() throws IOException {
+        return ( (InetSocketAddress) serverChannel.getLocalAddress() ).getPort();
+    }
+
+    /**
+     * Runs server on port given as the first argument, default track or track given as the second argument,
+     * reporting tick durations and bandwidth every few seconds.
+     *
+     * @param args          optional port and path of track definition (*.track) or compiled track
+     * @throws IOException  when track cannot be read or socket cannot be bound
+     */
+    public static void main( String[] args ) throws IOException {
+        if( args.length > 2 ){
+            System.err.println( "Usage: RaceServer [port] [track]" );
+            System.exit( 2 );
+        }
+        int port = args.length > 0 ? Integer.parseInt( args[0] ) : DEFAULT_PORT;
+        Track track = TrackCompiler.load( args.length < 2 ? null : args[1] );
+        FrictionGrid friction = FrictionGrid.load( track, Runnable::run );
+
+        RaceServer server = new RaceServer( track, friction, GameController.DEFAULT_PHYSICS_RATE, new InetSocketAddress( port ) );
+        System.out.println( "Race server listening on port " + server.getPort() );
+        long[] lastBytes = new long[1];
+        server.run( () -> {
+            if( server.getTicks() % ( REPORT_PERIOD * GameController.DEFAULT_PHYSICS_RATE ) != 0 )
+                return;
+            int clients = server.getClientCount();
+            double bytesPerClient = clients == 0 ? 0 : (double)( server.getBytesSent() - lastBytes[0] ) / REPORT_PERIOD / clients;
+            System.out.println( String.format( Locale.ROOT, "%d clients, %.1f kB/s per client, %s",
+                    clients, bytesPerClient / 1024, server.getTickTimes().getSummary() ) );
+            lastBytes[0] = server.getBytesSent();
+            server.getTickTimes().reset();
+        } );
+    }
+
+    /**
+     * Connection of one client with its car, buffers and the last acknowledged tick.
+     */
+    private static class Client {
+        private final SocketChannel channel;
+        private final int car;
+        private final ByteBuffer input;
+        private final ByteBuffer output;
+        private final byte[] events;
+        private int eventCount;
+        private long ackTick;
+
+        Client( SocketChannel channel, int car ){
+            this.channel = channel;
+            this.car = car;
+            input = ByteBuffer.allocate( INPUT_CAPACITY );
+            output = ByteBuffer.allocate( OUTPUT_CAPACITY );
+            events = new byte[MAX_EVENTS];
+            ackTick = -1;
+        }
+    }
+
+}
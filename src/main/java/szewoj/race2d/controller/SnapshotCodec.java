@@ -0,0 +1,198 @@
+package szewoj.race2d.controller;
+
+import szewoj.race2d.model.RaceSession;
+import szewoj.race2d.model.VehicleState;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Quantized snapshot of all cars of a race and its delta encoding, shared by RaceServer and its clients.
+ * Every car is described by FIELDS integers: position in POSITION_STEP, heading in 1/HEADING_STEPS of a turn,
+ * speed in km/h, rpm in RPM_STEP, gear and number of completed laps.
+ * Snapshot is encoded against a base snapshot, which the receiver already has: every car is written as a byte
+ * with a bit set for every field that differs from the base, followed by differences of these fields
+ * as zigzag variable length ints. Car standing still takes one byte, car driving on a straight a few bytes.
+ * Cars missing in the base are encoded against zeros, which is also how full snapshots are written.
+ * Heading wraps around, so its difference is always the shorter way round.
+ */
+public final class SnapshotCodec {
+    public static final int FIELD_X = 0;
+    public static final int FIELD_Y = 1;
+    public static final int FIELD_HEADING = 2;
+    public static final int FIELD_SPEED = 3;
+    public static final int FIELD_RPM = 4;
+    public static final int FIELD_GEAR = 5;
+    public static final int FIELD_LAPS = 6;
+    public static final int FIELDS = 7;
+    public static final double POSITION_STEP = 0.01;        //metres
+    public static final int HEADING_STEPS = 65536;          //per turn
+    public static final double RPM_STEP = 10;
+    private static final double HEADING_SCALE = HEADING_STEPS / ( 2 * Math.PI );
+
+    private SnapshotCodec(){
+    }
+
+    /**
+     * Quantizes state of every car of a session.
+     *
+     * @param session   simulated race
+     * @param out       array of length at least FIELDS * number of cars to be filled with quantized fields of cars
+     * @return          number of cars
+     */
+    public static int quantize( RaceSession session, int[] out ){
+        int cars = session.getCarCount();
+        for( int car = 0; car < cars; ++car ){
+            VehicleState state = session.getState( car );
+            int offset = car * FIELDS;
+            out[offset + FIELD_X] = (int) Math.round( state.getX() / POSITION_STEP );
+            out[offset + FIELD_Y] = (int) Math.round( state.getY() / POSITION_STEP );
+            out[offset + FIELD_HEADING] = (int) Math.round( state.getHeading() * HEADING_SCALE ) & ( HEADING_STEPS - 1 );
+            out[offset + FIELD_SPEED] = state.getSpeed();
+            out[offset + FIELD_RPM] = (int) Math.round( state.getRpm() / RPM_STEP );
+            out[offset + FIELD_GEAR] = state.getGear();
+            out[offset + FIELD_LAPS] = session.getCompletedLaps( car );
+        }
+        return cars;
+    }
+
+    /**
+     * Writes snapshot encoded against base snapshot: number of cars and changed fields of every car.
+     *
+     * @param snapshot  quantized fields of cars
+     * @param cars      number of cars in snapshot
+     * @param base      quantized fields of cars known to the receiver, may be null for full snapshot
+     * @param baseCars  number of cars in base, 0 for full snapshot
+     * @param out       buffer receiving encoded snapshot
+     * @throws java.nio.BufferOverflowException when buffer is too small
+     */
+    public static void writeDelta( int[] snapshot, int cars, int[] base, int baseCars, ByteBuffer out ){
+        writeVarInt( out, cars );
+        for( int car = 0; car < cars; ++car ){
+            int offset = car * FIELDS;
+            int maskPosition = out.position();
+            int mask = 0;
+            out.put( (byte) 0 );
+            for( int field = 0; field < FIELDS; ++field ){
+                int difference = snapshot[offset + field] - ( car < baseCars ? base[offset + field] : 0 );
+                if( field == FIELD_HEADING )
+                    difference = wrapHeading( difference );
+                if( difference != 0 ){
+                    mask |= 1 << field;
+                    writeVarInt( out, ( difference << 1 ) ^ ( difference >> 31 ) );
+                }
+            }
+            out.put( maskPosition, (byte) mask );
+        }
+    }
+
+    /**
+     * Reads snapshot written by writeDelta, applying differences to base snapshot.
+     *
+     * @param in        buffer positioned at encoded snapshot
+     * @param base      quantized fields of cars the snapshot was encoded against, may be null for full snapshot
+     * @param baseCars  number of cars in base, 0 for full snapshot
+     * @param out       array to be filled with quantized fields of cars, may be the same as base
+     * @return          number of cars in snapshot
+     * @throws IllegalArgumentException when snapshot has more cars than fit in out
+     * @throws java.nio.BufferUnderflowException when buffer ends before the snapshot
+     */
+    public static int readDelta( ByteBuffer in, int[] base, int baseCars, int[] out ){
+        int cars = readVarInt( in );
+        if( cars < 0 || cars > out.length / FIELDS )
+            throw new IllegalArgumentException( "Snapshot has too many cars: " + cars );
+
+        for( int car = 0; car < cars; ++car ){
+            int offset = car * FIELDS;
+            int mask = in.get() & 0xFF;
+            for( int field = 0; field < FIELDS; ++field ){
+                int value = car < baseCars ? base[offset + field] : 0;
+                if( ( mask & 1 << field ) != 0 ){
+                    int encoded = readVarInt( in );
+                    value += ( encoded >>> 1 ) ^ -( encoded & 1 );
+                }
+                out[offset + field] = field == FIELD_HEADING ? value & ( HEADING_STEPS - 1 ) : value;
+            }
+        }
+        return cars;
+    }
+
+    private static int wrapHeading( int difference ){
+        return ( ( difference + HEADING_STEPS / 2 ) & ( HEADING_STEPS - 1 ) ) - HEADING_STEPS / 2;
+    }
+
+    /**
+     * Writes unsigned int in groups of 7 bits, the lowest first, with the highest bit of a byte set when more bytes follow.
+     *
+     * @param out       buffer receiving the value
+     * @param value     written value, treated as unsigned
+     */
+    public static void writeVarInt( ByteBuffer out, int value ){
+        while( ( value & ~0x7F ) != 0 ){
+            out.put( (byte)( value & 0x7F | 0x80 ) );
+            value >>>= 7;
+        }
+        out.put( (byte) value );
+    }
+
+    /**
+     * Reads unsigned int written by writeVarInt.
+     *
+     * @param in    buffer positioned at the value
+     * @return      read value
+     */
+    public static int readVarInt( ByteBuffer in ){
+        int value = 0;
+        for( int shift = 0; shift < 35; shift += 7 ){
+            byte part = in.get();
+            value |= ( part & 0x7F ) << shift;
+            if( part >= 0 )
+                return value;
+        }
+        throw new IllegalArgumentException( "Variable length int is too long" );
+    }
+
+    /**
+     * Returns x coordinate of a car of quantized snapshot.
+     *
+     * @param snapshot  quantized fields of cars
+     * @param car       index of car
+     * @return          x coordinate in metres
+     */
+    public static double getX( int[] snapshot, int car ){
+        return snapshot[car * FIELDS + FIELD_X] * POSITION_STEP;
+    }
+
+    /**
+     * Returns y coordinate of a car of quantized snapshot.
+     *
+     * @param snapshot  quantized fields of cars
+     * @param car       index of car
+     * @return          y coordinate in metres
+     */
+    public static double getY( int[] snapshot, int car ){
+        return snapshot[car * FIELDS + FIELD_Y] * POSITION_STEP;
+    }
+
+    /**
+     * Returns heading of a car of quantized snapshot.
+     *
+     * @param snapshot  quantized fields of cars
+     * @param car       index of car
+     * @return          heading in radians, in range 0 - 2 * PI
+     */
+    public static double getHeading( int[] snapshot, int car ){
+        return snapshot[car * FIELDS + FIELD_HEADING] / HEADING_SCALE;
+    }
+
+    /**
+     * Returns rpm of engine of a car of quantized snapshot.
+     *
+     * @param snapshot  quantized fields of cars
+     * @param car       index of car
+     * @return          rpm
+     */
+    public static double getRpm( int[] snapshot, int car ){
+        return snapshot[car * FIELDS + FIELD_RPM] * RPM_STEP;
+    }
+
+}
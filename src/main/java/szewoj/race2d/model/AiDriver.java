@@ -0,0 +1,206 @@
+package szewoj.race2d.model;
+
+/**
+ * Computer driver following a RacingLine, producing throttle, brake and steering in ranges of inputs of Vehicle.
+ * Steering is pure pursuit: the car steers along a circle through a point of the line ahead of its rear axle,
+ * with lookahead growing with speed. Throttle and brake come from PID controller of speed
+ * against target speed of the line a short time ahead. Gears are shifted on rpm thresholds.
+ * Car stuck against a barrier or another car, not moving despite throttle, backs off in reverse gear
+ * with steering turning its nose towards the line, and then drives on.
+ * Every tick costs a few dozen operations: the nearest point of the line is searched only in a short window
+ * after the one found in the previous tick, and the lookahead point is found by walking a few points further.
+ */
+public class AiDriver {
+    private static final double WHEELBASE = Vehicle.FRONT_AXIS - Vehicle.REAR_AXIS;
+    private static final double MAX_STEERING_ANGLE = Math.toRadians( 45 );   //steering angle of full steering input
+    private static final double MIN_LOOKAHEAD = 8;          //metres
+    private static final double LOOKAHEAD_TIME = 0.5;       //seconds of driving at current speed
+    private static final double SPEED_PREVIEW_TIME = 0.4;   //seconds ahead, in which target speed is taken
+    private static final double SPEED_GAIN = 0.4;           //input per metre per second of speed error
+    private static final double INTEGRAL_GAIN = 0.2;
+    private static final double DERIVATIVE_GAIN = 0.02;
+    private static final double MAX_INTEGRAL = 2;           //metres of accumulated speed error
+    private static final double UP_SHIFT_RPM = 0.92;        //fraction of maximal rpm
+    private static final double DOWN_SHIFT_RPM = 0.8;       //fraction of maximal rpm reached after shifting down
+    private static final int SEARCH_WINDOW = 12;            //points searched after the nearest one of the previous tick
+    private static final double LOST_DISTANCE = 25;         //distance from the line, at which all points are searched again
+    private static final double STUCK_SPEED = 1;            //metres per second
+    private static final double STUCK_TIME = 1.5;           //seconds below STUCK_SPEED with throttle, after which the car reverses
+    private static final double REVERSE_TIME = 1.5;
+
+    private final RacingLine line;
+    private final double maxRpm;
+    private double speedScale;
+    private int nearest;
+    private double integral;
+    private double previousError;
+    private double throttle;
+    private double brake;
+    private double steering;
+    private double stuckTime;
+    private double reverseTime;             //remaining time of reversing
+
+    /**
+     * Constructor of AiDriver of a car with default engine.
+     *
+     * @param line  racing line of the track
+     */
+    public AiDriver( RacingLine line ){
+        this( line, EngineDefinition.getDefault() );
+    }
+
+    /**
+     * Constructor of AiDriver.
+     *
+     * @param line      racing line of the track
+     * @param engine    engine of the driven car, whose maximal rpm sets shift points
+     */
+    public AiDriver( RacingLine line, EngineDefinition engine ){
+        this.line = line;
+        maxRpm = engine.getMaxRpm();
+        speedScale = 1;
+        nearest = -1;
+    }
+
+    /**
+     * Computes inputs from state of the car after the previous tick and applies them to the car, shifting gears if needed.
+     *
+     * @param state     state of the car
+     * @param vehicle   driven car
+     */
+    public void drive( VehicleState state, Vehicle vehicle ){
+        update( state, vehicle.getTimeStep() );
+        vehicle.setInputs( throttle, brake, steering );
+
+        //gearbox passes through neutral, so getting into reverse and back takes two ticks
+        int gear = state.getGear();
+        double rpm = state.getRpm();
+        if( reverseTime > 0 ? gear > -1 :
+                gear > 1 && rpm * Gearbox.getGearRatio( gear - 1 ) / Gearbox.getGearRatio( gear ) < DOWN_SHIFT_RPM * maxRpm ){
+            vehicle.downShiftReady();
+            vehicle.shift();
+        } else if( reverseTime <= 0 && ( gear < 1 || gear < 6 && rpm > UP_SHIFT_RPM * maxRpm ) ){
+            vehicle.upShiftReady();
+            vehicle.shift();
+        }
+    }
+
+    /**
+     * Computes inputs from state of the car, available with getThrottle, getBrake and getSteering.
+     *
+     * @param state     state of the car
+     * @param timeStep  time since the previous update in seconds
+     */
+    public void update( VehicleState state, double timeStep ){
+        double x = state.getX();
+        double y = state.getY();
+        nearest = line.findNearest( x, y, nearest, SEARCH_WINDOW );
+        if( Math.hypot( line.getX( nearest ) - x, line.getY( nearest ) - y ) > LOST_DISTANCE )
+            nearest = line.findNearest( x, y, -1, 0 );
+
+        double speed = state.getLongitudinalVelocity();
+        double forwardSpeed = Math.max( speed, 0 );
+
+        //pure pursuit from rear axle, in car coordinates with x to the right and y backwards
+        double cos = Math.cos( state.getHeading() );
+        double sin = Math.sin( state.getHeading() );
+        double axleX = x + sin * Vehicle.REAR_AXIS;
+        double axleY = y - cos * Vehicle.REAR_AXIS;
+        int target = line.findAhead( nearest, MIN_LOOKAHEAD + LOOKAHEAD_TIME * forwardSpeed );
+        double dx = line.getX( target ) - axleX;
+        double dy = line.getY( target ) - axleY;
+        double localX = cos * dx + sin * dy;
+        double localY = -sin * dx + cos * dy;
+        double curvature = 2 * localX / ( localX * localX + localY * localY );
+        steering = Math.max( -1, Math.min( 1, Math.atan( WHEELBASE * curvature ) / MAX_STEERING_ANGLE ) );
+
+        if( reverseTime > 0 ){
+            //wheels turned away from the line swing the nose towards it while reversing
+            reverseTime -= timeStep;
+            steering = localX > 0 ? -1 : 1;
+            throttle = 1;
+            brake = 0;
+            integral = 0;
+            previousError = 0;
+            return;
+        }
+
+        //PID of speed against the slowest target speed of the short preview
+        int preview = line.findAhead( nearest, SPEED_PREVIEW_TIME * forwardSpeed );
+        double targetSpeed = line.getSpeed( nearest );
+        for( int point = nearest; point != preview; point = ( point + 1 ) % line.getPointCount() )
+            targetSpeed = Math.min( targetSpeed, line.getSpeed( point ) );
+        double error = targetSpeed * speedScale - speed;
+        double derivative = ( error - previousError ) / timeStep;
+        previousError = error;
+        double output = SPEED_GAIN * error + INTEGRAL_GAIN * integral + DERIVATIVE_GAIN * derivative;
+        //integral stops growing while output is saturated, so it does not overshoot after braking
+        if( Math.abs( output ) < 1 || Math.signum( output ) != Math.signum( error ) )
+            integral = Math.max( -MAX_INTEGRAL, Math.min( MAX_INTEGRAL, integral + error * timeStep ) );
+        throttle = Math.max( 0, Math.min( 1, output ) );
+        brake = Math.max( 0, Math.min( 1, -output ) );
+
+        stuckTime = throttle > 0.5 && speed < STUCK_SPEED ? stuckTime + timeStep : 0;
+        if( stuckTime > STUCK_TIME ){
+            stuckTime = 0;
+            reverseTime = REVERSE_TIME;
+        }
+    }
+
+    /**
+     * Forgets position on the line and state of speed controller, for example after the car was moved.
+     */
+    public void reset(){
+        nearest = -1;
+        integral = 0;
+        previousError = 0;
+        stuckTime = 0;
+        reverseTime = 0;
+    }
+
+    /**
+     * Sets fraction of target speed of racing line driven by the driver, to make opponents of different pace.
+     *
+     * @param scale     fraction of target speed, 1.0 by default
+     */
+    public void setSpeedScale( double scale ){
+        speedScale = scale;
+    }
+
+    /**
+     * Returns throttle computed by the last update.
+     *
+     * @return  throttle in range 0.0 - 1.0
+     */
+    public double getThrottle(){
+        return throttle;
+    }
+
+    /**
+     * Returns brake computed by the last update.
+     *
+     * @return  brake in range 0.0 - 1.0
+     */
+    public double getBrake(){
+        return brake;
+    }
+
+    /**
+     * Returns steering computed by the last update.
+     *
+     * @return  steering in range -1.0 (full left) - 1.0 (full right)
+     */
+    public double getSteering(){
+        return steering;
+    }
+
+    /**
+     * Returns index of point of racing line nearest to the car in the last update.
+     *
+     * @return  index of point
+     */
+    public int getNearestPoint(){
+        return nearest;
+    }
+
+}
@@ -0,0 +1,163 @@
+package szewoj.race2d.model;
+
+/**
+ * Barriers of a track as line segments with common radius, indexed by SegmentGrid.
+ * Queries test only segments of cells overlapped by bounding box of the car, so their cost does not grow with the number of barriers.
+ * Narrow phase is separating axis test of oriented box against segment, with axes of the box and normal of the segment.
+ * Rounded ends of barriers are treated as square ends of the same radius.
+ * Queries reuse internal buffers, so one index should not be queried from many threads at once.
+ */
+public class BarrierIndex {
+    private final SegmentGrid grid;
+    private final int[] candidates;
+    private final Contact candidate;
+
+    /**
+     * Constructor of BarrierIndex.
+     *
+     * @param segments  coordinates x1, y1, x2, y2 of every segment in world coordinates
+     * @param radius    half of thickness of barriers
+     * @param cellSize  size of grid cell, a few times larger than a car works best
+     */
+    public BarrierIndex( double[] segments, double radius, double cellSize ){
+        this( new SegmentGrid( segments, radius, cellSize ) );
+    }
+
+    /**
+     * Constructor of BarrierIndex using already built grid, for example of a compiled track.
+     *
+     * @param grid  grid of barriers in world coordinates, with radius of barriers
+     */
+    public BarrierIndex( SegmentGrid grid ){
+        this.grid = grid;
+        candidates = new int[grid.getCount()];
+        candidate = new Contact();
+    }
+
+    /**
+     * Finds the deepest contact of oriented box with barriers.
+     *
+     * @param box   collision box of a car
+     * @param out   Contact to be filled with the deepest contact
+     * @return      true if the box collides with any barrier
+     */
+    public boolean collide( OrientedBox box, Contact out ){
+        out.segment = -1;
+        double extentX = box.getExtentX();
+        double extentY = box.getExtentY();
+        int found = grid.query( box.getCentreX() - extentX, box.getCentreY() - extentY,
+                                box.getCentreX() + extentX, box.getCentreY() + extentY, candidates );
+
+        for( int i = 0; i < found; ++i ){
+            int segment = candidates[i];
+            if( collide( box, grid.getCoordinate( segment, 0 ), grid.getCoordinate( segment, 1 ), grid.getCoordinate( segment, 2 ),
+                         grid.getCoordinate( segment, 3 ), grid.getRadius(), candidate )
+                    && ( out.segment < 0 || candidate.depth > out.depth ) ){
+                copy( candidate, out );
+                out.segment = segment;
+            }
+        }
+        return out.segment >= 0;
+    }
+
+    private static void copy( Contact source, Contact target ){
+        target.x = source.x;
+        target.y = source.y;
+        target.normalX = source.normalX;
+        target.normalY = source.normalY;
+        target.depth = source.depth;
+    }
+
+    /**
+     * Tests oriented box against a segment with radius.
+     * Contact point is the point of segment closest to centre of the box.
+     *
+     * @param box       oriented box
+     * @param x1        x coordinate of the first end of segment
+     * @param y1        y coordinate of the first end of segment
+     * @param x2        x coordinate of the second end of segment
+     * @param y2        y coordinate of the second end of segment
+     * @param radius    half of thickness of segment
+     * @param out       Contact to be filled if the box collides with the segment, its segment index is not changed
+     * @return          true if the box collides with the segment
+     */
+    public static boolean collide( OrientedBox box, double x1, double y1, double x2, double y2, double radius, Contact out ){
+        double halfWidth = box.getHalfWidth();
+        double halfLength = box.getHalfLength();
+        double u1 = box.toLocalX( x1, y1 );
+        double v1 = box.toLocalY( x1, y1 );
+        double u2 = box.toLocalX( x2, y2 );
+        double v2 = box.toLocalY( x2, y2 );
+
+        //axis x of the box
+        double positive = Math.max( u1, u2 ) + radius + halfWidth;
+        double negative = halfWidth - Math.min( u1, u2 ) + radius;
+        if( positive <= 0 || negative <= 0 )
+            return false;
+        double depth = Math.min( positive, negative );
+        double normalU = positive < negative ? 1 : -1;
+        double normalV = 0;
+
+        //axis y of the box
+        positive = Math.max( v1, v2 ) + radius + halfLength;
+        negative = halfLength - Math.min( v1, v2 ) + radius;
+        if( positive <= 0 || negative <= 0 )
+            return false;
+        if( Math.min( positive, negative ) < depth ){
+            depth = Math.min( positive, negative );
+            normalU = 0;
+            normalV = positive < negative ? 1 : -1;
+        }
+
+        //normal of the segment
+        double length = Math.hypot( u2 - u1, v2 - v1 );
+        if( length > 0 ){
+            double axisU = -(v2 - v1) / length;
+            double axisV = (u2 - u1) / length;
+            double distance = axisU * u1 + axisV * v1;
+            double boxRadius = halfWidth * Math.abs( axisU ) + halfLength * Math.abs( axisV );
+            positive = distance + radius + boxRadius;
+            negative = boxRadius - distance + radius;
+            if( positive <= 0 || negative <= 0 )
+                return false;
+            if( Math.min( positive, negative ) < depth ){
+                depth = Math.min( positive, negative );
+                normalU = positive < negative ? axisU : -axisU;
+                normalV = positive < negative ? axisV : -axisV;
+            }
+        }
+
+        double dx = x2 - x1;
+        double dy = y2 - y1;
+        double lengthSquared = dx * dx + dy * dy;
+        double t = 0;
+        if( lengthSquared > 0 )
+            t = Math.min( Math.max( ((box.getCentreX() - x1) * dx + (box.getCentreY() - y1) * dy) / lengthSquared, 0 ), 1 );
+
+        out.x = x1 + dx * t;
+        out.y = y1 + dy * t;
+        out.normalX = box.getCos() * normalU - box.getSin() * normalV;
+        out.normalY = box.getSin() * normalU + box.getCos() * normalV;
+        out.depth = depth;
+        return true;
+    }
+
+    /**
+     * Returns number of indexed segments.
+     *
+     * @return  number of segments
+     */
+    public int getSegmentCount(){
+        return grid.getCount();
+    }
+
+    /**
+     * Returns half of thickness of barriers.
+     *
+     * @return  radius in metres
+     */
+    public double getRadius(){
+        return grid.getRadius();
+    }
+
+}
@@ -0,0 +1,135 @@
+package szewoj.race2d.model;
+
+/**
+ * Start line and checkpoints of a track as line segments indexed by SegmentGrid.
+ * Crossings are detected continuously: the path of a point between two poses is intersected with checkpoints,
+ * so no crossing is missed regardless of speed, and the fraction of path at crossing gives its time below tick resolution.
+ * A crossing is forward when the point passes from the left to the right side of a checkpoint,
+ * looking from its first end to its second end, in a coordinate system with y axis pointing up.
+ */
+public class CheckpointIndex {
+    private final SegmentGrid grid;
+    private final int[] candidates;
+
+    /**
+     * Constructor of CheckpointIndex.
+     *
+     * @param segments  coordinates x1, y1, x2, y2 of every checkpoint in world coordinates, indexes are kept
+     * @param cellSize  size of grid cell
+     */
+    public CheckpointIndex( double[] segments, double cellSize ){
+        this( new SegmentGrid( segments, 0, cellSize ) );
+    }
+
+    /**
+     * Constructor of CheckpointIndex using already built grid, for example of a compiled track.
+     *
+     * @param grid  grid of checkpoints in world coordinates, indexes of segments are indexes of checkpoints
+     */
+    public CheckpointIndex( SegmentGrid grid ){
+        this.grid = grid;
+        candidates = new int[grid.getCount()];
+    }
+
+    /**
+     * Finds checkpoints crossed by path of a point between two poses.
+     *
+     * @param fromX         x coordinate of point in previous pose
+     * @param fromY         y coordinate of point in previous pose
+     * @param toX           x coordinate of point in current pose
+     * @param toY           y coordinate of point in current pose
+     * @param checkpoints   array of length at least getCount() to be filled with indexes of crossed checkpoints
+     * @param fractions     array of length at least getCount() to be filled with fractions of path at crossings, in range 0.0 - 1.0
+     * @param forward       array of length at least getCount() to be filled with directions of crossings, true for forward ones
+     * @return              number of crossings, sorted by fraction
+     */
+    public int findCrossings( double fromX, double fromY, double toX, double toY, int[] checkpoints, double[] fractions, boolean[] forward ){
+        int found = grid.query( Math.min( fromX, toX ), Math.min( fromY, toY ), Math.max( fromX, toX ), Math.max( fromY, toY ), candidates );
+
+        int crossings = 0;
+        for( int i = 0; i < found; ++i ){
+            int checkpoint = candidates[i];
+            double fraction = getCrossing( fromX, fromY, toX, toY, grid.getCoordinate( checkpoint, 0 ), grid.getCoordinate( checkpoint, 1 ),
+                                           grid.getCoordinate( checkpoint, 2 ), grid.getCoordinate( checkpoint, 3 ) );
+            if( fraction < 0 )
+                continue;
+            boolean isForward = isLeft( fromX, fromY, grid.getCoordinate( checkpoint, 0 ), grid.getCoordinate( checkpoint, 1 ),
+                                        grid.getCoordinate( checkpoint, 2 ), grid.getCoordinate( checkpoint, 3 ) );
+
+            //insertion keeps crossings in order of time
+            int position = crossings++;
+            while( position > 0 && fractions[position - 1] > fraction ){
+                fractions[position] = fractions[position - 1];
+                checkpoints[position] = checkpoints[position - 1];
+                forward[position] = forward[position - 1];
+                --position;
+            }
+            fractions[position] = fraction;
+            checkpoints[position] = checkpoint;
+            forward[position] = isForward;
+        }
+        return crossings;
+    }
+
+    /**
+     * Intersects path of a point with a line segment.
+     * Point lying on the line counts as being on its left side, so touching the line without crossing it is not reported,
+     * and a crossing ending exactly on the line is reported once.
+     *
+     * @param fromX     x coordinate of the start of path
+     * @param fromY     y coordinate of the start of path
+     * @param toX       x coordinate of the end of path
+     * @param toY       y coordinate of the end of path
+     * @param x1        x coordinate of the first end of segment
+     * @param y1        y coordinate of the first end of segment
+     * @param x2        x coordinate of the second end of segment
+     * @param y2        y coordinate of the second end of segment
+     * @return          fraction of path at crossing in range 0.0 - 1.0, -1 if the path does not cross the segment
+     */
+    public static double getCrossing( double fromX, double fromY, double toX, double toY, double x1, double y1, double x2, double y2 ){
+        double dx = x2 - x1;
+        double dy = y2 - y1;
+        double fromSide = getSide( fromX, fromY, x1, y1, x2, y2 );
+        double toSide = getSide( toX, toY, x1, y1, x2, y2 );
+        if( (fromSide < 0) == (toSide < 0) )
+            return -1;
+
+        double fraction = fromSide / (fromSide - toSide);
+        double x = fromX + (toX - fromX) * fraction;
+        double y = fromY + (toY - fromY) * fraction;
+        double along = (x - x1) * dx + (y - y1) * dy;
+        if( along < 0 || along > dx * dx + dy * dy )
+            return -1;
+        return fraction;
+    }
+
+    /**
+     * Tells on which side of a line a point lies. Point lying on the line counts as being on its left side,
+     * the same way as in getCrossing, so the start of a crossing path tells direction of the crossing.
+     *
+     * @param x         x coordinate of the point
+     * @param y         y coordinate of the point
+     * @param x1        x coordinate of the first end of segment
+     * @param y1        y coordinate of the first end of segment
+     * @param x2        x coordinate of the second end of segment
+     * @param y2        y coordinate of the second end of segment
+     * @return          true if the point lies on the left side of line looking from the first to the second end
+     */
+    public static boolean isLeft( double x, double y, double x1, double y1, double x2, double y2 ){
+        return getSide( x, y, x1, y1, x2, y2 ) >= 0;
+    }
+
+    private static double getSide( double x, double y, double x1, double y1, double x2, double y2 ){
+        return (x2 - x1) * (y - y1) - (y2 - y1) * (x - x1);
+    }
+
+    /**
+     * Returns number of checkpoints.
+     *
+     * @return  number of checkpoints
+     */
+    public int getCount(){
+        return grid.getCount();
+    }
+
+}
@@ -0,0 +1,70 @@
+package szewoj.race2d.model;
+
+/**
+ * Result of collision test between a car and a barrier.
+ * Normal points from the barrier towards the car, and moving the car by depth along the normal separates them.
+ * Instances are reused by collision queries, so they do not allocate.
+ */
+public class Contact {
+    double x;
+    double y;
+    double normalX;
+    double normalY;
+    double depth;
+    int segment = -1;
+
+    /**
+     * Returns world x coordinate of contact point, the point of barrier closest to centre of the car.
+     *
+     * @return  x coordinate in metres
+     */
+    public double getX(){
+        return x;
+    }
+
+    /**
+     * Returns world y coordinate of contact point, the point of barrier closest to centre of the car.
+     *
+     * @return  y coordinate in metres
+     */
+    public double getY(){
+        return y;
+    }
+
+    /**
+     * Returns x component of unit normal of contact.
+     *
+     * @return  x component of normal
+     */
+    public double getNormalX(){
+        return normalX;
+    }
+
+    /**
+     * Returns y component of unit normal of contact.
+     *
+     * @return  y component of normal
+     */
+    public double getNormalY(){
+        return normalY;
+    }
+
+    /**
+     * Returns penetration depth.
+     *
+     * @return  depth in metres
+     */
+    public double getDepth(){
+        return depth;
+    }
+
+    /**
+     * Returns index of colliding segment.
+     *
+     * @return  index of segment, -1 if there is no contact
+     */
+    public int getSegment(){
+        return segment;
+    }
+
+}
@@ -2,51 +2,136 @@ package szewoj.race2d.model;
 
 /**
  * Engine physics simulation class.
+ * Torque and engine braking are read from EngineDefinition lookup tables.
  */
 public class Engine {
-    public static final double MAX_RPM = 6800;
+    private static final double RPM_RESPONSE = 0.20;            //part of rpm difference reached in one default tick
+    private static final double NEUTRAL_RPM_RESPONSE = 0.05;    //part of rpm difference reached in one default tick with no load
+    private static final double RPM_DROP = 20;                  //rpm drop in one default tick over maximal rpm with no load
+    private static final double NEUTRAL_RPM_MARGIN = 500;       //rpm below maximal one reached at full throttle with no load
+
+    private final EngineDefinition definition;
     private double rpm;
+    private final double rpmResponse;           //part of rpm difference reached in one tick
+    private final double neutralRpmResponse;    //part of rpm difference reached in one tick with no load
+    private final double rpmDrop;               //rpm drop in one tick over maximal rpm with no load
 
     /**
-     * Constructor of Engine.
-     * Sets default rpm as minimal value.
+     * Constructor of Engine of default car.
+     * Sets default rpm as minimal value. Simulates 60 ticks per second.
      */
     public Engine(){
-        rpm = 1000;
+        this( 1.0/60 );
     }
 
     /**
-     * Approximates torque as rpm function.
+     * Constructor of Engine of default car simulating ticks of custom length.
+     * Sets default rpm as minimal value.
      *
-     * @return  value of torque corresponding to current rpm
+     * @param timeStep  time of one tick in seconds
      */
-    public double getTorque(){
+    public Engine( double timeStep ){
+        this( EngineDefinition.getDefault(), timeStep );
+    }
+
+    /**
+     * Constructor of Engine simulating ticks of custom length.
+     * Sets default rpm as minimal value.
+     *
+     * @param definition    description of engine curves
+     * @param timeStep      time of one tick in seconds
+     */
+    public Engine( EngineDefinition definition, double timeStep ){
+        this.definition = definition;
+        rpm = definition.getIdleRpm();
+        rpmResponse = getRpmResponse( timeStep );
+        neutralRpmResponse = getNeutralRpmResponse( timeStep );
+        rpmDrop = getRpmDrop( timeStep );
+    }
+
+    /**
+     * Calculates part of rpm difference reached in one tick of given length.
+     *
+     * @param timeStep  time of one tick in seconds
+     * @return          part of rpm difference in range 0.0 - 1.0
+     */
+    static double getRpmResponse( double timeStep ){
+        return 1 - Math.pow( 1 - RPM_RESPONSE, timeStep * 60 );
+    }
+
+    /**
+     * Calculates part of rpm difference reached in one tick of given length with no load on engine shaft.
+     *
+     * @param timeStep  time of one tick in seconds
+     * @return          part of rpm difference in range 0.0 - 1.0
+     */
+    static double getNeutralRpmResponse( double timeStep ){
+        return 1 - Math.pow( 1 - NEUTRAL_RPM_RESPONSE, timeStep * 60 );
+    }
+
+    /**
+     * Calculates rpm drop in one tick of given length over maximal rpm with no load on engine shaft.
+     *
+     * @param timeStep  time of one tick in seconds
+     * @return          rpm drop
+     */
+    static double getRpmDrop( double timeStep ){
+        return RPM_DROP * timeStep * 60;
+    }
 
-        if(rpm < 2500)
-            return 210 + rpm * 20/500;
-        else if(rpm < 3750)
-            return 310;
-        else if(rpm < 4400)
-            return 167 + rpm * 30/650;
-        else if(rpm < 6000)
-            return 444;
-        else if(rpm < MAX_RPM)
-            return 1368 - rpm*154/1000;
+    /**
+     * Calculates rpm after one tick of engine driving wheels. Shared by Engine and VehicleBatch.
+     *
+     * @param definition    description of engine curves
+     * @param rpm           current rpm
+     * @param newValue      rpm of wheels driven through gearbox
+     * @param rpmResponse   part of rpm difference reached in one tick
+     * @return              new rpm, not lower than idle rpm
+     */
+    static double nextRpm( EngineDefinition definition, double rpm, double newValue, double rpmResponse ){
+        rpm += rpmResponse*(newValue-rpm);
+        if(rpm < definition.getIdleRpm())
+            rpm = definition.getIdleRpm();
+        return rpm;
+    }
+
+    /**
+     * Calculates rpm after one tick of engine with no load on shaft. Shared by Engine and VehicleBatch.
+     *
+     * @param definition            description of engine curves
+     * @param rpm                   current rpm
+     * @param throttle              value of throttle in range 0.0 - 1.0
+     * @param neutralRpmResponse    part of rpm difference reached in one tick with no load
+     * @param rpmDrop               rpm drop in one tick over maximal rpm
+     * @return                      new rpm, not lower than idle rpm
+     */
+    static double nextNeutralGearRpm( EngineDefinition definition, double rpm, double throttle, double neutralRpmResponse, double rpmDrop ){
+        if (rpm < definition.getMaxRpm())
+            rpm += neutralRpmResponse*((definition.getIdleRpm() + (definition.getMaxRpm() - NEUTRAL_RPM_MARGIN) * throttle)-rpm);
         else
-            return (1000-rpm)/(MAX_RPM-1000) * 150 + (MAX_RPM-rpm) * 0.75;
+            rpm -= rpmDrop;
+
+        if(rpm < definition.getIdleRpm())
+            rpm = definition.getIdleRpm();
+        return rpm;
+    }
 
+    /**
+     * Reads torque corresponding to current rpm from torque curve.
+     *
+     * @return  value of torque corresponding to current rpm
+     */
+    public double getTorque(){
+        return definition.getTorque( rpm );
     }
 
     /**
-     * Simulates engine breaking phenomenon.
+     * Simulates engine breaking phenomenon. Reads engine braking curve at current rpm.
      *
      * @return      torque corresponding to engine braking
      */
     public double getEngineBraking(){
-        if( rpm > MAX_RPM )
-            return (1000-rpm)/(MAX_RPM-1000) * 150 + (MAX_RPM-rpm) * 0.75;
-        else
-            return (1000-rpm)/(MAX_RPM-1000) * 150;
+        return definition.getEngineBraking( rpm );
     }
 
     /**
@@ -55,9 +140,7 @@ public class Engine {
      * @param newValue  desired value of torque
      */
     public void setRpm( double newValue ){
-        rpm += 0.20*(newValue-rpm);
-        if(rpm < 1000)
-            rpm = 1000;
+        rpm = nextRpm( definition, rpm, newValue, rpmResponse );
     }
 
     /**
@@ -66,14 +149,7 @@ public class Engine {
      * @param throttle  value of throttle in range 0.0 - 1.0
      */
     public void setNeutralGearRpm(  double throttle ){
-        if (rpm < MAX_RPM)
-            rpm += 0.05*((1000 + (MAX_RPM - 500) * throttle)-rpm);
-        else
-            rpm -= 20;
-
-        if(rpm < 1000)
-            rpm = 1000;
-
+        rpm = nextNeutralGearRpm( definition, rpm, throttle, neutralRpmResponse, rpmDrop );
     }
 
     /**
@@ -85,6 +161,13 @@ public class Engine {
         return rpm;
     }
 
-
+    /**
+     * Getter of definition property.
+     *
+     * @return  description of engine curves
+     */
+    public EngineDefinition getDefinition(){
+        return definition;
+    }
 
 }
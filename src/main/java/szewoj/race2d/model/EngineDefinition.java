@@ -0,0 +1,217 @@
+package szewoj.race2d.model;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * Describes engine of a car: idle and maximal rpm, torque curve and engine braking curve.
+ * Curves are given as rpm/torque points and compiled at load time into dense lookup tables
+ * with uniform rpm spacing, so evaluation is constant-time linear interpolation without searching through points.
+ * Steps of curves are smoothed over one table cell, so they should lie on multiples of table step.
+ * Above maximal rpm engine produces no torque (rev limiter) and engine braking grows by over-rev coefficient.
+ */
+public class EngineDefinition {
+    private static final String DEFAULT_RESOURCE = "/engines/default.properties";
+    private static EngineDefinition defaultDefinition;
+
+    private final double idleRpm;
+    private final double maxRpm;
+    private final double tableStep;
+    private final double inverseTableStep;
+    private final double[] torqueTable;
+    private final double[] brakingTable;
+
+    /**
+     * Constructor of EngineDefinition. Compiles given curves into lookup tables covering range 0 - tableRpm.
+     * Points of every curve have to be sorted by rpm, repeated rpm describes a step of the curve.
+     * Curves are extrapolated linearly outside of their points.
+     *
+     * @param idleRpm           minimal rpm of running engine
+     * @param maxRpm            rpm of rev limiter
+     * @param torqueRpm         rpm of torque curve points
+     * @param torque            torque of torque curve points in newton metres
+     * @param brakingRpm        rpm of engine braking curve points
+     * @param braking           engine braking torque of curve points in newton metres, negative values brake
+     * @param overRevBraking    additional braking torque per rpm over maxRpm
+     * @param tableRpm          highest rpm covered by lookup tables
+     * @param tableStep         rpm distance between entries of lookup tables
+     */
+    public EngineDefinition( double idleRpm, double maxRpm, double[] torqueRpm, double[] torque, double[] brakingRpm,
+                             double[] braking, double overRevBraking, double tableRpm, double tableStep ){
+        if( torqueRpm.length != torque.length || torqueRpm.length < 2 )
+            throw new IllegalArgumentException( "Torque curve needs at least two points with rpm and torque" );
+        if( brakingRpm.length != braking.length || brakingRpm.length < 2 )
+            throw new IllegalArgumentException( "Engine braking curve needs at least two points with rpm and torque" );
+        if( tableStep <= 0 || tableRpm <= maxRpm )
+            throw new IllegalArgumentException( "Lookup table has to cover rpm over maxRpm with positive step" );
+
+        this.idleRpm = idleRpm;
+        this.maxRpm = maxRpm;
+        this.tableStep = tableStep;
+        inverseTableStep = 1.0 / tableStep;
+
+        int size = (int) Math.ceil( tableRpm / tableStep ) + 1;
+        torqueTable = new double[size];
+        brakingTable = new double[size];
+
+        for( int i = 0; i < size; ++i ){
+            double rpm = i * tableStep;
+            double engineBraking = interpolate( brakingRpm, braking, rpm );
+            if( rpm > maxRpm )
+                engineBraking += (maxRpm - rpm) * overRevBraking;
+
+            brakingTable[i] = engineBraking;
+            torqueTable[i] = interpolate( torqueRpm, torque, rpm );
+        }
+    }
+
+    /**
+     * Interpolates piecewise linear curve. For repeated rpm the later point is used.
+     *
+     * @param xs    sorted arguments of points
+     * @param ys    values of points
+     * @param x     argument
+     * @return      value of curve
+     */
+    private static double interpolate( double[] xs, double[] ys, double x ){
+        int segment = 0;
+        while( segment < xs.length - 2 && x >= xs[segment + 1] )
+            ++segment;
+        while( segment < xs.length - 2 && xs[segment + 1] == xs[segment] )
+            ++segment;
+
+        double width = xs[segment + 1] - xs[segment];
+        if( width == 0 )
+            return ys[segment + 1];
+
+        return ys[segment] + (ys[segment + 1] - ys[segment]) * (x - xs[segment]) / width;
+    }
+
+    /**
+     * Looks up value in dense table with linear interpolation.
+     * Index is clamped without branches, outside of table the edge cells are extrapolated.
+     *
+     * @param table     lookup table
+     * @param rpm       engine rpm
+     * @return          interpolated value
+     */
+    private double lookup( double[] table, double rpm ){
+        double position = rpm * inverseTableStep;
+        int index = Math.min( Math.max( (int) position, 0 ), table.length - 2 );
+        double fraction = position - index;
+        return table[index] + (table[index + 1] - table[index]) * fraction;
+    }
+
+    /**
+     * Returns torque of engine. Over maximal rpm only engine braking remains.
+     * Cut-off is compared exactly instead of interpolated, as the jump is larger than any step of torque curve.
+     *
+     * @param rpm   engine rpm
+     * @return      torque in newton metres
+     */
+    public double getTorque( double rpm ){
+        return lookup( rpm < maxRpm ? torqueTable : brakingTable, rpm );
+    }
+
+    /**
+     * Returns engine braking torque.
+     *
+     * @param rpm   engine rpm
+     * @return      engine braking torque in newton metres
+     */
+    public double getEngineBraking( double rpm ){
+        return lookup( brakingTable, rpm );
+    }
+
+    /**
+     * Getter of idleRpm property.
+     *
+     * @return  minimal rpm of running engine
+     */
+    public double getIdleRpm(){
+        return idleRpm;
+    }
+
+    /**
+     * Getter of maxRpm property.
+     *
+     * @return  rpm of rev limiter
+     */
+    public double getMaxRpm(){
+        return maxRpm;
+    }
+
+    /**
+     * Getter of tableStep property.
+     *
+     * @return  rpm distance between entries of lookup tables
+     */
+    public double getTableStep(){
+        return tableStep;
+    }
+
+    /**
+     * Loads engine definition from properties file.
+     * Curves are described by comma separated lists: torque.rpm, torque.value, braking.rpm and braking.value.
+     *
+     * @param input         stream of properties file
+     * @return              loaded engine definition
+     * @throws IOException  when file cannot be read
+     */
+    public static EngineDefinition load( InputStream input ) throws IOException {
+        Properties properties = new Properties();
+        properties.load( input );
+
+        double maxRpm = getNumber( properties, "maxRpm" );
+
+        return new EngineDefinition(
+                getNumber( properties, "idleRpm" ),
+                maxRpm,
+                getNumbers( properties, "torque.rpm" ),
+                getNumbers( properties, "torque.value" ),
+                getNumbers( properties, "braking.rpm" ),
+                getNumbers( properties, "braking.value" ),
+                Double.parseDouble( properties.getProperty( "overRevBraking", "0" ) ),
+                Double.parseDouble( properties.getProperty( "table.rpm", String.valueOf( 1.5 * maxRpm ) ) ),
+                Double.parseDouble( properties.getProperty( "table.step", "25" ) ) );
+    }
+
+    private static double getNumber( Properties properties, String key ){
+        String value = properties.getProperty( key );
+        if( value == null )
+            throw new IllegalArgumentException( "Missing engine property: " + key );
+        return Double.parseDouble( value.trim() );
+    }
+
+    private static double[] getNumbers( Properties properties, String key ){
+        String value = properties.getProperty( key );
+        if( value == null )
+            throw new IllegalArgumentException( "Missing engine property: " + key );
+
+        String[] parts = value.split( "," );
+        double[] numbers = new double[parts.length];
+        for( int i = 0; i < parts.length; ++i )
+            numbers[i] = Double.parseDouble( parts[i].trim() );
+        return numbers;
+    }
+
+    /**
+     * Returns definition of engine of default car, loaded once from resources.
+     *
+     * @return  default engine definition
+     */
+    public static synchronized EngineDefinition getDefault(){
+        if( defaultDefinition == null ){
+            try( InputStream input = EngineDefinition.class.getResourceAsStream( DEFAULT_RESOURCE ) ){
+                if( input == null )
+                    throw new IllegalStateException( "Missing resource " + DEFAULT_RESOURCE );
+                defaultDefinition = load( input );
+            } catch( IOException e ){
+                throw new IllegalStateException( "Cannot load " + DEFAULT_RESOURCE, e );
+            }
+        }
+        return defaultDefinition;
+    }
+
+}
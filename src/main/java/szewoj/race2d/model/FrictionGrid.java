@@ -0,0 +1,349 @@
+package szewoj.race2d.model;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.Executor;
+
+/**
+ * Friction of track surface stored as grid of cells quantized to one byte, 0 - no grip, 255 - full grip.
+ * Grid is decoded once from red channel of track mask image and queried in world coordinates of the car,
+ * mapped to cells by affine world transform. Queries do not allocate and do not depend on JavaFX.
+ * Outside of the grid friction of the nearest edge cell is used.
+ * Subclasses may keep only part of cells in memory, overriding getCellValue and prefetch.
+ */
+public class FrictionGrid {
+    public static final int WHEEL_COUNT = 4;
+    public static final int FRONT_LEFT = 0;
+    public static final int FRONT_RIGHT = 1;
+    public static final int REAR_LEFT = 2;
+    public static final int REAR_RIGHT = 3;
+    static final double HALF_TRACK_WIDTH = 0.8;     //distance of contact patch from centre line of the car
+    private static final double BYTE_TO_FRICTION = 1.0 / 255;
+
+    private final byte[] cells;
+    private final int width;
+    private final int height;
+    private boolean bilinear;
+
+    //world to grid transform:
+    private double mxx = 1;
+    private double mxy;
+    private double tx;
+    private double myx;
+    private double myy = 1;
+    private double ty;
+
+    /**
+     * Constructor of FrictionGrid.
+     *
+     * @param cells     quantized friction of cells in rows, width * height entries
+     * @param width     number of cells in a row
+     * @param height    number of rows
+     * @param bilinear  true to interpolate between centres of cells, false to use the nearest cell
+     */
+    public FrictionGrid( byte[] cells, int width, int height, boolean bilinear ){
+        if( width <= 0 || height <= 0 || cells.length != width * height )
+            throw new IllegalArgumentException( "Friction grid needs width * height cells" );
+        this.cells = cells;
+        this.width = width;
+        this.height = height;
+        this.bilinear = bilinear;
+    }
+
+    /**
+     * Constructor of FrictionGrid for subclasses providing cells with getCellValue.
+     *
+     * @param width     number of cells in a row
+     * @param height    number of rows
+     * @param bilinear  true to interpolate between centres of cells, false to use the nearest cell
+     */
+    protected FrictionGrid( int width, int height, boolean bilinear ){
+        if( width <= 0 || height <= 0 )
+            throw new IllegalArgumentException( "Friction grid needs positive width and height" );
+        this.cells = null;
+        this.width = width;
+        this.height = height;
+        this.bilinear = bilinear;
+    }
+
+    /**
+     * Decodes friction grid from red channel of an image, one cell per pixel.
+     *
+     * @param input         stream of image file
+     * @param bilinear      true to interpolate between centres of cells
+     * @return              decoded friction grid
+     * @throws IOException  when image cannot be read
+     */
+    public static FrictionGrid load( InputStream input, boolean bilinear ) throws IOException {
+        BufferedImage image = decode( input );
+        return new FrictionGrid( decodeCells( image, image.getWidth() ), image.getWidth(), image.getHeight(), bilinear );
+    }
+
+    /**
+     * Loads friction grid of a track and places it in world coordinates of the track.
+     * Friction mask is decoded whole, mask of tiled track is streamed by TiledFrictionGrid.
+     *
+     * @param track         loaded track
+     * @param executor      executor of prefetching tiles of tiled track, Runnable::run loads them on the calling thread
+     * @return              friction grid with world transform of the track
+     * @throws IOException  when friction mask or tiles cannot be read
+     */
+    public static FrictionGrid load( Track track, Executor executor ) throws IOException {
+        FrictionGrid grid;
+        if( track.getTiles() != null ){
+            grid = new TiledFrictionGrid( TiledFrictionGrid.openTiles( track ), TiledFrictionGrid.DEFAULT_CAPACITY, executor, false );
+        } else {
+            try( InputStream input = track.resolve( track.getFriction() ).openStream() ){
+                grid = load( input, false );
+            }
+        }
+        grid.setWorldTransform( track );
+        return grid;
+    }
+
+    /**
+     * Reads image of friction mask.
+     *
+     * @param input         stream of image file
+     * @return              decoded image
+     * @throws IOException  when image cannot be read
+     */
+    static BufferedImage decode( InputStream input ) throws IOException {
+        BufferedImage image = ImageIO.read( input );
+        if( image == null )
+            throw new IOException( "Unsupported image format of friction mask" );
+        return image;
+    }
+
+    /**
+     * Quantizes friction of every pixel of mask image from its red channel.
+     *
+     * @param image     image of friction mask
+     * @param stride    number of cells in a row of result, at least width of image
+     * @return          cells in rows of stride length
+     */
+    static byte[] decodeCells( BufferedImage image, int stride ){
+        int width = image.getWidth();
+        int height = image.getHeight();
+        byte[] cells = new byte[stride * height];
+        int[] row = new int[width];
+        for( int y = 0; y < height; ++y ){
+            image.getRGB( 0, y, width, 1, row, 0, width );
+            for( int x = 0; x < width; ++x )
+                cells[y * stride + x] = (byte)( row[x] >>> 16 );
+        }
+        return cells;
+    }
+
+    /**
+     * Sets transform mapping world coordinates of the car in metres to coordinates of grid cells:
+     * gridX = mxx * x + mxy * y + tx, gridY = myx * x + myy * y + ty.
+     *
+     * @param mxx   x coordinate scale
+     * @param mxy   x coordinate shear
+     * @param tx    x coordinate translation
+     * @param myx   y coordinate shear
+     * @param myy   y coordinate scale
+     * @param ty    y coordinate translation
+     */
+    public void setWorldTransform( double mxx, double mxy, double tx, double myx, double myy, double ty ){
+        this.mxx = mxx;
+        this.mxy = mxy;
+        this.tx = tx;
+        this.myx = myx;
+        this.myy = myy;
+        this.ty = ty;
+    }
+
+    /**
+     * Sets transform mapping world coordinates of the car to pixels of friction mask of a track.
+     *
+     * @param track     track of the friction mask
+     */
+    public void setWorldTransform( Track track ){
+        double[] worldToTrack = track.getWorldToTrackTransform( new double[6] );
+        setWorldTransform( worldToTrack[0], worldToTrack[1], worldToTrack[2], worldToTrack[3], worldToTrack[4], worldToTrack[5] );
+    }
+
+    /**
+     * Copies world transform and interpolation of another grid.
+     *
+     * @param grid  copied grid
+     */
+    protected final void copySettings( FrictionGrid grid ){
+        setWorldTransform( grid.mxx, grid.mxy, grid.tx, grid.myx, grid.myy, grid.ty );
+        bilinear = grid.bilinear;
+    }
+
+    /**
+     * Returns grid sharing cells with this one, with the same world transform, so it can be queried on another thread.
+     *
+     * @return  copy of grid
+     */
+    public FrictionGrid copy(){
+        FrictionGrid copy = new FrictionGrid( cells, width, height, bilinear );
+        copy.copySettings( this );
+        return copy;
+    }
+
+    private int getCell( int x, int y ){
+        x = Math.min( Math.max( x, 0 ), width - 1 );
+        y = Math.min( Math.max( y, 0 ), height - 1 );
+        return getCellValue( x, y );
+    }
+
+    /**
+     * Returns quantized friction of cell inside of the grid.
+     *
+     * @param x     column of cell in range 0 - width - 1
+     * @param y     row of cell in range 0 - height - 1
+     * @return      friction in range 0 - 255
+     */
+    protected int getCellValue( int x, int y ){
+        return cells[y * width + x] & 0xFF;
+    }
+
+    /**
+     * Starts loading cells around given point, before the car reaches them.
+     * Grid keeping all cells in memory does nothing.
+     *
+     * @param x         world x coordinate in metres
+     * @param y         world y coordinate in metres
+     * @param radius    distance in metres around the point
+     */
+    public void prefetch( double x, double y, double radius ){
+    }
+
+    /**
+     * Maps world x coordinate to grid coordinate.
+     *
+     * @param x     world x coordinate in metres
+     * @param y     world y coordinate in metres
+     * @return      x coordinate in cells
+     */
+    protected final double toGridX( double x, double y ){
+        return mxx * x + mxy * y + tx;
+    }
+
+    /**
+     * Maps world y coordinate to grid coordinate.
+     *
+     * @param x     world x coordinate in metres
+     * @param y     world y coordinate in metres
+     * @return      y coordinate in cells
+     */
+    protected final double toGridY( double x, double y ){
+        return myx * x + myy * y + ty;
+    }
+
+    /**
+     * Returns number of cells per metre of world coordinates.
+     *
+     * @return  scale of world transform
+     */
+    protected final double getGridScale(){
+        return Math.sqrt( Math.abs( mxx * myy - mxy * myx ) );
+    }
+
+    /**
+     * Returns friction in point given in grid coordinates. Cell (i, j) covers square from (i, j) to (i + 1, j + 1).
+     *
+     * @param gridX     x coordinate in cells
+     * @param gridY     y coordinate in cells
+     * @return          friction value in range 0.0 - 1.0
+     */
+    public double getGridFriction( double gridX, double gridY ){
+        if( !bilinear )
+            return getCell( (int) Math.floor( gridX ), (int) Math.floor( gridY ) ) * BYTE_TO_FRICTION;
+
+        double cellX = gridX - 0.5;
+        double cellY = gridY - 0.5;
+        double floorX = Math.floor( cellX );
+        double floorY = Math.floor( cellY );
+        int x = (int) floorX;
+        int y = (int) floorY;
+        double fractionX = cellX - floorX;
+        double fractionY = cellY - floorY;
+
+        double top = getCell( x, y ) + (getCell( x + 1, y ) - getCell( x, y )) * fractionX;
+        double bottom = getCell( x, y + 1 ) + (getCell( x + 1, y + 1 ) - getCell( x, y + 1 )) * fractionX;
+        return (top + (bottom - top) * fractionY) * BYTE_TO_FRICTION;
+    }
+
+    /**
+     * Returns friction in point given in world coordinates.
+     *
+     * @param x     world x coordinate in metres
+     * @param y     world y coordinate in metres
+     * @return      friction value in range 0.0 - 1.0
+     */
+    public double getFriction( double x, double y ){
+        return getGridFriction( toGridX( x, y ), toGridY( x, y ) );
+    }
+
+    /**
+     * Samples friction under contact patch of every wheel of the car in given pose.
+     * Contact patches lie on axles, HALF_TRACK_WIDTH from centre line, offsets are rotated by heading
+     * the same way as displacement of the car in Vehicle.
+     *
+     * @param x         world x coordinate of centre of gravity in metres
+     * @param y         world y coordinate of centre of gravity in metres
+     * @param heading   heading of the car in radians
+     * @param out       array of length WHEEL_COUNT to be filled, indexed by FRONT_LEFT, FRONT_RIGHT, REAR_LEFT and REAR_RIGHT
+     * @return          out parameter
+     */
+    public double[] sampleWheels( double x, double y, double heading, double[] out ){
+        double cos = Math.cos( heading );
+        double sin = Math.sin( heading );
+
+        //offsets in car sprite orientation, where forward is negative y
+        out[FRONT_LEFT] = sampleOffset( x, y, cos, sin, -HALF_TRACK_WIDTH, -Vehicle.FRONT_AXIS );
+        out[FRONT_RIGHT] = sampleOffset( x, y, cos, sin, HALF_TRACK_WIDTH, -Vehicle.FRONT_AXIS );
+        out[REAR_LEFT] = sampleOffset( x, y, cos, sin, -HALF_TRACK_WIDTH, -Vehicle.REAR_AXIS );
+        out[REAR_RIGHT] = sampleOffset( x, y, cos, sin, HALF_TRACK_WIDTH, -Vehicle.REAR_AXIS );
+        return out;
+    }
+
+    private double sampleOffset( double x, double y, double cos, double sin, double offsetX, double offsetY ){
+        return getFriction( x + cos * offsetX - sin * offsetY, y + sin * offsetX + cos * offsetY );
+    }
+
+    /**
+     * Switches between bilinear filtering and the nearest cell.
+     *
+     * @param bilinear  true to interpolate between centres of cells
+     */
+    public void setBilinear( boolean bilinear ){
+        this.bilinear = bilinear;
+    }
+
+    /**
+     * Getter of bilinear property.
+     *
+     * @return  true if friction is interpolated between centres of cells
+     */
+    public boolean isBilinear(){
+        return bilinear;
+    }
+
+    /**
+     * Getter of width property.
+     *
+     * @return  number of cells in a row
+     */
+    public int getWidth(){
+        return width;
+    }
+
+    /**
+     * Getter of height property.
+     *
+     * @return  number of rows
+     */
+    public int getHeight(){
+        return height;
+    }
+
+}
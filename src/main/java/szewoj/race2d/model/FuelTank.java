@@ -4,9 +4,11 @@ package szewoj.race2d.model;
  */
 public class FuelTank {
     public static final double FUEL_DENSITY = 0.75;
+    private static final double CONSUMPTION_DIVISOR = 4800000;  //rpm per unit of volume burnt in one default tick
+    private static final double REFUEL_RATE = 10;               //volume refueled in one second
 
-    private final double FUEL_CONSUMPTION_RATE = 1.0 / 4800000;
-    private final double REFUEL_SPEED = 1.0/6;
+    private final double FUEL_CONSUMPTION_RATE;
+    private final double REFUEL_SPEED;
     private final double MAX_VOLUME;
 
     private double volume;
@@ -18,10 +20,76 @@ public class FuelTank {
      * @param maxCapacity   MAX_VOLUME initialization value
      */
     public FuelTank( double maxCapacity ){
+        this( maxCapacity, 1.0/60 );
+    }
+
+    /**
+     * Constructor of FuelTank simulating ticks of custom length.
+     * Sets tank as full (volume = MAX_VOLUME = maxCapacity)
+     *
+     * @param maxCapacity   MAX_VOLUME initialization value
+     * @param timeStep      time of one tick in seconds
+     */
+    public FuelTank( double maxCapacity, double timeStep ){
+        FUEL_CONSUMPTION_RATE = getConsumptionRate( timeStep );
+        REFUEL_SPEED = getRefuelSpeed( timeStep );
         MAX_VOLUME = maxCapacity;
         volume = MAX_VOLUME;
     }
 
+    /**
+     * Calculates volume of fuel burnt per rpm in one tick of given length.
+     *
+     * @param timeStep  time of one tick in seconds
+     * @return          consumption rate
+     */
+    static double getConsumptionRate( double timeStep ){
+        return timeStep * 60 / CONSUMPTION_DIVISOR;
+    }
+
+    /**
+     * Calculates volume of fuel added in one tick of given length.
+     *
+     * @param timeStep  time of one tick in seconds
+     * @return          refueled volume
+     */
+    static double getRefuelSpeed( double timeStep ){
+        return timeStep * REFUEL_RATE;
+    }
+
+    /**
+     * Calculates volume left after one tick of fuel consumption. Shared by FuelTank and VehicleBatch.
+     *
+     * @param volume            current volume of fuel
+     * @param rpm               rpm of car
+     * @param throttle          throttle position of car in range 0.0 - 1.0
+     * @param consumptionRate   volume burnt per rpm in one tick
+     * @return                  new volume, not lower than 0
+     */
+    static double consume( double volume, double rpm, double throttle, double consumptionRate ){
+        double consumedFuel = rpm * (0.5 + 0.5 * throttle) * consumptionRate;
+
+        if( volume > consumedFuel )
+            volume -= consumedFuel;
+        else if( volume > 0 )
+            volume = 0;
+        return volume;
+    }
+
+    /**
+     * Calculates volume after one tick of refueling. Shared by FuelTank and VehicleBatch.
+     *
+     * @param volume        current volume of fuel
+     * @param maxVolume     capacity of tank
+     * @param refuelSpeed   volume added in one tick
+     * @return              new volume, not higher than maxVolume
+     */
+    static double refuel( double volume, double maxVolume, double refuelSpeed ){
+        if( maxVolume - volume < refuelSpeed )
+            return maxVolume;
+        return volume + refuelSpeed;
+    }
+
     /**
      * Calculates mass of fuel in tank.
      *
@@ -56,22 +124,14 @@ public class FuelTank {
      * @param throttle  throttle position of car in range 0.0 - 1.0
      */
     public void consumeFuel( double rpm, double throttle ){
-        double consumedFuel = rpm * (0.5 + 0.5 * throttle) * FUEL_CONSUMPTION_RATE;
-
-        if( volume > consumedFuel )
-            volume -= consumedFuel;
-        else if( volume > 0 )
-            volume = 0;
+        volume = consume( volume, rpm, throttle, FUEL_CONSUMPTION_RATE );
     }
 
     /**
-     * Simulates refueling. Adds fixed amount of volume per function call.
+     * Simulates refueling. Adds fixed amount of volume per function call, which is expected once per tick.
      */
     public void refuel(){
-        if( MAX_VOLUME - volume < REFUEL_SPEED )
-            volume = MAX_VOLUME;
-        else
-            volume += REFUEL_SPEED;
+        volume = refuel( volume, MAX_VOLUME, REFUEL_SPEED );
     }
 
 }
@@ -17,6 +17,16 @@ public class Gearbox {
      * @return  gear ratio
      */
     public double getGearRatio(){
+        return getGearRatio( gear );
+    }
+
+    /**
+     * Returns gear ratio corresponding to given gear.
+     *
+     * @param gear  gear as int, where -1 is reverse and 0 is neutral
+     * @return      gear ratio
+     */
+    public static double getGearRatio( int gear ){
 
         switch( gear ){
             case -1:
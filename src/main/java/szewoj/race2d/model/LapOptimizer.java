@@ -0,0 +1,437 @@
+package szewoj.race2d.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Genetic optimizer of lap time, evolving variations of a RacingLine driven by AiDriver.
+ * The line is split into sections, each with a gene scaling target speed and a gene moving the line sideways,
+ * both quantized to small steps and interpolated between centres of neighbouring sections.
+ * Every candidate is scored by a headless lap of one car in RaceSession, timed by LapTimer of the session.
+ * Candidates of a generation are evaluated in parallel on own ForkJoinPool, and lap times are cached by genes,
+ * so elites carried over to the next generation and repeated children are not driven again.
+ * Evaluation is deterministic, and the cache keeps the number of ticks a lap took next to its time,
+ * so a cached lap longer than the limit of ticks, which shrinks with the best lap, is unfinished like a lap driven again.
+ * Every worker queries its own copy of friction grid, as tiled friction grids keep a cache of tiles.
+ */
+public class LapOptimizer implements AutoCloseable {
+    public static final int DEFAULT_SECTIONS = 40;
+    public static final int DEFAULT_POPULATION = 32;
+    private static final double SPEED_STEP = 0.01;          //fraction of target speed
+    private static final int MAX_SPEED_LEVEL = 25;
+    private static final double OFFSET_STEP = 0.25;         //metres
+    private static final int MAX_OFFSET_LEVEL = 6;
+    private static final int MAX_MUTATION = 3;              //levels
+    private static final int ELITE_COUNT = 2;
+    private static final int TOURNAMENT_SIZE = 3;
+    private static final int INITIAL_MUTATIONS = 4;         //mutation passes of random candidates of the first generation
+    private static final double MAX_LAP_TIME = 600;         //seconds of the first generation
+    private static final double TIME_LIMIT = 1.5;           //lap time limit as a multiple of the best lap
+
+    private final Track track;
+    private final ThreadLocal<FrictionGrid> friction;
+    private final RacingLine base;
+    private final EngineDefinition engine;
+    private final double timeStep;
+    private final int sections;
+    private final double[] normals;     //normals of base line pointing to the right of driving direction
+    private final ForkJoinPool pool;
+    private final Random random;
+    private final Map<Candidate, Lap> cache;
+    private Candidate[] population;
+    private final long[] lapTimes;
+    private Candidate best;
+    private long bestLapTime;
+    private int generation;
+    private int evaluations;
+    private int cacheHits;
+
+    /**
+     * Constructor of LapOptimizer with default engine, default size of population and one worker per available processor.
+     *
+     * @param track     compiled track
+     * @param friction  friction grid of track, with world transform of the track
+     * @param base      racing line of the track, candidate of the first generation
+     * @param seed      seed of random choices, the same seed gives the same results
+     */
+    public LapOptimizer( Track track, FrictionGrid friction, RacingLine base, long seed ){
+        this( track, friction, base, EngineDefinition.getDefault(), DEFAULT_SECTIONS, DEFAULT_POPULATION,
+              Runtime.getRuntime().availableProcessors(), seed );
+    }
+
+    /**
+     * Constructor of LapOptimizer.
+     *
+     * @param track             compiled track
+     * @param friction          friction grid of track, with world transform of the track
+     * @param base              racing line of the track, candidate of the first generation
+     * @param engine            engine of the car
+     * @param sections          number of sections of the line with own genes
+     * @param populationSize    number of candidates in every generation
+     * @param threads           number of worker threads evaluating candidates
+     * @param seed              seed of random choices, the same seed gives the same results
+     */
+    public LapOptimizer( Track track, FrictionGrid friction, RacingLine base, EngineDefinition engine,
+                         int sections, int populationSize, int threads, long seed ){
+        if( sections < 2 || sections > base.getPointCount() )
+            throw new IllegalArgumentException( "Number of sections has to be between 2 and number of points of the line: " + sections );
+        if( populationSize <= ELITE_COUNT )
+            throw new IllegalArgumentException( "Population has to be larger than " + ELITE_COUNT + ": " + populationSize );
+        if( threads <= 0 )
+            throw new IllegalArgumentException( "Number of threads has to be positive: " + threads );
+
+        this.track = track;
+        this.friction = ThreadLocal.withInitial( friction::copy );
+        this.base = base;
+        this.engine = engine;
+        this.sections = sections;
+        timeStep = Vehicle.DEFAULT_TIME_STEP;
+        pool = new ForkJoinPool( threads );
+        random = new Random( seed );
+        cache = new ConcurrentHashMap<>();
+        lapTimes = new long[populationSize];
+        bestLapTime = -1;
+
+        int count = base.getPointCount();
+        normals = new double[2 * count];
+        for( int i = 0; i < count; ++i ){
+            int previous = ( i + count - 1 ) % count;
+            int next = ( i + 1 ) % count;
+            double tangentX = base.getX( next ) - base.getX( previous );
+            double tangentY = base.getY( next ) - base.getY( previous );
+            double tangentLength = Math.hypot( tangentX, tangentY );
+            normals[2*i] = -tangentY / tangentLength;
+            normals[2*i + 1] = tangentX / tangentLength;
+        }
+
+        //base line itself and its random variations
+        population = new Candidate[populationSize];
+        population[0] = new Candidate( new int[2 * sections] );
+        for( int i = 1; i < populationSize; ++i ){
+            int[] genes = new int[2 * sections];
+            for( int pass = 0; pass < INITIAL_MUTATIONS; ++pass )
+                mutate( genes );
+            population[i] = new Candidate( genes );
+        }
+    }
+
+    /**
+     * Evaluates current generation and breeds the next one from it.
+     * Best candidates of the generation are kept unchanged, the rest are children of candidates chosen in tournaments.
+     *
+     * @return  best lap time of evaluated generation in milliseconds, or -1 when no candidate finished a lap
+     */
+    public long nextGeneration(){
+        evaluate();
+
+        Integer[] order = new Integer[population.length];
+        for( int i = 0; i < order.length; ++i )
+            order[i] = i;
+        Arrays.sort( order, ( a, b ) -> compareLapTimes( lapTimes[a], lapTimes[b] ) );
+        long generationBest = lapTimes[order[0]];
+        if( compareLapTimes( generationBest, bestLapTime ) < 0 ){
+            bestLapTime = generationBest;
+            best = population[order[0]];
+        }
+
+        Candidate[] next = new Candidate[population.length];
+        for( int i = 0; i < ELITE_COUNT; ++i )
+            next[i] = population[order[i]];
+        for( int i = ELITE_COUNT; i < next.length; ++i ){
+            int[] genes = crossover( select(), select() );
+            mutate( genes );
+            next[i] = new Candidate( genes );
+        }
+        population = next;
+        ++generation;
+        return generationBest;
+    }
+
+    /**
+     * Finds lap times of all candidates of current population, driving in parallel those missing in cache.
+     */
+    private void evaluate(){
+        List<Candidate> pending = new ArrayList<>();
+        for( Candidate candidate : population ){
+            if( cache.containsKey( candidate ) || pending.contains( candidate ) )
+                ++cacheHits;
+            else
+                pending.add( candidate );
+        }
+
+        Lap[] results = new Lap[pending.size()];
+        int limit = (int)( ( bestLapTime < 0 ? MAX_LAP_TIME : TIME_LIMIT * bestLapTime / 1000.0 ) / timeStep );
+        pool.invoke( new EvaluationTask( pending, results, 0, results.length, limit ) );
+        for( int i = 0; i < results.length; ++i )
+            cache.put( pending.get( i ), results[i] );
+        evaluations += results.length;
+
+        for( int i = 0; i < population.length; ++i )
+            lapTimes[i] = cache.get( population[i] ).getTime( limit );
+    }
+
+    /**
+     * Drives one lap of a candidate from the starting grid.
+     *
+     * @param candidate     evaluated candidate
+     * @param limit         maximal number of ticks of the race
+     * @return              finished or unfinished lap
+     */
+    private Lap driveLap( Candidate candidate, int limit ){
+        RaceSession session = new RaceSession( track, friction.get(), timeStep, 1 );
+        session.addCar( new Vehicle( timeStep, engine ) );
+        session.setDriver( 0, new AiDriver( buildLine( candidate ), engine ) );
+        for( int tick = 0; tick < limit && session.getCompletedLaps( 0 ) == 0; ++tick )
+            session.tick();
+        return new Lap( session.getCompletedLaps( 0 ) > 0 ? session.getLastLapTime( 0 ) : -1, session.getTicks() );
+    }
+
+    /**
+     * Builds racing line of a candidate, moving every point of base line along its normal and scaling its speed
+     * by genes interpolated between centres of sections around the point.
+     */
+    private RacingLine buildLine( Candidate candidate ){
+        int count = base.getPointCount();
+        double[] x = new double[count];
+        double[] y = new double[count];
+        double[] speed = new double[count];
+        for( int i = 0; i < count; ++i ){
+            double position = ( i + 0.5 ) * sections / count - 0.5;
+            int section = (int) Math.floor( position );
+            double fraction = position - section;
+            int from = ( section + sections ) % sections;
+            int to = ( section + 1 ) % sections;
+            double speedLevel = candidate.genes[from] * ( 1 - fraction ) + candidate.genes[to] * fraction;
+            double offsetLevel = candidate.genes[sections + from] * ( 1 - fraction ) + candidate.genes[sections + to] * fraction;
+            x[i] = base.getX( i ) + normals[2*i] * offsetLevel * OFFSET_STEP;
+            y[i] = base.getY( i ) + normals[2*i + 1] * offsetLevel * OFFSET_STEP;
+            speed[i] = base.getSpeed( i ) * ( 1 + speedLevel * SPEED_STEP );
+        }
+        return new RacingLine( x, y, speed );
+    }
+
+    /**
+     * Chooses the fastest of a few random candidates of current population.
+     */
+    private Candidate select(){
+        int chosen = random.nextInt( population.length );
+        for( int i = 1; i < TOURNAMENT_SIZE; ++i ){
+            int rival = random.nextInt( population.length );
+            if( compareLapTimes( lapTimes[rival], lapTimes[chosen] ) < 0 )
+                chosen = rival;
+        }
+        return population[chosen];
+    }
+
+    /**
+     * Takes every section with both its genes from one of the parents.
+     */
+    private int[] crossover( Candidate first, Candidate second ){
+        int[] genes = new int[2 * sections];
+        for( int section = 0; section < sections; ++section ){
+            Candidate parent = random.nextBoolean() ? first : second;
+            genes[section] = parent.genes[section];
+            genes[sections + section] = parent.genes[sections + section];
+        }
+        return genes;
+    }
+
+    /**
+     * Moves every gene with probability of one per section by a few levels, within limits of its kind.
+     */
+    private void mutate( int[] genes ){
+        for( int gene = 0; gene < genes.length; ++gene ){
+            if( random.nextInt( sections ) != 0 )
+                continue;
+            int limit = gene < sections ? MAX_SPEED_LEVEL : MAX_OFFSET_LEVEL;
+            int change = 1 + random.nextInt( MAX_MUTATION );
+            genes[gene] = Math.max( -limit, Math.min( limit, genes[gene] + ( random.nextBoolean() ? change : -change ) ) );
+        }
+    }
+
+    /**
+     * Orders lap times from the fastest, with unfinished laps at the end.
+     */
+    private static int compareLapTimes( long a, long b ){
+        if( a < 0 || b < 0 )
+            return Boolean.compare( a < 0, b < 0 );
+        return Long.compare( a, b );
+    }
+
+    /**
+     * Returns number of evaluated generations.
+     *
+     * @return  number of generations
+     */
+    public int getGeneration(){
+        return generation;
+    }
+
+    /**
+     * Returns the best lap time of all evaluated generations.
+     *
+     * @return  lap time in milliseconds, or -1 when no candidate finished a lap
+     */
+    public long getBestLapTime(){
+        return bestLapTime;
+    }
+
+    /**
+     * Returns racing line of the fastest candidate of all evaluated generations.
+     *
+     * @return  racing line, or null when no candidate finished a lap
+     */
+    public RacingLine getBestLine(){
+        return best == null ? null : buildLine( best );
+    }
+
+    /**
+     * Returns number of laps driven, that is candidates not found in cache.
+     *
+     * @return  number of evaluations
+     */
+    public int getEvaluationCount(){
+        return evaluations;
+    }
+
+    /**
+     * Returns number of candidates, whose lap time was found in cache.
+     *
+     * @return  number of cache hits
+     */
+    public int getCacheHitCount(){
+        return cacheHits;
+    }
+
+    /**
+     * Shuts down worker threads.
+     */
+    @Override
+    public void close(){
+        pool.shutdown();
+    }
+
+    /**
+     * Optimizes lap of default car on a track, reporting every generation, and writes the fastest racing line to a file.
+     *
+     * @param args          track definition (*.track) or compiled track, number of generations and optional output file
+     * @throws IOException  when track cannot be read or output cannot be written
+     */
+    public static void main( String[] args ) throws IOException {
+        if( args.length < 2 || args.length > 3 ){
+            System.err.println( "Usage: LapOptimizer <track> <generations> [output file]" );
+            System.exit( 1 );
+        }
+        Track track = TrackCompiler.load( args[0] );
+        FrictionGrid friction = FrictionGrid.load( track, Runnable::run );
+        int generations = Integer.parseInt( args[1] );
+
+        try( LapOptimizer optimizer = new LapOptimizer( track, friction, RacingLine.compute( track, friction ), 1 ) ){
+            long start = System.nanoTime();
+            for( int i = 0; i < generations; ++i ){
+                long generationBest = optimizer.nextGeneration();
+                double elapsed = ( System.nanoTime() - start ) / 1e9;
+                System.out.println( String.format( Locale.ROOT, "Generation %d: best lap %.3f s, overall %.3f s, "
+                        + "%d laps driven, %d cache hits, %.2f generations per second",
+                        optimizer.getGeneration(), generationBest / 1000.0, optimizer.getBestLapTime() / 1000.0,
+                        optimizer.getEvaluationCount(), optimizer.getCacheHitCount(), optimizer.getGeneration() / elapsed ) );
+            }
+
+            RacingLine line = optimizer.getBestLine();
+            if( args.length == 3 && line != null ){
+                line.save( new File( args[2] ) );
+                System.out.println( "Racing line of the best lap written to " + args[2] );
+            }
+        }
+    }
+
+    /**
+     * Genes of a candidate: speed levels of all sections followed by offset levels of all sections.
+     * Hash is computed once, as candidates are looked up in cache many times.
+     */
+    private static final class Candidate {
+        private final int[] genes;
+        private final int hash;
+
+        Candidate( int[] genes ){
+            this.genes = genes;
+            hash = Arrays.hashCode( genes );
+        }
+
+        @Override
+        public int hashCode(){
+            return hash;
+        }
+
+        @Override
+        public boolean equals( Object other ){
+            return other instanceof Candidate && ( (Candidate) other ).hash == hash
+                    && Arrays.equals( ( (Candidate) other ).genes, genes );
+        }
+    }
+
+    /**
+     * Result of driving a candidate: lap time and number of ticks of the race until the lap was finished or given up.
+     */
+    private static class Lap {
+        private final long time;
+        private final long ticks;
+
+        Lap( long time, long ticks ){
+            this.time = time;
+            this.ticks = ticks;
+        }
+
+        /**
+         * Returns lap time as driving the candidate again with given limit would give it.
+         *
+         * @param limit     maximal number of ticks of the race, not larger than the limit the lap was driven with
+         * @return          lap time in milliseconds, or -1 when the lap was not finished within the limit
+         */
+        long getTime( int limit ){
+            return ticks <= limit ? time : -1;
+        }
+    }
+
+    /**
+     * Drives laps of a range of candidates, splitting the range in halves down to single candidates.
+     */
+    private class EvaluationTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final List<Candidate> candidates;
+        private final Lap[] results;
+        private final int from;
+        private final int to;
+        private final int limit;
+
+        EvaluationTask( List<Candidate> candidates, Lap[] results, int from, int to, int limit ){
+            this.candidates = candidates;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+            this.limit = limit;
+        }
+
+        @Override
+        protected void compute(){
+            if( to - from <= 1 ){
+                for( int i = from; i < to; ++i )
+                    results[i] = driveLap( candidates.get( i ), limit );
+            } else {
+                int middle = ( from + to ) >>> 1;
+                invokeAll( new EvaluationTask( candidates, results, from, middle, limit ),
+                           new EvaluationTask( candidates, results, middle, to, limit ) );
+            }
+        }
+    }
+
+}
@@ -3,12 +3,17 @@ package szewoj.race2d.model;
 /**
  * Calculates lap times.
  * Uses -1 as time value to identify lack of it.
+ * Works on simulation time given with every crossing, so lap times do not depend on frame rate
+ * and crossings interpolated between ticks give times below tick resolution.
+ * Every backward crossing has to be made up by a forward crossing before checkpoints count again,
+ * so reversing over the start line and driving forward over it again does not finish a lap.
  */
 public class LapTimer {
     private final int MAX_CHECKPOINT;
-    private long currentLapStart;
+    private double currentLapStart;
     private int activatedCheckpoint;
     private boolean ready;
+    private int reversedCrossings;
     private long finishedLapTime;
 
     /**
@@ -23,39 +28,48 @@ public class LapTimer {
         currentLapStart = 0;
         activatedCheckpoint = -1;
         ready = false;
+        reversedCrossings = 0;
         finishedLapTime = 0;
     }
 
+    private static long toMillis( double seconds ){
+        return Math.round( seconds * 1000 );
+    }
+
     /**
      * Calculates current lap time if it has already started.
      *
-     * @return  lap time in milliseconds
+     * @param time  current simulation time in seconds
+     * @return      lap time in milliseconds
      */
-    public long getCurrentLapTime(){
-        if( activatedCheckpoint > -1 ){
-            long now = System.currentTimeMillis();
-            return now - currentLapStart;
-        }
+    public long getCurrentLapTime( double time ){
+        if( activatedCheckpoint > -1 )
+            return toMillis( time - currentLapStart );
         return -1;
     }
 
     /**
-     * Reacts to crossed checkpoint index. Ignores unknown indexes (they can be passed freely).
+     * Reacts to checkpoint index crossed forward. Ignores unknown indexes (they can be passed freely).
      * When start is crossed, if the lap previously started it readies the lap time value to be pulled.
      *
      * @param checkpointIndex   int in range 0 - MAX_CHECKPOINT
+     * @param time              simulation time of crossing in seconds
      */
-    public void checkpointCrossed( int checkpointIndex ){
+    public void checkpointCrossed( int checkpointIndex, double time ){
+        if( reversedCrossings > 0 ){
+            --reversedCrossings;
+            return;
+        }
         if( activatedCheckpoint < 0 & checkpointIndex == 0 ){
-            currentLapStart = System.currentTimeMillis();
-            activatedCheckpoint = 1;
+            currentLapStart = time;
+            activatedCheckpoint = 1 % MAX_CHECKPOINT;
         } else if( activatedCheckpoint == checkpointIndex ) {
             if( activatedCheckpoint == 0 ){
-                long now = System.currentTimeMillis();
-                finishedLapTime = now - currentLapStart;
+                finishedLapTime = toMillis( time - currentLapStart );
                 ready = true;
-                currentLapStart = System.currentTimeMillis();
-                ++activatedCheckpoint;
+                currentLapStart = time;
+                //with start line as the only checkpoint the next lap waits on start line again
+                activatedCheckpoint = 1 % MAX_CHECKPOINT;
             } else {
                 ++activatedCheckpoint;
                 activatedCheckpoint %= MAX_CHECKPOINT;
@@ -64,6 +78,13 @@ public class LapTimer {
         }
     }
 
+    /**
+     * Reacts to a checkpoint crossed backward, which the next forward crossing makes up for instead of being counted.
+     */
+    public void checkpointReversed(){
+        ++reversedCrossings;
+    }
+
     /**
      * Returns calculated finished lap time. The return value is credible ONLY when it was pulled while ready.
      *
@@ -0,0 +1,70 @@
+package szewoj.race2d.model;
+
+/**
+ * Original tire model of the game.
+ * Lateral force is proportional to tangent of slip angle and reduced by longitudinal slip,
+ * longitudinal force is proportional to slip ratio. Slip outside of linear range is pulled back below the limit.
+ */
+public class LinearTireCompound implements TireCompound {
+    public static final LinearTireCompound INSTANCE = new LinearTireCompound();
+    private static final double STIFFNESS = 24;
+
+    /**
+     * Slip angle over 0.08 radians is set to 0.07 radians.
+     *
+     * @param slipAngle     slip angle in radians
+     * @return              limited slip angle in radians
+     */
+    @Override
+    public double limitSlipAngle( double slipAngle ){
+        if( slipAngle > 0.08 )
+            return 0.07;
+        if( slipAngle < -0.08 )
+            return -0.07;
+        return slipAngle;
+    }
+
+    /**
+     * Slip ratio over 0.06 is set to 0.05.
+     *
+     * @param slipRatio     longitudinal slip ratio
+     * @return              limited slip ratio
+     */
+    @Override
+    public double limitSlipRatio( double slipRatio ){
+        if( slipRatio > 0.06 )
+            return 0.05;
+        if( slipRatio < -0.06 )
+            return -0.05;
+        return slipRatio;
+    }
+
+    @Override
+    public double getMaxSlipAngle(){
+        return 0.08;
+    }
+
+    @Override
+    public double getMaxSlipRatio(){
+        return 0.06;
+    }
+
+    /**
+     * Lateral force is reduced by longitudinal slip.
+     * Simulates understeer when braking and oversteer when accelerating.
+     *
+     * @param slipAngle     limited slip angle in radians
+     * @param slipRatio     limited slip ratio
+     * @return              lateral force per newton of load
+     */
+    @Override
+    public double getLateralCoefficient( double slipAngle, double slipRatio ){
+        return STIFFNESS * Math.tan( slipAngle ) * (1.0 / (1 + 10 * Math.abs( slipRatio )));
+    }
+
+    @Override
+    public double getLongitudinalCoefficient( double slipAngle, double slipRatio ){
+        return STIFFNESS * slipRatio;
+    }
+
+}
@@ -0,0 +1,191 @@
+package szewoj.race2d.model;
+
+/**
+ * Rectangle rotated in world coordinate system, used as collision shape of a car.
+ * Local axis x points to the right side of the car and local axis y points backwards,
+ * like axes of car sprite, so local point (lx, ly) lies in world point
+ * (centreX + cos * lx - sin * ly, centreY + sin * lx + cos * ly).
+ */
+public class OrientedBox {
+    private double centreX;
+    private double centreY;
+    private double cos = 1;
+    private double sin;
+    private double halfWidth;
+    private double halfLength;
+
+    /**
+     * Sets pose and size of the box.
+     *
+     * @param x             world x coordinate of reference point in metres
+     * @param y             world y coordinate of reference point in metres
+     * @param heading       rotation of the box in radians
+     * @param offsetX       local x coordinate of centre of the box relative to reference point
+     * @param offsetY       local y coordinate of centre of the box relative to reference point
+     * @param halfWidth     half of size along local axis x
+     * @param halfLength    half of size along local axis y
+     */
+    public void set( double x, double y, double heading, double offsetX, double offsetY, double halfWidth, double halfLength ){
+        cos = Math.cos( heading );
+        sin = Math.sin( heading );
+        centreX = x + cos * offsetX - sin * offsetY;
+        centreY = y + sin * offsetX + cos * offsetY;
+        this.halfWidth = halfWidth;
+        this.halfLength = halfLength;
+    }
+
+    /**
+     * Sets the box to collision box of a car in given pose.
+     *
+     * @param x         world x coordinate of centre of gravity in metres
+     * @param y         world y coordinate of centre of gravity in metres
+     * @param heading   heading of the car in radians
+     */
+    public void setCar( double x, double y, double heading ){
+        set( x, y, heading, Vehicle.HITBOX_OFFSET_X, Vehicle.HITBOX_OFFSET_Y, Vehicle.HITBOX_HALF_WIDTH, Vehicle.HITBOX_HALF_LENGTH );
+    }
+
+    /**
+     * Converts world point to local x coordinate.
+     *
+     * @param x     world x coordinate
+     * @param y     world y coordinate
+     * @return      local x coordinate
+     */
+    public double toLocalX( double x, double y ){
+        return cos * (x - centreX) + sin * (y - centreY);
+    }
+
+    /**
+     * Converts world point to local y coordinate.
+     *
+     * @param x     world x coordinate
+     * @param y     world y coordinate
+     * @return      local y coordinate
+     */
+    public double toLocalY( double x, double y ){
+        return -sin * (x - centreX) + cos * (y - centreY);
+    }
+
+    /**
+     * Tests this box against another one with separating axis test on axes of both boxes.
+     * Normal of contact points from the other box towards this one, and contact point lies on the axis of the smallest overlap,
+     * in the middle of overlap of boxes. Segment index of contact is not changed.
+     *
+     * @param other     the other box
+     * @param out       Contact to be filled if boxes collide
+     * @return          true if boxes collide
+     */
+    public boolean collide( OrientedBox other, Contact out ){
+        double dx = other.centreX - centreX;
+        double dy = other.centreY - centreY;
+        double depth = Double.POSITIVE_INFINITY;
+        double normalX = 0;
+        double normalY = 0;
+        double radius = 0;
+
+        for( int axis = 0; axis < 4; ++axis ){
+            OrientedBox owner = axis < 2 ? this : other;
+            double axisX = ( axis & 1 ) == 0 ? owner.cos : -owner.sin;
+            double axisY = ( axis & 1 ) == 0 ? owner.sin : owner.cos;
+            double thisRadius = getRadius( axisX, axisY );
+            double distance = dx * axisX + dy * axisY;
+            double overlap = thisRadius + other.getRadius( axisX, axisY ) - Math.abs( distance );
+            if( overlap <= 0 )
+                return false;
+            if( overlap < depth ){
+                depth = overlap;
+                normalX = distance > 0 ? -axisX : axisX;
+                normalY = distance > 0 ? -axisY : axisY;
+                radius = thisRadius;
+            }
+        }
+
+        out.x = centreX - normalX * ( radius - depth / 2 );
+        out.y = centreY - normalY * ( radius - depth / 2 );
+        out.normalX = normalX;
+        out.normalY = normalY;
+        out.depth = depth;
+        return true;
+    }
+
+    /**
+     * Returns half of extent of projection of the box on a unit axis.
+     */
+    private double getRadius( double axisX, double axisY ){
+        return halfWidth * Math.abs( cos * axisX + sin * axisY ) + halfLength * Math.abs( -sin * axisX + cos * axisY );
+    }
+
+    /**
+     * Returns half of extent of axis aligned bounding box along world axis x.
+     *
+     * @return  half of width of bounding box
+     */
+    public double getExtentX(){
+        return Math.abs( cos ) * halfWidth + Math.abs( sin ) * halfLength;
+    }
+
+    /**
+     * Returns half of extent of axis aligned bounding box along world axis y.
+     *
+     * @return  half of height of bounding box
+     */
+    public double getExtentY(){
+        return Math.abs( sin ) * halfWidth + Math.abs( cos ) * halfLength;
+    }
+
+    /**
+     * Returns world x coordinate of centre.
+     *
+     * @return  x coordinate in metres
+     */
+    public double getCentreX(){
+        return centreX;
+    }
+
+    /**
+     * Returns world y coordinate of centre.
+     *
+     * @return  y coordinate in metres
+     */
+    public double getCentreY(){
+        return centreY;
+    }
+
+    /**
+     * Returns cosine of rotation of the box.
+     *
+     * @return  cosine of rotation
+     */
+    public double getCos(){
+        return cos;
+    }
+
+    /**
+     * Returns sine of rotation of the box.
+     *
+     * @return  sine of rotation
+     */
+    public double getSin(){
+        return sin;
+    }
+
+    /**
+     * Returns half of size along local axis x.
+     *
+     * @return  half of width in metres
+     */
+    public double getHalfWidth(){
+        return halfWidth;
+    }
+
+    /**
+     * Returns half of size along local axis y.
+     *
+     * @return  half of length in metres
+     */
+    public double getHalfLength(){
+        return halfLength;
+    }
+
+}
@@ -0,0 +1,161 @@
+package szewoj.race2d.model;
+
+/**
+ * Tire model using simplified Pacejka magic formula: D * sin( C * atan( B*x - E*( B*x - atan(B*x) ) ) ).
+ * Combined slip is handled by normalising slip angle and slip ratio by their peaks
+ * and sharing resultant slip between both directions.
+ * Evaluation is expensive, so the compound should be used through TireForceTable.
+ */
+public class PacejkaTireCompound implements TireCompound {
+    private final double lateralB;
+    private final double lateralC;
+    private final double lateralD;
+    private final double lateralE;
+    private final double longitudinalB;
+    private final double longitudinalC;
+    private final double longitudinalD;
+    private final double longitudinalE;
+    private final double peakSlipAngle;
+    private final double peakSlipRatio;
+    private final double maxSlipAngle;
+    private final double maxSlipRatio;
+
+    /**
+     * Constructor of PacejkaTireCompound with coefficients of road tire.
+     * Stiffness at zero slip and peak forces are close to LinearTireCompound.
+     */
+    public PacejkaTireCompound(){
+        this( 8.8, 1.6, 1.7, 0, 12.1, 1.65, 1.2, 0 );
+    }
+
+    /**
+     * Constructor of PacejkaTireCompound.
+     *
+     * @param lateralB          stiffness factor of lateral curve
+     * @param lateralC          shape factor of lateral curve
+     * @param lateralD          peak value of lateral curve
+     * @param lateralE          curvature factor of lateral curve
+     * @param longitudinalB     stiffness factor of longitudinal curve
+     * @param longitudinalC     shape factor of longitudinal curve
+     * @param longitudinalD     peak value of longitudinal curve
+     * @param longitudinalE     curvature factor of longitudinal curve
+     */
+    public PacejkaTireCompound( double lateralB, double lateralC, double lateralD, double lateralE,
+                                double longitudinalB, double longitudinalC, double longitudinalD, double longitudinalE ){
+        this.lateralB = lateralB;
+        this.lateralC = lateralC;
+        this.lateralD = lateralD;
+        this.lateralE = lateralE;
+        this.longitudinalB = longitudinalB;
+        this.longitudinalC = longitudinalC;
+        this.longitudinalD = longitudinalD;
+        this.longitudinalE = longitudinalE;
+
+        peakSlipAngle = findPeak( lateralB, lateralC, lateralE );
+        peakSlipRatio = findPeak( longitudinalB, longitudinalC, longitudinalE );
+        maxSlipAngle = 4 * peakSlipAngle;
+        maxSlipRatio = 4 * peakSlipRatio;
+    }
+
+    /**
+     * Evaluates magic formula.
+     */
+    private static double magicFormula( double b, double c, double d, double e, double x ){
+        double bx = b * x;
+        return d * Math.sin( c * Math.atan( bx - e * (bx - Math.atan( bx )) ) );
+    }
+
+    /**
+     * Finds argument of maximum of magic formula by scanning its rising part.
+     */
+    private static double findPeak( double b, double c, double e ){
+        double peak = 0.001;
+        double peakValue = magicFormula( b, c, 1, e, peak );
+        for( double x = 0.002; x < 2; x += 0.001 ){
+            double value = magicFormula( b, c, 1, e, x );
+            if( value < peakValue )
+                break;
+            peak = x;
+            peakValue = value;
+        }
+        return peak;
+    }
+
+    /**
+     * Slip angle is limited to four times slip angle of peak lateral force.
+     *
+     * @param slipAngle     slip angle in radians
+     * @return              limited slip angle in radians
+     */
+    @Override
+    public double limitSlipAngle( double slipAngle ){
+        return Math.max( -maxSlipAngle, Math.min( maxSlipAngle, slipAngle ) );
+    }
+
+    /**
+     * Slip ratio is limited to four times slip ratio of peak longitudinal force.
+     *
+     * @param slipRatio     longitudinal slip ratio
+     * @return              limited slip ratio
+     */
+    @Override
+    public double limitSlipRatio( double slipRatio ){
+        return Math.max( -maxSlipRatio, Math.min( maxSlipRatio, slipRatio ) );
+    }
+
+    @Override
+    public double getMaxSlipAngle(){
+        return maxSlipAngle;
+    }
+
+    @Override
+    public double getMaxSlipRatio(){
+        return maxSlipRatio;
+    }
+
+    /**
+     * Returns combined slip normalised by peak slips.
+     */
+    private double getCombinedSlip( double slipAngle, double slipRatio ){
+        double angle = slipAngle / peakSlipAngle;
+        double ratio = slipRatio / peakSlipRatio;
+        return Math.sqrt( angle*angle + ratio*ratio );
+    }
+
+    @Override
+    public double getLateralCoefficient( double slipAngle, double slipRatio ){
+        double combined = getCombinedSlip( slipAngle, slipRatio );
+        if( combined == 0 )
+            return 0;
+        double share = slipAngle / peakSlipAngle / combined;
+        return share * magicFormula( lateralB, lateralC, lateralD, lateralE, combined * peakSlipAngle );
+    }
+
+    @Override
+    public double getLongitudinalCoefficient( double slipAngle, double slipRatio ){
+        double combined = getCombinedSlip( slipAngle, slipRatio );
+        if( combined == 0 )
+            return 0;
+        double share = slipRatio / peakSlipRatio / combined;
+        return share * magicFormula( longitudinalB, longitudinalC, longitudinalD, longitudinalE, combined * peakSlipRatio );
+    }
+
+    /**
+     * Returns slip angle of peak lateral force.
+     *
+     * @return  slip angle in radians
+     */
+    public double getPeakSlipAngle(){
+        return peakSlipAngle;
+    }
+
+    /**
+     * Returns slip ratio of peak longitudinal force.
+     *
+     * @return  slip ratio
+     */
+    public double getPeakSlipRatio(){
+        return peakSlipRatio;
+    }
+
+}
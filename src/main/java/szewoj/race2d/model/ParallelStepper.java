@@ -0,0 +1,161 @@
+package szewoj.race2d.model;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Steps many vehicles using all cores of the machine.
+ * Cars are split into contiguous chunks processed by workers of own ForkJoinPool.
+ * Every tick ends with a barrier, so between ticks all cars see complete state of each other.
+ */
+public class ParallelStepper implements AutoCloseable {
+    private static final int CHUNKS_PER_WORKER = 4;     //more chunks than workers balances uneven branches
+    private static final int CHUNK_ALIGNMENT = 16;      //keeps chunk borders away from shared cache lines
+    private final ForkJoinPool pool;
+    private final int parallelism;
+    private final TickTask tickTask;
+    private VehicleBatch batch;
+    private Vehicle[] vehicles;
+    private ChunkTask[] chunks;
+
+    /**
+     * Constructor of ParallelStepper using one worker per available processor.
+     */
+    public ParallelStepper(){
+        this( Runtime.getRuntime().availableProcessors() );
+    }
+
+    /**
+     * Constructor of ParallelStepper.
+     *
+     * @param threads   number of worker threads
+     */
+    public ParallelStepper( int threads ){
+        if( threads <= 0 )
+            throw new IllegalArgumentException( "Number of threads has to be positive: " + threads );
+
+        parallelism = threads;
+        pool = new ForkJoinPool( threads );
+        tickTask = new TickTask();
+        chunks = new ChunkTask[0];
+    }
+
+    /**
+     * Returns number of worker threads.
+     *
+     * @return  number of worker threads
+     */
+    public int getParallelism(){
+        return parallelism;
+    }
+
+    /**
+     * Simulates one tick of every car in batch. Returns when all cars finished the tick.
+     *
+     * @param batch     simulated cars
+     */
+    public void step( VehicleBatch batch ){
+        this.batch = batch;
+        this.vehicles = null;
+        prepareChunks( batch.size() );
+        invokeTick();
+    }
+
+    /**
+     * Simulates one tick of every vehicle. Returns when all vehicles finished the tick.
+     *
+     * @param vehicles  simulated cars
+     */
+    public void step( Vehicle[] vehicles ){
+        this.batch = null;
+        this.vehicles = vehicles;
+        prepareChunks( vehicles.length );
+        invokeTick();
+    }
+
+    /**
+     * Simulates given number of ticks of every car in batch.
+     * Callback is run on calling thread between ticks, when no worker modifies the batch.
+     *
+     * @param batch         simulated cars
+     * @param ticks         number of ticks
+     * @param betweenTicks  callback run after every tick, may be null
+     */
+    public void run( VehicleBatch batch, int ticks, Runnable betweenTicks ){
+        for( int tick = 0; tick < ticks; ++tick ){
+            step( batch );
+            if( betweenTicks != null )
+                betweenTicks.run();
+        }
+    }
+
+    /**
+     * Shuts down worker threads.
+     */
+    @Override
+    public void close(){
+        pool.shutdown();
+    }
+
+    /**
+     * Splits range of cars into chunks. Chunks are reused as long as number of cars does not change.
+     *
+     * @param size  number of cars
+     */
+    private void prepareChunks( int size ){
+        int chunkSize = (size + parallelism * CHUNKS_PER_WORKER - 1) / (parallelism * CHUNKS_PER_WORKER);
+        chunkSize = Math.max( CHUNK_ALIGNMENT, (chunkSize + CHUNK_ALIGNMENT - 1) / CHUNK_ALIGNMENT * CHUNK_ALIGNMENT );
+        int count = (size + chunkSize - 1) / chunkSize;
+
+        if( chunks.length == count && (count == 0 || chunks[count - 1].to == size) )
+            return;
+
+        chunks = new ChunkTask[count];
+        for( int i = 0; i < count; ++i )
+            chunks[i] = new ChunkTask( i * chunkSize, Math.min( size, (i + 1) * chunkSize ) );
+    }
+
+    private void invokeTick(){
+        tickTask.reinitialize();
+        for( ChunkTask chunk : chunks )
+            chunk.reinitialize();
+        pool.invoke( tickTask );
+    }
+
+    /**
+     * Forks all chunks and waits for them, which makes a barrier at the end of the tick.
+     */
+    private class TickTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected void compute(){
+            invokeAll( chunks );
+        }
+    }
+
+    /**
+     * Steps contiguous range of cars.
+     */
+    private class ChunkTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int from;
+        private final int to;
+
+        ChunkTask( int from, int to ){
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute(){
+            if( batch != null ){
+                batch.step( from, to );
+            } else {
+                for( int i = from; i < to; ++i )
+                    vehicles[i].step();
+            }
+        }
+    }
+
+}
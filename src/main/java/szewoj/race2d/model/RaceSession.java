@@ -0,0 +1,466 @@
+package szewoj.race2d.model;
+
+import szewoj.race2d.utilities.TrigBackend;
+import szewoj.race2d.utilities.Vector2;
+
+import java.util.Arrays;
+
+/**
+ * Race of many cars on one track, simulated in fixed ticks without view.
+ * Every tick each car gets friction under its wheels and its inputs, from input mask or from its AiDriver, and is stepped, then collision boxes of all cars
+ * are entered into SpatialHash, which finds pairs of cars close to each other, tested as oriented boxes.
+ * Each car responds to its deepest contact, with barrier or another car, through Vehicle.addCollision,
+ * so the cost of a tick grows linearly with number of cars. Finally checkpoints crossed by front of every car
+ * are passed to its LapTimer.
+ * Cars are placed on a starting grid behind spawn point of the track, the first car at the spawn point.
+ */
+public class RaceSession {
+    public static final double CAR_CELL_SIZE = 10;                  //slightly more than length of a car
+    private static final double[] GRID_COLUMNS = { 0, -5, 5 };      //lateral offsets of grid slots in metres
+    private static final double GRID_ROW_SPACING = 12;
+    private static final double GRID_STAGGER = 4;
+
+    private final Track track;
+    private final FrictionGrid friction;
+    private final BarrierIndex barriers;
+    private final CheckpointIndex checkpoints;
+    private final double timeStep;
+    private final SpatialHash hash;
+    private final Contact contact;
+    private final Vector2 collision;
+    private final double[] wheelFriction;
+    private final int[] crossedCheckpoints;
+    private final double[] crossingFractions;
+    private final boolean[] crossingForward;
+    private TrigBackend trig;
+    private long ticks;
+    private int pairCount;
+
+    private int count;
+    private Vehicle[] vehicles;
+    private VehicleState[] states;
+    private VehicleState[] previousStates;
+    private OrientedBox[] boxes;
+    private LapTimer[] timers;
+    private AiDriver[] drivers;
+    private int[] inputMasks;
+    private double[] frontFriction;
+    private double[] rearFriction;
+    private double[] collisionX;        //vector from contact point to centre of collision box, in car sprite coordinates
+    private double[] collisionY;
+    private double[] contactDepth;
+    private boolean[] inPitZone;
+    private int[] completedLaps;
+    private long[] lastLapTime;
+    private long[] bestLapTime;
+
+    /**
+     * Constructor of RaceSession.
+     *
+     * @param track     compiled track
+     * @param friction  friction grid of track, with world transform of the track
+     * @param timeStep  time of one tick in seconds
+     * @param capacity  expected number of cars
+     */
+    public RaceSession( Track track, FrictionGrid friction, double timeStep, int capacity ){
+        this.track = track;
+        this.friction = friction;
+        this.timeStep = timeStep;
+        //own copies of grids, so sessions of one track can run on different threads
+        barriers = new BarrierIndex( track.getBarriers().copy() );
+        checkpoints = new CheckpointIndex( track.getCheckpoints().copy() );
+        hash = new SpatialHash( CAR_CELL_SIZE, capacity );
+        contact = new Contact();
+        collision = new Vector2();
+        wheelFriction = new double[FrictionGrid.WHEEL_COUNT];
+        crossedCheckpoints = new int[checkpoints.getCount()];
+        crossingFractions = new double[checkpoints.getCount()];
+        crossingForward = new boolean[checkpoints.getCount()];
+        trig = TrigBackend.JAVA;
+        allocate( Math.max( capacity, 1 ) );
+    }
+
+    private void allocate( int capacity ){
+        vehicles = Arrays.copyOf( vehicles == null ? new Vehicle[0] : vehicles, capacity );
+        states = Arrays.copyOf( states == null ? new VehicleState[0] : states, capacity );
+        previousStates = Arrays.copyOf( previousStates == null ? new VehicleState[0] : previousStates, capacity );
+        boxes = Arrays.copyOf( boxes == null ? new OrientedBox[0] : boxes, capacity );
+        timers = Arrays.copyOf( timers == null ? new LapTimer[0] : timers, capacity );
+        drivers = Arrays.copyOf( drivers == null ? new AiDriver[0] : drivers, capacity );
+        inputMasks = Arrays.copyOf( inputMasks == null ? new int[0] : inputMasks, capacity );
+        frontFriction = Arrays.copyOf( frontFriction == null ? new double[0] : frontFriction, capacity );
+        rearFriction = Arrays.copyOf( rearFriction == null ? new double[0] : rearFriction, capacity );
+        collisionX = Arrays.copyOf( collisionX == null ? new double[0] : collisionX, capacity );
+        collisionY = Arrays.copyOf( collisionY == null ? new double[0] : collisionY, capacity );
+        contactDepth = Arrays.copyOf( contactDepth == null ? new double[0] : contactDepth, capacity );
+        inPitZone = Arrays.copyOf( inPitZone == null ? new boolean[0] : inPitZone, capacity );
+        completedLaps = Arrays.copyOf( completedLaps == null ? new int[0] : completedLaps, capacity );
+        lastLapTime = Arrays.copyOf( lastLapTime == null ? new long[0] : lastLapTime, capacity );
+        bestLapTime = Arrays.copyOf( bestLapTime == null ? new long[0] : bestLapTime, capacity );
+    }
+
+    /**
+     * Adds car with default engine in the next slot of starting grid.
+     *
+     * @return  index of the car
+     */
+    public int addCar(){
+        return addCar( new Vehicle( timeStep ) );
+    }
+
+    /**
+     * Adds car in the next slot of starting grid.
+     *
+     * @param vehicle   car simulated with time step of the session
+     * @return          index of the car
+     */
+    public int addCar( Vehicle vehicle ){
+        double[] slot = getGridSlot( count, new double[2] );
+        vehicle.setPose( slot[0], slot[1], 0 );
+        vehicle.setTrigBackend( trig );
+        if( count == vehicles.length )
+            allocate( 2 * count );
+
+        int car = count++;
+        vehicles[car] = vehicle;
+        states[car] = vehicle.getState( new VehicleState() );
+        previousStates[car] = new VehicleState();
+        previousStates[car].copy( states[car] );
+        boxes[car] = new OrientedBox();
+        timers[car] = new LapTimer( checkpoints.getCount() );
+        lastLapTime[car] = -1;
+        bestLapTime[car] = -1;
+        return car;
+    }
+
+    /**
+     * Computes world position of a slot of starting grid. Slots are in rows of three behind spawn point,
+     * with the first slot at spawn point and the following ones staggered.
+     *
+     * @param position  position on the grid, from 0
+     * @param out       array of length 2 to be filled with x and y coordinate in metres
+     * @return          out parameter
+     */
+    public static double[] getGridSlot( int position, double[] out ){
+        int column = position % GRID_COLUMNS.length;
+        out[0] = GRID_COLUMNS[column];
+        out[1] = position / GRID_COLUMNS.length * GRID_ROW_SPACING + column * GRID_STAGGER;
+        return out;
+    }
+
+    /**
+     * Simulates one tick of every car.
+     */
+    public void tick(){
+        for( int car = 0; car < count; ++car ){
+            VehicleState state = states[car];
+            previousStates[car].copy( state );
+
+            //every axle gets mean friction under contact patches of its wheels
+            friction.sampleWheels( state.getX(), state.getY(), state.getHeading(), wheelFriction );
+            frontFriction[car] = ( wheelFriction[FrictionGrid.FRONT_LEFT] + wheelFriction[FrictionGrid.FRONT_RIGHT] ) / 2;
+            rearFriction[car] = ( wheelFriction[FrictionGrid.REAR_LEFT] + wheelFriction[FrictionGrid.REAR_RIGHT] ) / 2;
+            Vehicle vehicle = vehicles[car];
+            vehicle.setFrontFriction( frontFriction[car] );
+            vehicle.setRearFriction( rearFriction[car] );
+            if( drivers[car] != null )
+                drivers[car].drive( state, vehicle );
+            else
+                vehicle.updateInputs( inputMasks[car] );
+            vehicle.step( state );
+        }
+
+        detectCollisions();
+        for( int car = 0; car < count; ++car ){
+            collision.setX( collisionX[car] );
+            collision.setY( collisionY[car] );
+            vehicles[car].addCollision( collision );
+        }
+
+        for( int car = 0; car < count; ++car )
+            detectCrossings( car );
+        ++ticks;
+    }
+
+    /**
+     * Finds the deepest contact of every car with barriers and other cars, and tests cars against pit zones.
+     */
+    private void detectCollisions(){
+        hash.clear();
+        for( int car = 0; car < count; ++car ){
+            OrientedBox box = boxes[car];
+            VehicleState state = states[car];
+            box.setCar( state.getX(), state.getY(), state.getHeading() );
+            double extentX = box.getExtentX();
+            double extentY = box.getExtentY();
+            hash.insert( box.getCentreX() - extentX, box.getCentreY() - extentY, box.getCentreX() + extentX, box.getCentreY() + extentY );
+
+            contactDepth[car] = 0;
+            collisionX[car] = 0;
+            collisionY[car] = 0;
+            if( barriers.collide( box, contact ) )
+                setContact( car, contact.getX(), contact.getY(), contact.getDepth() );
+
+            inPitZone[car] = false;
+            for( int zone = 0; zone < track.getPitZoneCount() && !inPitZone[car]; ++zone )
+                inPitZone[car] = BarrierIndex.collide( box, track.getPitZone( zone, 0 ), track.getPitZone( zone, 1 ),
+                        track.getPitZone( zone, 2 ), track.getPitZone( zone, 3 ), track.getPitZone( zone, 4 ), contact );
+        }
+
+        pairCount = hash.findPairs();
+        for( int pair = 0; pair < pairCount; ++pair ){
+            int first = hash.getPairFirst( pair );
+            int second = hash.getPairSecond( pair );
+            if( boxes[first].collide( boxes[second], contact ) ){
+                //contact point lies between the cars, so the same point pushes both of them apart
+                if( contact.getDepth() > contactDepth[first] )
+                    setContact( first, contact.getX(), contact.getY(), contact.getDepth() );
+                if( contact.getDepth() > contactDepth[second] )
+                    setContact( second, contact.getX(), contact.getY(), contact.getDepth() );
+            }
+        }
+    }
+
+    private void setContact( int car, double x, double y, double depth ){
+        OrientedBox box = boxes[car];
+        contactDepth[car] = depth;
+        collisionX[car] = -box.toLocalX( x, y ) * Vehicle.METER_TO_PIXEL_RATIO;
+        collisionY[car] = -box.toLocalY( x, y ) * Vehicle.METER_TO_PIXEL_RATIO;
+    }
+
+    /**
+     * Passes checkpoints crossed by front of the car during the last tick to its LapTimer,
+     * with time of crossing interpolated between the previous and current pose.
+     * Backward crossings are passed as such, so reversing over the start line does not finish a lap.
+     */
+    private void detectCrossings( int car ){
+        VehicleState previous = previousStates[car];
+        VehicleState state = states[car];
+        int crossings = checkpoints.findCrossings( getNoseX( previous ), getNoseY( previous ),
+                getNoseX( state ), getNoseY( state ), crossedCheckpoints, crossingFractions, crossingForward );
+
+        LapTimer timer = timers[car];
+        for( int i = 0; i < crossings; ++i ){
+            if( !crossingForward[i] ){
+                timer.checkpointReversed();
+                continue;
+            }
+            timer.checkpointCrossed( crossedCheckpoints[i], ( ticks + crossingFractions[i] ) * timeStep );
+            if( timer.isReady() ){
+                lastLapTime[car] = timer.pullFinishedLapTime();
+                if( bestLapTime[car] < 0 || lastLapTime[car] < bestLapTime[car] )
+                    bestLapTime[car] = lastLapTime[car];
+                ++completedLaps[car];
+            }
+        }
+    }
+
+    //middle of the front edge of collision box
+    private static double getNoseX( VehicleState state ){
+        double noseY = Vehicle.HITBOX_OFFSET_Y - Vehicle.HITBOX_HALF_LENGTH;
+        return state.getX() + Math.cos( state.getHeading() ) * Vehicle.HITBOX_OFFSET_X - Math.sin( state.getHeading() ) * noseY;
+    }
+
+    private static double getNoseY( VehicleState state ){
+        double noseY = Vehicle.HITBOX_OFFSET_Y - Vehicle.HITBOX_HALF_LENGTH;
+        return state.getY() + Math.sin( state.getHeading() ) * Vehicle.HITBOX_OFFSET_X + Math.cos( state.getHeading() ) * noseY;
+    }
+
+    /**
+     * Sets trigonometry backend of all cars, including cars added later.
+     *
+     * @param backend   trigonometry backend
+     */
+    public void setTrigBackend( TrigBackend backend ){
+        trig = backend;
+        for( int car = 0; car < count; ++car )
+            vehicles[car].setTrigBackend( backend );
+    }
+
+    /**
+     * Sets inputs of a car used by following ticks.
+     *
+     * @param car       index of car
+     * @param inputMask bit mask of pressed Vehicle.INPUT_ constants
+     */
+    public void setInputMask( int car, int inputMask ){
+        inputMasks[car] = inputMask;
+    }
+
+    /**
+     * Sets computer driver of a car, which replaces its input mask.
+     *
+     * @param car       index of car
+     * @param driver    driver of the car, or null to drive it with input mask
+     */
+    public void setDriver( int car, AiDriver driver ){
+        drivers[car] = driver;
+    }
+
+    /**
+     * Returns computer driver of a car.
+     *
+     * @param car   index of car
+     * @return      driver of the car, null if it is driven with input mask
+     */
+    public AiDriver getDriver( int car ){
+        return drivers[car];
+    }
+
+    /**
+     * Returns number of cars.
+     *
+     * @return  number of cars
+     */
+    public int getCarCount(){
+        return count;
+    }
+
+    /**
+     * Returns simulated car, for events like shifting and refuelling.
+     *
+     * @param car   index of car
+     * @return      simulated car
+     */
+    public Vehicle getVehicle( int car ){
+        return vehicles[car];
+    }
+
+    /**
+     * Returns state of a car after the last tick. Returned instance is owned by the session and overwritten by every tick.
+     *
+     * @param car   index of car
+     * @return      state of the car
+     */
+    public VehicleState getState( int car ){
+        return states[car];
+    }
+
+    /**
+     * Returns state of a car before the last tick, for interpolation of pose between ticks.
+     *
+     * @param car   index of car
+     * @return      previous state of the car
+     */
+    public VehicleState getPreviousState( int car ){
+        return previousStates[car];
+    }
+
+    /**
+     * Returns friction of front axle applied to a car in the last tick.
+     *
+     * @param car   index of car
+     * @return      mean friction under front wheels
+     */
+    public double getFrontFriction( int car ){
+        return frontFriction[car];
+    }
+
+    /**
+     * Returns friction of rear axle applied to a car in the last tick.
+     *
+     * @param car   index of car
+     * @return      mean friction under rear wheels
+     */
+    public double getRearFriction( int car ){
+        return rearFriction[car];
+    }
+
+    /**
+     * Returns x component of collision vector applied to a car in the last tick.
+     *
+     * @param car   index of car
+     * @return      x component of vector from contact point to centre of collision box in car sprite coordinates, 0 without collision
+     */
+    public double getCollisionX( int car ){
+        return collisionX[car];
+    }
+
+    /**
+     * Returns y component of collision vector applied to a car in the last tick.
+     *
+     * @param car   index of car
+     * @return      y component of vector from contact point to centre of collision box in car sprite coordinates, 0 without collision
+     */
+    public double getCollisionY( int car ){
+        return collisionY[car];
+    }
+
+    /**
+     * Informs whether a car was in a pit zone in the last tick.
+     *
+     * @param car   index of car
+     * @return      true if collision box of the car touched a pit zone
+     */
+    public boolean isInPitZone( int car ){
+        return inPitZone[car];
+    }
+
+    /**
+     * Returns current lap time of a car.
+     *
+     * @param car   index of car
+     * @return      lap time in milliseconds, -1 before crossing start line
+     */
+    public long getCurrentLapTime( int car ){
+        return timers[car].getCurrentLapTime( ticks * timeStep );
+    }
+
+    /**
+     * Returns number of laps completed by a car.
+     *
+     * @param car   index of car
+     * @return      number of laps
+     */
+    public int getCompletedLaps( int car ){
+        return completedLaps[car];
+    }
+
+    /**
+     * Returns time of the last completed lap of a car.
+     *
+     * @param car   index of car
+     * @return      lap time in milliseconds, -1 before the first lap
+     */
+    public long getLastLapTime( int car ){
+        return lastLapTime[car];
+    }
+
+    /**
+     * Returns time of the best lap of a car.
+     *
+     * @param car   index of car
+     * @return      lap time in milliseconds, -1 before the first lap
+     */
+    public long getBestLapTime( int car ){
+        return bestLapTime[car];
+    }
+
+    /**
+     * Returns number of pairs of cars found close to each other by broad phase in the last tick.
+     *
+     * @return  number of pairs tested as oriented boxes
+     */
+    public int getCandidatePairCount(){
+        return pairCount;
+    }
+
+    /**
+     * Returns number of simulated ticks.
+     *
+     * @return  number of ticks
+     */
+    public long getTicks(){
+        return ticks;
+    }
+
+    /**
+     * Getter of track property.
+     *
+     * @return  track of the session
+     */
+    public Track getTrack(){
+        return track;
+    }
+
+}
@@ -0,0 +1,464 @@
+package szewoj.race2d.model;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Closed racing line of a track with target speed in every point, precomputed once per track and followed by AiDriver.
+ * Corridor of the line is bounded by barriers and by edges of track surface, where friction falls below ROAD_FRICTION
+ * of friction at spawn point, so the line does not leave the road even when barriers are far from it.
+ * Centre line is traced from spawn point along the corridor, by steering towards the middle of free space ahead
+ * and re-centring every point between edges of the corridor on both sides, until the start line is crossed again.
+ * Racing line is then bent within the corridor to minimal curvature, by projected coordinate descent
+ * on squared second differences of points, each point moving only across the centre line.
+ * Target speed is limited by lateral acceleration in every point and by braking before slower points,
+ * both scaled by friction of track surface under the point. Acceleration is left to the engine.
+ * Points lie about POINT_SPACING apart, in driving direction, in world coordinates.
+ */
+public class RacingLine {
+    private static final int MAGIC = 0x5232524C;    //R2RL
+    private static final int VERSION = 1;
+
+    public static final double POINT_SPACING = 2;                 //metres
+    public static final double LATERAL_ACCELERATION = 14;         //metres per second squared, on friction 1.0
+    public static final double BRAKING_ACCELERATION = 9;
+    public static final double MAX_SPEED = 80;                    //metres per second
+    private static final double WALL_MARGIN = 1;                  //distance kept from barriers besides half width of the car
+    private static final double RAY_RANGE = 60;
+    private static final double ROAD_FRICTION = 0.9;              //fraction of friction at spawn point, below which surface is off the road
+    private static final double FRICTION_STEP = 0.5;              //distance between friction samples along a ray
+    private static final int FAN_RAYS = 15;                       //rays on every side of heading
+    private static final double FAN_ANGLE = Math.toRadians( 6 );  //angle between rays
+    private static final int MAX_POINTS = 100000;
+    private static final int SMOOTHING_ITERATIONS = 4000;
+
+    private final double[] x;
+    private final double[] y;
+    private final double[] speed;
+    private final double[] segments;      //distance from every point to the next one
+    private final double length;
+
+    /**
+     * Constructor of RacingLine.
+     *
+     * @param x         world x coordinates of points in driving direction
+     * @param y         world y coordinates of points
+     * @param speed     target speed in every point in metres per second
+     */
+    public RacingLine( double[] x, double[] y, double[] speed ){
+        if( x.length < 3 || y.length != x.length || speed.length != x.length )
+            throw new IllegalArgumentException( "Racing line needs at least three points with coordinates and speed" );
+        this.x = x.clone();
+        this.y = y.clone();
+        this.speed = speed.clone();
+        segments = new double[x.length];
+        double sum = 0;
+        for( int i = 0; i < x.length; ++i ){
+            int next = ( i + 1 ) % x.length;
+            segments[i] = Math.hypot( x[next] - x[i], y[next] - y[i] );
+            sum += segments[i];
+        }
+        length = sum;
+    }
+
+    /**
+     * Computes racing line of a track with default limits of acceleration.
+     *
+     * @param track     compiled track
+     * @param friction  friction grid of track, with world transform of the track
+     * @return          racing line
+     * @throws IllegalArgumentException when centre line does not lead back to the start line
+     */
+    public static RacingLine compute( Track track, FrictionGrid friction ){
+        return compute( track, friction, LATERAL_ACCELERATION, BRAKING_ACCELERATION );
+    }
+
+    /**
+     * Computes racing line of a track.
+     *
+     * @param track                 compiled track
+     * @param friction              friction grid of track, with world transform of the track
+     * @param lateralAcceleration   maximal lateral acceleration on friction 1.0 in metres per second squared
+     * @param brakingAcceleration   maximal deceleration on friction 1.0 in metres per second squared
+     * @return                      racing line
+     * @throws IllegalArgumentException when centre line does not lead back to the start line
+     */
+    public static RacingLine compute( Track track, FrictionGrid friction, double lateralAcceleration, double brakingAcceleration ){
+        Corridor corridor = new Corridor( track.getBarriers(), friction, ROAD_FRICTION * friction.getFriction( 0, 0 ) );
+        double[] centre = traceCentreLine( corridor, track.getCheckpoints() );
+        int count = centre.length / 2;
+
+        //normals pointing to the right of driving direction, and free space on both sides of centre line
+        double[] normals = new double[2 * count];
+        double[] minOffset = new double[count];
+        double[] maxOffset = new double[count];
+        double margin = Vehicle.HITBOX_HALF_WIDTH + WALL_MARGIN;
+        for( int i = 0; i < count; ++i ){
+            int previous = ( i + count - 1 ) % count;
+            int next = ( i + 1 ) % count;
+            double tangentX = centre[2*next] - centre[2*previous];
+            double tangentY = centre[2*next + 1] - centre[2*previous + 1];
+            double tangentLength = Math.hypot( tangentX, tangentY );
+            normals[2*i] = -tangentY / tangentLength;
+            normals[2*i + 1] = tangentX / tangentLength;
+            double right = corridor.cast( centre[2*i], centre[2*i + 1], normals[2*i], normals[2*i + 1], RAY_RANGE );
+            double left = corridor.cast( centre[2*i], centre[2*i + 1], -normals[2*i], -normals[2*i + 1], RAY_RANGE );
+            maxOffset[i] = Math.max( right - margin, 0 );
+            minOffset[i] = -Math.max( left - margin, 0 );
+        }
+
+        double[] offsets = new double[count];
+        double[] x = new double[count];
+        double[] y = new double[count];
+        for( int i = 0; i < count; ++i ){
+            x[i] = centre[2*i];
+            y[i] = centre[2*i + 1];
+        }
+        for( int iteration = 0; iteration < SMOOTHING_ITERATIONS; ++iteration ){
+            for( int i = 0; i < count; ++i ){
+                int p2 = ( i + count - 2 ) % count;
+                int p1 = ( i + count - 1 ) % count;
+                int n1 = ( i + 1 ) % count;
+                int n2 = ( i + 2 ) % count;
+                //minimum of squared second differences around the point, for fixed neighbours
+                double targetX = ( 4 * ( x[p1] + x[n1] ) - x[p2] - x[n2] ) / 6;
+                double targetY = ( 4 * ( y[p1] + y[n1] ) - y[p2] - y[n2] ) / 6;
+                double offset = ( targetX - centre[2*i] ) * normals[2*i] + ( targetY - centre[2*i + 1] ) * normals[2*i + 1];
+                offsets[i] = Math.min( Math.max( offset, minOffset[i] ), maxOffset[i] );
+                x[i] = centre[2*i] + offsets[i] * normals[2*i];
+                y[i] = centre[2*i + 1] + offsets[i] * normals[2*i + 1];
+            }
+        }
+
+        return new RacingLine( x, y, computeSpeeds( x, y, friction, lateralAcceleration, brakingAcceleration ) );
+    }
+
+    /**
+     * Traces centre line between barriers from spawn point, heading 0, until the start line is crossed for the second time.
+     * Returned points begin at the first crossing of the start line.
+     *
+     * @return  x and y coordinate of every point
+     */
+    private static double[] traceCentreLine( Corridor corridor, SegmentGrid checkpoints ){
+        double[] points = new double[256];
+        int count = 0;
+        int firstPoint = -1;
+        double directionX = 0;
+        double directionY = -1;
+        double[] position = { 0, 0 };
+        corridor.centre( position, directionX, directionY );
+
+        for( int step = 0; step < MAX_POINTS; ++step ){
+            if( 2 * count + 2 > points.length )
+                points = Arrays.copyOf( points, 2 * points.length );
+            points[2*count] = position[0];
+            points[2*count + 1] = position[1];
+            ++count;
+
+            //head to centroid of free space ahead, every ray weighted by area of its sector
+            double sumX = 0;
+            double sumY = 0;
+            double heading = Math.atan2( directionX, -directionY );
+            for( int ray = -FAN_RAYS; ray <= FAN_RAYS; ++ray ){
+                double rayX = Math.sin( heading + ray * FAN_ANGLE );
+                double rayY = -Math.cos( heading + ray * FAN_ANGLE );
+                double free = corridor.cast( position[0], position[1], rayX, rayY, RAY_RANGE );
+                sumX += rayX * free * free;
+                sumY += rayY * free * free;
+            }
+            double sum = Math.hypot( sumX, sumY );
+            if( sum > 0 ){
+                directionX = sumX / sum;
+                directionY = sumY / sum;
+            }
+
+            double fromX = position[0];
+            double fromY = position[1];
+            position[0] += directionX * POINT_SPACING;
+            position[1] += directionY * POINT_SPACING;
+            corridor.centre( position, directionX, directionY );
+
+            if( CheckpointIndex.getCrossing( fromX, fromY, position[0], position[1], checkpoints.getCoordinate( 0, 0 ),
+                    checkpoints.getCoordinate( 0, 1 ), checkpoints.getCoordinate( 0, 2 ), checkpoints.getCoordinate( 0, 3 ) ) >= 0 ){
+                if( firstPoint >= 0 )
+                    return Arrays.copyOfRange( points, 2 * firstPoint, 2 * count );
+                firstPoint = count;
+            }
+        }
+        throw new IllegalArgumentException( "Centre line of track does not lead back to the start line" );
+    }
+
+    /**
+     * Limits speed in every point by curvature of the line, and then by braking distance before slower points.
+     * Braking pass goes around the loop twice, so points before the end of the line see points after its start.
+     */
+    private static double[] computeSpeeds( double[] x, double[] y, FrictionGrid friction, double lateralAcceleration, double brakingAcceleration ){
+        int count = x.length;
+        double[] curvature = new double[count];
+        for( int i = 0; i < count; ++i ){
+            int previous = ( i + count - 1 ) % count;
+            int next = ( i + 1 ) % count;
+            double ax = x[i] - x[previous];
+            double ay = y[i] - y[previous];
+            double bx = x[next] - x[i];
+            double by = y[next] - y[i];
+            double product = Math.hypot( ax, ay ) * Math.hypot( bx, by ) * Math.hypot( ax + bx, ay + by );
+            curvature[i] = product > 0 ? 2 * Math.abs( ax * by - ay * bx ) / product : 0;
+        }
+
+        double[] speed = new double[count];
+        double[] grip = new double[count];
+        for( int i = 0; i < count; ++i ){
+            //curvature of one point is noisy, the car corners along a few of them
+            double mean = ( curvature[( i + count - 1 ) % count] + curvature[i] + curvature[( i + 1 ) % count] ) / 3;
+            grip[i] = friction.getFriction( x[i], y[i] );
+            speed[i] = mean > 0 ? Math.min( Math.sqrt( lateralAcceleration * grip[i] / mean ), MAX_SPEED ) : MAX_SPEED;
+        }
+        for( int pass = 2 * count - 1; pass >= 0; --pass ){
+            int i = pass % count;
+            int next = ( i + 1 ) % count;
+            double segment = Math.hypot( x[next] - x[i], y[next] - y[i] );
+            speed[i] = Math.min( speed[i], Math.sqrt( speed[next] * speed[next] + 2 * brakingAcceleration * grip[i] * segment ) );
+        }
+        return speed;
+    }
+
+    /**
+     * Ray casts against barriers, which are treated as segments lengthened by their radius, so gaps between joined segments are closed,
+     * and against edges of road, found by sampling friction along the ray.
+     */
+    private static class Corridor {
+        private final SegmentGrid barriers;
+        private final FrictionGrid friction;
+        private final double roadFriction;
+        private final int[] found;
+
+        Corridor( SegmentGrid barriers, FrictionGrid friction, double roadFriction ){
+            this.barriers = barriers;
+            this.friction = friction;
+            this.roadFriction = roadFriction;
+            found = new int[barriers.getCount()];
+        }
+
+        /**
+         * Returns free distance from a point along a unit direction to the nearest barrier, reduced by radius of barriers,
+         * or to the edge of road, whichever is closer.
+         */
+        double cast( double x, double y, double directionX, double directionY, double range ){
+            double endX = x + directionX * range;
+            double endY = y + directionY * range;
+            int count = barriers.query( Math.min( x, endX ), Math.min( y, endY ), Math.max( x, endX ), Math.max( y, endY ), found );
+            double nearest = range;
+            double radius = barriers.getRadius();
+            for( int i = 0; i < count; ++i ){
+                int segment = found[i];
+                double x1 = barriers.getCoordinate( segment, 0 );
+                double y1 = barriers.getCoordinate( segment, 1 );
+                double edgeX = barriers.getCoordinate( segment, 2 ) - x1;
+                double edgeY = barriers.getCoordinate( segment, 3 ) - y1;
+                double denominator = directionX * edgeY - directionY * edgeX;
+                if( denominator == 0 )
+                    continue;
+                double t = ( ( x1 - x ) * edgeY - ( y1 - y ) * edgeX ) / denominator;
+                double s = ( ( x1 - x ) * directionY - ( y1 - y ) * directionX ) / denominator;
+                double extension = radius / Math.hypot( edgeX, edgeY );
+                if( t >= 0 && t < nearest && s >= -extension && s <= 1 + extension )
+                    nearest = t;
+            }
+            nearest = Math.max( nearest - radius, 0 );
+
+            for( double along = FRICTION_STEP; along < nearest; along += FRICTION_STEP )
+                if( friction.getFriction( x + directionX * along, y + directionY * along ) < roadFriction )
+                    return along - FRICTION_STEP;
+            return nearest;
+        }
+
+        /**
+         * Moves a point across a direction to the middle between barriers on both sides, at most by POINT_SPACING,
+         * unless one side is open.
+         */
+        void centre( double[] point, double directionX, double directionY ){
+            double right = cast( point[0], point[1], -directionY, directionX, RAY_RANGE );
+            double left = cast( point[0], point[1], directionY, -directionX, RAY_RANGE );
+            if( right >= RAY_RANGE || left >= RAY_RANGE )
+                return;
+            double shift = Math.min( Math.max( ( right - left ) / 2, -POINT_SPACING ), POINT_SPACING );
+            point[0] -= directionY * shift;
+            point[1] += directionX * shift;
+        }
+    }
+
+    /**
+     * Loads racing line by memory mapping its file.
+     *
+     * @param file          file written by save
+     * @return              loaded racing line
+     * @throws IOException  when file cannot be read or is not a racing line
+     */
+    public static RacingLine load( File file ) throws IOException {
+        MappedByteBuffer buffer;
+        try( FileChannel channel = FileChannel.open( file.toPath(), StandardOpenOption.READ ) ){
+            buffer = channel.map( FileChannel.MapMode.READ_ONLY, 0, channel.size() );
+        }
+        try {
+            if( buffer.getInt() != MAGIC )
+                throw new IOException( "Not a racing line" );
+            int version = buffer.getInt();
+            if( version != VERSION )
+                throw new IOException( "Unsupported version " + version + " of racing line" );
+            int count = buffer.getInt();
+            if( count < 0 || count > buffer.remaining() / ( 3 * Double.BYTES ) )
+                throw new IOException( "Invalid number of points of racing line" );
+            double[] x = new double[count];
+            double[] y = new double[count];
+            double[] speed = new double[count];
+            buffer.asDoubleBuffer().get( x ).get( y ).get( speed );
+            return new RacingLine( x, y, speed );
+        } catch( BufferUnderflowException | IllegalArgumentException e ){
+            throw new IOException( "Corrupted racing line", e );
+        }
+    }
+
+    /**
+     * Writes racing line to a file.
+     *
+     * @param file          output file
+     * @throws IOException  when file cannot be written
+     */
+    public void save( File file ) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate( 3 * Integer.BYTES + 3 * Double.BYTES * x.length );
+        buffer.putInt( MAGIC );
+        buffer.putInt( VERSION );
+        buffer.putInt( x.length );
+        for( double[] values : new double[][]{ x, y, speed } )
+            for( double value : values )
+                buffer.putDouble( value );
+        try( FileOutputStream output = new FileOutputStream( file ) ){
+            output.write( buffer.array() );
+        }
+    }
+
+    /**
+     * Finds the point nearest to a position, searching only a window of points after a hint,
+     * which is enough for a car following the line tick by tick.
+     *
+     * @param x         world x coordinate
+     * @param y         world y coordinate
+     * @param hint      index of the point nearest in the previous tick, or -1 to search all points
+     * @param window    number of points searched after the hint
+     * @return          index of the nearest point
+     */
+    public int findNearest( double x, double y, int hint, int window ){
+        int from = hint < 0 ? 0 : hint;
+        int points = hint < 0 ? this.x.length : Math.min( window + 1, this.x.length );
+        int nearest = from;
+        double nearestDistance = Double.POSITIVE_INFINITY;
+        for( int i = 0; i < points; ++i ){
+            int point = ( from + i ) % this.x.length;
+            double dx = this.x[point] - x;
+            double dy = this.y[point] - y;
+            double distance = dx * dx + dy * dy;
+            if( distance < nearestDistance ){
+                nearestDistance = distance;
+                nearest = point;
+            }
+        }
+        return nearest;
+    }
+
+    /**
+     * Finds the first point at least given distance along the line after a point.
+     * Cost grows with the distance, which is short for lookahead of a driver.
+     *
+     * @param point     index of point
+     * @param ahead     distance along the line in metres
+     * @return          index of point, or point itself if the distance is not shorter than the line
+     */
+    public int findAhead( int point, double ahead ){
+        int next = point;
+        double travelled = 0;
+        while( travelled < ahead ){
+            travelled += segments[next];
+            next = ( next + 1 ) % x.length;
+            if( next == point )
+                break;
+        }
+        return next;
+    }
+
+    /**
+     * Returns number of points.
+     *
+     * @return  number of points
+     */
+    public int getPointCount(){
+        return x.length;
+    }
+
+    /**
+     * Returns world x coordinate of a point.
+     *
+     * @param point     index of point
+     * @return          x coordinate in metres
+     */
+    public double getX( int point ){
+        return x[point];
+    }
+
+    /**
+     * Returns world y coordinate of a point.
+     *
+     * @param point     index of point
+     * @return          y coordinate in metres
+     */
+    public double getY( int point ){
+        return y[point];
+    }
+
+    /**
+     * Returns target speed in a point.
+     *
+     * @param point     index of point
+     * @return          speed in metres per second
+     */
+    public double getSpeed( int point ){
+        return speed[point];
+    }
+
+    /**
+     * Returns length of the closed line.
+     *
+     * @return  length in metres
+     */
+    public double getLength(){
+        return length;
+    }
+
+    /**
+     * Computes racing line of a track and writes it to a file. Friction is read from friction mask of the track,
+     * tiles of tiled track are loaded on the calling thread.
+     *
+     * @param args          track definition (*.track) or compiled track, and output file
+     * @throws IOException  when track cannot be read or output cannot be written
+     */
+    public static void main( String[] args ) throws IOException {
+        if( args.length != 2 ){
+            System.err.println( "Usage: RacingLine <track> <output file>" );
+            System.exit( 1 );
+        }
+        Track track = TrackCompiler.load( args[0] );
+        RacingLine line = compute( track, FrictionGrid.load( track, Runnable::run ) );
+        line.save( new File( args[1] ) );
+        System.out.println( String.format( Locale.ROOT, "Computed racing line of %.0f m in %d points to %s",
+                line.getLength(), line.getPointCount(), args[1] ) );
+    }
+
+}
@@ -0,0 +1,275 @@
+package szewoj.race2d.model;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Uniform grid indexing line segments, shared by barriers and checkpoints of a track.
+ * Grid is stored in compressed rows: for every cell a range of cellSegments lists segments,
+ * whose bounding boxes enlarged by radius overlap the cell. Queries visit only cells overlapped by queried box,
+ * so their cost does not grow with the number of segments.
+ * Grid can be written to a buffer and read back without building it again, which is how compiled tracks store it.
+ * Queries reuse internal buffers, so one grid should not be queried from many threads at once, every thread needs its own copy.
+ */
+public class SegmentGrid {
+    private final double[] segments;        //x1, y1, x2, y2 of every segment
+    private final int count;
+    private final double radius;
+    private final double inverseCellSize;
+    private final double originX;
+    private final double originY;
+    private final int columns;
+    private final int rows;
+    private final int[] cellStart;
+    private final int[] cellSegments;
+    private final int[] visited;
+    private int stamp;
+
+    /**
+     * Constructor of SegmentGrid.
+     *
+     * @param segments  coordinates x1, y1, x2, y2 of every segment in world coordinates
+     * @param radius    half of thickness of segments
+     * @param cellSize  size of grid cell
+     */
+    public SegmentGrid( double[] segments, double radius, double cellSize ){
+        if( segments.length % 4 != 0 )
+            throw new IllegalArgumentException( "Every segment needs four coordinates" );
+        if( cellSize <= 0 )
+            throw new IllegalArgumentException( "Cell size has to be positive" );
+
+        this.segments = segments.clone();
+        this.radius = radius;
+        count = segments.length / 4;
+        inverseCellSize = 1 / cellSize;
+        visited = new int[count];
+
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for( int i = 0; i < count; ++i ){
+            minX = Math.min( minX, Math.min( segments[4*i], segments[4*i + 2] ) );
+            minY = Math.min( minY, Math.min( segments[4*i + 1], segments[4*i + 3] ) );
+            maxX = Math.max( maxX, Math.max( segments[4*i], segments[4*i + 2] ) );
+            maxY = Math.max( maxY, Math.max( segments[4*i + 1], segments[4*i + 3] ) );
+        }
+        if( count == 0 ){
+            minX = minY = maxX = maxY = 0;
+        }
+        originX = minX - radius;
+        originY = minY - radius;
+        columns = (int)( (maxX + radius - originX) * inverseCellSize ) + 1;
+        rows = (int)( (maxY + radius - originY) * inverseCellSize ) + 1;
+
+        //count segments of every cell, then turn counts into starts of ranges
+        cellStart = new int[columns * rows + 1];
+        for( int i = 0; i < count; ++i )
+            forEachCell( i, null );
+        for( int cell = 0; cell < columns * rows; ++cell )
+            cellStart[cell + 1] += cellStart[cell];
+
+        cellSegments = new int[cellStart[columns * rows]];
+        int[] filled = Arrays.copyOf( cellStart, columns * rows );
+        for( int i = 0; i < count; ++i )
+            forEachCell( i, filled );
+    }
+
+    private SegmentGrid( double[] segments, double radius, double inverseCellSize, double originX, double originY,
+                         int columns, int rows, int[] cellStart, int[] cellSegments ){
+        this.segments = segments;
+        this.radius = radius;
+        this.inverseCellSize = inverseCellSize;
+        this.originX = originX;
+        this.originY = originY;
+        this.columns = columns;
+        this.rows = rows;
+        this.cellStart = cellStart;
+        this.cellSegments = cellSegments;
+        count = segments.length / 4;
+        visited = new int[count];
+    }
+
+    /**
+     * Returns grid sharing segments and cells with this one, with own query buffers, so it can be queried on another thread.
+     *
+     * @return  copy of grid
+     */
+    public SegmentGrid copy(){
+        return new SegmentGrid( segments, radius, inverseCellSize, originX, originY, columns, rows, cellStart, cellSegments );
+    }
+
+    /**
+     * Reads grid written by write from current position of buffer, with one bulk copy per array.
+     *
+     * @param buffer    buffer positioned at the grid, its position is moved after the grid
+     * @return          restored grid
+     * @throws IllegalArgumentException when data of the grid is inconsistent
+     * @throws java.nio.BufferUnderflowException when buffer ends before the grid
+     */
+    public static SegmentGrid read( ByteBuffer buffer ){
+        int count = buffer.getInt();
+        double radius = buffer.getDouble();
+        double inverseCellSize = buffer.getDouble();
+        double originX = buffer.getDouble();
+        double originY = buffer.getDouble();
+        int columns = buffer.getInt();
+        int rows = buffer.getInt();
+        if( count < 0 || columns <= 0 || rows <= 0 || (long) columns * rows >= Integer.MAX_VALUE || !(inverseCellSize > 0) )
+            throw new IllegalArgumentException( "Invalid header of segment grid" );
+
+        double[] segments = new double[4 * count];
+        int[] cellStart = new int[columns * rows + 1];
+        getDoubles( buffer, segments );
+        getInts( buffer, cellStart );
+        if( cellStart[0] != 0 || cellStart[columns * rows] < 0 )
+            throw new IllegalArgumentException( "Invalid cells of segment grid" );
+        int[] cellSegments = new int[cellStart[columns * rows]];
+        getInts( buffer, cellSegments );
+
+        for( int cell = 0; cell < columns * rows; ++cell )
+            if( cellStart[cell] > cellStart[cell + 1] )
+                throw new IllegalArgumentException( "Invalid cells of segment grid" );
+        for( int segment : cellSegments )
+            if( segment < 0 || segment >= count )
+                throw new IllegalArgumentException( "Invalid segment index in segment grid" );
+        return new SegmentGrid( segments, radius, inverseCellSize, originX, originY, columns, rows, cellStart, cellSegments );
+    }
+
+    private static void getDoubles( ByteBuffer buffer, double[] out ){
+        buffer.asDoubleBuffer().get( out );
+        buffer.position( buffer.position() + Double.BYTES * out.length );
+    }
+
+    private static void getInts( ByteBuffer buffer, int[] out ){
+        buffer.asIntBuffer().get( out );
+        buffer.position( buffer.position() + Integer.BYTES * out.length );
+    }
+
+    /**
+     * Writes grid at current position of buffer.
+     *
+     * @param buffer    buffer with at least getSerializedSize() bytes remaining
+     */
+    public void write( ByteBuffer buffer ){
+        buffer.putInt( count );
+        buffer.putDouble( radius );
+        buffer.putDouble( inverseCellSize );
+        buffer.putDouble( originX );
+        buffer.putDouble( originY );
+        buffer.putInt( columns );
+        buffer.putInt( rows );
+        buffer.asDoubleBuffer().put( segments );
+        buffer.position( buffer.position() + Double.BYTES * segments.length );
+        buffer.asIntBuffer().put( cellStart );
+        buffer.position( buffer.position() + Integer.BYTES * cellStart.length );
+        buffer.asIntBuffer().put( cellSegments );
+        buffer.position( buffer.position() + Integer.BYTES * cellSegments.length );
+    }
+
+    /**
+     * Returns number of bytes written by write.
+     *
+     * @return  size of grid in bytes
+     */
+    public int getSerializedSize(){
+        return 3 * Integer.BYTES + 4 * Double.BYTES
+               + Double.BYTES * segments.length + Integer.BYTES * ( cellStart.length + cellSegments.length );
+    }
+
+    /**
+     * Visits cells overlapped by enlarged bounding box of a segment.
+     * Without filled array counts the segment in cellStart, otherwise writes it to cellSegments.
+     */
+    private void forEachCell( int segment, int[] filled ){
+        int fromColumn = getColumn( Math.min( segments[4*segment], segments[4*segment + 2] ) - radius );
+        int toColumn = getColumn( Math.max( segments[4*segment], segments[4*segment + 2] ) + radius );
+        int fromRow = getRow( Math.min( segments[4*segment + 1], segments[4*segment + 3] ) - radius );
+        int toRow = getRow( Math.max( segments[4*segment + 1], segments[4*segment + 3] ) + radius );
+
+        for( int row = fromRow; row <= toRow; ++row )
+            for( int column = fromColumn; column <= toColumn; ++column ){
+                int cell = row * columns + column;
+                if( filled == null )
+                    ++cellStart[cell + 1];
+                else
+                    cellSegments[filled[cell]++] = segment;
+            }
+    }
+
+    private int getColumn( double x ){
+        return Math.min( Math.max( (int) Math.floor( (x - originX) * inverseCellSize ), 0 ), columns - 1 );
+    }
+
+    private int getRow( double y ){
+        return Math.min( Math.max( (int) Math.floor( (y - originY) * inverseCellSize ), 0 ), rows - 1 );
+    }
+
+    /**
+     * Finds segments, whose cells overlap given axis aligned box. Every segment is reported once.
+     *
+     * @param minX  minimal x coordinate of the box
+     * @param minY  minimal y coordinate of the box
+     * @param maxX  maximal x coordinate of the box
+     * @param maxY  maximal y coordinate of the box
+     * @param out   array of length at least getCount() to be filled with indexes of segments
+     * @return      number of found segments
+     */
+    public int query( double minX, double minY, double maxX, double maxY, int[] out ){
+        if( count == 0 || maxX < originX || maxY < originY
+                || minX > originX + columns / inverseCellSize || minY > originY + rows / inverseCellSize )
+            return 0;
+
+        if( ++stamp == 0 ){
+            Arrays.fill( visited, 0 );
+            stamp = 1;
+        }
+
+        int found = 0;
+        int fromColumn = getColumn( minX );
+        int toColumn = getColumn( maxX );
+        int toRow = getRow( maxY );
+        for( int row = getRow( minY ); row <= toRow; ++row )
+            for( int column = fromColumn; column <= toColumn; ++column ){
+                int cell = row * columns + column;
+                for( int i = cellStart[cell]; i < cellStart[cell + 1]; ++i ){
+                    int segment = cellSegments[i];
+                    if( visited[segment] != stamp ){
+                        visited[segment] = stamp;
+                        out[found++] = segment;
+                    }
+                }
+            }
+        return found;
+    }
+
+    /**
+     * Returns coordinate of a segment.
+     *
+     * @param segment   index of segment
+     * @param end       0 - x1, 1 - y1, 2 - x2, 3 - y2
+     * @return          coordinate in world coordinates
+     */
+    public double getCoordinate( int segment, int end ){
+        return segments[4*segment + end];
+    }
+
+    /**
+     * Returns number of indexed segments.
+     *
+     * @return  number of segments
+     */
+    public int getCount(){
+        return count;
+    }
+
+    /**
+     * Returns half of thickness of segments.
+     *
+     * @return  radius in metres
+     */
+    public double getRadius(){
+        return radius;
+    }
+
+}
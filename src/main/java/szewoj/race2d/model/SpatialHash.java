@@ -0,0 +1,204 @@
+package szewoj.race2d.model;
+
+import java.util.Arrays;
+
+/**
+ * Uniform spatial hash of axis aligned boxes, rebuilt from scratch every tick, finding pairs of overlapping boxes.
+ * Every box is entered into all cells it overlaps, cells are hashed into a table of buckets with twice as many buckets
+ * as entries, and entries are sorted into buckets with counting sort. Building and querying are linear in number of boxes
+ * as long as boxes are not larger than a few cells, and pair of boxes sharing many cells is reported only once,
+ * in the cell containing minimal corner of their intersection.
+ * Buffers grow with number of boxes and are then reused, so rebuilding does not allocate in steady state.
+ */
+public class SpatialHash {
+    private final double inverseCellSize;
+    private double[] bounds;        //minX, minY, maxX, maxY of every box
+    private int boxCount;
+
+    private int[] entryBox;
+    private int[] entryCellX;
+    private int[] entryCellY;
+    private int[] entryBucket;
+    private int entryCount;
+
+    private int[] bucketStart;
+    private int[] sortedEntries;
+    private int bucketMask;
+
+    private int[] pairs;
+    private int pairCount;
+
+    /**
+     * Constructor of SpatialHash.
+     *
+     * @param cellSize  size of cell, about the size of the largest box works best
+     * @param capacity  expected number of boxes
+     */
+    public SpatialHash( double cellSize, int capacity ){
+        if( cellSize <= 0 )
+            throw new IllegalArgumentException( "Cell size has to be positive" );
+        inverseCellSize = 1 / cellSize;
+        capacity = Math.max( capacity, 1 );
+        bounds = new double[4 * capacity];
+        entryBox = new int[4 * capacity];
+        entryCellX = new int[4 * capacity];
+        entryCellY = new int[4 * capacity];
+        entryBucket = new int[4 * capacity];
+        sortedEntries = new int[4 * capacity];
+        bucketStart = new int[1];
+        pairs = new int[2 * capacity];
+    }
+
+    /**
+     * Removes all boxes.
+     */
+    public void clear(){
+        boxCount = 0;
+        entryCount = 0;
+        pairCount = 0;
+    }
+
+    /**
+     * Adds box, identified by index in order of adding.
+     *
+     * @param minX  minimal x coordinate
+     * @param minY  minimal y coordinate
+     * @param maxX  maximal x coordinate
+     * @param maxY  maximal y coordinate
+     * @return      index of the box
+     */
+    public int insert( double minX, double minY, double maxX, double maxY ){
+        if( 4 * boxCount + 4 > bounds.length )
+            bounds = Arrays.copyOf( bounds, 2 * bounds.length );
+        int box = boxCount++;
+        bounds[4*box] = minX;
+        bounds[4*box + 1] = minY;
+        bounds[4*box + 2] = maxX;
+        bounds[4*box + 3] = maxY;
+
+        int firstX = cell( minX );
+        int lastX = cell( maxX );
+        int firstY = cell( minY );
+        int lastY = cell( maxY );
+        for( int cellY = firstY; cellY <= lastY; ++cellY ){
+            for( int cellX = firstX; cellX <= lastX; ++cellX ){
+                if( entryCount == entryBox.length )
+                    growEntries();
+                entryBox[entryCount] = box;
+                entryCellX[entryCount] = cellX;
+                entryCellY[entryCount] = cellY;
+                ++entryCount;
+            }
+        }
+        return box;
+    }
+
+    private int cell( double coordinate ){
+        return (int) Math.floor( coordinate * inverseCellSize );
+    }
+
+    private void growEntries(){
+        int length = 2 * entryBox.length;
+        entryBox = Arrays.copyOf( entryBox, length );
+        entryCellX = Arrays.copyOf( entryCellX, length );
+        entryCellY = Arrays.copyOf( entryCellY, length );
+        entryBucket = Arrays.copyOf( entryBucket, length );
+        sortedEntries = Arrays.copyOf( sortedEntries, length );
+    }
+
+    private static int hash( int cellX, int cellY ){
+        return cellX * 73856093 ^ cellY * 19349663;
+    }
+
+    /**
+     * Finds all pairs of overlapping boxes added since the last clear.
+     *
+     * @return  number of pairs, available with getPairFirst and getPairSecond
+     */
+    public int findPairs(){
+        int buckets = Integer.highestOneBit( Math.max( 2 * entryCount - 1, 1 ) ) << 1;
+        if( bucketStart.length < buckets + 1 )
+            bucketStart = new int[buckets + 1];
+        bucketMask = buckets - 1;
+
+        //counting sort of entries by bucket
+        Arrays.fill( bucketStart, 0, buckets + 1, 0 );
+        for( int i = 0; i < entryCount; ++i ){
+            entryBucket[i] = hash( entryCellX[i], entryCellY[i] ) & bucketMask;
+            ++bucketStart[entryBucket[i] + 1];
+        }
+        for( int bucket = 0; bucket < buckets; ++bucket )
+            bucketStart[bucket + 1] += bucketStart[bucket];
+        for( int i = 0; i < entryCount; ++i )
+            sortedEntries[bucketStart[entryBucket[i]]++] = i;
+        //filling moved every start to the start of the next bucket
+        for( int bucket = buckets; bucket > 0; --bucket )
+            bucketStart[bucket] = bucketStart[bucket - 1];
+        bucketStart[0] = 0;
+
+        pairCount = 0;
+        for( int bucket = 0; bucket < buckets; ++bucket ){
+            int end = bucketStart[bucket + 1];
+            for( int i = bucketStart[bucket]; i < end; ++i ){
+                int first = sortedEntries[i];
+                for( int j = i + 1; j < end; ++j )
+                    testPair( first, sortedEntries[j] );
+            }
+        }
+        return pairCount;
+    }
+
+    /**
+     * Reports pair of boxes of two entries, if entries are in the same cell, boxes overlap,
+     * and the cell contains minimal corner of intersection of boxes.
+     */
+    private void testPair( int firstEntry, int secondEntry ){
+        int cellX = entryCellX[firstEntry];
+        int cellY = entryCellY[firstEntry];
+        if( cellX != entryCellX[secondEntry] || cellY != entryCellY[secondEntry] )
+            return;
+        int a = entryBox[firstEntry];
+        int b = entryBox[secondEntry];
+        if( bounds[4*a] > bounds[4*b + 2] || bounds[4*b] > bounds[4*a + 2]
+                || bounds[4*a + 1] > bounds[4*b + 3] || bounds[4*b + 1] > bounds[4*a + 3] )
+            return;
+        if( cell( Math.max( bounds[4*a], bounds[4*b] ) ) != cellX || cell( Math.max( bounds[4*a + 1], bounds[4*b + 1] ) ) != cellY )
+            return;
+
+        if( 2 * pairCount + 2 > pairs.length )
+            pairs = Arrays.copyOf( pairs, 2 * pairs.length );
+        pairs[2*pairCount] = Math.min( a, b );
+        pairs[2*pairCount + 1] = Math.max( a, b );
+        ++pairCount;
+    }
+
+    /**
+     * Returns the first box of a pair found by the last findPairs.
+     *
+     * @param pair  index of pair
+     * @return      index of box with lower index
+     */
+    public int getPairFirst( int pair ){
+        return pairs[2*pair];
+    }
+
+    /**
+     * Returns the second box of a pair found by the last findPairs.
+     *
+     * @param pair  index of pair
+     * @return      index of box with higher index
+     */
+    public int getPairSecond( int pair ){
+        return pairs[2*pair + 1];
+    }
+
+    /**
+     * Returns number of boxes added since the last clear.
+     *
+     * @return  number of boxes
+     */
+    public int getBoxCount(){
+        return boxCount;
+    }
+
+}
@@ -0,0 +1,134 @@
+package szewoj.race2d.model;
+
+import szewoj.race2d.utilities.TileCache;
+import szewoj.race2d.utilities.TileSet;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.util.concurrent.Executor;
+
+/**
+ * Friction grid of tiled track, which keeps only tiles of mask near the car in a bounded LRU cache.
+ * Tiles around the car are prefetched on background executor, a tile needed by physics before its prefetch
+ * has finished is waited for or loaded immediately, so friction never depends on timing of loading.
+ * Every tile is stored with full tile size stride, cells outside of the track are never read.
+ */
+public class TiledFrictionGrid extends FrictionGrid {
+    public static final int DEFAULT_CAPACITY = 16;         //tiles around one car
+
+    private final TileSet tiles;
+    private final Executor executor;
+    private final TileCache<byte[]> cache;
+    private final int tileSize;
+    private int lastColumn = -1;
+    private int lastRow = -1;
+    private byte[] lastTile;
+
+    /**
+     * Constructor of TiledFrictionGrid.
+     *
+     * @param tiles     description of tiled track
+     * @param capacity  maximal number of cached tiles
+     * @param executor  executor of prefetching
+     * @param bilinear  true to interpolate between centres of cells, false to use the nearest cell
+     */
+    public TiledFrictionGrid( TileSet tiles, int capacity, Executor executor, boolean bilinear ){
+        super( tiles.getWidth(), tiles.getHeight(), bilinear );
+        this.tiles = tiles;
+        this.executor = executor;
+        tileSize = tiles.getTileSize();
+        cache = new TileCache<>( capacity, this::loadTile, executor );
+    }
+
+    /**
+     * Opens tiles of a tiled track, which have to be a directory.
+     *
+     * @param track         tiled track
+     * @return              description of tiles
+     * @throws IOException  when tiles cannot be read or are not a directory
+     */
+    public static TileSet openTiles( Track track ) throws IOException {
+        try {
+            return TileSet.open( new File( track.resolve( track.getTiles() ).toURI() ) );
+        } catch( URISyntaxException | IllegalArgumentException e ){
+            throw new IOException( "Tiles of track have to be a directory: " + track.getTiles(), e );
+        }
+    }
+
+    private byte[] loadTile( int column, int row ) throws IOException {
+        try( InputStream input = new FileInputStream( tiles.getMaskTile( column, row ) ) ){
+            BufferedImage image = decode( input );
+            if( image.getWidth() > tileSize || image.getHeight() > tileSize )
+                throw new IOException( "Mask tile " + column + ", " + row + " is larger than tile size" );
+            return decodeCells( image, tileSize );
+        }
+    }
+
+    /**
+     * Returns quantized friction of cell, from the last used tile if possible.
+     *
+     * @param x     column of cell in range 0 - width - 1
+     * @param y     row of cell in range 0 - height - 1
+     * @return      friction in range 0 - 255
+     */
+    @Override
+    protected int getCellValue( int x, int y ){
+        int column = x / tileSize;
+        int row = y / tileSize;
+        if( column != lastColumn || row != lastRow ){
+            lastTile = cache.get( column, row );
+            lastColumn = column;
+            lastRow = row;
+        }
+        return lastTile[( y - row * tileSize ) * tileSize + x - column * tileSize] & 0xFF;
+    }
+
+    /**
+     * Starts loading tiles within radius around given point and moves already loaded tiles to the cache.
+     *
+     * @param x         world x coordinate in metres
+     * @param y         world y coordinate in metres
+     * @param radius    distance in metres around the point
+     */
+    @Override
+    public void prefetch( double x, double y, double radius ){
+        cache.collect();
+        double gridX = toGridX( x, y );
+        double gridY = toGridY( x, y );
+        double gridRadius = radius * getGridScale();
+        int firstColumn = Math.max( (int) Math.floor( ( gridX - gridRadius ) / tileSize ), 0 );
+        int lastColumn = Math.min( (int) Math.floor( ( gridX + gridRadius ) / tileSize ), tiles.getColumns() - 1 );
+        int firstRow = Math.max( (int) Math.floor( ( gridY - gridRadius ) / tileSize ), 0 );
+        int lastRow = Math.min( (int) Math.floor( ( gridY + gridRadius ) / tileSize ), tiles.getRows() - 1 );
+        for( int row = firstRow; row <= lastRow; ++row )
+            for( int column = firstColumn; column <= lastColumn; ++column )
+                cache.prefetch( column, row );
+    }
+
+    /**
+     * Returns grid sharing tiles with this one, with own cache of the same capacity prefetching on the same executor,
+     * so it can be queried on another thread.
+     *
+     * @return  copy of grid
+     */
+    @Override
+    public FrictionGrid copy(){
+        TiledFrictionGrid copy = new TiledFrictionGrid( tiles, cache.getCapacity(), executor, isBilinear() );
+        copy.copySettings( this );
+        return copy;
+    }
+
+    /**
+     * Returns cache of mask tiles.
+     *
+     * @return  cache of tiles
+     */
+    public TileCache<byte[]> getCache(){
+        return cache;
+    }
+
+}
@@ -0,0 +1,58 @@
+package szewoj.race2d.model;
+
+/**
+ * Tire model describing forces generated by tire for given slip.
+ * Forces are returned as coefficients, which are multiplied by load of the axle and traction of the wheel.
+ */
+public interface TireCompound {
+
+    /**
+     * Limits slip angle to range handled by the compound.
+     *
+     * @param slipAngle     slip angle in radians
+     * @return              limited slip angle in radians
+     */
+    double limitSlipAngle( double slipAngle );
+
+    /**
+     * Limits slip ratio to range handled by the compound.
+     *
+     * @param slipRatio     longitudinal slip ratio
+     * @return              limited slip ratio
+     */
+    double limitSlipRatio( double slipRatio );
+
+    /**
+     * Returns highest absolute value of slip angle returned by limitSlipAngle.
+     *
+     * @return  slip angle in radians
+     */
+    double getMaxSlipAngle();
+
+    /**
+     * Returns highest absolute value of slip ratio returned by limitSlipRatio.
+     *
+     * @return  slip ratio
+     */
+    double getMaxSlipRatio();
+
+    /**
+     * Calculates lateral force coefficient for combined slip.
+     * Positive slip angle gives positive coefficient, which pushes the wheel to the left.
+     *
+     * @param slipAngle     limited slip angle in radians
+     * @param slipRatio     limited slip ratio
+     * @return              lateral force per newton of load
+     */
+    double getLateralCoefficient( double slipAngle, double slipRatio );
+
+    /**
+     * Calculates longitudinal force coefficient for combined slip.
+     *
+     * @param slipAngle     limited slip angle in radians
+     * @param slipRatio     limited slip ratio
+     * @return              longitudinal force per newton of load
+     */
+    double getLongitudinalCoefficient( double slipAngle, double slipRatio );
+
+}
@@ -0,0 +1,121 @@
+package szewoj.race2d.model;
+
+/**
+ * Tire compound precomputed into 2D grids of lateral and longitudinal force coefficients.
+ * Grids span slip angle and slip ratio range of source compound and are read with bilinear interpolation,
+ * so the cost of evaluation does not depend on complexity of source compound.
+ */
+public class TireForceTable implements TireCompound {
+    private static final int DEFAULT_CELLS = 64;
+    private final TireCompound source;
+    private final double minSlipAngle;
+    private final double minSlipRatio;
+    private final double inverseAngleStep;
+    private final double inverseRatioStep;
+    private final int angleCells;
+    private final int ratioCells;
+    private final int rowLength;
+    private final double[] lateral;
+    private final double[] longitudinal;
+
+    /**
+     * Constructor of TireForceTable with 64 cells in both directions.
+     * Range of table is the range of slip handled by source compound.
+     *
+     * @param source    precomputed compound
+     */
+    public TireForceTable( TireCompound source ){
+        this( source, source.getMaxSlipAngle(), source.getMaxSlipRatio(), DEFAULT_CELLS, DEFAULT_CELLS );
+    }
+
+    /**
+     * Constructor of TireForceTable.
+     * Grids cover slip angle in range -maxSlipAngle - maxSlipAngle and slip ratio in range -maxSlipRatio - maxSlipRatio.
+     *
+     * @param source        precomputed compound
+     * @param maxSlipAngle  highest slip angle covered by grid in radians
+     * @param maxSlipRatio  highest slip ratio covered by grid
+     * @param angleCells    number of grid cells along slip angle
+     * @param ratioCells    number of grid cells along slip ratio
+     */
+    public TireForceTable( TireCompound source, double maxSlipAngle, double maxSlipRatio, int angleCells, int ratioCells ){
+        if( maxSlipAngle <= 0 || maxSlipRatio <= 0 || angleCells <= 0 || ratioCells <= 0 )
+            throw new IllegalArgumentException( "Tire table needs positive range and number of cells" );
+
+        this.source = source;
+        this.angleCells = angleCells;
+        this.ratioCells = ratioCells;
+        minSlipAngle = -maxSlipAngle;
+        minSlipRatio = -maxSlipRatio;
+        double angleStep = 2 * maxSlipAngle / angleCells;
+        double ratioStep = 2 * maxSlipRatio / ratioCells;
+        inverseAngleStep = 1.0 / angleStep;
+        inverseRatioStep = 1.0 / ratioStep;
+        rowLength = ratioCells + 1;
+
+        lateral = new double[(angleCells + 1) * rowLength];
+        longitudinal = new double[(angleCells + 1) * rowLength];
+
+        for( int a = 0; a <= angleCells; ++a ){
+            double slipAngle = minSlipAngle + a * angleStep;
+            for( int r = 0; r <= ratioCells; ++r ){
+                double slipRatio = minSlipRatio + r * ratioStep;
+                lateral[a * rowLength + r] = source.getLateralCoefficient( slipAngle, slipRatio );
+                longitudinal[a * rowLength + r] = source.getLongitudinalCoefficient( slipAngle, slipRatio );
+            }
+        }
+    }
+
+    @Override
+    public double getMaxSlipAngle(){
+        return -minSlipAngle;
+    }
+
+    @Override
+    public double getMaxSlipRatio(){
+        return -minSlipRatio;
+    }
+
+    @Override
+    public double limitSlipAngle( double slipAngle ){
+        return Math.max( minSlipAngle, Math.min( -minSlipAngle, source.limitSlipAngle( slipAngle ) ) );
+    }
+
+    @Override
+    public double limitSlipRatio( double slipRatio ){
+        return Math.max( minSlipRatio, Math.min( -minSlipRatio, source.limitSlipRatio( slipRatio ) ) );
+    }
+
+    /**
+     * Reads grid with bilinear interpolation. Indexes are clamped to the last cell.
+     *
+     * @param grid          lateral or longitudinal grid
+     * @param slipAngle     slip angle within range of grid
+     * @param slipRatio     slip ratio within range of grid
+     * @return              interpolated coefficient
+     */
+    private double lookup( double[] grid, double slipAngle, double slipRatio ){
+        double angle = (slipAngle - minSlipAngle) * inverseAngleStep;
+        double ratio = (slipRatio - minSlipRatio) * inverseRatioStep;
+        int a = Math.min( Math.max( (int) angle, 0 ), angleCells - 1 );
+        int r = Math.min( Math.max( (int) ratio, 0 ), ratioCells - 1 );
+        double angleFraction = angle - a;
+        double ratioFraction = ratio - r;
+
+        int index = a * rowLength + r;
+        double low = grid[index] + (grid[index + 1] - grid[index]) * ratioFraction;
+        double high = grid[index + rowLength] + (grid[index + rowLength + 1] - grid[index + rowLength]) * ratioFraction;
+        return low + (high - low) * angleFraction;
+    }
+
+    @Override
+    public double getLateralCoefficient( double slipAngle, double slipRatio ){
+        return lookup( lateral, slipAngle, slipRatio );
+    }
+
+    @Override
+    public double getLongitudinalCoefficient( double slipAngle, double slipRatio ){
+        return lookup( longitudinal, slipAngle, slipRatio );
+    }
+
+}
@@ -0,0 +1,327 @@
+package szewoj.race2d.model;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Compiled track: barriers, ordered checkpoints and pit zones in world coordinates with prebuilt SegmentGrids,
+ * spawn pose and references to track image and friction mask, or to tiles of both.
+ * World coordinates are metres with origin in spawn point and car in spawn heading at heading 0,
+ * track coordinates are pixels of track image and mask, related by getWorldToTrackTransform.
+ * Binary file is memory-mapped and its arrays are copied in bulk, so loading does not parse or build anything.
+ */
+public class Track {
+    private static final int MAGIC = 0x52324454;    //R2DT
+    private static final int VERSION = 1;
+
+    private final String image;
+    private final String friction;
+    private final String tiles;
+    private final double scale;
+    private final double spawnX;
+    private final double spawnY;
+    private final double spawnHeading;
+    private final SegmentGrid barriers;
+    private final SegmentGrid checkpoints;
+    private final double[] pitZones;
+    private URL base;
+
+    /**
+     * Constructor of Track.
+     *
+     * @param image         reference of track image relative to track file, or null for tiled track
+     * @param friction      reference of friction mask relative to track file, or null for tiled track
+     * @param tiles         reference of directory of TileSet relative to track file, or null
+     * @param scale         track pixels per metre
+     * @param spawnX        x coordinate of spawn point in track coordinates
+     * @param spawnY        y coordinate of spawn point in track coordinates
+     * @param spawnHeading  heading of the car at spawn in radians, 0 is facing up the track image
+     * @param barriers      barriers in world coordinates, with radius of barriers
+     * @param checkpoints   start line and checkpoints in world coordinates, in order of passing
+     * @param pitZones      x1, y1, x2, y2 and radius of every pit zone in world coordinates
+     */
+    public Track( String image, String friction, String tiles, double scale, double spawnX, double spawnY, double spawnHeading,
+                  SegmentGrid barriers, SegmentGrid checkpoints, double[] pitZones ){
+        if( tiles == null && ( image == null || friction == null ) )
+            throw new IllegalArgumentException( "Track needs image and friction mask, or tiles" );
+        if( !( scale > 0 ) )
+            throw new IllegalArgumentException( "Scale of track has to be positive" );
+        if( pitZones.length % 5 != 0 )
+            throw new IllegalArgumentException( "Every pit zone needs five values" );
+        this.image = image;
+        this.friction = friction;
+        this.tiles = tiles;
+        this.scale = scale;
+        this.spawnX = spawnX;
+        this.spawnY = spawnY;
+        this.spawnHeading = spawnHeading;
+        this.barriers = barriers;
+        this.checkpoints = checkpoints;
+        this.pitZones = pitZones.clone();
+    }
+
+    /**
+     * Loads compiled track by memory mapping its file.
+     *
+     * @param file          compiled track
+     * @return              loaded track, with references resolved against directory of the file
+     * @throws IOException  when file cannot be read or is not a compiled track
+     */
+    public static Track load( File file ) throws IOException {
+        MappedByteBuffer buffer;
+        try( FileChannel channel = FileChannel.open( file.toPath(), StandardOpenOption.READ ) ){
+            buffer = channel.map( FileChannel.MapMode.READ_ONLY, 0, channel.size() );
+        }
+        Track track = read( buffer );
+        track.setBase( file.toURI().toURL() );
+        return track;
+    }
+
+    /**
+     * Reads compiled track from buffer.
+     *
+     * @param buffer        buffer positioned at the track
+     * @return              read track, without base of references
+     * @throws IOException  when buffer does not contain a compiled track
+     */
+    public static Track read( ByteBuffer buffer ) throws IOException {
+        try {
+            if( buffer.getInt() != MAGIC )
+                throw new IOException( "Not a compiled track" );
+            int version = buffer.getInt();
+            if( version != VERSION )
+                throw new IOException( "Unsupported version " + version + " of compiled track" );
+
+            String image = getString( buffer );
+            String friction = getString( buffer );
+            String tiles = getString( buffer );
+            double scale = buffer.getDouble();
+            double spawnX = buffer.getDouble();
+            double spawnY = buffer.getDouble();
+            double spawnHeading = buffer.getDouble();
+            SegmentGrid barriers = SegmentGrid.read( buffer );
+            SegmentGrid checkpoints = SegmentGrid.read( buffer );
+            int pitValues = buffer.getInt();
+            if( pitValues < 0 || pitValues > buffer.remaining() / Double.BYTES )
+                throw new IOException( "Invalid pit zones of compiled track" );
+            double[] pitZones = new double[pitValues];
+            buffer.asDoubleBuffer().get( pitZones );
+            return new Track( image, friction, tiles, scale, spawnX, spawnY, spawnHeading, barriers, checkpoints, pitZones );
+        } catch( BufferUnderflowException | IllegalArgumentException e ){
+            throw new IOException( "Corrupted compiled track", e );
+        }
+    }
+
+    private static String getString( ByteBuffer buffer ) throws IOException {
+        int length = buffer.getInt();
+        if( length < 0 )
+            return null;
+        if( length > buffer.remaining() )
+            throw new IOException( "Invalid string in compiled track" );
+        byte[] bytes = new byte[length];
+        buffer.get( bytes );
+        return new String( bytes, StandardCharsets.UTF_8 );
+    }
+
+    private static void putString( ByteBuffer buffer, byte[] bytes ){
+        buffer.putInt( bytes == null ? -1 : bytes.length );
+        if( bytes != null )
+            buffer.put( bytes );
+    }
+
+    private static byte[] getBytes( String string ){
+        return string == null ? null : string.getBytes( StandardCharsets.UTF_8 );
+    }
+
+    /**
+     * Writes compiled track to a file.
+     *
+     * @param file          output file
+     * @throws IOException  when file cannot be written
+     */
+    public void save( File file ) throws IOException {
+        byte[] imageBytes = getBytes( image );
+        byte[] frictionBytes = getBytes( friction );
+        byte[] tilesBytes = getBytes( tiles );
+        int size = 2 * Integer.BYTES;
+        for( byte[] bytes : new byte[][]{ imageBytes, frictionBytes, tilesBytes } )
+            size += Integer.BYTES + ( bytes == null ? 0 : bytes.length );
+        size += 4 * Double.BYTES + barriers.getSerializedSize() + checkpoints.getSerializedSize()
+                + Integer.BYTES + Double.BYTES * pitZones.length;
+
+        ByteBuffer buffer = ByteBuffer.allocate( size );
+        buffer.putInt( MAGIC );
+        buffer.putInt( VERSION );
+        putString( buffer, imageBytes );
+        putString( buffer, frictionBytes );
+        putString( buffer, tilesBytes );
+        buffer.putDouble( scale );
+        buffer.putDouble( spawnX );
+        buffer.putDouble( spawnY );
+        buffer.putDouble( spawnHeading );
+        barriers.write( buffer );
+        checkpoints.write( buffer );
+        buffer.putInt( pitZones.length );
+        for( double value : pitZones )
+            buffer.putDouble( value );
+
+        try( FileOutputStream output = new FileOutputStream( file ) ){
+            output.write( buffer.array() );
+        }
+    }
+
+    /**
+     * Sets location of track file, against which references of image, friction mask and tiles are resolved.
+     *
+     * @param base  location of track file
+     */
+    public void setBase( URL base ){
+        this.base = base;
+    }
+
+    /**
+     * Resolves reference of a file used by track against location of track file.
+     *
+     * @param reference     reference given in track file
+     * @return              location of the file, or null if reference is null
+     * @throws MalformedURLException when reference is not a valid relative URL
+     */
+    public URL resolve( String reference ) throws MalformedURLException {
+        if( reference == null )
+            return null;
+        return base == null ? new File( reference ).toURI().toURL() : new URL( base, reference );
+    }
+
+    /**
+     * Fills transform from world coordinates in metres to track coordinates:
+     * rotation by spawn heading and scaling, with world origin moved to spawn point.
+     *
+     * @param out   array of length 6 to be filled with mxx, mxy, tx, myx, myy and ty of the transform
+     * @return      out parameter
+     */
+    public double[] getWorldToTrackTransform( double[] out ){
+        return getWorldToTrackTransform( scale, spawnX, spawnY, spawnHeading, out );
+    }
+
+    static double[] getWorldToTrackTransform( double scale, double spawnX, double spawnY, double spawnHeading, double[] out ){
+        double cos = Math.cos( spawnHeading ) * scale;
+        double sin = Math.sin( spawnHeading ) * scale;
+        out[0] = cos;
+        out[1] = -sin;
+        out[2] = spawnX;
+        out[3] = sin;
+        out[4] = cos;
+        out[5] = spawnY;
+        return out;
+    }
+
+    /**
+     * Returns segments of barriers in track coordinates, for drawing.
+     *
+     * @return  coordinates x1, y1, x2, y2 of every barrier
+     */
+    public double[] getBarrierSegments(){
+        double[] transform = getWorldToTrackTransform( new double[6] );
+        double[] segments = new double[4 * barriers.getCount()];
+        for( int i = 0; i < segments.length; i += 2 ){
+            double x = barriers.getCoordinate( i / 4, i % 4 );
+            double y = barriers.getCoordinate( i / 4, i % 4 + 1 );
+            segments[i] = transform[0] * x + transform[1] * y + transform[2];
+            segments[i + 1] = transform[3] * x + transform[4] * y + transform[5];
+        }
+        return segments;
+    }
+
+    /**
+     * Returns width of barriers in track coordinates.
+     *
+     * @return  width of barriers in pixels of track image
+     */
+    public double getBarrierWidth(){
+        return 2 * barriers.getRadius() * scale;
+    }
+
+    /**
+     * Getter of image property.
+     *
+     * @return  reference of track image, null for tiled track
+     */
+    public String getImage(){
+        return image;
+    }
+
+    /**
+     * Getter of friction property.
+     *
+     * @return  reference of friction mask, null for tiled track
+     */
+    public String getFriction(){
+        return friction;
+    }
+
+    /**
+     * Getter of tiles property.
+     *
+     * @return  reference of directory of tiles, null if track is not tiled
+     */
+    public String getTiles(){
+        return tiles;
+    }
+
+    /**
+     * Getter of scale property.
+     *
+     * @return  track pixels per metre
+     */
+    public double getScale(){
+        return scale;
+    }
+
+    /**
+     * Getter of barriers property.
+     *
+     * @return  grid of barriers in world coordinates
+     */
+    public SegmentGrid getBarriers(){
+        return barriers;
+    }
+
+    /**
+     * Getter of checkpoints property.
+     *
+     * @return  grid of start line and checkpoints in world coordinates, in order of passing
+     */
+    public SegmentGrid getCheckpoints(){
+        return checkpoints;
+    }
+
+    /**
+     * Returns number of pit zones.
+     *
+     * @return  number of pit zones
+     */
+    public int getPitZoneCount(){
+        return pitZones.length / 5;
+    }
+
+    /**
+     * Returns value of a pit zone.
+     *
+     * @param zone      index of pit zone
+     * @param value     0 - x1, 1 - y1, 2 - x2, 3 - y2 in world coordinates, 4 - radius in metres
+     * @return          value of the zone
+     */
+    public double getPitZone( int zone, int value ){
+        return pitZones[5 * zone + value];
+    }
+
+}
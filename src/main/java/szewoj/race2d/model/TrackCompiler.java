@@ -0,0 +1,258 @@
+package szewoj.race2d.model;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Compiles text definition of a track into Track with prebuilt grids of barriers and checkpoints.
+ * Definition has one directive per line, coordinates are pixels of track image and mask, # starts a comment:
+ * <pre>
+ * image track.png                  track image, relative to the definition
+ * friction mask.png                friction mask of the same size as track image
+ * tiles tiles                      or directory of TileSet replacing both of them
+ * scale 0.935                      track pixels per metre
+ * spawn 197.47 613.38 0            spawn point and heading in degrees, clockwise from up of track image
+ * barrierWidth 4                   stroke width of all barriers, declared before them
+ * barrier x1 y1 x2 y2 [x3 y3 ...]  polyline of barriers
+ * checkpoint x1 y1 x2 y2           start line first, then checkpoints in order of passing
+ * pit x1 y1 x2 y2 radius           pit zone as a segment with radius
+ * </pre>
+ * Checkpoints count only when crossed counterclockwise around their first end, as seen on the track image,
+ * so x2 y2 of start line lies to the right of x1 y1 for a track driven up the image.
+ * Usage as command line tool: TrackCompiler definition.track output.r2dt. References to images are kept as written,
+ * so the compiled file has to be placed in the directory of the definition.
+ */
+public class TrackCompiler {
+    public static final double BARRIER_CELL_SIZE = 16;         //metres
+    public static final String DEFAULT_TRACK = "/default.track";
+    public static final double CHECKPOINT_CELL_SIZE = 64;
+
+    private String image;
+    private String friction;
+    private String tiles;
+    private double scale = Double.NaN;
+    private double[] spawn;
+    private double barrierWidth = Double.NaN;
+    private double[] barriers = new double[64];
+    private int barrierValues;
+    private double[] checkpoints = new double[16];
+    private int checkpointValues;
+    private double[] pitZones = new double[5];
+    private int pitValues;
+
+    private TrackCompiler(){
+    }
+
+    /**
+     * Loads track for the game and command line tools: compiles definition with extension .track, or maps compiled track.
+     *
+     * @param path          path of track definition (*.track) or compiled track, null for default track
+     * @return              loaded track
+     * @throws IOException  when track cannot be read or is invalid
+     */
+    public static Track load( String path ) throws IOException {
+        if( path == null ){
+            URL definition = TrackCompiler.class.getResource( DEFAULT_TRACK );
+            if( definition == null )
+                throw new IOException( "Missing resource " + DEFAULT_TRACK );
+            return compile( definition );
+        }
+        File file = new File( path );
+        return path.endsWith( ".track" ) ? compile( file.toURI().toURL() ) : Track.load( file );
+    }
+
+    /**
+     * Compiles track definition read from given location, with references resolved against it.
+     *
+     * @param definition    location of track definition
+     * @return              compiled track
+     * @throws IOException  when definition cannot be read or is invalid
+     */
+    public static Track compile( URL definition ) throws IOException {
+        try( InputStream input = definition.openStream() ){
+            Track track = compile( new InputStreamReader( input, StandardCharsets.UTF_8 ) );
+            track.setBase( definition );
+            return track;
+        }
+    }
+
+    /**
+     * Compiles track definition.
+     *
+     * @param definition    reader of track definition
+     * @return              compiled track, without base of references
+     * @throws IOException  when definition cannot be read or is invalid
+     */
+    public static Track compile( Reader definition ) throws IOException {
+        TrackCompiler compiler = new TrackCompiler();
+        BufferedReader reader = new BufferedReader( definition );
+        String line;
+        int number = 0;
+        while( ( line = reader.readLine() ) != null ){
+            ++number;
+            try {
+                compiler.parseLine( line );
+            } catch( IllegalArgumentException e ){
+                throw new IOException( "Line " + number + ": " + e.getMessage(), e );
+            }
+        }
+        return compiler.build();
+    }
+
+    private void parseLine( String line ){
+        int comment = line.indexOf( '#' );
+        if( comment >= 0 )
+            line = line.substring( 0, comment );
+        line = line.trim();
+        if( line.isEmpty() )
+            return;
+
+        String[] words = line.split( "\\s+" );
+        switch( words[0] ){
+            case "image":
+                image = getReference( words );
+                break;
+            case "friction":
+                friction = getReference( words );
+                break;
+            case "tiles":
+                tiles = getReference( words );
+                break;
+            case "scale":
+                scale = getNumbers( words, 1 )[0];
+                if( !( scale > 0 ) )
+                    throw new IllegalArgumentException( "Scale has to be positive" );
+                break;
+            case "spawn":
+                spawn = getNumbers( words, 3 );
+                break;
+            case "barrierWidth":
+                double width = getNumbers( words, 1 )[0];
+                if( !Double.isNaN( barrierWidth ) && width != barrierWidth )
+                    throw new IllegalArgumentException( "All barriers have to be of the same width" );
+                barrierWidth = width;
+                break;
+            case "barrier":
+                if( Double.isNaN( barrierWidth ) )
+                    throw new IllegalArgumentException( "Barrier declared before barrierWidth" );
+                double[] points = getNumbers( words, -1 );
+                if( points.length < 4 || points.length % 2 != 0 )
+                    throw new IllegalArgumentException( "Barrier needs at least two points" );
+                for( int i = 0; i + 2 < points.length; i += 2 ){
+                    barriers = ensureCapacity( barriers, barrierValues + 4 );
+                    System.arraycopy( points, i, barriers, barrierValues, 4 );
+                    barrierValues += 4;
+                }
+                break;
+            case "checkpoint":
+                checkpoints = ensureCapacity( checkpoints, checkpointValues + 4 );
+                System.arraycopy( getNumbers( words, 4 ), 0, checkpoints, checkpointValues, 4 );
+                checkpointValues += 4;
+                break;
+            case "pit":
+                pitZones = ensureCapacity( pitZones, pitValues + 5 );
+                System.arraycopy( getNumbers( words, 5 ), 0, pitZones, pitValues, 5 );
+                pitValues += 5;
+                break;
+            default:
+                throw new IllegalArgumentException( "Unknown directive " + words[0] );
+        }
+    }
+
+    private static String getReference( String[] words ){
+        if( words.length != 2 )
+            throw new IllegalArgumentException( words[0] + " needs one reference without spaces" );
+        return words[1];
+    }
+
+    /**
+     * Parses arguments of directive as numbers.
+     *
+     * @param words     directive and its arguments
+     * @param count     expected number of arguments, -1 for any number
+     * @return          parsed arguments
+     */
+    private static double[] getNumbers( String[] words, int count ){
+        if( count >= 0 && words.length - 1 != count )
+            throw new IllegalArgumentException( words[0] + " needs " + count + " numbers" );
+        double[] numbers = new double[words.length - 1];
+        for( int i = 0; i < numbers.length; ++i ){
+            numbers[i] = Double.parseDouble( words[i + 1] );
+            if( !Double.isFinite( numbers[i] ) )
+                throw new IllegalArgumentException( "Invalid number " + words[i + 1] );
+        }
+        return numbers;
+    }
+
+    private static double[] ensureCapacity( double[] array, int size ){
+        return size <= array.length ? array : Arrays.copyOf( array, Math.max( size, 2 * array.length ) );
+    }
+
+    /**
+     * Converts declared geometry to world coordinates and builds grids.
+     */
+    private Track build() throws IOException {
+        if( tiles == null && ( image == null || friction == null ) )
+            throw new IOException( "Track needs image and friction, or tiles" );
+        if( Double.isNaN( scale ) )
+            throw new IOException( "Track needs scale" );
+        if( spawn == null )
+            throw new IOException( "Track needs spawn" );
+        if( checkpointValues == 0 )
+            throw new IOException( "Track needs start line" );
+
+        double heading = Math.toRadians( spawn[2] );
+        double[] worldToTrack = Track.getWorldToTrackTransform( scale, spawn[0], spawn[1], heading, new double[6] );
+
+        double[] pits = Arrays.copyOf( pitZones, pitValues );
+        for( int i = 0; i < pits.length; i += 5 ){
+            toWorld( pits, i, 4, worldToTrack );
+            pits[i + 4] /= scale;
+        }
+        double barrierRadius = Double.isNaN( barrierWidth ) ? 0 : barrierWidth / 2 / scale;
+        return new Track( image, friction, tiles, scale, spawn[0], spawn[1], heading,
+                new SegmentGrid( toWorld( Arrays.copyOf( barriers, barrierValues ), 0, barrierValues, worldToTrack ), barrierRadius, BARRIER_CELL_SIZE ),
+                new SegmentGrid( toWorld( Arrays.copyOf( checkpoints, checkpointValues ), 0, checkpointValues, worldToTrack ), 0, CHECKPOINT_CELL_SIZE ),
+                pits );
+    }
+
+    /**
+     * Converts points in place from track coordinates to world coordinates with inverse of given transform.
+     *
+     * @param points        array with coordinates x, y of points
+     * @param offset        index of the first coordinate
+     * @param length        number of coordinates
+     * @param worldToTrack  mxx, mxy, tx, myx, myy and ty of world to track transform
+     * @return              points parameter
+     */
+    private static double[] toWorld( double[] points, int offset, int length, double[] worldToTrack ){
+        double determinant = worldToTrack[0] * worldToTrack[4] - worldToTrack[1] * worldToTrack[3];
+        for( int i = offset; i < offset + length; i += 2 ){
+            double x = points[i] - worldToTrack[2];
+            double y = points[i + 1] - worldToTrack[5];
+            points[i] = ( worldToTrack[4] * x - worldToTrack[1] * y ) / determinant;
+            points[i + 1] = ( -worldToTrack[3] * x + worldToTrack[0] * y ) / determinant;
+        }
+        return points;
+    }
+
+    public static void main( String[] args ) throws IOException {
+        if( args.length != 2 ){
+            System.err.println( "Usage: TrackCompiler <definition.track> <output file>" );
+            System.exit( 1 );
+        }
+        Track track = compile( new File( args[0] ).toURI().toURL() );
+        track.save( new File( args[1] ) );
+        System.out.println( String.format( Locale.ROOT, "Compiled %d barriers, %d checkpoints and %d pit zones to %s",
+                track.getBarriers().getCount(), track.getCheckpoints().getCount(), track.getPitZoneCount(), args[1] ) );
+    }
+
+}
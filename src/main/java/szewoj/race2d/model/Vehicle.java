@@ -1,65 +1,127 @@
 package szewoj.race2d.model;
 
-import javafx.scene.transform.Rotate;
-import javafx.scene.transform.Translate;
 import szewoj.race2d.utilities.Percent;
+import szewoj.race2d.utilities.TrigBackend;
 import szewoj.race2d.utilities.Vector2;
 
-import java.util.List;
-
 import static java.lang.Math.abs;
 
 /**
  * Simulates Vehicle physics.
  * Implements bicycle car physics model.
+ * Does not depend on JavaFX, results of every tick are available as VehicleState.
  */
 public class Vehicle {
     //Physics related variables and constants:
-    private static final double TIME_CONST = 1.0/60;        //time of one tick
-    private static final double AR_CONST = 0.2;             //air resistance coefficient
-    private static final double RR_CONST = 8.4;             //rolling resistance coefficient
-    private static final double BR_CONST = 10000;           //braking torque
-    private static final double STIFFNESS = 24;             //tire stiffness
-    private static final double MASS_CONST = 1420;
-    private static final double WIDTH = 2;
-    private static final double LENGTH = 4.5;
-    private static final double CRITICAL_SPEED = 15;       //speed under which slip angle physics fails
-    private static final double METER_TO_PIXEL_RATIO = 17;
+    public static final double DEFAULT_TIME_STEP = 1.0/60;  //time of one tick at 60 Hz
+    static final double AR_CONST = 0.2;             //air resistance coefficient
+    static final double RR_CONST = 8.4;             //rolling resistance coefficient
+    static final double BR_CONST = 10000;           //braking torque
+    static final double MASS_CONST = 1420;
+    static final double WIDTH = 2;
+    static final double LENGTH = 4.5;
+    static final double CRITICAL_SPEED = 15;       //speed under which slip angle physics fails
+    static final double CG_POSITION = 2.4;          //centre of gravity measured from front axis
+    static final double CG_HEIGHT = 0.5;
+    static final double AXIS_DISTANCE = 1.6;
+    static final double FRONT_AXIS = 2.6;           //position of front axis relative to centre of gravity
+    static final double REAR_AXIS = -1.4;
+    static final double FUEL_CAPACITY = 54;
+    public static final double METER_TO_PIXEL_RATIO = 17;
+    public static final double PIVOT_X = 35.3;              //centre of gravity in car sprite coordinates
+    public static final double PIVOT_Y = 90;
+    //collision box of car sprite, relative to centre of gravity in sprite orientation:
+    public static final double HITBOX_HALF_WIDTH = 31.5 / METER_TO_PIXEL_RATIO;
+    public static final double HITBOX_HALF_LENGTH = 74.5 / METER_TO_PIXEL_RATIO;
+    public static final double HITBOX_OFFSET_X = (35.5 - PIVOT_X) / METER_TO_PIXEL_RATIO;
+    public static final double HITBOX_OFFSET_Y = (75.5 - PIVOT_Y) / METER_TO_PIXEL_RATIO;
+    private final double timeStep;                          //time of one tick
+    private final double tickScale;                         //time of one tick relative to default one
     private Vector2 velocity;
+    private Vector2 airDrag;
     private double yawRate;
     private Engine engine;
     private Gearbox gearbox;
     private FuelTank fuelTank;
     private Wheel frontWheels;
     private Wheel rearWheels;
+    private TireCompound tireCompound;
+    private TrigBackend trig;
     private WeightTransfer weight;
     private double momentOfInertia;
     private double rearEffectiveWeight;
     private double frontEffectiveWeight;
 
     //Input signal variables and constants:
-    private static final double GAIN_IN = 3.0/60;
-    private static final double LOSS_IN = 2.5/60;
+    public static final int INPUT_THROTTLE = 1;
+    public static final int INPUT_BRAKE = 2;
+    public static final int INPUT_LEFT = 4;
+    public static final int INPUT_RIGHT = 8;
+    public static final int INPUT_HANDBRAKE = 16;
+    private static final double GAIN_RATE = 3.0;            //input gain per second
+    private static final double LOSS_RATE = 2.5;            //input loss per second
+    private final double gainIn;
+    private final double lossIn;
     private Percent throttle;
     private Percent brake;
     private Percent steering;
     private boolean handbrake;
 
+    //World pose and displacement of the last tick:
+    private double x;
+    private double y;
+    private double heading;
+    private double translationX;
+    private double translationY;
+    private double turnPivotX;
+    private double turnPivotY;
+    private double turnAngle;
+    private double rotationAngle;
+    private VehicleState state;
+
     /**
-     * Default constructor of Vehicle
+     * Default constructor of Vehicle. Simulates 60 ticks per second.
      */
     public Vehicle(){
+        this( DEFAULT_TIME_STEP );
+    }
+
+    /**
+     * Constructor of Vehicle simulating ticks of custom length.
+     * Values changed every tick are scaled, so the car behaves the same regardless of tick rate.
+     *
+     * @param timeStep  time of one tick in seconds
+     */
+    public Vehicle( double timeStep ){
+        this( timeStep, EngineDefinition.getDefault() );
+    }
+
+    /**
+     * Constructor of Vehicle with custom engine simulating ticks of custom length.
+     *
+     * @param timeStep  time of one tick in seconds
+     * @param engineDefinition  description of engine curves
+     */
+    public Vehicle( double timeStep, EngineDefinition engineDefinition ){
+        this.timeStep = timeStep;
+        tickScale = timeStep / DEFAULT_TIME_STEP;
+        gainIn = GAIN_RATE * timeStep;
+        lossIn = LOSS_RATE * timeStep;
         velocity = new Vector2( 0, 0);
+        airDrag = new Vector2();
+        state = new VehicleState();
         yawRate = 0;
-        engine = new Engine();
+        engine = new Engine( engineDefinition, timeStep );
         throttle = new Percent();
         brake = new Percent();
         steering = new Percent( -1, 1 );
         gearbox = new Gearbox();
-        fuelTank = new FuelTank( 54 );
-        frontWheels = new Wheel(Wheel.FRONT, 0, 2.6);
-        rearWheels = new Wheel(Wheel.REAR, 0, -1.4);
-        weight = new WeightTransfer( MASS_CONST, 2.4, 0.5, 1.6 );
+        fuelTank = new FuelTank( FUEL_CAPACITY, timeStep );
+        tireCompound = LinearTireCompound.INSTANCE;
+        trig = TrigBackend.JAVA;
+        frontWheels = new Wheel(Wheel.FRONT, 0, FRONT_AXIS, timeStep);
+        rearWheels = new Wheel(Wheel.REAR, 0, REAR_AXIS, timeStep);
+        weight = new WeightTransfer( MASS_CONST, CG_POSITION, CG_HEIGHT, AXIS_DISTANCE );
         momentOfInertia = weight.getMass() * ( WIDTH*WIDTH + LENGTH*LENGTH) / 12;
         rearEffectiveWeight =  weight.getEffectiveWeightOnRear( 0 );
         frontEffectiveWeight = weight.getEffectiveWeightOnFront( 0 );
@@ -68,44 +130,59 @@ public class Vehicle {
     /**
      * Simulates input inertia.
      *
-     * @param inputs    array of string codes
+     * @param inputMask     bit mask of pressed INPUT_ constants
      */
-    public void updateInputs(List<String> inputs){
+    public void updateInputs( int inputMask ){
 
-        if( inputs.contains("UP") || inputs.contains("W") )
-            throttle.addPercent(GAIN_IN);
+        if( (inputMask & INPUT_THROTTLE) != 0 )
+            throttle.addPercent(gainIn);
         else
-            throttle.addPercent(-LOSS_IN);
+            throttle.addPercent(-lossIn);
 
-        if( inputs.contains("DOWN") || inputs.contains("S") )
-            brake.addPercent(GAIN_IN);
+        if( (inputMask & INPUT_BRAKE) != 0 )
+            brake.addPercent(gainIn);
         else
-            brake.addPercent(-LOSS_IN);
+            brake.addPercent(-lossIn);
 
-        handbrake = inputs.contains("SPACE");
+        handbrake = (inputMask & INPUT_HANDBRAKE) != 0;
 
-        if( inputs.contains("RIGHT") || inputs.contains("D") ) {
+        if( (inputMask & INPUT_RIGHT) != 0 ) {
             if( Math.signum(steering.getPercent()) < 0 )
                 steering.setPercent( 0 );
             else
-                steering.addPercent(GAIN_IN);
+                steering.addPercent(gainIn);
         }
 
-        if( inputs.contains("LEFT") || inputs.contains("A")) {
+        if( (inputMask & INPUT_LEFT) != 0 ) {
             if( Math.signum(steering.getPercent()) > 0 )
                 steering.setPercent( 0 );
             else
-                steering.addPercent(-GAIN_IN);
+                steering.addPercent(-gainIn);
         }
 
-        if( !inputs.contains("RIGHT") && !inputs.contains("LEFT") && !inputs.contains("A") && !inputs.contains("D") ) {
-            steering.addPercent(-LOSS_IN * Math.signum(steering.getPercent()));
+        if( (inputMask & (INPUT_LEFT | INPUT_RIGHT)) == 0 ) {
+            steering.addPercent(-lossIn * Math.signum(steering.getPercent()));
             if( abs(steering.getPercent()) < 0.05 )
                 steering.setPercent( 0 );
         }
 
     }
 
+    /**
+     * Sets analog inputs directly, without inertia of updateInputs, for drivers computing them like AiDriver.
+     * Values are limited to ranges of the inputs, and handbrake is released.
+     *
+     * @param throttle  throttle in range 0.0 - 1.0
+     * @param brake     brake in range 0.0 - 1.0
+     * @param steering  steering in range -1.0 (full left) - 1.0 (full right)
+     */
+    public void setInputs( double throttle, double brake, double steering ){
+        this.throttle.setPercent( throttle );
+        this.brake.setPercent( brake );
+        this.steering.setPercent( steering );
+        handbrake = false;
+    }
+
     /**
      * Calculates longitudinal velocity in kilometers per hour.
      *
@@ -198,18 +275,37 @@ public class Vehicle {
     }
 
     /**
-     * Calculates reduction of traction based on longitudinal slip.
-     * Simulates understeer when braking and oversteer when accelerating.
+     * Sets tire model used by all wheels.
+     *
+     * @param compound  tire compound, LinearTireCompound by default
+     */
+    public void setTireCompound( TireCompound compound ){
+        tireCompound = compound;
+    }
+
+    /**
+     * Getter of tireCompound property.
+     *
+     * @return  tire model used by all wheels
+     */
+    public TireCompound getTireCompound(){
+        return tireCompound;
+    }
+
+    /**
+     * Sets implementation of trigonometric functions used by physics of car and its wheels.
      *
-     * @param longitudinalSlipRatio     longitudinal slip of tire
-     * @return                          traction reduction coefficient
+     * @param backend   implementation of trigonometric functions, TrigBackend.JAVA by default
      */
-    private double getSlipTractionCoefficient(double longitudinalSlipRatio ){
-        return 1.0 / (1+10*Math.abs(longitudinalSlipRatio));
+    public void setTrigBackend( TrigBackend backend ){
+        trig = backend;
+        frontWheels.setTrigBackend( backend );
+        rearWheels.setTrigBackend( backend );
     }
 
     /**
      * Updates velocity vector of car due to collision.
+     * Has to be called every tick while collision lasts.
      *
      * @param collision     vector from point of collision to centre of car
      */
@@ -217,7 +313,7 @@ public class Vehicle {
         collision.setY( -collision.getY() / 17 );
         collision.setX( collision.getX() / 17 );
 
-        double strength = (1 - collision.length()/5.20);
+        double strength = (1 - collision.length()/5.20) * tickScale;
 
         velocity.setX( velocity.getX()  +  strength*collision.getX() * Math.abs(velocity.getX()) + strength*collision.getX() );
         velocity.setY( velocity.getY()  +  strength*collision.getY() * Math.abs(velocity.getY()) + strength*collision.getY() );
@@ -225,15 +321,33 @@ public class Vehicle {
 
     /**
      * Main working loop of car simulation.
-     * Calculates new values of properties.
-     * Edits value of parameters to reflect displacement of the car.
+     * Calculates new values of properties and updates world pose of the car.
+     * Does not allocate any objects, returned instance is owned by the Vehicle and overwritten by every tick.
      *
-     * @param translation   linear displacement
-     * @param turn          rotation around turn radius
-     * @param rotation      rotation around centre
+     * @return  VehicleState describing the car after the tick
      */
-    public void calculateTransformation( Translate translation, Rotate turn,  Rotate rotation ){
-        Vector2 airDrag = new Vector2();
+    public VehicleState step(){
+        return step( state );
+    }
+
+    /**
+     * Main working loop of car simulation.
+     * Calculates new values of properties and updates world pose of the car.
+     *
+     * @param out   VehicleState to be filled with state of the car after the tick
+     * @return      out parameter
+     */
+    public VehicleState step( VehicleState out ){
+        calculateTransformation();
+        updatePose();
+        return getState( out );
+    }
+
+    /**
+     * Calculates new values of properties.
+     * Stores displacement of the car in car sprite coordinate system.
+     */
+    private void calculateTransformation(){
         double rollRes;
         double rearBrakingTorque;
         double frontBrakingTorque;
@@ -254,6 +368,13 @@ public class Vehicle {
         double yawTorque = 0;
         double steeringAngle = Math.toRadians( -45 * steering.getPercent() );
 
+        translationX = 0;
+        translationY = 0;
+        turnPivotX = 0;
+        turnPivotY = 0;
+        turnAngle = 0;
+        rotationAngle = 0;
+
         weight.setMass( Vehicle.MASS_CONST + fuelTank.getMass() );
 
         //moment of inertia of cuboid with Steiner's equation for displaced axis
@@ -280,39 +401,16 @@ public class Vehicle {
         //Physics using slip
             //Calculating slip:
 
-            frontSlipAngle = frontWheels.getSlipAngle(velocity, yawRate, steeringAngle );
-
-            if (frontSlipAngle > 0.08)
-                frontSlipAngle = 0.07;
-            if (frontSlipAngle < -0.08)
-                frontSlipAngle = -0.07;
-
-            rearSlipAngle = rearWheels.getSlipAngle(velocity, yawRate);
-
-            if (rearSlipAngle > 0.08)
-                rearSlipAngle = 0.07;
-            if (rearSlipAngle < -0.08)
-                rearSlipAngle = -0.07;
-
-            rearLongitudinalSlipRatio = rearWheels.getSlipRatio(velocity.getY());
-
-            if (rearLongitudinalSlipRatio > 0.06)
-                rearLongitudinalSlipRatio = 0.05;
-            if (rearLongitudinalSlipRatio < -0.06)
-                rearLongitudinalSlipRatio = -0.05;
-
-            frontLongitudinalSlipRatio = frontWheels.getSlipRatio(velocity.getY());
-
-            if (frontLongitudinalSlipRatio > 0.06)
-                frontLongitudinalSlipRatio = 0.05;
-            if (frontLongitudinalSlipRatio < -0.06)
-                frontLongitudinalSlipRatio = -0.05;
+            frontSlipAngle = tireCompound.limitSlipAngle( frontWheels.getSlipAngle(velocity, yawRate, steeringAngle ) );
+            rearSlipAngle = tireCompound.limitSlipAngle( rearWheels.getSlipAngle(velocity, yawRate) );
+            rearLongitudinalSlipRatio = tireCompound.limitSlipRatio( rearWheels.getSlipRatio(velocity.getY()) );
+            frontLongitudinalSlipRatio = tireCompound.limitSlipRatio( frontWheels.getSlipRatio(velocity.getY()) );
 
             //Calculating lateral forces:
-            frontLateralForce = -STIFFNESS * frontEffectiveWeight * Math.tan(frontSlipAngle) * frontWheels.getTraction() * getSlipTractionCoefficient(frontLongitudinalSlipRatio);
-            rearLateralForce = -STIFFNESS * rearEffectiveWeight * Math.tan(rearSlipAngle) * rearWheels.getTraction() * getSlipTractionCoefficient(rearLongitudinalSlipRatio);
+            frontLateralForce = -frontEffectiveWeight * frontWheels.getTraction() * tireCompound.getLateralCoefficient(frontSlipAngle, frontLongitudinalSlipRatio);
+            rearLateralForce = -rearEffectiveWeight * rearWheels.getTraction() * tireCompound.getLateralCoefficient(rearSlipAngle, rearLongitudinalSlipRatio);
 
-            corneringForce = rearLateralForce + Math.cos(steeringAngle) * frontLateralForce + airDrag.getX();
+            corneringForce = rearLateralForce + trig.cos(steeringAngle) * frontLateralForce + airDrag.getX();
             yawTorque = -rearLateralForce * 1.4 + frontLateralForce * 2.6;
 
             //Calculating longitudinal forces:
@@ -327,16 +425,16 @@ public class Vehicle {
             else
                 frontBrakingTorque = (frontWheels.getRotationSpeed() / 0.05) * BR_CONST * brake.getPercent();
 
-            rearTractiveForce = STIFFNESS * rearLongitudinalSlipRatio * rearWheels.getTraction() * rearEffectiveWeight;
-            frontTractiveForce = STIFFNESS * frontLongitudinalSlipRatio * frontWheels.getTraction() * frontEffectiveWeight;
+            rearTractiveForce = tireCompound.getLongitudinalCoefficient(rearSlipAngle, rearLongitudinalSlipRatio) * rearWheels.getTraction() * rearEffectiveWeight;
+            frontTractiveForce = tireCompound.getLongitudinalCoefficient(frontSlipAngle, frontLongitudinalSlipRatio) * frontWheels.getTraction() * frontEffectiveWeight;
 
             resultantForce = rearTractiveForce + frontTractiveForce + rollRes + airDrag.getY();
 
             rearResultantTorque = driveTorque + engineBrakingTorque + rearBrakingTorque + ( rearTractiveForce + rollRes/2 + airDrag.getY()/2 ) * Wheel.RADIUS;
             frontResultantTorque = frontBrakingTorque + ( -frontTractiveForce + rollRes/2 + airDrag.getY()/2 ) * Wheel.RADIUS;
 
-            rearWheels.increaseRotationSpeed(-rearResultantTorque * Vehicle.TIME_CONST / Wheel.INERTIA);
-            frontWheels.increaseRotationSpeed(-frontResultantTorque * Vehicle.TIME_CONST / Wheel.INERTIA);
+            rearWheels.increaseRotationSpeed(-rearResultantTorque * timeStep / Wheel.INERTIA);
+            frontWheels.increaseRotationSpeed(-frontResultantTorque * timeStep / Wheel.INERTIA);
 
             frontWheels.degradeTire( frontLongitudinalSlipRatio, frontSlipAngle );
             rearWheels.degradeTire( rearLongitudinalSlipRatio, rearSlipAngle );
@@ -365,26 +463,24 @@ public class Vehicle {
 
         if( Math.abs(velocity.getY()) > CRITICAL_SPEED ){
         //Application of turn forces and moments over critical speed
-            yawRate += yawTorque / momentOfInertia * TIME_CONST;
+            yawRate += yawTorque / momentOfInertia * timeStep;
 
-            velocity.setY( velocity.getY() + resultantForce * Vehicle.TIME_CONST / weight.getMass() );
-            velocity.setX( velocity.getX() + (corneringForce + airDrag.getX()) * Vehicle.TIME_CONST / weight.getMass() );
+            velocity.setY( velocity.getY() + resultantForce * timeStep / weight.getMass() );
+            velocity.setX( velocity.getX() + (corneringForce + airDrag.getX()) * timeStep / weight.getMass() );
 
-            translation.setX( METER_TO_PIXEL_RATIO * velocity.getX() * TIME_CONST );
-            translation.setY( -METER_TO_PIXEL_RATIO * velocity.getY() * TIME_CONST );
+            translationX = METER_TO_PIXEL_RATIO * velocity.getX() * timeStep;
+            translationY = -METER_TO_PIXEL_RATIO * velocity.getY() * timeStep;
 
-            rotation.setPivotX(35.3);
-            rotation.setPivotY( 90 );
-            rotation.setAngle( Math.toDegrees( yawRate * TIME_CONST ) );
+            rotationAngle = Math.toDegrees( yawRate * timeStep );
 
         } else if( Math.abs(velocity.getX()) > 0.05 ) {
         //Application of turn during free slide
 
             if( Math.abs(yawRate) > 0.1 ) {
-                yawTorque = -20 * weight.getMass() * Math.signum(yawRate) - weight.getMass() * Math.signum(velocity.getY()) * Math.tan(steeringAngle);
+                yawTorque = -20 * weight.getMass() * Math.signum(yawRate) - weight.getMass() * Math.signum(velocity.getY()) * trig.tan(steeringAngle);
 
             } else {
-                yawTorque = -10 * weight.getMass() * yawRate - weight.getMass() * Math.signum(velocity.getY()) * Math.tan(steeringAngle);
+                yawTorque = -10 * weight.getMass() * yawRate - weight.getMass() * Math.signum(velocity.getY()) * trig.tan(steeringAngle);
             }
 
             if( abs(velocity.getX()) > 0.1 ) {
@@ -394,39 +490,37 @@ public class Vehicle {
                 corneringForce = -10 * weight.getMass() * velocity.getX();
             }
 
-            yawRate += yawTorque / momentOfInertia * TIME_CONST;
+            yawRate += yawTorque / momentOfInertia * timeStep;
 
-            velocity.setY( velocity.getY() + resultantForce * Vehicle.TIME_CONST / weight.getMass() );
-            velocity.setX( velocity.getX() + (corneringForce + airDrag.getX()) * Vehicle.TIME_CONST / weight.getMass() );
+            velocity.setY( velocity.getY() + resultantForce * timeStep / weight.getMass() );
+            velocity.setX( velocity.getX() + (corneringForce + airDrag.getX()) * timeStep / weight.getMass() );
 
-            translation.setX( METER_TO_PIXEL_RATIO * velocity.getX() * TIME_CONST );
-            translation.setY( -METER_TO_PIXEL_RATIO * velocity.getY() * TIME_CONST );
+            translationX = METER_TO_PIXEL_RATIO * velocity.getX() * timeStep;
+            translationY = -METER_TO_PIXEL_RATIO * velocity.getY() * timeStep;
 
-            rotation.setPivotX(35.3);
-            rotation.setPivotY( 90 );
-            rotation.setAngle( Math.toDegrees( yawRate * TIME_CONST ) );
+            rotationAngle = Math.toDegrees( yawRate * timeStep );
 
         } else {
         //Application of movement under critical speed
             if( steeringAngle != 0 ){
-                double turnRadius = - (LENGTH) / Math.sin( steeringAngle );
+                double turnRadius = - (LENGTH) / trig.sin( steeringAngle );
 
                 yawRate = velocity.getY() / turnRadius;
 
-                turn.setPivotX(35.3 + METER_TO_PIXEL_RATIO * turnRadius);
-                turn.setPivotY(130);
-                turn.setAngle( yawRate );
+                turnPivotX = PIVOT_X + METER_TO_PIXEL_RATIO * turnRadius;
+                turnPivotY = 130;
+                turnAngle = yawRate * tickScale;
 
-                velocity.setY( velocity.getY() + resultantForce * Vehicle.TIME_CONST / weight.getMass() );
+                velocity.setY( velocity.getY() + resultantForce * timeStep / weight.getMass() );
 
             } else {
-                velocity.setY( velocity.getY() + resultantForce * Vehicle.TIME_CONST / weight.getMass() );
-                translation.setY( -METER_TO_PIXEL_RATIO * velocity.getY() * TIME_CONST );
+                velocity.setY( velocity.getY() + resultantForce * timeStep / weight.getMass() );
+                translationY = -METER_TO_PIXEL_RATIO * velocity.getY() * timeStep;
             }
         }
 
-        velocity = new Vector2( velocity.getX()*Math.cos( Math.toRadians(rotation.getAngle()) ) - velocity.getY()*Math.sin( Math.toRadians(rotation.getAngle()) ),
-                                 velocity.getX()*Math.sin( Math.toRadians(rotation.getAngle()) ) + velocity.getY()*Math.cos( Math.toRadians( rotation.getAngle() )) );
+        double rotationRadians = Math.toRadians( rotationAngle );
+        velocity.rotate( trig.cos( rotationRadians ), trig.sin( rotationRadians ) );
 
         rearEffectiveWeight = weight.getEffectiveWeightOnRear( resultantForce );
         frontEffectiveWeight = weight.getEffectiveWeightOnFront( resultantForce );
@@ -441,6 +535,133 @@ public class Vehicle {
         roundVariablesToZero();
     }
 
+    /**
+     * Moves world pose of the car by displacement of the last tick.
+     * Displacement is composed the same way as transforms of car sprite: translation, turn and rotation around centre.
+     */
+    private void updatePose(){
+        double turnCos = 1;
+        double turnSin = 0;
+        if( turnAngle != 0 ){
+            turnCos = trig.cos( Math.toRadians(turnAngle) );
+            turnSin = trig.sin( Math.toRadians(turnAngle) );
+        }
+        double pivotOffsetX = PIVOT_X - turnPivotX;
+        double pivotOffsetY = PIVOT_Y - turnPivotY;
+
+        //displacement of centre of gravity in car sprite coordinate system
+        double localX = turnPivotX + turnCos * pivotOffsetX - turnSin * pivotOffsetY + translationX - PIVOT_X;
+        double localY = turnPivotY + turnSin * pivotOffsetX + turnCos * pivotOffsetY + translationY - PIVOT_Y;
+
+        double headingCos = trig.cos( heading );
+        double headingSin = trig.sin( heading );
+
+        x += ( headingCos * localX - headingSin * localY ) / METER_TO_PIXEL_RATIO;
+        y += ( headingSin * localX + headingCos * localY ) / METER_TO_PIXEL_RATIO;
+        heading += Math.toRadians( turnAngle + rotationAngle );
+    }
+
+    /**
+     * Fills given VehicleState with current state of the car.
+     *
+     * @param out   VehicleState to be filled
+     * @return      out parameter
+     */
+    public VehicleState getState( VehicleState out ){
+        out.x = x;
+        out.y = y;
+        out.heading = heading;
+        out.lateralVelocity = velocity.getX();
+        out.longitudinalVelocity = velocity.getY();
+        out.yawRate = yawRate;
+        out.frontWheelSpeed = frontWheels.getRotationSpeed();
+        out.rearWheelSpeed = rearWheels.getRotationSpeed();
+        out.rpm = engine.getRpm();
+        out.gear = gearbox.getGear();
+        out.fuel = fuelTank.getPercent();
+        out.frontDurability = frontWheels.getDurability();
+        out.rearDurability = rearWheels.getDurability();
+        return out;
+    }
+
+    /**
+     * Sets velocity of the car in car coordinate system.
+     *
+     * @param lateral       lateral velocity in metres per second
+     * @param longitudinal  longitudinal velocity in metres per second
+     */
+    public void setVelocity( double lateral, double longitudinal ){
+        velocity.setX( lateral );
+        velocity.setY( longitudinal );
+    }
+
+    /**
+     * Sets yaw rate of the car.
+     *
+     * @param value     yaw rate in radians per second
+     */
+    public void setYawRate( double value ){
+        yawRate = value;
+    }
+
+    /**
+     * Returns time of one tick.
+     *
+     * @return  time of one tick in seconds
+     */
+    public double getTimeStep(){
+        return timeStep;
+    }
+
+    /**
+     * Places the car in world coordinate system.
+     *
+     * @param x         x coordinate of centre of gravity in metres
+     * @param y         y coordinate of centre of gravity in metres, axis is pointing down
+     * @param heading   heading in radians, where 0 is facing up and positive values are clockwise
+     */
+    public void setPose( double x, double y, double heading ){
+        this.x = x;
+        this.y = y;
+        this.heading = heading;
+    }
+
+    /**
+     * Returns x coordinate of centre of gravity in world coordinate system.
+     *
+     * @return  x coordinate in metres
+     */
+    public double getX(){
+        return x;
+    }
+
+    /**
+     * Returns y coordinate of centre of gravity in world coordinate system.
+     *
+     * @return  y coordinate in metres
+     */
+    public double getY(){
+        return y;
+    }
+
+    /**
+     * Returns heading of car, where 0 is facing up and positive values are clockwise.
+     *
+     * @return  heading in radians
+     */
+    public double getHeading(){
+        return heading;
+    }
+
+    /**
+     * Returns yaw rate of car.
+     *
+     * @return  yaw rate in radians per second
+     */
+    public double getYawRate(){
+        return yawRate;
+    }
+
     /**
      * Calls shift() method of gearbox property.
      */
@@ -0,0 +1,580 @@
+package szewoj.race2d.model;
+
+import szewoj.race2d.utilities.TrigBackend;
+
+/**
+ * Simulates physics of many vehicles at once.
+ * State of every car is kept in primitive arrays (one slot per car) instead of graph of objects,
+ * and all cars are stepped in one loop using the same equations as Vehicle.
+ * Cars are controlled with throttle, brake and steering values directly, without input inertia.
+ */
+public class VehicleBatch {
+    private final int size;
+    private final double timeStep;
+    private final double tickScale;
+    private final double rpmResponse;
+    private final double neutralRpmResponse;
+    private final double rpmDrop;
+    private final double fuelConsumptionRate;
+    private final double refuelSpeed;
+    private final double degradationRatio;
+    private TrigBackend trig;
+
+    //Pose:
+    final double[] x;
+    final double[] y;
+    final double[] heading;
+
+    //Velocities:
+    final double[] lateralVelocity;
+    final double[] longitudinalVelocity;
+    final double[] yawRate;
+    final double[] frontWheelSpeed;
+    final double[] rearWheelSpeed;
+
+    //Tires and surface:
+    final double[] frontDurability;
+    final double[] rearDurability;
+    final TireCompound[] tireCompound;
+    final double[] frontFriction;
+    final double[] rearFriction;
+    final double[] frontEffectiveWeight;
+    final double[] rearEffectiveWeight;
+
+    //Drivetrain and consumables:
+    final EngineDefinition[] engine;
+    final double[] rpm;
+    final int[] gear;
+    final int[] previousGear;
+    final int[] readyGear;
+    final double[] fuelVolume;
+
+    //Controls:
+    final double[] throttle;
+    final double[] brake;
+    final double[] steering;
+    final boolean[] handbrake;
+
+    /**
+     * Constructor of VehicleBatch. Simulates 60 ticks per second.
+     *
+     * @param size  number of simulated cars
+     */
+    public VehicleBatch( int size ){
+        this( size, Vehicle.DEFAULT_TIME_STEP );
+    }
+
+    /**
+     * Constructor of VehicleBatch simulating ticks of custom length.
+     * Every car starts in the same state as newly created Vehicle.
+     *
+     * @param size      number of simulated cars
+     * @param timeStep  time of one tick in seconds
+     */
+    public VehicleBatch( int size, double timeStep ){
+        this.size = size;
+        this.timeStep = timeStep;
+        tickScale = timeStep / Vehicle.DEFAULT_TIME_STEP;
+        rpmResponse = Engine.getRpmResponse( timeStep );
+        neutralRpmResponse = Engine.getNeutralRpmResponse( timeStep );
+        rpmDrop = Engine.getRpmDrop( timeStep );
+        fuelConsumptionRate = FuelTank.getConsumptionRate( timeStep );
+        refuelSpeed = FuelTank.getRefuelSpeed( timeStep );
+        degradationRatio = Wheel.getDegradationRatio( timeStep );
+        trig = TrigBackend.JAVA;
+
+        x = new double[size];
+        y = new double[size];
+        heading = new double[size];
+        lateralVelocity = new double[size];
+        longitudinalVelocity = new double[size];
+        yawRate = new double[size];
+        frontWheelSpeed = new double[size];
+        rearWheelSpeed = new double[size];
+        frontDurability = new double[size];
+        rearDurability = new double[size];
+        tireCompound = new TireCompound[size];
+        frontFriction = new double[size];
+        rearFriction = new double[size];
+        frontEffectiveWeight = new double[size];
+        rearEffectiveWeight = new double[size];
+        engine = new EngineDefinition[size];
+        rpm = new double[size];
+        gear = new int[size];
+        previousGear = new int[size];
+        readyGear = new int[size];
+        fuelVolume = new double[size];
+        throttle = new double[size];
+        brake = new double[size];
+        steering = new double[size];
+        handbrake = new boolean[size];
+
+        for( int i = 0; i < size; ++i ){
+            frontDurability[i] = 1;
+            rearDurability[i] = 1;
+            tireCompound[i] = LinearTireCompound.INSTANCE;
+            engine[i] = EngineDefinition.getDefault();
+            rpm[i] = engine[i].getIdleRpm();
+            fuelVolume[i] = Vehicle.FUEL_CAPACITY;
+            rearEffectiveWeight[i] = WeightTransfer.getEffectiveWeightOnRear( Vehicle.MASS_CONST, Vehicle.CG_POSITION, Vehicle.CG_HEIGHT, Vehicle.AXIS_DISTANCE, 0 );
+            frontEffectiveWeight[i] = WeightTransfer.getEffectiveWeightOnFront( Vehicle.MASS_CONST, Vehicle.CG_POSITION, Vehicle.CG_HEIGHT, Vehicle.AXIS_DISTANCE, 0 );
+        }
+    }
+
+    /**
+     * Returns number of simulated cars.
+     *
+     * @return  number of cars
+     */
+    public int size(){
+        return size;
+    }
+
+    /**
+     * Returns time of one tick.
+     *
+     * @return  time of one tick in seconds
+     */
+    public double getTimeStep(){
+        return timeStep;
+    }
+
+    /**
+     * Sets implementation of trigonometric functions used by physics of all cars.
+     *
+     * @param backend   implementation of trigonometric functions, TrigBackend.JAVA by default
+     */
+    public void setTrigBackend( TrigBackend backend ){
+        trig = backend;
+    }
+
+    /**
+     * Simulates one tick of every car.
+     */
+    public void step(){
+        step( 0, size );
+    }
+
+    /**
+     * Simulates one tick of cars with indexes in given range.
+     * Cars are independent of each other, so disjoint ranges can be stepped concurrently.
+     *
+     * @param from  index of first simulated car, inclusive
+     * @param to    index of last simulated car, exclusive
+     */
+    public void step( int from, int to ){
+        for( int i = from; i < to; ++i )
+            stepCar( i );
+    }
+
+    /**
+     * Simulates one tick of single car. Mirrors Vehicle.step() equation by equation.
+     *
+     * @param i     index of car
+     */
+    private void stepCar( int i ){
+        double vx = lateralVelocity[i];
+        double vy = longitudinalVelocity[i];
+        double yaw = yawRate[i];
+        double frontSpeed = frontWheelSpeed[i];
+        double rearSpeed = rearWheelSpeed[i];
+        double carThrottle = throttle[i];
+        double carBrake = brake[i];
+        double rollRes;
+        double rearBrakingTorque;
+        double frontBrakingTorque;
+        double driveTorque;
+        double engineBrakingTorque;
+        double rearResultantTorque;
+        double frontResultantTorque;
+        double resultantForce;
+        double corneringForce = 0;
+        double yawTorque = 0;
+        double translationX = 0;
+        double translationY = 0;
+        double turnPivotX = 0;
+        double turnPivotY = 0;
+        double turnAngle = 0;
+        double rotationAngle = 0;
+        double steeringAngle = Math.toRadians( -45 * steering[i] );
+
+        double mass = Vehicle.MASS_CONST + fuelVolume[i] * FuelTank.FUEL_DENSITY;
+
+        //moment of inertia of cuboid with Steiner's equation for displaced axis
+        double momentOfInertia = mass * ( ( Vehicle.WIDTH*Vehicle.WIDTH + Vehicle.LENGTH*Vehicle.LENGTH) / 12 + 1.6 * 1.6 );
+
+        if( handbrake[i] )
+            rearSpeed = 0;
+
+        double airDragX = -Vehicle.AR_CONST * vx * Math.abs(vx);
+        double airDragY = -Vehicle.AR_CONST * vy * Math.abs(vy);
+
+        rollRes = -Vehicle.RR_CONST * vy;
+
+        double gearRatio = Gearbox.getGearRatio( gear[i] );
+        EngineDefinition carEngine = engine[i];
+
+        if( fuelVolume[i] == 0 )
+            driveTorque = 0;
+        else
+            driveTorque = -carEngine.getTorque( rpm[i] ) * gearRatio * Gearbox.DIFF_RATIO * Gearbox.TRANS_EFF * carThrottle;
+
+        engineBrakingTorque = -carEngine.getEngineBraking( rpm[i] ) * gearRatio * Gearbox.DIFF_RATIO * Gearbox.TRANS_EFF * (1 - carThrottle);
+
+        if( Math.abs(vy) > 0.5 ) {
+        //Physics using slip
+            double frontTraction = Wheel.getTraction( frontDurability[i], frontFriction[i] );
+            double rearTraction = Wheel.getTraction( rearDurability[i], rearFriction[i] );
+
+            TireCompound tires = tireCompound[i];
+            double frontSlipAngle = tires.limitSlipAngle( -steeringAngle * Math.signum(vy) + trig.atan( vx + yaw*Math.abs(Vehicle.FRONT_AXIS) / Math.abs(vy) ) );
+            double rearSlipAngle = tires.limitSlipAngle( trig.atan( vx - yaw*Math.abs(Vehicle.REAR_AXIS) / vy ) );
+            double rearSlipRatio = tires.limitSlipRatio( (rearSpeed*Wheel.RADIUS - vy) / Math.abs(vy) );
+            double frontSlipRatio = tires.limitSlipRatio( (frontSpeed*Wheel.RADIUS - vy) / Math.abs(vy) );
+
+            //Calculating lateral forces:
+            double frontLateralForce = -frontEffectiveWeight[i] * frontTraction * tires.getLateralCoefficient(frontSlipAngle, frontSlipRatio);
+            double rearLateralForce = -rearEffectiveWeight[i] * rearTraction * tires.getLateralCoefficient(rearSlipAngle, rearSlipRatio);
+
+            corneringForce = rearLateralForce + trig.cos(steeringAngle) * frontLateralForce + airDragX;
+            yawTorque = -rearLateralForce * 1.4 + frontLateralForce * 2.6;
+
+            //Calculating longitudinal forces:
+            if( Math.abs(rearSpeed) > 0.05 )
+                rearBrakingTorque = rearSpeed / Math.abs(rearSpeed) * Vehicle.BR_CONST * carBrake;
+            else
+                rearBrakingTorque = (rearSpeed / 0.05) * Vehicle.BR_CONST * carBrake;
+
+            if( Math.abs(frontSpeed) > 0.05 )
+                frontBrakingTorque = frontSpeed / Math.abs(frontSpeed) * Vehicle.BR_CONST * carBrake;
+            else
+                frontBrakingTorque = (frontSpeed / 0.05) * Vehicle.BR_CONST * carBrake;
+
+            double rearTractiveForce = tires.getLongitudinalCoefficient(rearSlipAngle, rearSlipRatio) * rearTraction * rearEffectiveWeight[i];
+            double frontTractiveForce = tires.getLongitudinalCoefficient(frontSlipAngle, frontSlipRatio) * frontTraction * frontEffectiveWeight[i];
+
+            resultantForce = rearTractiveForce + frontTractiveForce + rollRes + airDragY;
+
+            rearResultantTorque = driveTorque + engineBrakingTorque + rearBrakingTorque + ( rearTractiveForce + rollRes/2 + airDragY/2 ) * Wheel.RADIUS;
+            frontResultantTorque = frontBrakingTorque + ( -frontTractiveForce + rollRes/2 + airDragY/2 ) * Wheel.RADIUS;
+
+            rearSpeed += -rearResultantTorque * timeStep / Wheel.INERTIA;
+            frontSpeed += -frontResultantTorque * timeStep / Wheel.INERTIA;
+
+            frontDurability[i] = clamp( frontDurability[i] - Wheel.getWear( frontSlipRatio, frontSlipAngle, degradationRatio ) );
+            rearDurability[i] = clamp( rearDurability[i] - Wheel.getWear( rearSlipRatio, rearSlipAngle, degradationRatio ) );
+        } else {
+        //Physics using forces on centre of gravity
+            if( Math.abs(vy) > 0.1 )
+                rearBrakingTorque = vy / Math.abs(vy) * Vehicle.BR_CONST * carBrake;
+            else
+                rearBrakingTorque = (vy / 0.1) * Vehicle.BR_CONST * carBrake;
+
+            if( Math.abs(frontSpeed) > 0.1 )
+                frontBrakingTorque = frontSpeed / Math.abs(frontSpeed) * Vehicle.BR_CONST * carBrake;
+            else
+                frontBrakingTorque = (frontSpeed / 0.1) * Vehicle.BR_CONST * carBrake;
+
+            rearResultantTorque = driveTorque + engineBrakingTorque + rearBrakingTorque;
+            frontResultantTorque = frontBrakingTorque;
+            resultantForce = -(rearResultantTorque + frontResultantTorque)/Wheel.RADIUS + rollRes + airDragY;
+
+            //Wheels are still slipping to allow transitions between slip based and non slip based physics
+            rearSpeed = 2*vy/Wheel.RADIUS;
+            frontSpeed = 1.5*vy/Wheel.RADIUS;
+        }
+
+        if( Math.abs(vy) > Vehicle.CRITICAL_SPEED ){
+        //Application of turn forces and moments over critical speed
+            yaw += yawTorque / momentOfInertia * timeStep;
+
+            vy = vy + resultantForce * timeStep / mass;
+            vx = vx + (corneringForce + airDragX) * timeStep / mass;
+
+            translationX = Vehicle.METER_TO_PIXEL_RATIO * vx * timeStep;
+            translationY = -Vehicle.METER_TO_PIXEL_RATIO * vy * timeStep;
+
+            rotationAngle = Math.toDegrees( yaw * timeStep );
+
+        } else if( Math.abs(vx) > 0.05 ) {
+        //Application of turn during free slide
+            if( Math.abs(yaw) > 0.1 )
+                yawTorque = -20 * mass * Math.signum(yaw) - mass * Math.signum(vy) * trig.tan(steeringAngle);
+            else
+                yawTorque = -10 * mass * yaw - mass * Math.signum(vy) * trig.tan(steeringAngle);
+
+            if( Math.abs(vx) > 0.1 )
+                corneringForce = -15 * mass * Math.signum(vx);
+            else
+                corneringForce = -10 * mass * vx;
+
+            yaw += yawTorque / momentOfInertia * timeStep;
+
+            vy = vy + resultantForce * timeStep / mass;
+            vx = vx + (corneringForce + airDragX) * timeStep / mass;
+
+            translationX = Vehicle.METER_TO_PIXEL_RATIO * vx * timeStep;
+            translationY = -Vehicle.METER_TO_PIXEL_RATIO * vy * timeStep;
+
+            rotationAngle = Math.toDegrees( yaw * timeStep );
+
+        } else {
+        //Application of movement under critical speed
+            if( steeringAngle != 0 ){
+                double turnRadius = - (Vehicle.LENGTH) / trig.sin( steeringAngle );
+
+                yaw = vy / turnRadius;
+
+                turnPivotX = Vehicle.PIVOT_X + Vehicle.METER_TO_PIXEL_RATIO * turnRadius;
+                turnPivotY = 130;
+                turnAngle = yaw * tickScale;
+
+                vy = vy + resultantForce * timeStep / mass;
+
+            } else {
+                vy = vy + resultantForce * timeStep / mass;
+                translationY = -Vehicle.METER_TO_PIXEL_RATIO * vy * timeStep;
+            }
+        }
+
+        double rotationRadians = Math.toRadians( rotationAngle );
+        double rotationCos = trig.cos( rotationRadians );
+        double rotationSin = trig.sin( rotationRadians );
+        double rotatedX = vx*rotationCos - vy*rotationSin;
+        double rotatedY = vx*rotationSin + vy*rotationCos;
+        vx = rotatedX;
+        vy = rotatedY;
+
+        rearEffectiveWeight[i] = WeightTransfer.getEffectiveWeightOnRear( mass, Vehicle.CG_POSITION, Vehicle.CG_HEIGHT, Vehicle.AXIS_DISTANCE, resultantForce );
+        frontEffectiveWeight[i] = WeightTransfer.getEffectiveWeightOnFront( mass, Vehicle.CG_POSITION, Vehicle.CG_HEIGHT, Vehicle.AXIS_DISTANCE, resultantForce );
+
+        double carRpm;
+        if( gearRatio != 0 )
+            carRpm = Engine.nextRpm( carEngine, rpm[i], rearSpeed * gearRatio * Gearbox.DIFF_RATIO * 60 / (2 * Math.PI), rpmResponse );
+        else
+            carRpm = Engine.nextNeutralGearRpm( carEngine, rpm[i], carThrottle, neutralRpmResponse, rpmDrop );
+        rpm[i] = carRpm;
+
+        fuelVolume[i] = FuelTank.consume( fuelVolume[i], carRpm, carThrottle, fuelConsumptionRate );
+
+        //rounding variables to zero to prevent unexpected behavior
+        if( Math.abs(vx) < 0.01 )
+            vx = 0;
+        if( Math.abs(vy) < 0.01 )
+            vy = 0;
+        if( Math.abs(yaw) < 0.001 )
+            yaw = 0;
+
+        lateralVelocity[i] = vx;
+        longitudinalVelocity[i] = vy;
+        yawRate[i] = yaw;
+        frontWheelSpeed[i] = frontSpeed;
+        rearWheelSpeed[i] = rearSpeed;
+
+        //moving world pose by displacement composed of translation, turn and rotation around centre
+        double turnCos = 1;
+        double turnSin = 0;
+        if( turnAngle != 0 ){
+            turnCos = trig.cos( Math.toRadians(turnAngle) );
+            turnSin = trig.sin( Math.toRadians(turnAngle) );
+        }
+        double pivotOffsetX = Vehicle.PIVOT_X - turnPivotX;
+        double pivotOffsetY = Vehicle.PIVOT_Y - turnPivotY;
+        double localX = turnPivotX + turnCos * pivotOffsetX - turnSin * pivotOffsetY + translationX - Vehicle.PIVOT_X;
+        double localY = turnPivotY + turnSin * pivotOffsetX + turnCos * pivotOffsetY + translationY - Vehicle.PIVOT_Y;
+        double headingCos = trig.cos( heading[i] );
+        double headingSin = trig.sin( heading[i] );
+
+        x[i] += ( headingCos * localX - headingSin * localY ) / Vehicle.METER_TO_PIXEL_RATIO;
+        y[i] += ( headingSin * localX + headingCos * localY ) / Vehicle.METER_TO_PIXEL_RATIO;
+        heading[i] += Math.toRadians( turnAngle + rotationAngle );
+    }
+
+    private static double clamp( double value ){
+        if( value > 1 )
+            return 1;
+        if( value < 0 )
+            return 0;
+        return value;
+    }
+
+    private static double clamp( double value, double min, double max ){
+        if( value > max )
+            return max;
+        if( value < min )
+            return min;
+        return value;
+    }
+
+    /**
+     * Sets control values of car.
+     * Values exceeding their range are rounded to the closest in range value.
+     *
+     * @param i             index of car
+     * @param throttle      throttle in range 0.0 - 1.0
+     * @param brake         brake in range 0.0 - 1.0
+     * @param steering      steering in range -1.0 - 1.0
+     * @param handbrake     true if handbrake is pulled
+     */
+    public void setControls( int i, double throttle, double brake, double steering, boolean handbrake ){
+        this.throttle[i] = clamp( throttle, 0, 1 );
+        this.brake[i] = clamp( brake, 0, 1 );
+        this.steering[i] = clamp( steering, -1, 1 );
+        this.handbrake[i] = handbrake;
+    }
+
+    /**
+     * Sets engine of car. Engine rpm is reset to idle value.
+     *
+     * @param i             index of car
+     * @param definition    description of engine curves
+     */
+    public void setEngine( int i, EngineDefinition definition ){
+        engine[i] = definition;
+        rpm[i] = definition.getIdleRpm();
+    }
+
+    /**
+     * Sets tire model used by all wheels of car.
+     *
+     * @param i         index of car
+     * @param compound  tire compound, LinearTireCompound by default
+     */
+    public void setTireCompound( int i, TireCompound compound ){
+        tireCompound[i] = compound;
+    }
+
+    /**
+     * Sets friction of surface under front and rear wheels of car.
+     *
+     * @param i         index of car
+     * @param front     friction under front wheels
+     * @param rear      friction under rear wheels
+     */
+    public void setFriction( int i, double front, double rear ){
+        frontFriction[i] = front;
+        rearFriction[i] = rear;
+    }
+
+    /**
+     * Places car in world coordinate system.
+     *
+     * @param i         index of car
+     * @param x         x coordinate of centre of gravity in metres
+     * @param y         y coordinate of centre of gravity in metres, axis is pointing down
+     * @param heading   heading in radians, where 0 is facing up and positive values are clockwise
+     */
+    public void setPose( int i, double x, double y, double heading ){
+        this.x[i] = x;
+        this.y[i] = y;
+        this.heading[i] = heading;
+    }
+
+    /**
+     * Readies up shift action of car. Has to be followed by shift() function call.
+     *
+     * @param i     index of car
+     */
+    public void upShiftReady( int i ){
+        if( previousGear[i] < 6 ) {
+            readyGear[i] = previousGear[i] + 1;
+            gear[i] = 0;
+        }
+    }
+
+    /**
+     * Readies down shift action of car. Has to be followed by shift() function call.
+     *
+     * @param i     index of car
+     */
+    public void downShiftReady( int i ){
+        if( previousGear[i] > -1 ) {
+            readyGear[i] = previousGear[i] - 1;
+            gear[i] = 0;
+        }
+    }
+
+    /**
+     * Finalises shift action of car. Has to be preceded by *Ready() function call.
+     *
+     * @param i     index of car
+     */
+    public void shift( int i ){
+        gear[i] = readyGear[i];
+        previousGear[i] = readyGear[i];
+    }
+
+    /**
+     * Simulates refueling of car. Adds fixed amount of volume per function call, which is expected once per tick.
+     *
+     * @param i     index of car
+     */
+    public void refuel( int i ){
+        fuelVolume[i] = FuelTank.refuel( fuelVolume[i], Vehicle.FUEL_CAPACITY, refuelSpeed );
+    }
+
+    /**
+     * Sets durability of all tires of car to 1.0.
+     *
+     * @param i     index of car
+     */
+    public void changeTires( int i ){
+        frontDurability[i] = 1;
+        rearDurability[i] = 1;
+    }
+
+    /**
+     * Fills given VehicleState with current state of car.
+     *
+     * @param i     index of car
+     * @param out   VehicleState to be filled
+     * @return      out parameter
+     */
+    public VehicleState getState( int i, VehicleState out ){
+        out.x = x[i];
+        out.y = y[i];
+        out.heading = heading[i];
+        out.lateralVelocity = lateralVelocity[i];
+        out.longitudinalVelocity = longitudinalVelocity[i];
+        out.yawRate = yawRate[i];
+        out.frontWheelSpeed = frontWheelSpeed[i];
+        out.rearWheelSpeed = rearWheelSpeed[i];
+        out.rpm = rpm[i];
+        out.gear = gear[i];
+        out.fuel = fuelVolume[i] / Vehicle.FUEL_CAPACITY;
+        out.frontDurability = frontDurability[i];
+        out.rearDurability = rearDurability[i];
+        return out;
+    }
+
+    /**
+     * Returns x coordinate of centre of gravity of car.
+     *
+     * @param i     index of car
+     * @return      x coordinate in metres
+     */
+    public double getX( int i ){
+        return x[i];
+    }
+
+    /**
+     * Returns y coordinate of centre of gravity of car.
+     *
+     * @param i     index of car
+     * @return      y coordinate in metres
+     */
+    public double getY( int i ){
+        return y[i];
+    }
+
+    /**
+     * Returns heading of car, where 0 is facing up and positive values are clockwise.
+     *
+     * @param i     index of car
+     * @return      heading in radians
+     */
+    public double getHeading( int i ){
+        return heading[i];
+    }
+
+}
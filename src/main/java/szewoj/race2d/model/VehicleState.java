@@ -0,0 +1,176 @@
+package szewoj.race2d.model;
+
+/**
+ * Plain container for the state of a Vehicle after a simulation tick.
+ * Holds world pose, velocities and the values displayed by the HUD.
+ * Does not depend on any JavaFX class, so it can be used in headless simulations.
+ */
+public class VehicleState {
+    //World pose:
+    double x;
+    double y;
+    double heading;
+
+    //Velocities:
+    double lateralVelocity;
+    double longitudinalVelocity;
+    double yawRate;
+    double frontWheelSpeed;
+    double rearWheelSpeed;
+
+    //Drivetrain and consumables:
+    double rpm;
+    int gear;
+    double fuel;
+    double frontDurability;
+    double rearDurability;
+
+    /**
+     * Returns x coordinate of centre of gravity in world coordinate system.
+     *
+     * @return  x coordinate in metres
+     */
+    public double getX(){
+        return x;
+    }
+
+    /**
+     * Returns y coordinate of centre of gravity in world coordinate system.
+     * Axis y is pointing down, like in screen coordinate system.
+     *
+     * @return  y coordinate in metres
+     */
+    public double getY(){
+        return y;
+    }
+
+    /**
+     * Returns heading of car, where 0 is facing up and positive values are clockwise.
+     *
+     * @return  heading in radians
+     */
+    public double getHeading(){
+        return heading;
+    }
+
+    /**
+     * Returns lateral velocity of car in car coordinate system.
+     *
+     * @return  lateral velocity in metres per second
+     */
+    public double getLateralVelocity(){
+        return lateralVelocity;
+    }
+
+    /**
+     * Returns longitudinal velocity of car in car coordinate system.
+     *
+     * @return  longitudinal velocity in metres per second
+     */
+    public double getLongitudinalVelocity(){
+        return longitudinalVelocity;
+    }
+
+    /**
+     * Returns speed of car in kilometers per hour.
+     *
+     * @return  speed in kilometers per hour
+     */
+    public int getSpeed(){
+        return (int) Math.round( 3.6 * Math.sqrt( lateralVelocity*lateralVelocity + longitudinalVelocity*longitudinalVelocity ) );
+    }
+
+    /**
+     * Returns yaw rate of car.
+     *
+     * @return  yaw rate in radians per second
+     */
+    public double getYawRate(){
+        return yawRate;
+    }
+
+    /**
+     * Returns rotational speed of front wheels.
+     *
+     * @return  rotational speed in radians per second
+     */
+    public double getFrontWheelSpeed(){
+        return frontWheelSpeed;
+    }
+
+    /**
+     * Returns rotational speed of rear wheels.
+     *
+     * @return  rotational speed in radians per second
+     */
+    public double getRearWheelSpeed(){
+        return rearWheelSpeed;
+    }
+
+    /**
+     * Returns engine rpm.
+     *
+     * @return  value of rpm
+     */
+    public double getRpm(){
+        return rpm;
+    }
+
+    /**
+     * Returns gear as int where -1 is reverse and 0 is neutral.
+     *
+     * @return  value of gear
+     */
+    public int getGear(){
+        return gear;
+    }
+
+    /**
+     * Returns percentage of remaining fuel.
+     *
+     * @return  remaining fuel in range 0.0 - 1.0
+     */
+    public double getFuel(){
+        return fuel;
+    }
+
+    /**
+     * Returns durability of front wheels.
+     *
+     * @return  durability value in range 0.0 - 1.0
+     */
+    public double getFrontDurability(){
+        return frontDurability;
+    }
+
+    /**
+     * Returns durability of rear wheels.
+     *
+     * @return  durability value in range 0.0 - 1.0
+     */
+    public double getRearDurability(){
+        return rearDurability;
+    }
+
+    /**
+     * Copies values of other state into this one.
+     *
+     * @param other     copied state
+     */
+    public void copy( VehicleState other ){
+        x = other.x;
+        y = other.y;
+        heading = other.heading;
+        lateralVelocity = other.lateralVelocity;
+        longitudinalVelocity = other.longitudinalVelocity;
+        yawRate = other.yawRate;
+        frontWheelSpeed = other.frontWheelSpeed;
+        rearWheelSpeed = other.rearWheelSpeed;
+        rpm = other.rpm;
+        gear = other.gear;
+        fuel = other.fuel;
+        frontDurability = other.frontDurability;
+        rearDurability = other.rearDurability;
+    }
+
+}
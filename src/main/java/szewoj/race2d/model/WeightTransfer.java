@@ -4,6 +4,8 @@ package szewoj.race2d.model;
  * Simulates load on wheel axes.
  */
 public class WeightTransfer {
+    public static final double GRAVITY = 9.81;
+
     private double mass;
     private final double CG;
     private final double HEIGHT;
@@ -48,7 +50,7 @@ public class WeightTransfer {
      * @return          weight on rear axis in newtons
      */
     public double getEffectiveWeightOnRear( double force ){
-        return ( CG * 9.81 * mass +  HEIGHT * force ) / length;
+        return getEffectiveWeightOnRear( mass, CG, HEIGHT, length, force );
     }
 
     /**
@@ -58,7 +60,35 @@ public class WeightTransfer {
      * @return          weight on front axis in newtons
      */
     public double getEffectiveWeightOnFront( double force ){
-        return ( ( length - CG ) * 9.81 * mass - HEIGHT * force ) / length;
+        return getEffectiveWeightOnFront( mass, CG, HEIGHT, length, force );
+    }
+
+    /**
+     * Calculates effective weight on rear axis of given car. Shared by WeightTransfer and VehicleBatch.
+     *
+     * @param mass      mass of car in kilograms
+     * @param cg        position of centre of gravity in meters, where front axis is 0
+     * @param height    height of centre of gravity in metres
+     * @param length    distance between axes in metres
+     * @param force     longitudinal force in newtons
+     * @return          weight on rear axis in newtons
+     */
+    static double getEffectiveWeightOnRear( double mass, double cg, double height, double length, double force ){
+        return ( cg * GRAVITY * mass +  height * force ) / length;
+    }
+
+    /**
+     * Calculates effective weight on front axis of given car. Shared by WeightTransfer and VehicleBatch.
+     *
+     * @param mass      mass of car in kilograms
+     * @param cg        position of centre of gravity in meters, where front axis is 0
+     * @param height    height of centre of gravity in metres
+     * @param length    distance between axes in metres
+     * @param force     longitudinal force in newtons
+     * @return          weight on front axis in newtons
+     */
+    static double getEffectiveWeightOnFront( double mass, double cg, double height, double length, double force ){
+        return ( ( length - cg ) * GRAVITY * mass - height * force ) / length;
     }
 
 }
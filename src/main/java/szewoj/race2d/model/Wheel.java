@@ -1,6 +1,7 @@
 package szewoj.race2d.model;
 
 import szewoj.race2d.utilities.Percent;
+import szewoj.race2d.utilities.TrigBackend;
 import szewoj.race2d.utilities.Vector2;
 
 /**
@@ -11,12 +12,14 @@ public class Wheel {
     public static final boolean REAR = false;
     public static final double RADIUS = 0.4572;
     public static final double INERTIA = 60;
-    private final double DEGRADATION_RATIO = 1.0/2000;
+    private static final double WEAR_DIVISOR = 2000;        //slip wearing out the whole tire in one default tick
+    private final double DEGRADATION_RATIO;
     private double rotationSpeed;
     private final boolean wheelType;
     private Percent durability;
     private Vector2 position;
     private double friction;
+    private TrigBackend trig;
 
     /**
      * Constructor of Wheel.
@@ -26,11 +29,34 @@ public class Wheel {
      * @param positionY     position of wheel in metres, where 0 is the position of centre of gravity
      */
     public Wheel( boolean type, double positionX, double positionY ){
+        this( type, positionX, positionY, 1.0/60 );
+    }
+
+    /**
+     * Constructor of Wheel simulating ticks of custom length.
+     *
+     * @param type          type of wheel (Wheel.FRONT for steering wheel, and Wheel.REAR for fixed wheel)
+     * @param positionX     position of wheel in metres, where 0 is the position of centre of gravity
+     * @param positionY     position of wheel in metres, where 0 is the position of centre of gravity
+     * @param timeStep      time of one tick in seconds
+     */
+    public Wheel( boolean type, double positionX, double positionY, double timeStep ){
+        DEGRADATION_RATIO = getDegradationRatio( timeStep );
         wheelType = type;
         rotationSpeed = 0;
         durability = new Percent();
         durability.setPercent( 1 );
         position = new Vector2( positionX, positionY );
+        trig = TrigBackend.JAVA;
+    }
+
+    /**
+     * Sets implementation of trigonometric functions used to calculate slip angle.
+     *
+     * @param backend   implementation of trigonometric functions
+     */
+    public void setTrigBackend( TrigBackend backend ){
+        trig = backend;
     }
 
     /**
@@ -105,9 +131,9 @@ public class Wheel {
             return 0;
 
         if(wheelType)
-            return  -steeringAngle * Math.signum(velocity.getY()) + Math.atan( velocity.getX() + carRotationSpeed*Math.abs(position.getY()) / Math.abs(velocity.getY()) );
+            return  -steeringAngle * Math.signum(velocity.getY()) + trig.atan( velocity.getX() + carRotationSpeed*Math.abs(position.getY()) / Math.abs(velocity.getY()) );
 
-        return Math.atan( velocity.getX() - carRotationSpeed*Math.abs(position.getY()) / velocity.getY() );
+        return trig.atan( velocity.getX() - carRotationSpeed*Math.abs(position.getY()) / velocity.getY() );
     }
 
     /**
@@ -121,7 +147,7 @@ public class Wheel {
         if(Math.abs(velocity.getY()) == 0 )
             return 0;
 
-        return Math.atan( velocity.getX() - carRotationSpeed*Math.abs(position.getY()) / velocity.getY() );
+        return trig.atan( velocity.getX() - carRotationSpeed*Math.abs(position.getY()) / velocity.getY() );
     }
 
     /**
@@ -131,7 +157,40 @@ public class Wheel {
      * @param slipAngle     value of slip angle
      */
     public void degradeTire( double slipRatio, double slipAngle ){
-        durability.addPercent(- ( Math.abs(slipRatio) + Math.abs(slipAngle) ) * DEGRADATION_RATIO );
+        durability.addPercent(- getWear( slipRatio, slipAngle, DEGRADATION_RATIO ) );
+    }
+
+    /**
+     * Calculates part of tire durability lost per unit of slip in one tick of given length.
+     *
+     * @param timeStep  time of one tick in seconds
+     * @return          degradation ratio
+     */
+    static double getDegradationRatio( double timeStep ){
+        return timeStep * 60 / WEAR_DIVISOR;
+    }
+
+    /**
+     * Calculates durability lost in one tick from slip. Shared by Wheel and VehicleBatch.
+     *
+     * @param slipRatio         value of slip ratio
+     * @param slipAngle         value of slip angle
+     * @param degradationRatio  durability lost per unit of slip in one tick
+     * @return                  lost durability
+     */
+    static double getWear( double slipRatio, double slipAngle, double degradationRatio ){
+        return ( Math.abs(slipRatio) + Math.abs(slipAngle) ) * degradationRatio;
+    }
+
+    /**
+     * Calculates traction multiplier from durability and friction. Shared by Wheel and VehicleBatch.
+     *
+     * @param durability    durability of tire in range 0.0 - 1.0
+     * @param friction      friction of surface under tire
+     * @return              traction multiplier
+     */
+    static double getTraction( double durability, double friction ){
+        return (0.6 + 0.4 * durability) * friction;
     }
 
     /**
@@ -140,7 +199,7 @@ public class Wheel {
      * @return  traction multiplier in range 0.0 - 1.0
      */
     public double getTraction(){
-        return (0.6 + 0.4 * durability.getPercent()) * friction;
+        return getTraction( durability.getPercent(), friction );
     }
 
     /**
@@ -0,0 +1,94 @@
+package szewoj.race2d.utilities;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Collects timing of startup phases, which may run in parallel on many threads.
+ * Every phase is kept with its start and end relative to creation of the timer, and report also shows
+ * time spent by JVM before the timer, so whole time to the first frame is visible.
+ */
+public class StartupTimer {
+    private final long origin;
+    private final long jvmUptime;
+    private final List<String> names;
+    private final List<long[]> spans;
+    private long lastMark;
+
+    /**
+     * Constructor of StartupTimer, starts measuring.
+     */
+    public StartupTimer(){
+        origin = System.nanoTime();
+        lastMark = origin;
+        jvmUptime = ManagementFactory.getRuntimeMXBean().getUptime();
+        names = new ArrayList<>();
+        spans = new ArrayList<>();
+    }
+
+    /**
+     * Records phase which ran between given times. Can be called from any thread.
+     *
+     * @param name      name of phase
+     * @param start     start of phase from System.nanoTime()
+     * @param end       end of phase from System.nanoTime()
+     */
+    public synchronized void record( String name, long start, long end ){
+        names.add( name );
+        spans.add( new long[]{ start - origin, end - origin } );
+    }
+
+    /**
+     * Records milestone, as phase lasting from creation of timer until now. Can be called from any thread.
+     *
+     * @param name  name of milestone
+     */
+    public void recordSinceStart( String name ){
+        record( name, origin, System.nanoTime() );
+    }
+
+    /**
+     * Records sequential phase, which lasted from the previous mark, or creation of timer, until now.
+     * Should be called from one thread only, usually JavaFX application thread.
+     *
+     * @param name  name of phase
+     */
+    public void mark( String name ){
+        long now = System.nanoTime();
+        record( name, lastMark, now );
+        lastMark = now;
+    }
+
+    /**
+     * Returns time elapsed since creation of timer.
+     *
+     * @return  time in nanoseconds
+     */
+    public long getElapsed(){
+        return System.nanoTime() - origin;
+    }
+
+    /**
+     * Writes breakdown of phases in order of their end, with start, end and duration in milliseconds.
+     *
+     * @param out   destination of report
+     */
+    public synchronized void report( PrintStream out ){
+        Integer[] order = new Integer[names.size()];
+        for( int i = 0; i < order.length; ++i )
+            order[i] = i;
+        Arrays.sort( order, ( a, b ) -> Long.compare( spans.get( a )[1], spans.get( b )[1] ) );
+
+        out.println( String.format( Locale.ROOT, "Startup: JVM and JavaFX %d ms before start", jvmUptime ) );
+        for( int i : order ){
+            long[] span = spans.get( i );
+            out.println( String.format( Locale.ROOT, "Startup: %-16s %8.1f - %8.1f ms (%.1f ms)",
+                    names.get( i ), span[0] / 1e6, span[1] / 1e6, ( span[1] - span[0] ) / 1e6 ) );
+        }
+    }
+
+}
@@ -0,0 +1,203 @@
+package szewoj.race2d.utilities;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Bounded least recently used cache of tiles, loaded on demand or prefetched on a background executor.
+ * Cache itself is owned by a single thread, only loader runs on the executor, so memory use is bounded
+ * by capacity of the cache and number of prefetched tiles, independent of size of the whole track.
+ *
+ * @param <T>   type of loaded tile
+ */
+public class TileCache<T> {
+
+    /**
+     * Loads one tile, called on executor thread for prefetched tiles.
+     *
+     * @param <T>   type of loaded tile
+     */
+    public interface Loader<T> {
+
+        /**
+         * Loads tile.
+         *
+         * @param column        column of tile
+         * @param row           row of tile
+         * @return              loaded tile
+         * @throws IOException  when tile cannot be read
+         */
+        T load( int column, int row ) throws IOException;
+    }
+
+    private int capacity;
+    private final Loader<T> loader;
+    private final Executor executor;
+    private final LinkedHashMap<Long, T> tiles;
+    private final Map<Long, Future<T>> pending;
+    private long loadCount;
+
+    /**
+     * Constructor of TileCache.
+     *
+     * @param capacity  maximal number of cached tiles
+     * @param loader    loader of tiles
+     * @param executor  executor of prefetching
+     */
+    public TileCache( int capacity, Loader<T> loader, Executor executor ){
+        if( capacity <= 0 )
+            throw new IllegalArgumentException( "Tile cache needs positive capacity" );
+        this.capacity = capacity;
+        this.loader = loader;
+        this.executor = executor;
+        tiles = new LinkedHashMap<Long, T>( 2 * capacity, 0.75f, true ){
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<Long, T> eldest ){
+                return size() > TileCache.this.capacity;
+            }
+        };
+        pending = new HashMap<>();
+    }
+
+    private static long getKey( int column, int row ){
+        return ( (long) column << 32 ) | ( row & 0xFFFFFFFFL );
+    }
+
+    /**
+     * Returns tile, waiting for it or loading it on calling thread if it is not cached yet.
+     *
+     * @param column    column of tile
+     * @param row       row of tile
+     * @return          tile
+     * @throws UncheckedIOException when tile cannot be loaded
+     */
+    public T get( int column, int row ){
+        Long key = getKey( column, row );
+        T tile = tiles.get( key );
+        if( tile != null )
+            return tile;
+
+        Future<T> future = pending.remove( key );
+        try {
+            tile = future != null ? future.get() : loader.load( column, row );
+        } catch( IOException e ){
+            throw new UncheckedIOException( e );
+        } catch( ExecutionException e ){
+            if( e.getCause() instanceof IOException )
+                throw new UncheckedIOException( (IOException) e.getCause() );
+            throw new IllegalStateException( "Cannot load tile " + column + ", " + row, e.getCause() );
+        } catch( InterruptedException e ){
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException( "Interrupted while loading tile " + column + ", " + row, e );
+        }
+        ++loadCount;
+        tiles.put( key, tile );
+        return tile;
+    }
+
+    /**
+     * Returns tile if it is cached or its prefetching has finished, without waiting.
+     *
+     * @param column    column of tile
+     * @param row       row of tile
+     * @return          tile or null if it is not loaded yet
+     */
+    public T getIfLoaded( int column, int row ){
+        Long key = getKey( column, row );
+        T tile = tiles.get( key );
+        if( tile == null ){
+            Future<T> future = pending.get( key );
+            if( future != null && future.isDone() )
+                tile = get( column, row );
+        }
+        return tile;
+    }
+
+    /**
+     * Starts loading tile on executor, unless it is cached or already loading.
+     *
+     * @param column    column of tile
+     * @param row       row of tile
+     */
+    public void prefetch( int column, int row ){
+        Long key = getKey( column, row );
+        if( tiles.containsKey( key ) || pending.containsKey( key ) )
+            return;
+
+        FutureTask<T> task = new FutureTask<>( () -> loader.load( column, row ) );
+        pending.put( key, task );
+        executor.execute( task );
+    }
+
+    /**
+     * Moves finished prefetched tiles to the cache, so they do not wait outside of its capacity.
+     * Failed prefetches are dropped, and the failure is reported when the tile is requested with get.
+     */
+    public void collect(){
+        Iterator<Map.Entry<Long, Future<T>>> iterator = pending.entrySet().iterator();
+        while( iterator.hasNext() ){
+            Map.Entry<Long, Future<T>> entry = iterator.next();
+            if( !entry.getValue().isDone() )
+                continue;
+            iterator.remove();
+            try {
+                tiles.put( entry.getKey(), entry.getValue().get() );
+                ++loadCount;
+            } catch( ExecutionException | InterruptedException e ){
+                //loaded again by get
+            }
+        }
+    }
+
+    /**
+     * Returns number of cached tiles.
+     *
+     * @return  number of tiles, at most capacity
+     */
+    public int getCachedCount(){
+        return tiles.size();
+    }
+
+    /**
+     * Returns number of tiles loaded since creation, including tiles loaded again after eviction.
+     *
+     * @return  number of loads
+     */
+    public long getLoadCount(){
+        return loadCount;
+    }
+
+    /**
+     * Getter of capacity property.
+     *
+     * @return  maximal number of cached tiles
+     */
+    public int getCapacity(){
+        return capacity;
+    }
+
+    /**
+     * Setter of capacity property. Least recently used tiles above the new capacity are evicted.
+     *
+     * @param capacity  maximal number of cached tiles
+     */
+    public void setCapacity( int capacity ){
+        if( capacity <= 0 )
+            throw new IllegalArgumentException( "Tile cache needs positive capacity" );
+        this.capacity = capacity;
+        Iterator<Long> eldest = tiles.keySet().iterator();
+        while( tiles.size() > capacity ){
+            eldest.next();
+            eldest.remove();
+        }
+    }
+
+}
@@ -0,0 +1,160 @@
+package szewoj.race2d.utilities;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Description of tiled track: directory with tiles.properties and square tiles of track image and friction mask.
+ * Tile (column, row) covers track coordinates from (column, row) * tileSize, tiles of the last column and row may be smaller.
+ * Files of tiles are named track_column_row.png and mask_column_row.png.
+ */
+public class TileSet {
+    public static final String DESCRIPTION = "tiles.properties";
+
+    private final File directory;
+    private final int width;
+    private final int height;
+    private final int tileSize;
+
+    /**
+     * Constructor of TileSet.
+     *
+     * @param directory     directory of tiles
+     * @param width         width of the whole track in pixels
+     * @param height        height of the whole track in pixels
+     * @param tileSize      size of side of a tile in pixels
+     */
+    public TileSet( File directory, int width, int height, int tileSize ){
+        if( width <= 0 || height <= 0 || tileSize <= 0 )
+            throw new IllegalArgumentException( "Tiled track needs positive width, height and tile size" );
+        this.directory = directory;
+        this.width = width;
+        this.height = height;
+        this.tileSize = tileSize;
+    }
+
+    /**
+     * Reads description of tiled track from its directory.
+     *
+     * @param directory     directory of tiles
+     * @return              description of tiles
+     * @throws IOException  when tiles.properties cannot be read
+     */
+    public static TileSet open( File directory ) throws IOException {
+        Properties properties = new Properties();
+        try( InputStream input = new FileInputStream( new File( directory, DESCRIPTION ) ) ){
+            properties.load( input );
+        }
+        try {
+            return new TileSet( directory, Integer.parseInt( properties.getProperty( "width" ) ),
+                                Integer.parseInt( properties.getProperty( "height" ) ),
+                                Integer.parseInt( properties.getProperty( "tileSize" ) ) );
+        } catch( NumberFormatException e ){
+            throw new IOException( "Invalid " + DESCRIPTION + " in " + directory, e );
+        }
+    }
+
+    /**
+     * Writes tiles.properties to directory of tiles.
+     *
+     * @throws IOException  when file cannot be written
+     */
+    public void save() throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty( "width", Integer.toString( width ) );
+        properties.setProperty( "height", Integer.toString( height ) );
+        properties.setProperty( "tileSize", Integer.toString( tileSize ) );
+        try( OutputStream output = new FileOutputStream( new File( directory, DESCRIPTION ) ) ){
+            properties.store( output, "Tiled track" );
+        }
+    }
+
+    /**
+     * Creates single daemon thread loading tiles in the background, shared by all caches of tiles.
+     *
+     * @return  executor of tile loading
+     */
+    public static ExecutorService createLoader(){
+        return Executors.newSingleThreadExecutor( runnable -> {
+            Thread thread = new Thread( runnable, "tile-loader" );
+            thread.setDaemon( true );
+            thread.setPriority( Thread.NORM_PRIORITY - 1 );
+            return thread;
+        });
+    }
+
+    /**
+     * Returns file of track image tile.
+     *
+     * @param column    column of tile
+     * @param row       row of tile
+     * @return          file of tile
+     */
+    public File getTrackTile( int column, int row ){
+        return new File( directory, "track_" + column + "_" + row + ".png" );
+    }
+
+    /**
+     * Returns file of friction mask tile.
+     *
+     * @param column    column of tile
+     * @param row       row of tile
+     * @return          file of tile
+     */
+    public File getMaskTile( int column, int row ){
+        return new File( directory, "mask_" + column + "_" + row + ".png" );
+    }
+
+    /**
+     * Getter of width property.
+     *
+     * @return  width of the whole track in pixels
+     */
+    public int getWidth(){
+        return width;
+    }
+
+    /**
+     * Getter of height property.
+     *
+     * @return  height of the whole track in pixels
+     */
+    public int getHeight(){
+        return height;
+    }
+
+    /**
+     * Getter of tileSize property.
+     *
+     * @return  size of side of a tile in pixels
+     */
+    public int getTileSize(){
+        return tileSize;
+    }
+
+    /**
+     * Returns number of tile columns.
+     *
+     * @return  number of columns
+     */
+    public int getColumns(){
+        return ( width + tileSize - 1 ) / tileSize;
+    }
+
+    /**
+     * Returns number of tile rows.
+     *
+     * @return  number of rows
+     */
+    public int getRows(){
+        return ( height + tileSize - 1 ) / tileSize;
+    }
+
+}
@@ -0,0 +1,70 @@
+package szewoj.race2d.utilities;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Command line tool splitting track image and friction mask of the same size into tiles of TileSet.
+ * Usage: TrackTiler track.png mask.png outputDirectory [tileSize]
+ */
+public class TrackTiler {
+    public static final int DEFAULT_TILE_SIZE = 256;
+
+    /**
+     * Splits track image and friction mask into tiles and writes description of tiles.
+     *
+     * @param track         image of track
+     * @param mask          friction mask of track, of the same size as track image
+     * @param directory     output directory, created if it does not exist
+     * @param tileSize      size of side of a tile in pixels
+     * @return              description of written tiles
+     * @throws IOException  when images cannot be read or tiles cannot be written
+     */
+    public static TileSet split( File track, File mask, File directory, int tileSize ) throws IOException {
+        BufferedImage trackImage = read( track );
+        BufferedImage maskImage = read( mask );
+        if( trackImage.getWidth() != maskImage.getWidth() || trackImage.getHeight() != maskImage.getHeight() )
+            throw new IOException( "Track image and friction mask have different sizes" );
+        if( !directory.isDirectory() && !directory.mkdirs() )
+            throw new IOException( "Cannot create " + directory );
+
+        TileSet tiles = new TileSet( directory, trackImage.getWidth(), trackImage.getHeight(), tileSize );
+        for( int row = 0; row < tiles.getRows(); ++row ){
+            for( int column = 0; column < tiles.getColumns(); ++column ){
+                int x = column * tileSize;
+                int y = row * tileSize;
+                int width = Math.min( tileSize, tiles.getWidth() - x );
+                int height = Math.min( tileSize, tiles.getHeight() - y );
+                write( trackImage.getSubimage( x, y, width, height ), tiles.getTrackTile( column, row ) );
+                write( maskImage.getSubimage( x, y, width, height ), tiles.getMaskTile( column, row ) );
+            }
+        }
+        tiles.save();
+        return tiles;
+    }
+
+    private static BufferedImage read( File file ) throws IOException {
+        BufferedImage image = ImageIO.read( file );
+        if( image == null )
+            throw new IOException( "Unsupported image format of " + file );
+        return image;
+    }
+
+    private static void write( BufferedImage image, File file ) throws IOException {
+        if( !ImageIO.write( image, "png", file ) )
+            throw new IOException( "Cannot write " + file );
+    }
+
+    public static void main( String[] args ) throws IOException {
+        if( args.length < 3 ){
+            System.err.println( "Usage: TrackTiler <track.png> <mask.png> <output directory> [tile size]" );
+            System.exit( 1 );
+        }
+        int tileSize = args.length > 3 ? Integer.parseInt( args[3] ) : DEFAULT_TILE_SIZE;
+        TileSet tiles = split( new File( args[0] ), new File( args[1] ), new File( args[2] ), tileSize );
+        System.out.println( "Written " + tiles.getColumns() * tiles.getRows() + " tiles of " + tileSize + " pixels to " + args[2] );
+    }
+
+}
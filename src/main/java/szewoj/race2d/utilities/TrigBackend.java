@@ -0,0 +1,149 @@
+package szewoj.race2d.utilities;
+
+/**
+ * Selectable implementation of trigonometric functions used by physics.
+ * JAVA uses Math, STRICT uses StrictMath, which gives the same results on every platform,
+ * and FAST uses approximations with bounded error:
+ * <ul>
+ *     <li>sin and cos - lookup table with 4096 entries per turn and linear interpolation, absolute error below 3e-7,</li>
+ *     <li>tan - ratio of table sin and cos, absolute error below 1e-6 for angles in range -pi/4 - pi/4,</li>
+ *     <li>atan - odd polynomial of 9th degree (Abramowitz and Stegun 4.4.49), absolute error below 2e-5.</li>
+ * </ul>
+ */
+public enum TrigBackend {
+    JAVA {
+        @Override
+        public double sin( double angle ){
+            return Math.sin( angle );
+        }
+
+        @Override
+        public double cos( double angle ){
+            return Math.cos( angle );
+        }
+
+        @Override
+        public double tan( double angle ){
+            return Math.tan( angle );
+        }
+
+        @Override
+        public double atan( double value ){
+            return Math.atan( value );
+        }
+    },
+
+    STRICT {
+        @Override
+        public double sin( double angle ){
+            return StrictMath.sin( angle );
+        }
+
+        @Override
+        public double cos( double angle ){
+            return StrictMath.cos( angle );
+        }
+
+        @Override
+        public double tan( double angle ){
+            return StrictMath.tan( angle );
+        }
+
+        @Override
+        public double atan( double value ){
+            return StrictMath.atan( value );
+        }
+    },
+
+    FAST {
+        @Override
+        public double sin( double angle ){
+            return tableSin( angle * TABLE_PER_RADIAN );
+        }
+
+        @Override
+        public double cos( double angle ){
+            return tableSin( angle * TABLE_PER_RADIAN + TABLE_SIZE / 4 );
+        }
+
+        @Override
+        public double tan( double angle ){
+            double position = angle * TABLE_PER_RADIAN;
+            return tableSin( position ) / tableSin( position + TABLE_SIZE / 4 );
+        }
+
+        @Override
+        public double atan( double value ){
+            double abs = Math.abs( value );
+            if( abs <= 1 )
+                return polynomialAtan( value );
+            return Math.copySign( Math.PI / 2, value ) - polynomialAtan( 1 / value );
+        }
+    };
+
+    private static final int TABLE_SIZE = 4096;
+    private static final double TABLE_PER_RADIAN = TABLE_SIZE / (2 * Math.PI);
+    private static final double[] SIN_TABLE = new double[TABLE_SIZE + 1];
+
+    static {
+        for( int i = 0; i <= TABLE_SIZE; ++i )
+            SIN_TABLE[i] = StrictMath.sin( i * 2 * Math.PI / TABLE_SIZE );
+    }
+
+    /**
+     * Reads sine table with linear interpolation.
+     *
+     * @param position  angle in table entries
+     * @return          approximated sine
+     */
+    private static double tableSin( double position ){
+        double floor = Math.floor( position );
+        int index = (int)( (long) floor & (TABLE_SIZE - 1) );
+        double fraction = position - floor;
+        return SIN_TABLE[index] + (SIN_TABLE[index + 1] - SIN_TABLE[index]) * fraction;
+    }
+
+    /**
+     * Approximates arcus tangent of values in range -1.0 - 1.0.
+     *
+     * @param x     argument
+     * @return      approximated arcus tangent
+     */
+    private static double polynomialAtan( double x ){
+        double x2 = x * x;
+        return x * (0.9998660 + x2 * (-0.3302995 + x2 * (0.1801410 + x2 * (-0.0851330 + x2 * 0.0208351))));
+    }
+
+    /**
+     * Returns sine of angle.
+     *
+     * @param angle     angle in radians
+     * @return          sine of angle
+     */
+    public abstract double sin( double angle );
+
+    /**
+     * Returns cosine of angle.
+     *
+     * @param angle     angle in radians
+     * @return          cosine of angle
+     */
+    public abstract double cos( double angle );
+
+    /**
+     * Returns tangent of angle.
+     *
+     * @param angle     angle in radians
+     * @return          tangent of angle
+     */
+    public abstract double tan( double angle );
+
+    /**
+     * Returns arcus tangent of value.
+     *
+     * @param value     tangent of angle
+     * @return          angle in radians in range -pi/2 - pi/2
+     */
+    public abstract double atan( double value );
+
+}
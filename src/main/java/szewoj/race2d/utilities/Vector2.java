@@ -64,8 +64,18 @@ public class Vector2 {
     }
 
     public void rotateInRadians( double angle ){
-        double tempX = x*Math.cos( angle ) - y*Math.sin( angle );
-        double tempY = x*Math.sin( angle ) + y*Math.cos( angle );
+        rotate( Math.cos( angle ), Math.sin( angle ) );
+    }
+
+    /**
+     * Rotates vector by angle given with its already computed cosine and sine.
+     *
+     * @param cos   cosine of angle
+     * @param sin   sine of angle
+     */
+    public void rotate( double cos, double sin ){
+        double tempX = x*cos - y*sin;
+        double tempY = x*sin + y*cos;
 
         x = tempX;
         y = tempY;
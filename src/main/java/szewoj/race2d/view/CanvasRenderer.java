@@ -0,0 +1,290 @@
+package szewoj.race2d.view;
+
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.Image;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.StrokeLineCap;
+import javafx.scene.text.Font;
+import javafx.scene.text.FontWeight;
+import szewoj.race2d.model.Vehicle;
+
+/**
+ * Renderer drawing track, cars and HUD on a single Canvas in one pass, without any nodes per object.
+ * Transforms are composed from world poses as 2D affine matrices stored in arrays of six values
+ * mxx, mxy, tx, myx, myy, ty, which are reused between frames. All barriers are stroked as one path.
+ * Screen layout follows layout.fxml: the first car stays in place of car sprite and the track moves under it.
+ */
+public class CanvasRenderer implements Renderer {
+    private static final Color GRASS = Color.web( "#329641" );
+    private static final Color BARRIER = Color.web( "#abb2ad" );
+    private static final Color PANEL = Color.web( "#464646" );
+    private static final Color BAR_BACKGROUND = Color.web( "#d0d0d0" );
+    private static final Color ACCENT = Color.web( "#0096c9" );
+    private static final Font TIME_FONT = Font.font( "System", FontWeight.BOLD, 36 );
+    private static final Font SMALL_FONT = Font.font( "System", FontWeight.BOLD, 18 );
+    private static final Font GEAR_FONT = Font.font( "System", FontWeight.BOLD, 40 );
+
+    private final Canvas canvas;
+    private final GraphicsContext graphics;
+    private final Image track;
+    private final double trackWidth;
+    private final double trackHeight;
+    private final Image car;
+    private final double carWidth;
+    private final double carHeight;
+    private final double[] barriers;
+    private final double barrierWidth;
+    private final double[] worldToTrack;
+    private final double[] trackToWorld;
+    private final double[] spriteToWorld;
+    private final double[] carToScreenScaled;   //car sprite to screen, composed with world to car sprite
+    private final double[] camera;
+    private final double[] pose;
+    private final double[] transform;
+    private final double[] needleX;
+    private final double[] needleY;
+    private TrackTileView trackTiles;
+    private double tileRadius;
+    private final HudBinding hudBinding;     //only caches formatted texts, the whole HUD is drawn in every frame
+
+    /**
+     * Constructor of CanvasRenderer.
+     *
+     * @param canvas        canvas covering the window
+     * @param track         image of track
+     * @param trackWidth    width of track image in track coordinates
+     * @param trackHeight   height of track image in track coordinates
+     * @param car           image of car
+     * @param carWidth      width of car image in car sprite coordinates
+     * @param carHeight     height of car image in car sprite coordinates
+     * @param barriers      coordinates x1, y1, x2, y2 of every barrier in track coordinates
+     * @param barrierWidth  stroke width of barriers in track coordinates
+     * @param worldToTrack  transform from world coordinates of cars to track coordinates
+     * @param carToScreen   transform from car sprite coordinates of the first car to screen
+     */
+    public CanvasRenderer( Canvas canvas, Image track, double trackWidth, double trackHeight, Image car, double carWidth, double carHeight,
+                           double[] barriers, double barrierWidth, double[] worldToTrack, double[] carToScreen ){
+        this.canvas = canvas;
+        graphics = canvas.getGraphicsContext2D();
+        this.track = track;
+        this.trackWidth = trackWidth;
+        this.trackHeight = trackHeight;
+        this.car = car;
+        this.carWidth = carWidth;
+        this.carHeight = carHeight;
+        this.barriers = barriers.clone();
+        this.barrierWidth = barrierWidth;
+
+        this.worldToTrack = worldToTrack.clone();
+        trackToWorld = invert( worldToTrack, new double[6] );
+        double ratio = Vehicle.METER_TO_PIXEL_RATIO;
+        double[] worldToSprite = { ratio, 0, Vehicle.PIVOT_X, 0, ratio, Vehicle.PIVOT_Y };
+        spriteToWorld = invert( worldToSprite, new double[6] );
+        carToScreenScaled = multiply( carToScreen, worldToSprite, new double[6] );
+        camera = new double[6];
+        pose = new double[6];
+        transform = new double[6];
+        needleX = new double[3];
+        needleY = new double[3];
+        hudBinding = new HudBinding();
+    }
+
+    /**
+     * Draws loaded tiles of tiled track around the first car instead of the whole track image.
+     *
+     * @param tiles     tiles of track, not attached to scene graph
+     * @param radius    radius of visible area around the first car in track coordinates
+     */
+    public void setTrackTiles( TrackTileView tiles, double radius ){
+        trackTiles = tiles;
+        tileRadius = radius;
+    }
+
+    /**
+     * Multiplies affine transforms, result applies b first and a second.
+     */
+    private static double[] multiply( double[] a, double[] b, double[] out ){
+        double mxx = a[0] * b[0] + a[1] * b[3];
+        double mxy = a[0] * b[1] + a[1] * b[4];
+        double tx = a[0] * b[2] + a[1] * b[5] + a[2];
+        double myx = a[3] * b[0] + a[4] * b[3];
+        double myy = a[3] * b[1] + a[4] * b[4];
+        double ty = a[3] * b[2] + a[4] * b[5] + a[5];
+        out[0] = mxx;
+        out[1] = mxy;
+        out[2] = tx;
+        out[3] = myx;
+        out[4] = myy;
+        out[5] = ty;
+        return out;
+    }
+
+    private static double[] invert( double[] m, double[] out ){
+        double determinant = m[0] * m[4] - m[1] * m[3];
+        double mxx = m[4] / determinant;
+        double mxy = -m[1] / determinant;
+        double myx = -m[3] / determinant;
+        double myy = m[0] / determinant;
+        out[0] = mxx;
+        out[1] = mxy;
+        out[2] = -( mxx * m[2] + mxy * m[5] );
+        out[3] = myx;
+        out[4] = myy;
+        out[5] = -( myx * m[2] + myy * m[5] );
+        return out;
+    }
+
+    /**
+     * Fills transform from car coordinates to world coordinates, or its inverse.
+     */
+    private static double[] setPose( double x, double y, double heading, boolean inverse, double[] out ){
+        double cos = Math.cos( heading );
+        double sin = Math.sin( heading );
+        if( inverse ){
+            out[0] = cos;
+            out[1] = sin;
+            out[2] = -( cos * x + sin * y );
+            out[3] = -sin;
+            out[4] = cos;
+            out[5] = sin * x - cos * y;
+        } else {
+            out[0] = cos;
+            out[1] = -sin;
+            out[2] = x;
+            out[3] = sin;
+            out[4] = cos;
+            out[5] = y;
+        }
+        return out;
+    }
+
+    private void applyTransform( double[] m ){
+        graphics.setTransform( m[0], m[3], m[1], m[4], m[2], m[5] );
+    }
+
+    /**
+     * Draws the whole frame.
+     *
+     * @param poses     world x, y coordinates in metres and heading in radians of every car, three values per car
+     * @param carCount  number of cars
+     * @param hud       values displayed by HUD of the first car
+     */
+    @Override
+    public void render( double[] poses, int carCount, HudState hud ){
+        graphics.setTransform( 1, 0, 0, 1, 0, 0 );
+        graphics.setFill( GRASS );
+        graphics.fillRect( 0, 0, canvas.getWidth(), canvas.getHeight() );
+
+        //world to screen, with the first car in place of car sprite
+        multiply( carToScreenScaled, setPose( poses[0], poses[1], poses[2], true, pose ), camera );
+
+        applyTransform( multiply( camera, trackToWorld, transform ) );
+        if( trackTiles == null )
+            graphics.drawImage( track, 0, 0, trackWidth, trackHeight );
+        else
+            drawTiles( poses[0], poses[1] );
+
+        graphics.setStroke( BARRIER );
+        graphics.setLineWidth( barrierWidth );
+        graphics.setLineCap( StrokeLineCap.ROUND );
+        graphics.beginPath();
+        for( int i = 0; i < barriers.length; i += 4 ){
+            graphics.moveTo( barriers[i], barriers[i + 1] );
+            graphics.lineTo( barriers[i + 2], barriers[i + 3] );
+        }
+        graphics.stroke();
+
+        //car sprite to world is pose of the car after inverse of world to sprite of the starting pose
+        for( int i = carCount - 1; i >= 0; --i ){
+            multiply( camera, setPose( poses[3*i], poses[3*i + 1], poses[3*i + 2], false, pose ), transform );
+            applyTransform( multiply( transform, spriteToWorld, transform ) );
+            graphics.drawImage( car, 0, 0, carWidth, carHeight );
+        }
+
+        graphics.setTransform( 1, 0, 0, 1, 0, 0 );
+        drawHud( hud );
+    }
+
+    private void drawTiles( double x, double y ){
+        trackTiles.update( worldToTrack[0] * x + worldToTrack[1] * y + worldToTrack[2],
+                           worldToTrack[3] * x + worldToTrack[4] * y + worldToTrack[5], tileRadius );
+        int size = trackTiles.getTileSize();
+        for( int row = trackTiles.getFirstRow(); row <= trackTiles.getLastRow(); ++row ){
+            for( int column = trackTiles.getFirstColumn(); column <= trackTiles.getLastColumn(); ++column ){
+                Image tile = trackTiles.getLoadedTile( column, row );
+                if( tile != null )
+                    graphics.drawImage( tile, column * size, row * size );
+            }
+        }
+    }
+
+    private void drawBar( double x, double y, double width, double height, double value, boolean vertical, Color color ){
+        graphics.setFill( BAR_BACKGROUND );
+        graphics.fillRect( x, y, width, height );
+        graphics.setFill( color );
+        value = Math.min( Math.max( value, 0 ), 1 );
+        if( vertical )
+            graphics.fillRect( x, y + height * (1 - value), width, height * value );
+        else
+            graphics.fillRect( x, y, width * value, height );
+    }
+
+    /**
+     * Draws HUD in places of HUD controls of layout.fxml.
+     */
+    private void drawHud( HudState hud ){
+        hudBinding.update( hud );
+
+        //pedals and steering
+        drawBar( 869, 726, 36, 74, hud.getThrottle(), true, ACCENT );
+        drawBar( 911, 726, 36, 74, hud.getBrake(), true, ACCENT );
+        drawBar( 640 - 220 * Math.max( -hud.getSteering(), 0 ), 782, 220 * Math.abs( hud.getSteering() ), 10, 1, false, ACCENT );
+
+        //tires, front on the right side like in the rotated grid of layout
+        drawBar( 955, 737, 26, 28, hud.getFrontDurability(), true, Color.BLACK );
+        drawBar( 955, 767, 26, 28, hud.getFrontDurability(), true, Color.BLACK );
+        drawBar( 985, 737, 26, 28, hud.getRearDurability(), true, Color.BLACK );
+        drawBar( 985, 767, 26, 28, hud.getRearDurability(), true, Color.BLACK );
+
+        //fuel
+        graphics.setFill( PANEL );
+        graphics.fillRect( 1011, 762, 124, 38 );
+        drawBar( 1012, 752, 68, 23, hud.getFuel(), false, hud.getFuel() < 0.3 ? Color.RED : Color.BLACK );
+
+        //rev counter and speed
+        graphics.setFill( PANEL );
+        graphics.fillOval( 1080, 614, 200, 200 );
+        double angle = Math.toRadians( 135 * hud.getRpm() / 7000 - 109.28 );
+        double cos = Math.cos( angle );
+        double sin = Math.sin( angle );
+        needleX[0] = 1180 - 10 * cos;
+        needleY[0] = 714 - 10 * sin;
+        needleX[1] = 1180 + 10 * cos;
+        needleY[1] = 714 + 10 * sin;
+        needleX[2] = 1180 + 93 * sin;
+        needleY[2] = 714 - 93 * cos;
+        graphics.setFill( Color.RED );
+        graphics.fillPolygon( needleX, needleY, 3 );
+
+        graphics.setFill( Color.BLACK );
+        graphics.fillRect( 1156, 728, 43, 32 );
+        graphics.fillRect( 1081, 747, 44, 56 );
+        graphics.setFill( Color.WHITE );
+        graphics.setFont( SMALL_FONT );
+        graphics.fillText( hudBinding.getSpeedText(), 1160, 752 );
+        graphics.setFont( GEAR_FONT );
+        graphics.fillText( hudBinding.getGearText(), 1089, 795 );
+
+        //lap times
+        graphics.setFont( TIME_FONT );
+        graphics.fillText( hudBinding.getCurrentTimeText(), 4, 630 );
+        graphics.fillText( hudBinding.getBestTimeText(), 4, 685 );
+        graphics.setFont( SMALL_FONT );
+        for( int i = 0; i < HudState.RECENT_TIMES; ++i ){
+            graphics.fillText( hudBinding.getRecentTimeText( i ), 3, 724 + 31 * i );
+            graphics.fillText( hudBinding.getDifferenceText( i ), 280, 724 + 31 * i );
+        }
+    }
+
+}
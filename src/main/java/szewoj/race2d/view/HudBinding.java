@@ -0,0 +1,283 @@
+package szewoj.race2d.view;
+
+import java.util.Arrays;
+
+/**
+ * Binding between HudState and widgets of HUD, which reports only widgets whose displayed value changed.
+ * Values are quantized to resolution visible on screen before comparison, so noise of physics does not
+ * dirty the scene graph, and lap times are formatted only when they change.
+ * Fuel and tire bars can be refreshed less often than every frame, as they change slowly.
+ */
+public class HudBinding {
+    public static final int INPUTS = 1;
+    public static final int SPEED = 1 << 1;
+    public static final int GEAR = 1 << 2;
+    public static final int RPM = 1 << 3;
+    public static final int FUEL = 1 << 4;
+    public static final int TIRES = 1 << 5;
+    public static final int CURRENT_TIME = 1 << 6;
+    public static final int LAP_TIMES = 1 << 7;     //best time, recent times and their differences
+    public static final int BAR_STEPS = 200;        //about one step per pixel of the widest bar
+    public static final double RPM_STEP = 25;       //about half a degree of rpm needle
+
+    private final long[] recentTimes;
+    private final String[] recentTexts;
+    private final String[] differenceTexts;
+    private int throttle = -1;
+    private int brake = -1;
+    private int steering = Integer.MIN_VALUE;
+    private int speed = Integer.MIN_VALUE;
+    private int gear = Integer.MIN_VALUE;
+    private int rpm = Integer.MIN_VALUE;
+    private int fuel = -1;
+    private int frontDurability = -1;
+    private int rearDurability = -1;
+    private long currentTime = Long.MIN_VALUE;
+    private long bestTime = Long.MIN_VALUE;
+    private String speedText = "";
+    private String gearText = "";
+    private String currentTimeText = "";
+    private String bestTimeText = "";
+    private int slowPeriod = 1;
+    private int slowFrames;
+
+    /**
+     * Constructor of HudBinding. Every widget is reported as changed by the first update.
+     */
+    public HudBinding(){
+        recentTimes = new long[HudState.RECENT_TIMES];
+        recentTexts = new String[HudState.RECENT_TIMES];
+        differenceTexts = new String[HudState.RECENT_TIMES];
+        Arrays.fill( recentTimes, Long.MIN_VALUE );
+    }
+
+    /**
+     * Quantizes value of progress bar to BAR_STEPS steps.
+     *
+     * @param progress  value in range -1.0 - 1.0
+     * @return          number of steps
+     */
+    public static int quantizeBar( double progress ){
+        return (int) Math.round( progress * BAR_STEPS );
+    }
+
+    /**
+     * Converts quantized value back to value of progress bar.
+     *
+     * @param steps     number of steps
+     * @return          value in range -1.0 - 1.0
+     */
+    public static double toBar( int steps ){
+        return (double) steps / BAR_STEPS;
+    }
+
+    /**
+     * Compares values of HUD with values displayed before and stores the changed ones.
+     * Fuel and tires are compared only once per slow period.
+     *
+     * @param hud   values of current frame
+     * @return      sum of flags of changed widgets, 0 if nothing has to be updated
+     */
+    public int update( HudState hud ){
+        int changed = 0;
+
+        int newThrottle = quantizeBar( hud.getThrottle() );
+        int newBrake = quantizeBar( hud.getBrake() );
+        int newSteering = quantizeBar( hud.getSteering() );
+        if( newThrottle != throttle || newBrake != brake || newSteering != steering ){
+            throttle = newThrottle;
+            brake = newBrake;
+            steering = newSteering;
+            changed |= INPUTS;
+        }
+
+        int newSpeed = Math.abs( hud.getSpeed() );
+        if( newSpeed != speed ){
+            speed = newSpeed;
+            speedText = Integer.toString( newSpeed );
+            changed |= SPEED;
+        }
+
+        if( hud.getGear() != gear ){
+            gear = hud.getGear();
+            gearText = gear > 0 ? Integer.toString( gear ) : gear == 0 ? "N" : "R";
+            changed |= GEAR;
+        }
+
+        int newRpm = (int) Math.round( hud.getRpm() / RPM_STEP );
+        if( newRpm != rpm ){
+            rpm = newRpm;
+            changed |= RPM;
+        }
+
+        if( ++slowFrames >= slowPeriod || fuel < 0 ){     //fuel is negative only before the first update
+            slowFrames = 0;
+            int newFuel = quantizeBar( hud.getFuel() );
+            if( newFuel != fuel ){
+                fuel = newFuel;
+                changed |= FUEL;
+            }
+            int newFront = quantizeBar( hud.getFrontDurability() );
+            int newRear = quantizeBar( hud.getRearDurability() );
+            if( newFront != frontDurability || newRear != rearDurability ){
+                frontDurability = newFront;
+                rearDurability = newRear;
+                changed |= TIRES;
+            }
+        }
+
+        if( hud.getCurrentTime() != currentTime ){
+            currentTime = hud.getCurrentTime();
+            currentTimeText = ViewManager.timeToString( currentTime );
+            changed |= CURRENT_TIME;
+        }
+
+        boolean bestChanged = hud.getBestTime() != bestTime;
+        if( bestChanged ){
+            bestTime = hud.getBestTime();
+            bestTimeText = ViewManager.timeToString( bestTime );
+            changed |= LAP_TIMES;
+        }
+        for( int i = 0; i < HudState.RECENT_TIMES; ++i ){
+            long time = hud.getRecentTime( i );
+            if( time == recentTimes[i] && !bestChanged )
+                continue;
+            if( time != recentTimes[i] ){
+                recentTimes[i] = time;
+                recentTexts[i] = ViewManager.timeToString( time );
+            }
+            differenceTexts[i] = time < 0 ? "" : ViewManager.differenceToString( time - bestTime );
+            changed |= LAP_TIMES;
+        }
+        return changed;
+    }
+
+    /**
+     * Sets number of frames between comparisons of fuel and tires.
+     *
+     * @param frames    1 to compare in every frame
+     */
+    public void setSlowPeriod( int frames ){
+        slowPeriod = Math.max( frames, 1 );
+    }
+
+    /**
+     * Getter of throttle property.
+     *
+     * @return  quantized throttle in range 0.0 - 1.0
+     */
+    public double getThrottle(){
+        return toBar( throttle );
+    }
+
+    /**
+     * Getter of brake property.
+     *
+     * @return  quantized brake in range 0.0 - 1.0
+     */
+    public double getBrake(){
+        return toBar( brake );
+    }
+
+    /**
+     * Getter of steering property.
+     *
+     * @return  quantized steering in range -1.0 - 1.0
+     */
+    public double getSteering(){
+        return toBar( steering );
+    }
+
+    /**
+     * Returns absolute speed as text.
+     *
+     * @return  speed in km/h
+     */
+    public String getSpeedText(){
+        return speedText;
+    }
+
+    /**
+     * Returns gear as text: number, N for neutral or R for reverse.
+     *
+     * @return  gear literal
+     */
+    public String getGearText(){
+        return gearText;
+    }
+
+    /**
+     * Getter of rpm property.
+     *
+     * @return  rpm quantized to RPM_STEP
+     */
+    public double getRpm(){
+        return rpm * RPM_STEP;
+    }
+
+    /**
+     * Getter of fuel property.
+     *
+     * @return  quantized fuel in range 0.0 - 1.0
+     */
+    public double getFuel(){
+        return toBar( fuel );
+    }
+
+    /**
+     * Getter of frontDurability property.
+     *
+     * @return  quantized durability of front tires in range 0.0 - 1.0
+     */
+    public double getFrontDurability(){
+        return toBar( frontDurability );
+    }
+
+    /**
+     * Getter of rearDurability property.
+     *
+     * @return  quantized durability of rear tires in range 0.0 - 1.0
+     */
+    public double getRearDurability(){
+        return toBar( rearDurability );
+    }
+
+    /**
+     * Returns formatted time of current lap.
+     *
+     * @return  time of current lap, empty if there is none
+     */
+    public String getCurrentTimeText(){
+        return currentTimeText;
+    }
+
+    /**
+     * Returns formatted best lap time.
+     *
+     * @return  best lap time, empty if there is none
+     */
+    public String getBestTimeText(){
+        return bestTimeText;
+    }
+
+    /**
+     * Returns formatted recent lap time.
+     *
+     * @param index     0 for the latest lap
+     * @return          lap time, empty if there is no such lap
+     */
+    public String getRecentTimeText( int index ){
+        return recentTexts[index];
+    }
+
+    /**
+     * Returns formatted difference between recent lap time and best lap time.
+     *
+     * @param index     0 for the latest lap
+     * @return          signed difference, empty if there is no such lap
+     */
+    public String getDifferenceText( int index ){
+        return differenceTexts[index];
+    }
+
+}
@@ -0,0 +1,180 @@
+package szewoj.race2d.view;
+
+import java.util.List;
+
+/**
+ * Plain container for values displayed by HUD, filled by controller once per frame and read by Renderer.
+ * Times are given in milliseconds, -1 means lack of time.
+ */
+public class HudState {
+    public static final int RECENT_TIMES = 3;
+
+    private double throttle;
+    private double brake;
+    private double steering;
+    private int speed;
+    private int gear;
+    private double rpm;
+    private double fuel;
+    private double frontDurability;
+    private double rearDurability;
+    private long currentTime = -1;
+    private long bestTime = -1;
+    private final long[] recentTimes = { -1, -1, -1 };
+
+    /**
+     * Sets driver inputs.
+     *
+     * @param throttle  throttle in range 0.0 - 1.0
+     * @param brake     brake in range 0.0 - 1.0
+     * @param steering  steering in range -1.0 - 1.0, positive to the right
+     */
+    public void setInputs( double throttle, double brake, double steering ){
+        this.throttle = throttle;
+        this.brake = brake;
+        this.steering = steering;
+    }
+
+    /**
+     * Sets values of dashboard.
+     *
+     * @param speed             speed in km/h
+     * @param gear              gear, 0 is neutral and -1 is reverse
+     * @param rpm               engine rpm
+     * @param fuel              fuel in range 0.0 - 1.0
+     * @param frontDurability   durability of front tires in range 0.0 - 1.0
+     * @param rearDurability    durability of rear tires in range 0.0 - 1.0
+     */
+    public void setDashboard( int speed, int gear, double rpm, double fuel, double frontDurability, double rearDurability ){
+        this.speed = speed;
+        this.gear = gear;
+        this.rpm = rpm;
+        this.fuel = fuel;
+        this.frontDurability = frontDurability;
+        this.rearDurability = rearDurability;
+    }
+
+    /**
+     * Sets lap times.
+     *
+     * @param current   time of current lap
+     * @param best      best lap time
+     * @param recent    the most recent lap times, the first is the latest
+     */
+    public void setTimes( long current, long best, List<Long> recent ){
+        currentTime = current;
+        bestTime = best;
+        for( int i = 0; i < RECENT_TIMES; ++i )
+            recentTimes[i] = i < recent.size() ? recent.get( i ) : -1;
+    }
+
+    /**
+     * Getter of throttle property.
+     *
+     * @return  throttle in range 0.0 - 1.0
+     */
+    public double getThrottle(){
+        return throttle;
+    }
+
+    /**
+     * Getter of brake property.
+     *
+     * @return  brake in range 0.0 - 1.0
+     */
+    public double getBrake(){
+        return brake;
+    }
+
+    /**
+     * Getter of steering property.
+     *
+     * @return  steering in range -1.0 - 1.0
+     */
+    public double getSteering(){
+        return steering;
+    }
+
+    /**
+     * Getter of speed property.
+     *
+     * @return  speed in km/h
+     */
+    public int getSpeed(){
+        return speed;
+    }
+
+    /**
+     * Getter of gear property.
+     *
+     * @return  gear, 0 is neutral and -1 is reverse
+     */
+    public int getGear(){
+        return gear;
+    }
+
+    /**
+     * Getter of rpm property.
+     *
+     * @return  engine rpm
+     */
+    public double getRpm(){
+        return rpm;
+    }
+
+    /**
+     * Getter of fuel property.
+     *
+     * @return  fuel in range 0.0 - 1.0
+     */
+    public double getFuel(){
+        return fuel;
+    }
+
+    /**
+     * Getter of frontDurability property.
+     *
+     * @return  durability of front tires in range 0.0 - 1.0
+     */
+    public double getFrontDurability(){
+        return frontDurability;
+    }
+
+    /**
+     * Getter of rearDurability property.
+     *
+     * @return  durability of rear tires in range 0.0 - 1.0
+     */
+    public double getRearDurability(){
+        return rearDurability;
+    }
+
+    /**
+     * Getter of currentTime property.
+     *
+     * @return  time of current lap in milliseconds
+     */
+    public long getCurrentTime(){
+        return currentTime;
+    }
+
+    /**
+     * Getter of bestTime property.
+     *
+     * @return  best lap time in milliseconds
+     */
+    public long getBestTime(){
+        return bestTime;
+    }
+
+    /**
+     * Returns one of recent lap times.
+     *
+     * @param index     0 for the latest lap
+     * @return          lap time in milliseconds, -1 if there is no such lap
+     */
+    public long getRecentTime( int index ){
+        return recentTimes[index];
+    }
+
+}
@@ -0,0 +1,18 @@
+package szewoj.race2d.view;
+
+/**
+ * Draws track, cars and HUD of one frame from model state.
+ * Implemented by scene graph of ViewManager and by CanvasRenderer, so GameController does not depend on the way of drawing.
+ */
+public interface Renderer {
+
+    /**
+     * Draws one frame. Camera follows the first car.
+     *
+     * @param poses     world x, y coordinates in metres and heading in radians of every car, three values per car
+     * @param carCount  number of cars, all of them are drawn
+     * @param hud       values displayed by HUD of the first car
+     */
+    void render( double[] poses, int carCount, HudState hud );
+
+}
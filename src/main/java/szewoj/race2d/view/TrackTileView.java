@@ -0,0 +1,186 @@
+package szewoj.race2d.view;
+
+import javafx.scene.Group;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import szewoj.race2d.utilities.TileCache;
+import szewoj.race2d.utilities.TileSet;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.Executor;
+
+/**
+ * Track image streamed in tiles around the camera. Tiles within view radius, and one more ring of them,
+ * are prefetched on background executor into a bounded LRU cache, and only loaded tiles are shown, so frames never wait for loading.
+ * Scene graph keeps a fixed pool of ImageViews reassigned to visible tiles, CanvasRenderer draws visible tiles itself.
+ * Coordinates are coordinates of track image, the same as of trackSprite.
+ */
+public class TrackTileView {
+    private final TileSet tiles;
+    private final TileCache<Image> cache;
+    private final int tileSize;
+    private final int span;                 //maximal number of visible tiles along one axis
+    private Group group;
+    private ImageView[] views;
+    private int firstColumn;
+    private int firstRow;
+    private int lastColumn = -1;
+    private int lastRow = -1;
+
+    /**
+     * Constructor of TrackTileView.
+     *
+     * @param tiles     description of tiled track
+     * @param group     group in track coordinates receiving ImageViews of tiles, or null if tiles are drawn by CanvasRenderer
+     * @param radius    radius of visible area around the camera in track coordinates
+     * @param executor  executor of prefetching
+     */
+    public TrackTileView( TileSet tiles, Group group, double radius, Executor executor ){
+        this.tiles = tiles;
+        tileSize = tiles.getTileSize();
+        span = (int) Math.ceil( 2 * radius / tileSize ) + 1;
+        cache = new TileCache<>( ( span + 2 ) * ( span + 2 ), this::loadTile, executor );
+        this.group = group;
+        if( group != null ){
+            views = new ImageView[span * span];
+            for( int i = 0; i < views.length; ++i ){
+                views[i] = new ImageView();
+                views[i].setSmooth( false );
+                group.getChildren().add( views[i] );
+            }
+        }
+    }
+
+    private Image loadTile( int column, int row ) throws IOException {
+        try( InputStream input = new FileInputStream( tiles.getTrackTile( column, row ) ) ){
+            Image image = new Image( input );
+            if( image.isError() )
+                throw new IOException( "Cannot decode track tile " + column + ", " + row, image.getException() );
+            return image;
+        }
+    }
+
+    /**
+     * Moves visible area to given point, prefetches tiles around it and shows loaded visible tiles.
+     *
+     * @param x         x coordinate of camera in track coordinates
+     * @param y         y coordinate of camera in track coordinates
+     * @param radius    radius of visible area, at most radius given to constructor
+     */
+    public void update( double x, double y, double radius ){
+        cache.collect();
+        firstColumn = Math.max( (int) Math.floor( ( x - radius ) / tileSize ), 0 );
+        firstRow = Math.max( (int) Math.floor( ( y - radius ) / tileSize ), 0 );
+        lastColumn = Math.min( (int) Math.floor( ( x + radius ) / tileSize ), tiles.getColumns() - 1 );
+        lastRow = Math.min( (int) Math.floor( ( y + radius ) / tileSize ), tiles.getRows() - 1 );
+
+        for( int row = Math.max( firstRow - 1, 0 ); row <= Math.min( lastRow + 1, tiles.getRows() - 1 ); ++row )
+            for( int column = Math.max( firstColumn - 1, 0 ); column <= Math.min( lastColumn + 1, tiles.getColumns() - 1 ); ++column )
+                cache.prefetch( column, row );
+
+        if( group != null )
+            assignViews();
+    }
+
+    /**
+     * Assigns pooled ImageViews to visible tiles. Setting the same image and position again does not dirty the scene graph.
+     */
+    private void assignViews(){
+        int used = 0;
+        for( int row = firstRow; row <= lastRow; ++row ){
+            for( int column = firstColumn; column <= lastColumn && used < views.length; ++column ){
+                Image image = cache.getIfLoaded( column, row );
+                if( image == null )
+                    continue;
+                ImageView view = views[used++];
+                view.setImage( image );
+                view.setX( column * tileSize );
+                view.setY( row * tileSize );
+                view.setVisible( true );
+            }
+        }
+        for( int i = used; i < views.length; ++i ){
+            views[i].setVisible( false );
+            views[i].setImage( null );
+        }
+    }
+
+    /**
+     * Removes ImageViews of tiles from scene graph, when tiles are drawn by CanvasRenderer.
+     */
+    public void detachViews(){
+        if( group == null )
+            return;
+        group.getChildren().removeAll( views );
+        group = null;
+        views = null;
+    }
+
+    /**
+     * Returns visible tile if it is loaded.
+     *
+     * @param column    column of tile, in range getFirstColumn() - getLastColumn()
+     * @param row       row of tile, in range getFirstRow() - getLastRow()
+     * @return          image of tile or null
+     */
+    public Image getLoadedTile( int column, int row ){
+        return cache.getIfLoaded( column, row );
+    }
+
+    /**
+     * Getter of firstColumn property.
+     *
+     * @return  the first visible column
+     */
+    public int getFirstColumn(){
+        return firstColumn;
+    }
+
+    /**
+     * Getter of firstRow property.
+     *
+     * @return  the first visible row
+     */
+    public int getFirstRow(){
+        return firstRow;
+    }
+
+    /**
+     * Getter of lastColumn property.
+     *
+     * @return  the last visible column, less than the first one before the first update
+     */
+    public int getLastColumn(){
+        return lastColumn;
+    }
+
+    /**
+     * Getter of lastRow property.
+     *
+     * @return  the last visible row, less than the first one before the first update
+     */
+    public int getLastRow(){
+        return lastRow;
+    }
+
+    /**
+     * Getter of tileSize property.
+     *
+     * @return  size of side of a tile in track coordinates
+     */
+    public int getTileSize(){
+        return tileSize;
+    }
+
+    /**
+     * Returns cache of track tiles.
+     *
+     * @return  cache of tiles
+     */
+    public TileCache<Image> getCache(){
+        return cache;
+    }
+
+}
@@ -9,52 +9,63 @@ import javafx.scene.control.Button;
 import javafx.scene.control.Label;
 import javafx.scene.control.ProgressBar;
 import javafx.scene.control.TitledPane;
+import javafx.scene.canvas.Canvas;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
-import javafx.scene.image.PixelReader;
 import javafx.scene.layout.AnchorPane;
+import javafx.scene.layout.Pane;
 import javafx.scene.shape.Line;
 import javafx.scene.shape.Polygon;
 import javafx.scene.shape.Rectangle;
-import javafx.scene.shape.Shape;
+import javafx.scene.shape.StrokeLineCap;
+import javafx.scene.paint.Color;
 import javafx.scene.transform.Affine;
+import javafx.scene.transform.NonInvertibleTransformException;
 import javafx.scene.transform.Rotate;
 import javafx.scene.transform.Transform;
-import javafx.scene.transform.Translate;
 import javafx.stage.Stage;
 import szewoj.race2d.controller.GameController;
-import szewoj.race2d.utilities.Vector2;
+import szewoj.race2d.model.Track;
+import szewoj.race2d.model.Vehicle;
+import szewoj.race2d.utilities.TileSet;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 /**
  * Class ViewManager is a view class that displays every item of the program
+ * Renders frames with scene graph loaded from layout.fxml, and can switch drawing of track, cars and HUD to CanvasRenderer.
  */
-public class ViewManager {
+public class ViewManager implements Renderer {
 
     private Rotate rpmPosition;
     private List<Label> recentTimes;
     private List<Label> differences;
-    private List<Line> barriers;
-    private Image trackMask;
+    private static final Color BARRIER_COLOR = Color.web( "#abb2ad" );
+
+    private Affine trackAffine;
+    private Track track;
+    private Group barrierGroup;
+    private Group opponentGroup;            //sprites of cars other than the first one, in track coordinates
+    private double[] worldToTrack;          //world coordinates of the car to track coordinates, which are coordinates of trackLayer
+    private double[] worldToGroup;          //world coordinates of the car to trackGroup coordinates
+    private HudBinding hudBinding;
+    private TrackTileView trackTiles;
+    private double viewRadius;              //distance from the car to the farthest corner of window, in track coordinates
+    private int pitstopFuel = -1;           //progress of pitstop bars quantized by HudBinding
+    private int pitstopTires = -1;
 
     @FXML private AnchorPane homeScreen;
     @FXML private ProgressBar steerLeftPB, steerRightPB, throttlePB, brakePB, fuelPB, LFTirePB, RFTirePB, LRTirePB, RRTirePB, pitstopTiresPB, pitstopFuelPB;
     @FXML private Button fuelButton, tiresButton;
-    @FXML private ImageView trackSprite, carSprite;
-    @FXML private Group trackGroup, carGroup;
-    @FXML private Label speedTxt, gearDisplay;
+    @FXML private ImageView trackSprite, carSprite, homeSprite;
+    @FXML private Group trackGroup, trackLayer, carGroup;
+    @FXML private Label speedTxt, gearDisplay, latencyTxt;
     @FXML private Label currentTime, bestTime, recentTime1, recentTime2, recentTime3;
     @FXML private Label difference1, difference2, difference3;
     @FXML private Polygon rpmMeter;
     @FXML private Rectangle carHitbox;
     @FXML private TitledPane pitstopPane;
-    @FXML private Rectangle pitstopHitbox;
-    @FXML private Line start, checkpoint1, checkpoint2;
-    @FXML private Line barrier1, barrier2, barrier3, barrier4, barrier5, barrier6, barrier7, barrier8, barrier9, barrier10,
-                        barrier11, barrier12, barrier13, barrier14, barrier15, barrier16, barrier17, barrier18, barrier19, barrier20,
-                        barrier21, barrier22, barrier23, barrier24, barrier25, barrier26, barrier27, barrier28, barrier29, barrier30,
-                        barrier31, barrier32, barrier33, barrier34, barrier35, barrier36, barrier37, barrier38, barrier39, barrier40;
 
     /**
      * Public constructor of the class.
@@ -63,8 +74,10 @@ public class ViewManager {
         rpmPosition = new Rotate( -90, -40, 40 );
         recentTimes = new ArrayList<>();
         differences = new ArrayList<>();
-        barriers = new ArrayList<>();
-        trackMask = new Image("/mask.png");
+        trackAffine = new Affine();
+        worldToTrack = new double[6];
+        worldToGroup = new double[6];
+        hudBinding = new HudBinding();
     }
 
     /**
@@ -76,6 +89,8 @@ public class ViewManager {
         trackSprite.setCache(true);
         trackSprite.setCacheHint( CacheHint.SPEED );
         rpmMeter.getTransforms().add(rpmPosition);
+        trackGroup.getTransforms().add(trackAffine);
+        computeWorldTransform( trackGroup, worldToGroup );
 
         homeScreen.setVisible(true);
 
@@ -86,8 +101,68 @@ public class ViewManager {
         differences.add( difference1 );
         differences.add( difference2 );
         differences.add( difference3 );
+    }
+
+    /**
+     * Shows image of home screen. Layout has no images, so they can be decoded in the background while it loads.
+     *
+     * @param image     image of home screen
+     */
+    public void setHomeImage( Image image ){
+        homeSprite.setImage( image );
+    }
 
-        initBarriers();
+    /**
+     * Places track under the car: track layer maps track coordinates to trackGroup, so that spawn point of the track
+     * lies under pivot of the car in its starting pose, and barriers of the track are drawn above track image.
+     * For world to trackGroup transform G of the car in starting pose, track layer is transformed by G * worldToTrack^-1.
+     *
+     * @param track     compiled track
+     */
+    public void setTrack( Track track ){
+        this.track = track;
+        track.getWorldToTrackTransform( worldToTrack );
+        Affine layerTransform = new Affine( worldToGroup[0], worldToGroup[1], worldToGroup[2], worldToGroup[3], worldToGroup[4], worldToGroup[5] );
+        try {
+            layerTransform.append( new Affine( worldToTrack[0], worldToTrack[1], worldToTrack[2],
+                                               worldToTrack[3], worldToTrack[4], worldToTrack[5] ).createInverse() );
+        } catch( NonInvertibleTransformException e ){
+            throw new IllegalArgumentException( "Track has singular world transform", e );
+        }
+        trackLayer.getTransforms().setAll( layerTransform );
+
+        if( barrierGroup != null )
+            trackLayer.getChildren().remove( barrierGroup );
+        barrierGroup = new Group();
+        double[] segments = track.getBarrierSegments();
+        for( int i = 0; i < segments.length; i += 4 ){
+            Line line = new Line( segments[i], segments[i + 1], segments[i + 2], segments[i + 3] );
+            line.setStroke( BARRIER_COLOR );
+            line.setStrokeLineCap( StrokeLineCap.ROUND );
+            line.setStrokeWidth( track.getBarrierWidth() );
+            barrierGroup.getChildren().add( line );
+        }
+        trackLayer.getChildren().add( barrierGroup );
+        if( opponentGroup == null )
+            opponentGroup = new Group();
+        trackLayer.getChildren().remove( opponentGroup );
+        trackLayer.getChildren().add( opponentGroup );
+        viewRadius = computeViewRadius();
+    }
+
+    /**
+     * Shows images of track and car. Track image is shown in its own size, as track coordinates are its pixels.
+     *
+     * @param track     image of track, or null for tiled track
+     * @param car       image of car
+     */
+    public void setSpriteImages( Image track, Image car ){
+        trackSprite.setImage( track );
+        if( track != null ){
+            trackSprite.setFitWidth( track.getWidth() );
+            trackSprite.setFitHeight( track.getHeight() );
+        }
+        carSprite.setImage( car );
     }
 
     /**
@@ -105,31 +180,28 @@ public class ViewManager {
     }
 
     /**
-     * Adjusts rotate transform to make it applicable to background.
+     * Converts coordinate system of the point without creating new objects.
      *
-     * @param rotate        original rotate transform
-     * @param source        node of rotate's original coordinate system
-     * @param background    node to which returned rotate transform will be applicable
-     * @return              converted rotate transform
+     * @param source    node of point's original coordinate system
+     * @param target    node of point's desired coordinate system
+     * @param x         x coordinate of original point
+     * @param y         y coordinate of original point
+     * @param out       array of length 2 to be filled with converted point
      */
-    public static Rotate adjustToBackground(Rotate rotate, Node source, Node background ){
-        Rotate newRotate = rotate.clone();
-        Point2D pivot = ViewManager.convertPoint( source, background, new Point2D( rotate.getPivotX(), rotate.getPivotY()) );
-        newRotate.setPivotX( pivot.getX() );
-        newRotate.setPivotY( pivot.getY() );
-        return newRotate;
-    }
+    public static void convertPoint(Node source, Node target, double x, double y, double[] out ){
+        Transform sourceToScene = source.getLocalToSceneTransform();
+        Transform targetToScene = target.getLocalToSceneTransform();
 
-    /**
-     * Checks if two Shape objects are intersecting.
-     *
-     * @param shape1    first shape
-     * @param shape2    second shape
-     * @return          boolean value, true if shapes intersect
-     */
-    public static boolean checkCollision(Shape shape1, Shape shape2 ){
-        Shape intersect = Shape.intersect(shape1, shape2 );
-        return intersect.getBoundsInLocal().getWidth() != -1;
+        double sceneX = sourceToScene.getMxx() * x + sourceToScene.getMxy() * y + sourceToScene.getTx();
+        double sceneY = sourceToScene.getMyx() * x + sourceToScene.getMyy() * y + sourceToScene.getTy();
+
+        //inverse of 2D part of target transform
+        double determinant = targetToScene.getMxx() * targetToScene.getMyy() - targetToScene.getMxy() * targetToScene.getMyx();
+        sceneX -= targetToScene.getTx();
+        sceneY -= targetToScene.getTy();
+
+        out[0] = ( targetToScene.getMyy() * sceneX - targetToScene.getMxy() * sceneY ) / determinant;
+        out[1] = ( -targetToScene.getMyx() * sceneX + targetToScene.getMxx() * sceneY ) / determinant;
     }
 
     /**
@@ -177,30 +249,74 @@ public class ViewManager {
     }
 
     /**
-     * Gets the friction from trackMask Image in point of the front of the carGroup Node.
+     * Computes affine transform mapping world coordinates of the car in metres to coordinates of given node of track,
+     * for the car in its starting pose, in which sprite coordinates are world coordinates scaled by METER_TO_PIXEL_RATIO
+     * and moved to the pivot.
      *
-     * @return      friction value in range 0.0 - 1.0
+     * @param target    node of track
+     * @param out       array of length 6 to be filled with mxx, mxy, tx, myx, myy and ty of the transform
      */
-    public double getFrontFriction(){
-        Point2D frontContactPoint = convertPoint( carGroup, trackSprite, new Point2D( 35.3, 20 ) );
+    private void computeWorldTransform( Node target, double[] out ){
+        double[] origin = new double[2];
+        double[] unitX = new double[2];
+        double[] unitY = new double[2];
+        double ratio = Vehicle.METER_TO_PIXEL_RATIO;
 
-        PixelReader reader = trackMask.getPixelReader();
+        convertPoint( carGroup, target, Vehicle.PIVOT_X, Vehicle.PIVOT_Y, origin );
+        convertPoint( carGroup, target, Vehicle.PIVOT_X + ratio, Vehicle.PIVOT_Y, unitX );
+        convertPoint( carGroup, target, Vehicle.PIVOT_X, Vehicle.PIVOT_Y + ratio, unitY );
 
-        return reader.getColor( (int)(frontContactPoint.getX()), (int)(frontContactPoint.getY()) + 5 ).getRed();
+        out[0] = unitX[0] - origin[0];
+        out[1] = unitY[0] - origin[0];
+        out[2] = origin[0];
+        out[3] = unitX[1] - origin[1];
+        out[4] = unitY[1] - origin[1];
+        out[5] = origin[1];
+    }
 
+    /**
+     * Computes distance from pivot of the car to the farthest corner of window in track coordinates.
+     * Track rotates around the car, so every visible point of track lies within this distance.
+     *
+     * @return  radius of visible area of track
+     */
+    private double computeViewRadius(){
+        Pane root = (Pane) trackGroup.getParent();
+        double[] car = new double[2];
+        double[] corner = new double[2];
+        convertPoint( carGroup, trackLayer, Vehicle.PIVOT_X, Vehicle.PIVOT_Y, car );
+
+        double radius = 0;
+        for( int i = 0; i < 4; ++i ){
+            convertPoint( root, trackLayer, ( i & 1 ) * root.getPrefWidth(), ( i >> 1 ) * root.getPrefHeight(), corner );
+            radius = Math.max( radius, Math.hypot( corner[0] - car[0], corner[1] - car[1] ) );
+        }
+        return radius;
     }
+
     /**
-     * Gets the friction from trackMask Image in point of the rear of the carGroup Node.
+     * Replaces single image of track with tiles streamed around the car.
+     * Has to be called after setTrack, tiles are in track coordinates like the replaced image of track.
      *
-     * @return      friction value in range 0.0 - 1.0
+     * @param tiles     description of tiled track
+     * @param executor  executor loading tiles in the background
      */
-    public double getRearFriction(){
-        Point2D rearContactPoint = convertPoint( carGroup, trackSprite, new Point2D( 35.3, 20 ) );
-
-        PixelReader reader = trackMask.getPixelReader();
-
-        return reader.getColor( (int)(rearContactPoint.getX()), (int)(rearContactPoint.getY()) + 5 ).getRed();
+    public void setTrackTiles( TileSet tiles, Executor executor ){
+        Group tileGroup = new Group();
+        trackLayer.getChildren().set( trackLayer.getChildren().indexOf( trackSprite ), tileGroup );
+        trackTiles = new TrackTileView( tiles, tileGroup, viewRadius, executor );
+    }
 
+    /**
+     * Returns affine transform mapping world coordinates of the car in metres to track coordinates,
+     * which are pixels of track image and mask.
+     *
+     * @param out   array of length 6 to be filled with mxx, mxy, tx, myx, myy and ty of the transform
+     * @return      out parameter
+     */
+    public double[] getWorldToTrackTransform( double[] out ){
+        System.arraycopy( worldToTrack, 0, out, 0, 6 );
+        return out;
     }
 
     /**
@@ -284,9 +400,6 @@ public class ViewManager {
      */
     @FXML
     public void setFuelProgress(double fuel ){
-        if( pitstopPane.isVisible() )
-            pitstopFuelPB.setProgress( fuel );
-
         fuelPB.setProgress( fuel );
         if( fuel < 0.3 )
             fuelPB.setStyle("-fx-accent: RED");
@@ -311,76 +424,85 @@ public class ViewManager {
     }
 
     /**
-     * Sets progress value of corresponding ProgressBar only if its parent pane is visible.
-     *
-     * @param progress  double value in range 0.0 - 1.0
-     */
-    @FXML
-    public void setTireChangeProgress( double progress ){
-        if( pitstopPane.isVisible() )
-            pitstopTiresPB.setProgress( progress );
-    }
-
-    /**
-     * Applies given transformations to carGroup Node.
-     *
-     * @param translation   linear displacement
-     * @param turning       rotation around turn radius
-     * @param rotation      rotation around centre
-     */
-    @FXML
-    public void applyCarTransforms(Translate translation, Rotate turning, Rotate rotation ){
-        carGroup.getTransforms().addAll( translation.clone(), turning.clone(), rotation.clone() );
-        mergeTransform( carGroup );
-    }
-
-    /**
-     * Applies inverse of given transformations to carGroup Node.
+     * Shows the car in given world pose. The car stays in its place on screen and the track is moved under it,
+     * so the whole view is a single in-place update of transform of trackGroup Node.
+     * For world to trackGroup transform G and pose P of the car, the track is transformed by G * P^-1 * G^-1.
      *
-     * @param translation   linear displacement
-     * @param turning       rotation around turn radius
-     * @param rotation      rotation around centre
-     */
-    @FXML
-    public void applyCarTransformsReversed(Translate translation, Rotate turning, Rotate rotation ){
-
-        Translate translate = new Translate( -translation.getX(), -translation.getY() );
-
-        Rotate turn = turning.clone();
-        turn.setAngle( -turn.getAngle() );
-
-        Rotate rotate = rotation.clone();
-        rotate.setAngle( -rotate.getAngle() );
-
-        carGroup.getTransforms().addAll( rotate, turn, translate );
-        mergeTransform( carGroup );
-    }
-
-    /**
-     * Applies inverse of given transformations applicable to background to trackGroup Node.
+     * @param x         world x coordinate of centre of gravity in metres
+     * @param y         world y coordinate of centre of gravity in metres
+     * @param heading   heading of the car in radians
+     */
+    public void setCarPose( double x, double y, double heading ){
+        double cos = Math.cos( heading );
+        double sin = Math.sin( heading );
+        double[] g = worldToGroup;
+        double determinant = g[0] * g[4] - g[1] * g[3];
+
+        //inverse of linear part of G
+        double ixx = g[4] / determinant;
+        double ixy = -g[1] / determinant;
+        double iyx = -g[3] / determinant;
+        double iyy = g[0] / determinant;
+
+        //R^T * G^-1, linear part
+        double rxx = cos * ixx + sin * iyx;
+        double rxy = cos * ixy + sin * iyy;
+        double ryx = -sin * ixx + cos * iyx;
+        double ryy = -sin * ixy + cos * iyy;
+
+        //world point of trackGroup origin, moved to car coordinates: R^T * (G^-1 * 0 - t)
+        double worldX = -( ixx * g[2] + ixy * g[5] ) - x;
+        double worldY = -( iyx * g[2] + iyy * g[5] ) - y;
+        double localX = cos * worldX + sin * worldY;
+        double localY = -sin * worldX + cos * worldY;
+
+        trackAffine.setToTransform(
+                g[0] * rxx + g[1] * ryx, g[0] * rxy + g[1] * ryy, g[0] * localX + g[1] * localY + g[2],
+                g[3] * rxx + g[4] * ryx, g[3] * rxy + g[4] * ryy, g[3] * localX + g[4] * localY + g[5] );
+
+        if( trackTiles != null )
+            trackTiles.update( worldToTrack[0] * x + worldToTrack[1] * y + worldToTrack[2],
+                               worldToTrack[3] * x + worldToTrack[4] * y + worldToTrack[5], viewRadius );
+    }
+
+    /**
+     * Shows cars other than the first one as sprites on the track layer, created when number of cars grows.
+     * Sprite of every car is transformed by worldToTrack * P * spriteToWorld for its pose P,
+     * where spriteToWorld maps car sprite coordinates around the pivot to metres.
      *
-     * @param translation   linear displacement
-     * @param turning       rotation around turn radius
-     * @param rotation      rotation around centre
-     */
-    @FXML
-    public void applyBackgroundTransformsAdjustedReversed( Translate translation, Rotate turning, Rotate rotation ){
-        double yx = trackGroup.getLocalToSceneTransform().getMyx();
-        double yy = trackGroup.getLocalToSceneTransform().getMyy();
-        double angle = Math.atan2(yx, yy);
-
-        Translate translate = new Translate( -translation.getY() * Math.sin(angle) - translation.getX() * Math.cos(angle), -translation.getY() * Math.cos(angle) + translation.getX() * Math.sin(angle) );
-        trackGroup.getTransforms().add( translate );
-
-        Rotate turn = ViewManager.adjustToBackground( turning, carGroup, trackGroup );
-        turn.setAngle( -turn.getAngle() );
-        trackGroup.getTransforms().add( turn );
-
-        Rotate rotate = ViewManager.adjustToBackground( rotation, carGroup, trackGroup );
-        rotate.setAngle( -rotate.getAngle() );
-        trackGroup.getTransforms().add( rotate );
+     * @param poses     world x, y coordinates in metres and heading in radians of every car, three values per car
+     * @param carCount  number of cars
+     */
+    private void showOpponents( double[] poses, int carCount ){
+        if( opponentGroup == null )
+            return;
+        List<Node> sprites = opponentGroup.getChildren();
+        while( sprites.size() < carCount - 1 ){
+            ImageView sprite = new ImageView( carSprite.getImage() );
+            sprite.setFitWidth( carSprite.getLayoutBounds().getWidth() );
+            sprite.setFitHeight( carSprite.getLayoutBounds().getHeight() );
+            sprite.getTransforms().add( new Affine() );
+            sprites.add( sprite );
+        }
 
-        mergeTransform( trackGroup );
+        double[] w = worldToTrack;
+        double ratio = Vehicle.METER_TO_PIXEL_RATIO;
+        for( int i = 0; i < sprites.size(); ++i ){
+            Node sprite = sprites.get( i );
+            sprite.setVisible( i < carCount - 1 );
+            if( i >= carCount - 1 )
+                continue;
+
+            int car = 3 * ( i + 1 );
+            double cos = Math.cos( poses[car + 2] ) / ratio;
+            double sin = Math.sin( poses[car + 2] ) / ratio;
+            //P * spriteToWorld, mapping sprite coordinates to world
+            double tx = poses[car] - cos * Vehicle.PIVOT_X + sin * Vehicle.PIVOT_Y;
+            double ty = poses[car + 1] - sin * Vehicle.PIVOT_X - cos * Vehicle.PIVOT_Y;
+            ( (Affine) sprite.getTransforms().get( 0 ) ).setToTransform(
+                    w[0] * cos + w[1] * sin, -w[0] * sin + w[1] * cos, w[0] * tx + w[1] * ty + w[2],
+                    w[3] * cos + w[4] * sin, -w[3] * sin + w[4] * cos, w[3] * tx + w[4] * ty + w[5] );
+        }
     }
 
     /**
@@ -394,79 +516,111 @@ public class ViewManager {
     }
 
     /**
-     * Displays given times in specified section of screen.
-     *
-     * @param current   current measured time
-     * @param best      best lap time since start of application
-     * @param recent    List of 3 most recent lap times
+     * Displays best and recent lap times in specified section of screen, with strings formatted by HudBinding.
      */
-    @FXML
-    public void displayTimes( long current, long best, List<Long> recent){
-        currentTime.setText( timeToString(current) );
-        bestTime.setText( timeToString(best) );
-        for( int i = 0; i < 3; ++i ){
-            long time = recent.get(i);
-            recentTimes.get(i).setText( timeToString(time) );
-            if( time < 0 )
-                differences.get(i).setText("");
-            else
-                differences.get(i).setText( differenceToString( time - best ) );
+    private void displayLapTimes(){
+        bestTime.setText( hudBinding.getBestTimeText() );
+        for( int i = 0; i < HudState.RECENT_TIMES; ++i ){
+            recentTimes.get(i).setText( hudBinding.getRecentTimeText( i ) );
+            differences.get(i).setText( hudBinding.getDifferenceText( i ) );
         }
     }
 
     /**
-     * Shows pitstopPane if car entered pitstop.
+     * Sets number of frames between updates of fuel and tire bars, which change slowly.
+     *
+     * @param frames    1 to update them in every frame
      */
-    @FXML
-    public void showPitstopPane(){
-        if( checkCollision( carHitbox, pitstopHitbox) )
-            pitstopPane.setVisible(true);
-        else
-            pitstopPane.setVisible(false);
+    public void setSlowHudPeriod( int frames ){
+        hudBinding.setSlowPeriod( frames );
     }
 
     /**
-     * Checks if car collides with any barrier, and if yes, then it returns the vector of collision.
+     * Moves scene graph to the pose of the first car, with tiles of tiled track around it, and updates HUD controls whose quantized values changed,
+     * so unchanged controls do not cost CSS and layout passes.
      *
-     * @return      vector from point of collision to centre of car
-     */
-    @FXML
-    public Vector2 getBarrierCollisionVector(){
-        Vector2 out = new Vector2(0, 0);
-
-        Shape intersect = null;
-        for(Line barrier : barriers ){
-            intersect = Shape.intersect( barrier, carHitbox );
-            if(intersect.getBoundsInLocal().getWidth() != -1)
-                break;
-            else
-                intersect = null;
+     * @param poses     world x, y coordinates in metres and heading in radians of every car, three values per car
+     * @param carCount  number of cars, the first one in the middle of the view and the others on the track
+     * @param hud       values displayed by HUD of the first car
+     */
+    @Override
+    public void render( double[] poses, int carCount, HudState hud ){
+        setCarPose( poses[0], poses[1], poses[2] );
+        showOpponents( poses, carCount );
+
+        int changed = hudBinding.update( hud );
+        if( ( changed & HudBinding.INPUTS ) != 0 ){
+            setThrottleProgress( hudBinding.getThrottle() );
+            setBrakeProgress( hudBinding.getBrake() );
+            setSteeringProgress( hudBinding.getSteering() );
         }
-        if(intersect != null){
-            Point2D intersectCenter = new Point2D( intersect.getBoundsInLocal().getMinX() + intersect.getBoundsInLocal().getWidth() / 2.0, intersect.getBoundsInLocal().getMinY() + intersect.getBoundsInLocal().getHeight() / 2.0);
-            Point2D carCenter = convertPoint(carHitbox, intersect, new Point2D( carHitbox.getBoundsInLocal().getMinX() + carHitbox.getBoundsInLocal().getWidth()/2.0 , carHitbox.getBoundsInLocal().getMinY() + carHitbox.getBoundsInLocal().getHeight()/2.0 ));
-
-            out.setX( carCenter.getX() - intersectCenter.getX() );
-            out.setY( carCenter.getY() - intersectCenter.getY() );
+        if( ( changed & HudBinding.SPEED ) != 0 )
+            speedTxt.setText( hudBinding.getSpeedText() );
+        if( ( changed & HudBinding.GEAR ) != 0 )
+            gearDisplay.setText( hudBinding.getGearText() );
+        if( ( changed & HudBinding.RPM ) != 0 )
+            setRpmPosition( hudBinding.getRpm() );
+        if( ( changed & HudBinding.FUEL ) != 0 )
+            setFuelProgress( hudBinding.getFuel() );
+        if( ( changed & HudBinding.TIRES ) != 0 )
+            setTireDurabilityProgress( hudBinding.getFrontDurability(), hudBinding.getFrontDurability(),
+                                       hudBinding.getRearDurability(), hudBinding.getRearDurability() );
+        if( ( changed & HudBinding.CURRENT_TIME ) != 0 )
+            currentTime.setText( hudBinding.getCurrentTimeText() );
+        if( ( changed & HudBinding.LAP_TIMES ) != 0 )
+            displayLapTimes();
+    }
+
+    /**
+     * Replaces scene graph of track, car and HUD with a Canvas drawn by returned CanvasRenderer.
+     * Pitstop options, latency overlay and home screen stay in scene graph above the Canvas.
+     *
+     * @return  renderer drawing on the Canvas
+     */
+    public CanvasRenderer createCanvasRenderer(){
+        Pane root = (Pane) trackGroup.getParent();
+        Canvas canvas = new Canvas( root.getPrefWidth(), root.getPrefHeight() );
+        for( Node node : root.getChildren() )
+            if( node != pitstopPane && node != latencyTxt && node != homeScreen )
+                node.setVisible( false );
+        root.getChildren().add( 0, canvas );
+
+        Transform carToScreen = carGroup.getLocalToParentTransform();
+        CanvasRenderer renderer = new CanvasRenderer( canvas,
+                trackSprite.getImage(), trackSprite.getLayoutBounds().getWidth(), trackSprite.getLayoutBounds().getHeight(),
+                carSprite.getImage(), carSprite.getLayoutBounds().getWidth(), carSprite.getLayoutBounds().getHeight(),
+                track.getBarrierSegments(), track.getBarrierWidth(), getWorldToTrackTransform( new double[6] ),
+                new double[]{ carToScreen.getMxx(), carToScreen.getMxy(), carToScreen.getTx(),
+                              carToScreen.getMyx(), carToScreen.getMyy(), carToScreen.getTy() } );
+        if( trackTiles != null ){
+            trackTiles.detachViews();
+            renderer.setTrackTiles( trackTiles, viewRadius );
         }
-        return out;
+        return renderer;
     }
 
     /**
-     * Checks if car crossed any checkpoint, and if yes, then it returns the checkpoint's index.
-     * If none of known checkpoints are crossed, method returns code of value -1.
+     * Shows pitstop options while the car is in pitstop area, with progress of refuelling and tire change.
      *
-     * @return      checkpoint index
-     */
-    @FXML
-    public int getCrossedCheckpoint(){
-        if(checkCollision(carHitbox, start))
-            return 0;
-        if(checkCollision(carHitbox, checkpoint1))
-            return 1;
-        if(checkCollision(carHitbox, checkpoint2))
-            return 2;
-        return-1;
+     * @param visible       true if the car is in pitstop area
+     * @param fuel          fuel in range 0.0 - 1.0
+     * @param tireChange    progress of tire change in range 0.0 - 1.0
+     */
+    public void updatePitstopPane( boolean visible, double fuel, double tireChange ){
+        pitstopPane.setVisible( visible );
+        if( !visible )
+            return;
+
+        int newFuel = HudBinding.quantizeBar( fuel );
+        if( newFuel != pitstopFuel ){
+            pitstopFuel = newFuel;
+            pitstopFuelPB.setProgress( HudBinding.toBar( newFuel ) );
+        }
+        int newTires = HudBinding.quantizeBar( tireChange );
+        if( newTires != pitstopTires ){
+            pitstopTires = newTires;
+            pitstopTiresPB.setProgress( HudBinding.toBar( newTires ) );
+        }
     }
 
     /**
@@ -525,65 +679,38 @@ public class ViewManager {
     }
 
     /**
-     * Merges all transforms applied to node into one affine transform.
+     * Shows or hides overlay with input latency.
      *
-     * @param node      Node which transforms will be merged.
+     * @param visible   true to show overlay
      */
-    @FXML
-    public void mergeTransform( Node node ){
-        Affine affine = new Affine();
+    public void setLatencyOverlayVisible( boolean visible ){
+        latencyTxt.setVisible( visible );
+    }
 
-        for( Transform transform : node.getTransforms() ){
-            affine.append(transform);
-        }
+    /**
+     * Passes value of isVisible() of latencyTxt property.
+     *
+     * @return      true if overlay with input latency is shown
+     */
+    public boolean isLatencyOverlayVisible(){
+        return latencyTxt.isVisible();
+    }
 
-        node.getTransforms().setAll( affine );
+    /**
+     * Displays given text in overlay with input latency.
+     *
+     * @param text      summary of latency
+     */
+    public void displayLatency( String text ){
+        latencyTxt.setText( text );
     }
-    
+
     /**
-     * Initializes barriers property with all Line barrier* property.
+     * Registers listener called in every pulse after layout, when the scene graph is final and about to be rendered.
+     *
+     * @param listener  listener called once per frame
      */
-    @FXML
-    private void initBarriers(){
-        barriers.add(barrier1);
-        barriers.add(barrier2);
-        barriers.add(barrier3);
-        barriers.add(barrier4);
-        barriers.add(barrier5);
-        barriers.add(barrier6);
-        barriers.add(barrier7);
-        barriers.add(barrier8);
-        barriers.add(barrier9);
-        barriers.add(barrier10);
-        barriers.add(barrier11);
-        barriers.add(barrier12);
-        barriers.add(barrier13);
-        barriers.add(barrier14);
-        barriers.add(barrier15);
-        barriers.add(barrier16);
-        barriers.add(barrier17);
-        barriers.add(barrier18);
-        barriers.add(barrier19);
-        barriers.add(barrier20);
-        barriers.add(barrier21);
-        barriers.add(barrier22);
-        barriers.add(barrier23);
-        barriers.add(barrier24);
-        barriers.add(barrier25);
-        barriers.add(barrier26);
-        barriers.add(barrier27);
-        barriers.add(barrier28);
-        barriers.add(barrier29);
-        barriers.add(barrier30);
-        barriers.add(barrier31);
-        barriers.add(barrier32);
-        barriers.add(barrier33);
-        barriers.add(barrier34);
-        barriers.add(barrier35);
-        barriers.add(barrier36);
-        barriers.add(barrier37);
-        barriers.add(barrier38);
-        barriers.add(barrier39);
-        barriers.add(barrier40);
+    public void addFrameListener( Runnable listener ){
+        getStage().getScene().addPostLayoutPulseListener( listener );
     }
 }
@@ -0,0 +1,82 @@
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import szewoj.race2d.model.AiDriver;
+import szewoj.race2d.model.FrictionGrid;
+import szewoj.race2d.model.RaceSession;
+import szewoj.race2d.model.RacingLine;
+import szewoj.race2d.model.Track;
+import szewoj.race2d.model.TrackCompiler;
+import szewoj.race2d.model.Vehicle;
+
+import java.io.File;
+import java.io.IOException;
+
+
+public class AiDriverTests {
+
+    private static Track track;
+    private static FrictionGrid friction;
+    private static RacingLine line;
+
+    @BeforeClass
+    public static void computeLine() throws IOException {
+        track = TrackCompiler.compile( AiDriverTests.class.getResource( "/default.track" ) );
+        friction = FrictionGrid.load( track, Runnable::run );
+        line = RacingLine.compute( track, friction );
+    }
+
+    /**
+     * Racing line of default track is a closed loop of evenly spaced points with positive target speeds.
+     */
+    @Test
+    public void racingLineTest(){
+        int points = line.getPointCount();
+        assertTrue( points > 100 );
+        for( int point = 0; point < points; ++point ){
+            int next = ( point + 1 ) % points;
+            assertTrue( Math.hypot( line.getX( next ) - line.getX( point ), line.getY( next ) - line.getY( point ) ) < 2 * RacingLine.POINT_SPACING );
+            assertTrue( line.getSpeed( point ) > 0 );
+            assertTrue( line.getSpeed( point ) <= RacingLine.MAX_SPEED );
+        }
+        assertEquals( 0, line.findNearest( line.getX( 0 ), line.getY( 0 ), -1, 0 ) );
+    }
+
+    /**
+     * Racing line saved to a file and loaded back has the same points and speeds.
+     */
+    @Test
+    public void racingLineRoundTripTest() throws IOException {
+        File file = File.createTempFile( "default", ".r2rl" );
+        file.deleteOnExit();
+        line.save( file );
+        RacingLine loaded = RacingLine.load( file );
+
+        assertEquals( line.getPointCount(), loaded.getPointCount() );
+        assertEquals( line.getLength(), loaded.getLength(), 1e-9 );
+        for( int point = 0; point < line.getPointCount(); ++point ){
+            assertEquals( line.getX( point ), loaded.getX( point ), 0 );
+            assertEquals( line.getY( point ), loaded.getY( point ), 0 );
+            assertEquals( line.getSpeed( point ), loaded.getSpeed( point ), 0 );
+        }
+    }
+
+    /**
+     * Computer driver completes a lap of default track, with inputs always in ranges of Vehicle inputs.
+     */
+    @Test
+    public void driverCompletesLapTest(){
+        RaceSession session = new RaceSession( track, friction, Vehicle.DEFAULT_TIME_STEP, 1 );
+        session.addCar();
+        AiDriver driver = new AiDriver( line );
+        session.setDriver( 0, driver );
+        for( int tick = 0; tick < 300 * 60 && session.getCompletedLaps( 0 ) == 0; ++tick ){
+            session.tick();
+            assertTrue( driver.getThrottle() >= 0 && driver.getThrottle() <= 1 );
+            assertTrue( driver.getBrake() >= 0 && driver.getBrake() <= 1 );
+            assertTrue( driver.getSteering() >= -1 && driver.getSteering() <= 1 );
+        }
+        assertEquals( 1, session.getCompletedLaps( 0 ) );
+    }
+
+}
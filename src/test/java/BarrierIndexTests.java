@@ -0,0 +1,79 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+import szewoj.race2d.model.BarrierIndex;
+import szewoj.race2d.model.Contact;
+import szewoj.race2d.model.OrientedBox;
+
+import java.util.Random;
+
+
+public class BarrierIndexTests {
+
+    @Test
+    public void segmentAcrossBoxTest(){
+        OrientedBox box = new OrientedBox();
+        box.set( 10, 20, 0, 0, 0, 1, 2 );
+        Contact contact = new Contact();
+
+        //horizontal segment 0.5 m above the bottom edge, box leaves it upwards
+        assertTrue( BarrierIndex.collide( box, 0, 21.5, 20, 21.5, 0.1, contact ) );
+        assertEquals( 0.6, contact.getDepth(), 1e-12 );
+        assertEquals( 0, contact.getNormalX(), 1e-12 );
+        assertEquals( -1, contact.getNormalY(), 1e-12 );
+        assertEquals( 10, contact.getX(), 1e-12 );
+        assertEquals( 21.5, contact.getY(), 1e-12 );
+
+        //the same box turned by 90 degrees is only 1 m tall
+        box.set( 10, 20, Math.PI / 2, 0, 0, 1, 2 );
+        assertFalse( BarrierIndex.collide( box, 0, 21.5, 20, 21.5, 0.1, contact ) );
+
+        //diagonal segment passing next to the corner
+        box.set( 0, 0, 0, 0, 0, 1, 1 );
+        assertFalse( BarrierIndex.collide( box, 2.5, 0, 0, 2.5, 0, contact ) );
+        assertTrue( BarrierIndex.collide( box, 1.5, 0, 0, 1.5, 0, contact ) );
+        assertEquals( Math.sqrt( 0.5 ) * 0.5, contact.getDepth(), 1e-12 );
+        assertEquals( -Math.sqrt( 0.5 ), contact.getNormalX(), 1e-12 );
+    }
+
+    /**
+     * Index has to find the same deepest contact as testing every segment.
+     */
+    @Test
+    public void indexMatchesBruteForceTest(){
+        Random random = new Random( 11 );
+        int count = 5000;
+        double[] segments = new double[4 * count];
+        for( int i = 0; i < count; ++i ){
+            double x = random.nextDouble() * 2000;
+            double y = random.nextDouble() * 2000;
+            double angle = random.nextDouble() * 2 * Math.PI;
+            double length = random.nextDouble() * 30;
+            segments[4*i] = x;
+            segments[4*i + 1] = y;
+            segments[4*i + 2] = x + Math.cos( angle ) * length;
+            segments[4*i + 3] = y + Math.sin( angle ) * length;
+        }
+        BarrierIndex index = new BarrierIndex( segments, 1, 16 );
+        OrientedBox box = new OrientedBox();
+        Contact indexed = new Contact();
+        Contact single = new Contact();
+
+        int hits = 0;
+        for( int query = 0; query < 20000; ++query ){
+            box.setCar( random.nextDouble() * 2100 - 50, random.nextDouble() * 2100 - 50, random.nextDouble() * 2 * Math.PI );
+
+            double deepest = -1;
+            for( int i = 0; i < count; ++i )
+                if( BarrierIndex.collide( box, segments[4*i], segments[4*i + 1], segments[4*i + 2], segments[4*i + 3], 1, single ) )
+                    deepest = Math.max( deepest, single.getDepth() );
+
+            assertEquals( deepest >= 0, index.collide( box, indexed ) );
+            if( deepest >= 0 ){
+                assertEquals( deepest, indexed.getDepth(), 1e-12 );
+                ++hits;
+            }
+        }
+        assertTrue( hits > 100 );
+    }
+
+}
@@ -0,0 +1,73 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+import szewoj.race2d.model.CheckpointIndex;
+import szewoj.race2d.model.LapTimer;
+
+
+public class CheckpointIndexTests {
+
+    @Test
+    public void crossingFractionTest(){
+        //vertical line x = 10 from y = 0 to y = 10
+        assertEquals( 0.25, CheckpointIndex.getCrossing( 5, 5, 25, 5, 10, 0, 10, 10 ), 1e-12 );
+        assertEquals( 0.75, CheckpointIndex.getCrossing( 25, 5, 5, 5, 10, 0, 10, 10 ), 1e-12 );
+        assertEquals( -1, CheckpointIndex.getCrossing( 5, 15, 25, 15, 10, 0, 10, 10 ), 1e-12 );
+        assertEquals( -1, CheckpointIndex.getCrossing( 0, 5, 9, 5, 10, 0, 10, 10 ), 1e-12 );
+
+        //path ending on the line and continuing from it is reported once
+        int crossings = 0;
+        if( CheckpointIndex.getCrossing( 12, 5, 10, 5, 10, 0, 10, 10 ) >= 0 )
+            ++crossings;
+        if( CheckpointIndex.getCrossing( 10, 5, 8, 5, 10, 0, 10, 10 ) >= 0 )
+            ++crossings;
+        assertEquals( 1, crossings );
+    }
+
+    /**
+     * Car moving 100 m per tick jumps over several checkpoints in one tick, they are all reported in order.
+     */
+    @Test
+    public void fastCrossingsInOrderTest(){
+        int count = 30;
+        double[] segments = new double[4 * count];
+        for( int i = 0; i < count; ++i ){
+            segments[4*i] = 1000 - 33 * i;
+            segments[4*i + 1] = -5;
+            segments[4*i + 2] = 1000 - 33 * i;
+            segments[4*i + 3] = 5;
+        }
+        CheckpointIndex index = new CheckpointIndex( segments, 64 );
+        int[] checkpoints = new int[count];
+        double[] fractions = new double[count];
+        boolean[] forward = new boolean[count];
+
+        int crossings = index.findCrossings( 10, 0, 110, 0, checkpoints, fractions, forward );
+        assertEquals( 3, crossings );
+        assertEquals( 29, checkpoints[0] );
+        assertEquals( 28, checkpoints[1] );
+        assertEquals( 27, checkpoints[2] );
+        assertEquals( (1000 - 33 * 29 - 10) / 100.0, fractions[0], 1e-12 );
+        assertTrue( fractions[1] < fractions[2] );
+        assertTrue( forward[0] && forward[1] && forward[2] );
+
+        assertEquals( 3, index.findCrossings( 110, 0, 10, 0, checkpoints, fractions, forward ) );
+        assertEquals( 27, checkpoints[0] );
+        assertFalse( forward[0] || forward[1] || forward[2] );
+
+        assertEquals( 0, index.findCrossings( 10, 20, 110, 20, checkpoints, fractions, forward ) );
+    }
+
+    @Test
+    public void lapTimeBelowTickResolutionTest(){
+        LapTimer timer = new LapTimer( 3 );
+        timer.checkpointCrossed( 0, 1.0 / 60 * 0.5 );
+        timer.checkpointCrossed( 1, 20 );
+        timer.checkpointCrossed( 2, 40 );
+        assertEquals( 59992, timer.getCurrentLapTime( 60 ) );
+        timer.checkpointCrossed( 0, 60.0 + 1.0 / 60 * 0.75 );
+
+        assertTrue( timer.isReady() );
+        assertEquals( 60004, timer.pullFinishedLapTime() );
+    }
+
+}
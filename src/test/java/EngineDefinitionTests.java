@@ -0,0 +1,74 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+import szewoj.race2d.model.EngineDefinition;
+
+
+public class EngineDefinitionTests {
+
+    private static final double MAX_RPM = 6800;
+    private static final double TOLERANCE = 0.01;      //points of data file are rounded to hundredths of newton metre
+
+    /**
+     * Torque curve as it was hard-coded in Engine before curves were moved to data.
+     */
+    private static double legacyTorque( double rpm ){
+        if(rpm < 2500)
+            return 210 + rpm * 20/500;
+        else if(rpm < 3750)
+            return 310;
+        else if(rpm < 4400)
+            return 167 + rpm * 30/650;
+        else if(rpm < 6000)
+            return 444;
+        else if(rpm < MAX_RPM)
+            return 1368 - rpm*154/1000;
+        else
+            return (1000-rpm)/(MAX_RPM-1000) * 150 + (MAX_RPM-rpm) * 0.75;
+    }
+
+    /**
+     * Engine braking curve as it was hard-coded in Engine before curves were moved to data.
+     */
+    private static double legacyEngineBraking( double rpm ){
+        if( rpm > MAX_RPM )
+            return (1000-rpm)/(MAX_RPM-1000) * 150 + (MAX_RPM-rpm) * 0.75;
+        else
+            return (1000-rpm)/(MAX_RPM-1000) * 150;
+    }
+
+    /**
+     * Steps of legacy torque curve at 3750 and 4400 rpm are smoothed over one table cell, so samples within a cell
+     * of them are skipped. The rev limiter cut-off at maxRpm is compared exactly and is sampled on both sides.
+     */
+    private static boolean nearSmoothedStep( EngineDefinition definition, double rpm ){
+        return Math.abs( rpm - 3750 ) < definition.getTableStep() || Math.abs( rpm - 4400 ) < definition.getTableStep();
+    }
+
+    @Test
+    public void defaultTorqueMatchesLegacyCurveTest(){
+        EngineDefinition definition = EngineDefinition.getDefault();
+        assertEquals( 1000, definition.getIdleRpm(), 0 );
+        assertEquals( MAX_RPM, definition.getMaxRpm(), 0 );
+
+        int samples = 0;
+        for( double rpm = definition.getIdleRpm(); rpm < 9000; rpm += 7 ){
+            if( nearSmoothedStep( definition, rpm ) )
+                continue;
+            assertEquals( "torque at " + rpm, legacyTorque( rpm ), definition.getTorque( rpm ), TOLERANCE );
+            ++samples;
+        }
+        assertTrue( samples > 1000 );
+
+        assertEquals( legacyTorque( MAX_RPM - 1 ), definition.getTorque( MAX_RPM - 1 ), TOLERANCE );
+        assertEquals( legacyTorque( MAX_RPM + 1 ), definition.getTorque( MAX_RPM + 1 ), TOLERANCE );
+    }
+
+    @Test
+    public void defaultEngineBrakingMatchesLegacyCurveTest(){
+        EngineDefinition definition = EngineDefinition.getDefault();
+
+        for( double rpm = definition.getIdleRpm(); rpm < 9000; rpm += 7 )
+            assertEquals( "engine braking at " + rpm, legacyEngineBraking( rpm ), definition.getEngineBraking( rpm ), TOLERANCE );
+    }
+
+}
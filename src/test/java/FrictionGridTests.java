@@ -0,0 +1,67 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+import szewoj.race2d.model.FrictionGrid;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+
+public class FrictionGridTests {
+
+    /**
+     * Grid 4 x 4 with full grip in the upper half and no grip in the lower half.
+     */
+    private static FrictionGrid createHalfGrid( boolean bilinear ){
+        byte[] cells = new byte[16];
+        for( int i = 0; i < 8; ++i )
+            cells[i] = (byte) 255;
+        return new FrictionGrid( cells, 4, 4, bilinear );
+    }
+
+    @Test
+    public void nearestAndBilinearTest(){
+        FrictionGrid nearest = createHalfGrid( false );
+        assertEquals( 1, nearest.getGridFriction( 1.5, 1.9 ), 1e-12 );
+        assertEquals( 0, nearest.getGridFriction( 1.5, 2.1 ), 1e-12 );
+        assertEquals( 0, nearest.getGridFriction( 1.5, 100 ), 1e-12 );
+
+        FrictionGrid bilinear = createHalfGrid( true );
+        assertEquals( 1, bilinear.getGridFriction( 1.5, 1.5 ), 1e-12 );
+        assertEquals( 0.5, bilinear.getGridFriction( 1.5, 2 ), 1e-12 );
+        assertEquals( 0.25, bilinear.getGridFriction( 0.2, 2.25 ), 1e-12 );
+    }
+
+    @Test
+    public void wheelsSampleOwnContactPatchTest(){
+        //one cell per metre, centre of gravity in the middle of the border between grip and no grip
+        FrictionGrid grid = createHalfGrid( false );
+        grid.setWorldTransform( 1, 0, 2, 0, 1, 2 );
+        double[] wheels = new double[FrictionGrid.WHEEL_COUNT];
+
+        grid.sampleWheels( 0, 0, 0, wheels );
+        assertEquals( 1, wheels[FrictionGrid.FRONT_LEFT], 1e-12 );
+        assertEquals( 1, wheels[FrictionGrid.FRONT_RIGHT], 1e-12 );
+        assertEquals( 0, wheels[FrictionGrid.REAR_LEFT], 1e-12 );
+        assertEquals( 0, wheels[FrictionGrid.REAR_RIGHT], 1e-12 );
+
+        //turned by 180 degrees front axle is on the side without grip
+        grid.sampleWheels( 0, 0, Math.PI, wheels );
+        assertEquals( 0, wheels[FrictionGrid.FRONT_LEFT], 1e-12 );
+        assertEquals( 1, wheels[FrictionGrid.REAR_RIGHT], 1e-12 );
+    }
+
+    @Test
+    public void trackMaskTest() throws IOException {
+        try( InputStream input = FrictionGridTests.class.getResourceAsStream( "/mask.png" ) ){
+            FrictionGrid grid = FrictionGrid.load( input, false );
+            assertEquals( 1080, grid.getWidth() );
+            assertEquals( 1080, grid.getHeight() );
+            for( int y = 0; y < grid.getHeight(); y += 7 )
+                for( int x = 0; x < grid.getWidth(); x += 7 ){
+                    double friction = grid.getGridFriction( x, y );
+                    assertTrue( friction >= 0 && friction <= 1 );
+                }
+        }
+    }
+
+}
@@ -0,0 +1,67 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+import szewoj.race2d.view.HudBinding;
+import szewoj.race2d.view.HudState;
+
+import java.util.Arrays;
+
+
+public class HudBindingTests {
+
+    @Test
+    public void reportsOnlyVisibleChangesTest(){
+        HudState hud = new HudState();
+        HudBinding binding = new HudBinding();
+        hud.setInputs( 0.5, 0, -0.25 );
+        hud.setDashboard( -12, -1, 3000, 0.8, 1, 1 );
+        hud.setTimes( 1234, -1, Arrays.asList( -1L, -1L, -1L ) );
+
+        assertNotEquals( 0, binding.update( hud ) & HudBinding.INPUTS );
+        assertEquals( "12", binding.getSpeedText() );
+        assertEquals( "R", binding.getGearText() );
+        assertEquals( "0:1.234", binding.getCurrentTimeText() );
+        assertEquals( -0.25, binding.getSteering(), 1e-12 );
+
+        hud.setInputs( 0.5001, 0, -0.2501 );
+        hud.setDashboard( 12, -1, 3005, 0.8001, 1, 1 );
+        assertEquals( 0, binding.update( hud ) );
+
+        hud.setDashboard( 13, 2, 3100, 0.8001, 1, 1 );
+        assertEquals( HudBinding.SPEED | HudBinding.GEAR | HudBinding.RPM, binding.update( hud ) );
+    }
+
+    @Test
+    public void formatsLapTimesOnlyOnChangeTest(){
+        HudState hud = new HudState();
+        HudBinding binding = new HudBinding();
+        hud.setTimes( 500, 61000, Arrays.asList( 62000L, 61000L, -1L ) );
+        binding.update( hud );
+        String recent = binding.getRecentTimeText( 0 );
+        assertEquals( "+0:1.0", binding.getDifferenceText( 0 ) );
+        assertEquals( "", binding.getDifferenceText( 2 ) );
+
+        hud.setTimes( 500, 61000, Arrays.asList( 62000L, 61000L, -1L ) );
+        assertEquals( 0, binding.update( hud ) & ( HudBinding.LAP_TIMES | HudBinding.CURRENT_TIME ) );
+
+        hud.setTimes( 700, 60500, Arrays.asList( 60500L, 62000L, 61000L ) );
+        assertEquals( HudBinding.LAP_TIMES | HudBinding.CURRENT_TIME, binding.update( hud ) & ( HudBinding.LAP_TIMES | HudBinding.CURRENT_TIME ) );
+        assertEquals( recent, binding.getRecentTimeText( 1 ) );
+        assertEquals( "+0:0.500", binding.getDifferenceText( 2 ) );
+    }
+
+    @Test
+    public void slowWidgetsFollowPeriodTest(){
+        HudState hud = new HudState();
+        HudBinding binding = new HudBinding();
+        binding.setSlowPeriod( 3 );
+        hud.setDashboard( 0, 0, 0, 1, 1, 1 );
+        assertNotEquals( 0, binding.update( hud ) & HudBinding.FUEL );
+
+        hud.setDashboard( 0, 0, 0, 0.5, 1, 1 );
+        assertEquals( 0, binding.update( hud ) & HudBinding.FUEL );
+        assertEquals( 0, binding.update( hud ) & HudBinding.FUEL );
+        assertNotEquals( 0, binding.update( hud ) & HudBinding.FUEL );
+        assertEquals( 0.5, binding.getFuel(), 1e-12 );
+    }
+
+}
@@ -0,0 +1,136 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+import szewoj.race2d.controller.InputEvent;
+import szewoj.race2d.controller.InputRecorder;
+import szewoj.race2d.controller.InputReplayer;
+import szewoj.race2d.model.FrictionGrid;
+import szewoj.race2d.model.RaceSession;
+import szewoj.race2d.model.Track;
+import szewoj.race2d.model.TrackCompiler;
+import szewoj.race2d.model.Vehicle;
+import szewoj.race2d.model.VehicleState;
+import szewoj.race2d.utilities.TrigBackend;
+import szewoj.race2d.utilities.Vector2;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+
+public class InputReplayTests {
+
+    private static final int RATE = 60;
+    private static final int TICKS = 10 * 60 * RATE;
+
+    /**
+     * Plays ten minutes of random driving in the order of GameController ticks and records it.
+     */
+    private static VehicleState recordSession( ByteArrayOutputStream log ) throws IOException {
+        Vehicle vehicle = new Vehicle( 1.0 / RATE );
+        VehicleState state = new VehicleState();
+        Vector2 collision = new Vector2();
+        byte[] events = new byte[4];
+        Random random = new Random( 42 );
+        int inputMask = Vehicle.INPUT_THROTTLE;
+        double friction = 1;
+
+        try( InputRecorder recorder = new InputRecorder( log, RATE, TrigBackend.JAVA ) ){
+            for( int tick = 0; tick < TICKS; ++tick ){
+                int eventCount = 0;
+                if( random.nextInt( 40 ) == 0 )
+                    inputMask = random.nextInt( 32 );
+                if( random.nextInt( 600 ) == 0 ){
+                    events[eventCount++] = random.nextBoolean() ? InputEvent.UP_SHIFT_READY : InputEvent.DOWN_SHIFT_READY;
+                    events[eventCount++] = InputEvent.SHIFT;
+                }
+                if( random.nextInt( 3000 ) == 0 )
+                    events[eventCount++] = InputEvent.REFUEL;
+                if( random.nextInt( 300 ) == 0 )
+                    friction = random.nextInt( 256 ) / 255.0;
+                double collisionX = random.nextInt( 50 ) == 0 ? random.nextDouble() * 40 - 20 : 0;
+                double collisionY = collisionX != 0 ? random.nextDouble() * 40 - 20 : 0;
+
+                vehicle.setFrontFriction( friction );
+                vehicle.setRearFriction( friction );
+                for( int i = 0; i < eventCount; ++i )
+                    InputEvent.apply( events[i], vehicle );
+                vehicle.updateInputs( inputMask );
+                vehicle.step( state );
+                collision.setX( collisionX );
+                collision.setY( collisionY );
+                vehicle.addCollision( collision );
+
+                recorder.record( inputMask, events, eventCount, friction, friction, collisionX, collisionY );
+            }
+        }
+        return vehicle.getState( state );
+    }
+
+    @Test
+    public void replayIsBitExactTest() throws IOException {
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        VehicleState recorded = recordSession( log );
+
+        InputReplayer replayer = new InputReplayer( new ByteArrayInputStream( log.toByteArray() ) );
+        VehicleState replayed = replayer.replay();
+
+        assertEquals( TICKS, replayer.getTicks() );
+        assertEquals( Double.doubleToRawLongBits( recorded.getX() ), Double.doubleToRawLongBits( replayed.getX() ) );
+        assertEquals( Double.doubleToRawLongBits( recorded.getY() ), Double.doubleToRawLongBits( replayed.getY() ) );
+        assertEquals( Double.doubleToRawLongBits( recorded.getHeading() ), Double.doubleToRawLongBits( replayed.getHeading() ) );
+        assertEquals( Double.doubleToRawLongBits( recorded.getLongitudinalVelocity() ), Double.doubleToRawLongBits( replayed.getLongitudinalVelocity() ) );
+        assertEquals( Double.doubleToRawLongBits( recorded.getRpm() ), Double.doubleToRawLongBits( replayed.getRpm() ) );
+        assertEquals( Double.doubleToRawLongBits( recorded.getFuel() ), Double.doubleToRawLongBits( replayed.getFuel() ) );
+        assertEquals( recorded.getGear(), replayed.getGear() );
+    }
+
+    /**
+     * Records the first car of a two-car race in the order of GameController ticks, while the second car
+     * turns into its side, and replays it alone from friction and collision vectors of the log.
+     * Later the first car steers into a barrier, so the log has contacts with both a car and a barrier.
+     */
+    @Test
+    public void carContactReplayIsBitExactTest() throws IOException {
+        Track track = TrackCompiler.compile( InputReplayTests.class.getResource( "/straight.track" ) );
+        RaceSession session = new RaceSession( track, FrictionGrid.load( track, Runnable::run ), 1.0 / RATE, 2 );
+        session.addCar();
+        session.addCar();
+        session.getVehicle( 1 ).upShiftReady();
+        session.getVehicle( 1 ).shift();
+        session.setInputMask( 1, Vehicle.INPUT_RIGHT | Vehicle.INPUT_THROTTLE );
+        byte[] shift = { InputEvent.UP_SHIFT_READY, InputEvent.SHIFT };
+        int contacts = 0;
+
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        try( InputRecorder recorder = new InputRecorder( log, RATE, TrigBackend.JAVA ) ){
+            for( int tick = 0; tick < 10 * RATE; ++tick ){
+                int eventCount = tick == 0 ? shift.length : 0;
+                for( int i = 0; i < eventCount; ++i )
+                    InputEvent.apply( shift[i], session.getVehicle( 0 ) );
+                int inputMask = tick < 2 * RATE ? Vehicle.INPUT_THROTTLE : Vehicle.INPUT_THROTTLE | Vehicle.INPUT_LEFT;
+                session.setInputMask( 0, inputMask );
+                session.tick();
+                //both cars are pushed in the same tick only by their contact, barriers are on opposite sides of the straight
+                if( ( session.getCollisionX( 0 ) != 0 || session.getCollisionY( 0 ) != 0 )
+                        && ( session.getCollisionX( 1 ) != 0 || session.getCollisionY( 1 ) != 0 ) )
+                    ++contacts;
+
+                recorder.record( inputMask, shift, eventCount, session.getFrontFriction( 0 ), session.getRearFriction( 0 ),
+                                 session.getCollisionX( 0 ), session.getCollisionY( 0 ) );
+            }
+        }
+        assertTrue( contacts > 0 );
+
+        VehicleState recorded = session.getState( 0 );
+        VehicleState replayed = new InputReplayer( new ByteArrayInputStream( log.toByteArray() ) ).replay();
+        assertEquals( Double.doubleToRawLongBits( recorded.getX() ), Double.doubleToRawLongBits( replayed.getX() ) );
+        assertEquals( Double.doubleToRawLongBits( recorded.getY() ), Double.doubleToRawLongBits( replayed.getY() ) );
+        assertEquals( Double.doubleToRawLongBits( recorded.getHeading() ), Double.doubleToRawLongBits( replayed.getHeading() ) );
+        assertEquals( Double.doubleToRawLongBits( recorded.getLateralVelocity() ), Double.doubleToRawLongBits( replayed.getLateralVelocity() ) );
+        assertEquals( Double.doubleToRawLongBits( recorded.getLongitudinalVelocity() ), Double.doubleToRawLongBits( replayed.getLongitudinalVelocity() ) );
+        assertEquals( Double.doubleToRawLongBits( recorded.getRpm() ), Double.doubleToRawLongBits( replayed.getRpm() ) );
+        assertEquals( recorded.getGear(), replayed.getGear() );
+    }
+
+}
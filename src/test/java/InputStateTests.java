@@ -0,0 +1,78 @@
+import javafx.scene.input.KeyCode;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import szewoj.race2d.controller.InputAction;
+import szewoj.race2d.controller.InputEvent;
+import szewoj.race2d.controller.InputState;
+import szewoj.race2d.controller.KeyBindings;
+import szewoj.race2d.model.Vehicle;
+
+
+public class InputStateTests {
+
+    @Test
+    public void eventsAreAppliedInTheirTicksTest(){
+        InputState state = new InputState( KeyBindings.createDefault() );
+
+        state.keyPressed( KeyCode.W, 10 );
+        state.keyPressed( KeyCode.D, 25 );
+        state.beginTick( 16 );
+        assertEquals( Vehicle.INPUT_THROTTLE, state.getInputMask() );
+
+        state.beginTick( 32 );
+        assertEquals( Vehicle.INPUT_THROTTLE | Vehicle.INPUT_RIGHT, state.getInputMask() );
+
+        //key tapped within one tick is held in that tick only
+        state.keyPressed( KeyCode.SPACE, 35 );
+        state.keyReleased( KeyCode.SPACE, 40 );
+        state.beginTick( 48 );
+        assertEquals( Vehicle.INPUT_THROTTLE | Vehicle.INPUT_RIGHT | Vehicle.INPUT_HANDBRAKE, state.getInputMask() );
+        state.beginTick( 64 );
+        assertEquals( Vehicle.INPUT_THROTTLE | Vehicle.INPUT_RIGHT, state.getInputMask() );
+    }
+
+    @Test
+    public void shiftEventsKeepOrderTest(){
+        InputState state = new InputState( KeyBindings.createDefault() );
+
+        state.keyPressed( KeyCode.M, 1 );
+        state.keyReleased( KeyCode.M, 2 );
+        state.keyPressed( KeyCode.N, 3 );
+        state.beginTick( 16 );
+
+        assertEquals( 3, state.getEventCount() );
+        assertEquals( InputEvent.UP_SHIFT_READY, state.getEvents()[0] );
+        assertEquals( InputEvent.SHIFT, state.getEvents()[1] );
+        assertEquals( InputEvent.DOWN_SHIFT_READY, state.getEvents()[2] );
+
+        state.beginTick( 32 );
+        assertEquals( 0, state.getEventCount() );
+    }
+
+    @Test
+    public void actionHeldByTwoKeysTest(){
+        InputState state = new InputState( KeyBindings.createDefault() );
+
+        state.keyPressed( KeyCode.W, 1 );
+        state.keyPressed( KeyCode.UP, 2 );
+        state.keyReleased( KeyCode.W, 3 );
+        state.beginTick( 16 );
+        state.beginTick( 32 );
+        assertEquals( Vehicle.INPUT_THROTTLE, state.getInputMask() );
+    }
+
+    @Test
+    public void rebindingTest(){
+        KeyBindings bindings = KeyBindings.createDefault();
+        bindings.unbindAll( InputAction.THROTTLE );
+        bindings.bind( KeyCode.K, InputAction.THROTTLE );
+        InputState state = new InputState( bindings );
+
+        state.keyPressed( KeyCode.W, 1 );
+        state.keyPressed( KeyCode.K, 2 );
+        state.beginTick( 16 );
+        assertEquals( Vehicle.INPUT_THROTTLE, state.getInputMask() );
+        assertNull( bindings.getAction( KeyCode.W ) );
+    }
+
+}
@@ -0,0 +1,46 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+import szewoj.race2d.model.EngineDefinition;
+import szewoj.race2d.model.FrictionGrid;
+import szewoj.race2d.model.LapOptimizer;
+import szewoj.race2d.model.RacingLine;
+import szewoj.race2d.model.Track;
+import szewoj.race2d.model.TrackCompiler;
+
+import java.io.IOException;
+
+
+public class LapOptimizerTests {
+
+    /**
+     * Best lap never gets worse thanks to elitism, elites are found in cache instead of being driven again,
+     * and results do not depend on number of worker threads.
+     */
+    @Test
+    public void optimizerTest() throws IOException {
+        Track track = TrackCompiler.compile( LapOptimizerTests.class.getResource( "/default.track" ) );
+        FrictionGrid friction = FrictionGrid.load( track, Runnable::run );
+        RacingLine line = RacingLine.compute( track, friction );
+
+        long[] bestLaps = new long[3];
+        try( LapOptimizer optimizer = new LapOptimizer( track, friction, line, EngineDefinition.getDefault(), 20, 6, 3, 24 ) ){
+            for( int generation = 0; generation < bestLaps.length; ++generation ){
+                bestLaps[generation] = optimizer.nextGeneration();
+                assertTrue( bestLaps[generation] > 0 );
+                if( generation > 0 )
+                    assertTrue( bestLaps[generation] <= bestLaps[generation - 1] );
+            }
+            assertEquals( bestLaps[2], optimizer.getBestLapTime() );
+            assertEquals( 3, optimizer.getGeneration() );
+            assertTrue( optimizer.getCacheHitCount() >= 2 * 2 );
+            assertEquals( 3 * 6, optimizer.getEvaluationCount() + optimizer.getCacheHitCount() );
+            assertNotNull( optimizer.getBestLine() );
+        }
+
+        try( LapOptimizer optimizer = new LapOptimizer( track, friction, line, EngineDefinition.getDefault(), 20, 6, 1, 24 ) ){
+            for( long bestLap : bestLaps )
+                assertEquals( bestLap, optimizer.nextGeneration() );
+        }
+    }
+
+}
@@ -0,0 +1,47 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+import szewoj.race2d.utilities.LatencyHistogram;
+
+import java.util.Arrays;
+import java.util.Random;
+
+
+public class LatencyHistogramTests {
+
+    @Test
+    public void percentileAccuracyTest(){
+        LatencyHistogram histogram = new LatencyHistogram( "test" );
+        Random random = new Random( 7 );
+        long[] values = new long[100000];
+        for( int i = 0; i < values.length; ++i ){
+            values[i] = (long)( Math.exp( random.nextGaussian() ) * 5_000_000 );
+            histogram.record( values[i] );
+        }
+        Arrays.sort( values );
+
+        for( double percentile : new double[]{ 50, 90, 99, 99.9 } ){
+            long exact = values[(int) Math.ceil( percentile / 100 * values.length ) - 1];
+            assertEquals( exact, histogram.getPercentile( percentile ), exact * 0.016 );
+        }
+        assertEquals( values[values.length - 1], histogram.getPercentile( 100 ) );
+        assertEquals( values[values.length - 1], histogram.getMax() );
+        assertEquals( values.length, histogram.getCount() );
+    }
+
+    @Test
+    public void smallValuesAndResetTest(){
+        LatencyHistogram histogram = new LatencyHistogram( "test" );
+        assertEquals( 0, histogram.getPercentile( 50 ) );
+
+        for( long value = 0; value < 100; ++value )
+            histogram.record( value );
+        histogram.record( -5 );
+        assertEquals( 49, histogram.getPercentile( 50 ) );
+        assertEquals( 0, histogram.getPercentile( 0 ) );
+
+        histogram.reset();
+        assertEquals( 0, histogram.getCount() );
+        assertEquals( 0, histogram.getMax() );
+    }
+
+}
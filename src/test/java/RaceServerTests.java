@@ -0,0 +1,96 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+import szewoj.race2d.controller.LoadTestClient;
+import szewoj.race2d.controller.RaceServer;
+import szewoj.race2d.controller.SnapshotCodec;
+import szewoj.race2d.model.FrictionGrid;
+import szewoj.race2d.model.Track;
+import szewoj.race2d.model.TrackCompiler;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+
+public class RaceServerTests {
+
+    /**
+     * Snapshot decoded against the same base it was encoded against is exact, also with heading wrapping around
+     * and with cars missing in the base, and unchanged cars take one byte each.
+     */
+    @Test
+    public void snapshotDeltaTest(){
+        Random random = new Random( 25 );
+        int[] base = new int[10 * SnapshotCodec.FIELDS];
+        for( int i = 0; i < 8 * SnapshotCodec.FIELDS; ++i )
+            base[i] = random.nextInt( 200000 ) - 100000;
+        for( int car = 0; car < 8; ++car )
+            base[car * SnapshotCodec.FIELDS + SnapshotCodec.FIELD_HEADING] = random.nextInt( SnapshotCodec.HEADING_STEPS );
+        int[] snapshot = base.clone();
+        for( int i = 8 * SnapshotCodec.FIELDS; i < 10 * SnapshotCodec.FIELDS; ++i )
+            snapshot[i] = random.nextInt( 1000 );
+        snapshot[SnapshotCodec.FIELD_X] += 37;
+        snapshot[SnapshotCodec.FIELD_HEADING] = SnapshotCodec.HEADING_STEPS - 3;
+        base[SnapshotCodec.FIELD_HEADING] = 5;
+
+        ByteBuffer buffer = ByteBuffer.allocate( 1024 );
+        SnapshotCodec.writeDelta( snapshot, 10, base, 8, buffer );
+        //car 0 takes mask and two one-byte differences, as heading went back by 8 steps across zero, other old cars one byte each
+        assertTrue( buffer.position() < 1 + 3 + 7 + 2 * 16 );
+        buffer.flip();
+        int[] decoded = new int[10 * SnapshotCodec.FIELDS];
+        assertEquals( 10, SnapshotCodec.readDelta( buffer, base, 8, decoded ) );
+        assertFalse( buffer.hasRemaining() );
+        assertArrayEquals( snapshot, decoded );
+
+        buffer.clear();
+        SnapshotCodec.writeDelta( snapshot, 10, null, 0, buffer );
+        buffer.flip();
+        Arrays.fill( decoded, 0 );
+        assertEquals( 10, SnapshotCodec.readDelta( buffer, null, 0, decoded ) );
+        assertArrayEquals( snapshot, decoded );
+    }
+
+    /**
+     * Players connected over loopback get their own cars and keep receiving delta snapshots of all cars,
+     * only the first ones, sent before their acknowledgement arrives, being full.
+     */
+    @Test
+    public void loopbackTest() throws Exception {
+        Track track = TrackCompiler.compile( RaceServerTests.class.getResource( "/straight.track" ) );
+        RaceServer server = new RaceServer( track, FrictionGrid.load( track, Runnable::run ), 60,
+                                            new InetSocketAddress( InetAddress.getLoopbackAddress(), 0 ) );
+        Thread thread = new Thread( () -> {
+            try {
+                server.run();
+            } catch( IOException e ){
+                throw new RuntimeException( e );
+            }
+        } );
+        thread.start();
+
+        try( LoadTestClient client = new LoadTestClient( new InetSocketAddress( InetAddress.getLoopbackAddress(), server.getPort() ), 4 ) ){
+            client.run( 1.5 );
+            boolean[] cars = new boolean[4];
+            for( int player = 0; player < 4; ++player ){
+                assertTrue( client.getSnapshotCount( player ) > 30 );
+                assertTrue( client.getFullSnapshotCount( player ) < client.getSnapshotCount( player ) / 4 );
+                assertEquals( 4, client.getLastCarCount( player ) );
+                cars[client.getCar( player )] = true;
+                //cars drove off the grid in first gear
+                int[] snapshot = client.getLastSnapshot( player );
+                assertTrue( snapshot[client.getCar( player ) * SnapshotCodec.FIELDS + SnapshotCodec.FIELD_GEAR] == 1 );
+            }
+            for( boolean car : cars )
+                assertTrue( car );
+            assertTrue( client.getServerTickTimes().getCount() > 0 );
+        } finally {
+            server.close();
+            thread.join();
+        }
+    }
+
+}
@@ -0,0 +1,228 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+import szewoj.race2d.controller.FixedStepScheduler;
+import szewoj.race2d.model.FrictionGrid;
+import szewoj.race2d.model.RaceSession;
+import szewoj.race2d.model.SpatialHash;
+import szewoj.race2d.model.Track;
+import szewoj.race2d.model.TrackCompiler;
+import szewoj.race2d.model.Vehicle;
+import szewoj.race2d.model.VehicleState;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+
+public class RaceSessionTests {
+
+    private static RaceSession createSession( int cars ) throws IOException {
+        Track track = TrackCompiler.compile( RaceSessionTests.class.getResource( "/straight.track" ) );
+        RaceSession session = new RaceSession( track, FrictionGrid.load( track, Runnable::run ), Vehicle.DEFAULT_TIME_STEP, cars );
+        for( int i = 0; i < cars; ++i )
+            session.addCar();
+        return session;
+    }
+
+    /**
+     * Spatial hash finds every overlapping pair of boxes exactly once, including large boxes spanning many cells.
+     */
+    @Test
+    public void spatialHashMatchesBruteForceTest(){
+        SpatialHash hash = new SpatialHash( 10, 4 );
+        Random random = new Random( 22 );
+        double[] boxes = new double[4 * 300];
+        for( int round = 0; round < 3; ++round ){
+            hash.clear();
+            for( int box = 0; box < 300; ++box ){
+                double x = random.nextDouble() * 400 - 200;
+                double y = random.nextDouble() * 400 - 200;
+                double size = box % 50 == 0 ? 60 : random.nextDouble() * 10;
+                boxes[4*box] = x;
+                boxes[4*box + 1] = y;
+                boxes[4*box + 2] = x + size;
+                boxes[4*box + 3] = y + size;
+                assertEquals( box, hash.insert( x, y, x + size, y + size ) );
+            }
+
+            Set<Long> expected = new HashSet<>();
+            for( int a = 0; a < 300; ++a )
+                for( int b = a + 1; b < 300; ++b )
+                    if( boxes[4*a] <= boxes[4*b + 2] && boxes[4*b] <= boxes[4*a + 2]
+                            && boxes[4*a + 1] <= boxes[4*b + 3] && boxes[4*b + 1] <= boxes[4*a + 3] )
+                        expected.add( (long) a * 300 + b );
+
+            Set<Long> found = new HashSet<>();
+            int pairs = hash.findPairs();
+            for( int pair = 0; pair < pairs; ++pair ){
+                assertTrue( hash.getPairFirst( pair ) < hash.getPairSecond( pair ) );
+                assertTrue( found.add( (long) hash.getPairFirst( pair ) * 300 + hash.getPairSecond( pair ) ) );
+            }
+            assertEquals( expected, found );
+        }
+    }
+
+    /**
+     * Cars on starting grid do not touch, and broad phase tests only neighbours instead of every pair.
+     */
+    @Test
+    public void startingGridTest() throws IOException {
+        RaceSession session = createSession( 60 );
+        session.tick();
+        for( int car = 0; car < 60; ++car ){
+            assertEquals( 0, session.getCollisionX( car ), 0 );
+            assertEquals( 0, session.getCollisionY( car ), 0 );
+        }
+        assertTrue( session.getCandidatePairCount() < 4 * 60 );
+    }
+
+    /**
+     * Two cars steered into each other are pushed apart along their contact.
+     */
+    @Test
+    public void carsCollideTest() throws IOException {
+        RaceSession session = createSession( 2 );
+        //the second car stands 5 m to the left of the first one and a bit behind it, and turns into its side
+        session.getVehicle( 1 ).upShiftReady();
+        session.getVehicle( 1 ).shift();
+        session.setInputMask( 1, Vehicle.INPUT_RIGHT | Vehicle.INPUT_THROTTLE );
+        boolean collided = false;
+        for( int i = 0; i < 300 && !collided; ++i ){
+            session.tick();
+            collided = session.getCollisionX( 1 ) != 0 || session.getCollisionY( 1 ) != 0;
+            if( collided ){
+                //contact point is to the left of the first car and to the right of the second car
+                assertTrue( session.getCollisionX( 0 ) > 0 );
+                assertTrue( session.getCollisionX( 1 ) < 0 );
+            }
+        }
+        assertTrue( collided );
+        VehicleState first = session.getState( 0 );
+        VehicleState second = session.getState( 1 );
+        assertTrue( Math.hypot( first.getX() - second.getX(), first.getY() - second.getY() ) > 1 );
+    }
+
+    /**
+     * Drives the second car into a barrier with ticks scheduled from frames of given length,
+     * and returns its x, y, heading and collision vector of every tick.
+     */
+    private static double[] driveIntoBarrier( long frameNanos ) throws IOException {
+        RaceSession session = createSession( 2 );
+        session.getVehicle( 1 ).upShiftReady();
+        session.getVehicle( 1 ).shift();
+        session.setInputMask( 1, Vehicle.INPUT_LEFT | Vehicle.INPUT_THROTTLE );
+        FixedStepScheduler scheduler = new FixedStepScheduler( 60 );
+        double[] trace = new double[5 * 600];
+        long frameTime = 0;
+        scheduler.advance( frameTime );
+        while( session.getTicks() < 600 ){
+            frameTime += frameNanos;
+            int steps = Math.min( scheduler.advance( frameTime ), 600 - (int) session.getTicks() );
+            for( int i = 0; i < steps; ++i ){
+                session.tick();
+                int tick = (int) session.getTicks() - 1;
+                VehicleState state = session.getState( 1 );
+                trace[5*tick] = state.getX();
+                trace[5*tick + 1] = state.getY();
+                trace[5*tick + 2] = state.getHeading();
+                trace[5*tick + 3] = session.getCollisionX( 1 );
+                trace[5*tick + 4] = session.getCollisionY( 1 );
+            }
+        }
+        return trace;
+    }
+
+    /**
+     * Friction and collisions are sampled from pose of the model every tick, so collision response
+     * does not depend on how ticks are grouped into frames.
+     */
+    @Test
+    public void collisionIndependentOfFrameTimingTest() throws IOException {
+        double[] smoothFrames = driveIntoBarrier( 7000000 );
+        double[] slowFrames = driveIntoBarrier( 45000000 );
+        boolean collided = false;
+        for( int tick = 0; tick < 600; ++tick )
+            collided |= smoothFrames[5*tick + 3] != 0 || smoothFrames[5*tick + 4] != 0;
+        assertTrue( collided );
+        assertArrayEquals( smoothFrames, slowFrames, 0 );
+    }
+
+    /**
+     * Test track has the start line as its only checkpoint, so a lap is completed on every crossing after the first one.
+     * The car is driven through the line, moved back around its end, and driven through it again.
+     */
+    @Test
+    public void oneCheckpointLapTest() throws IOException {
+        RaceSession session = createSession( 1 );
+        Vehicle vehicle = session.getVehicle( 0 );
+        vehicle.upShiftReady();
+        vehicle.shift();
+        session.setInputMask( 0, Vehicle.INPUT_THROTTLE );
+        for( int i = 0; i < 1800 && session.getState( 0 ).getY() > -210; ++i )
+            session.tick();
+        assertTrue( session.getState( 0 ).getY() <= -210 );
+        assertEquals( 0, session.getCompletedLaps( 0 ) );
+
+        //every jump stays off the start line, which spans x from -12 to 12 at y = -200
+        double[] path = { 100, -210, 100, 10, 0, 10 };
+        for( int i = 0; i < path.length; i += 2 ){
+            vehicle.setPose( path[i], path[i + 1], 0 );
+            session.tick();
+        }
+        assertEquals( 0, session.getCompletedLaps( 0 ) );
+
+        for( int i = 0; i < 1800 && session.getCompletedLaps( 0 ) == 0; ++i )
+            session.tick();
+        assertEquals( 1, session.getCompletedLaps( 0 ) );
+        assertTrue( session.getLastLapTime( 0 ) > 0 );
+    }
+
+    private static void shift( Vehicle vehicle, int gear ){
+        while( vehicle.getGear() != gear ){
+            if( vehicle.getGear() < gear )
+                vehicle.upShiftReady();
+            else
+                vehicle.downShiftReady();
+            vehicle.shift();
+        }
+    }
+
+    /**
+     * Reversing back over the start line of a track with the start line as its only checkpoint does not finish a lap,
+     * and neither does crossing it forward again right after that.
+     */
+    @Test
+    public void reverseOverStartLineTest() throws IOException {
+        RaceSession session = createSession( 1 );
+        Vehicle vehicle = session.getVehicle( 0 );
+        vehicle.upShiftReady();
+        vehicle.shift();
+        session.setInputMask( 0, Vehicle.INPUT_THROTTLE );
+        for( int i = 0; i < 1800 && session.getState( 0 ).getY() > -210; ++i )
+            session.tick();
+        assertTrue( session.getState( 0 ).getY() <= -210 );
+        assertTrue( session.getCurrentLapTime( 0 ) >= 0 );
+
+        session.setInputMask( 0, Vehicle.INPUT_BRAKE );
+        for( int i = 0; i < 1800 && session.getState( 0 ).getSpeed() > 0; ++i )
+            session.tick();
+        shift( vehicle, -1 );
+        session.setInputMask( 0, Vehicle.INPUT_THROTTLE );
+        for( int i = 0; i < 1800 && session.getState( 0 ).getY() < -190; ++i )
+            session.tick();
+        assertTrue( session.getState( 0 ).getY() >= -190 );
+
+        session.setInputMask( 0, Vehicle.INPUT_BRAKE );
+        for( int i = 0; i < 1800 && session.getState( 0 ).getSpeed() > 0; ++i )
+            session.tick();
+        shift( vehicle, 1 );
+        session.setInputMask( 0, Vehicle.INPUT_THROTTLE );
+        for( int i = 0; i < 1800 && session.getState( 0 ).getY() > -210; ++i )
+            session.tick();
+        assertTrue( session.getState( 0 ).getY() <= -210 );
+        assertEquals( 0, session.getCompletedLaps( 0 ) );
+        assertEquals( -1, session.getBestLapTime( 0 ) );
+    }
+
+}
@@ -0,0 +1,121 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+import szewoj.race2d.model.FrictionGrid;
+import szewoj.race2d.model.TiledFrictionGrid;
+import szewoj.race2d.model.Track;
+import szewoj.race2d.model.TrackCompiler;
+import szewoj.race2d.utilities.TileCache;
+import szewoj.race2d.utilities.TileSet;
+import szewoj.race2d.utilities.TrackTiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+
+public class TileCacheTests {
+
+    @Test
+    public void evictsLeastRecentlyUsedTest(){
+        List<String> loads = new ArrayList<>();
+        TileCache<String> cache = new TileCache<>( 2, ( column, row ) -> {
+            loads.add( column + "," + row );
+            return column + "," + row;
+        }, Runnable::run );
+
+        assertEquals( "0,0", cache.get( 0, 0 ) );
+        assertEquals( "1,0", cache.get( 1, 0 ) );
+        cache.get( 0, 0 );
+        cache.get( 0, 1 );                          //evicts 1,0
+        assertEquals( 2, cache.getCachedCount() );
+        assertNull( cache.getIfLoaded( 1, 0 ) );
+        assertNotNull( cache.getIfLoaded( 0, 0 ) );
+
+        cache.prefetch( 5, -3 );
+        cache.prefetch( 0, 0 );                     //already cached
+        cache.collect();
+        assertEquals( "5,-3", cache.getIfLoaded( 5, -3 ) );
+        assertEquals( 4, loads.size() );
+        assertEquals( 2, cache.getCachedCount() );
+
+        cache.setCapacity( 3 );
+        cache.get( 1, 0 );
+        assertEquals( 3, cache.getCachedCount() );
+        cache.get( 5, -3 );
+        cache.setCapacity( 1 );                     //keeps only the most recent 5,-3
+        assertEquals( 1, cache.getCachedCount() );
+        assertNotNull( cache.getIfLoaded( 5, -3 ) );
+        assertEquals( 5, loads.size() );
+    }
+
+    @Test
+    public void tiledFrictionMatchesWholeMaskTest() throws IOException, URISyntaxException {
+        File track = new File( TileCacheTests.class.getResource( "/track.png" ).toURI() );
+        File mask = new File( TileCacheTests.class.getResource( "/mask.png" ).toURI() );
+        File directory = Files.createTempDirectory( "tiles" ).toFile();
+        try {
+            TrackTiler.split( track, mask, directory, 300 );
+            TileSet tiles = TileSet.open( directory );
+            assertEquals( 4, tiles.getColumns() );
+
+            FrictionGrid whole;
+            try( InputStream input = TileCacheTests.class.getResourceAsStream( "/mask.png" ) ){
+                whole = FrictionGrid.load( input, true );
+            }
+            TiledFrictionGrid tiled = new TiledFrictionGrid( tiles, 4, Runnable::run, true );
+            for( double y = -5; y < 1090; y += 6.3 )
+                for( double x = -5; x < 1090; x += 5.9 )
+                    assertEquals( whole.getGridFriction( x, y ), tiled.getGridFriction( x, y ), 1e-12 );
+            assertTrue( tiled.getCache().getCachedCount() <= 4 );
+        } finally {
+            for( File file : directory.listFiles() )
+                file.delete();
+            directory.delete();
+        }
+    }
+
+    /**
+     * Friction grid of tiled track streams tiles, and is placed in world coordinates like the whole mask of the same track.
+     */
+    @Test
+    public void tiledTrackFrictionTest() throws IOException, URISyntaxException {
+        File track = new File( TileCacheTests.class.getResource( "/track.png" ).toURI() );
+        File mask = new File( TileCacheTests.class.getResource( "/mask.png" ).toURI() );
+        File directory = Files.createTempDirectory( "tiled" ).toFile();
+        File tilesDirectory = new File( directory, "tiles" );
+        File definition = new File( directory, "tiled.track" );
+        try {
+            TrackTiler.split( track, mask, tilesDirectory, 300 );
+            Files.write( definition.toPath(), "tiles tiles\nscale 2\nspawn 500 400 0.5\ncheckpoint 0 0 10 0\n".getBytes( StandardCharsets.UTF_8 ) );
+            Track tiled = TrackCompiler.compile( definition.toURI().toURL() );
+
+            FrictionGrid whole;
+            try( InputStream input = TileCacheTests.class.getResourceAsStream( "/mask.png" ) ){
+                whole = FrictionGrid.load( input, false );
+            }
+            whole.setWorldTransform( tiled );
+            FrictionGrid friction = FrictionGrid.load( tiled, Runnable::run );
+            FrictionGrid copy = friction.copy();
+            assertTrue( friction instanceof TiledFrictionGrid );
+            assertTrue( copy instanceof TiledFrictionGrid );
+            for( double y = -300; y < 300; y += 7.3 ){
+                for( double x = -300; x < 300; x += 6.1 ){
+                    assertEquals( whole.getFriction( x, y ), friction.getFriction( x, y ), 0 );
+                    assertEquals( whole.getFriction( x, y ), copy.getFriction( x, y ), 0 );
+                }
+            }
+        } finally {
+            for( File file : tilesDirectory.listFiles() )
+                file.delete();
+            tilesDirectory.delete();
+            definition.delete();
+            directory.delete();
+        }
+    }
+
+}
@@ -0,0 +1,54 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+import szewoj.race2d.model.LinearTireCompound;
+import szewoj.race2d.model.PacejkaTireCompound;
+import szewoj.race2d.model.TireCompound;
+import szewoj.race2d.model.TireForceTable;
+
+
+public class TireCompoundTests {
+
+    private static double maxError( TireCompound expected, TireCompound actual ){
+        double error = 0;
+        for( double angle = -expected.getMaxSlipAngle(); angle <= expected.getMaxSlipAngle(); angle += expected.getMaxSlipAngle() / 97 ){
+            for( double ratio = -expected.getMaxSlipRatio(); ratio <= expected.getMaxSlipRatio(); ratio += expected.getMaxSlipRatio() / 89 ){
+                error = Math.max( error, Math.abs( expected.getLateralCoefficient( angle, ratio ) - actual.getLateralCoefficient( angle, ratio ) ) );
+                error = Math.max( error, Math.abs( expected.getLongitudinalCoefficient( angle, ratio ) - actual.getLongitudinalCoefficient( angle, ratio ) ) );
+            }
+        }
+        return error;
+    }
+
+    @Test
+    public void tableOfLinearCompoundTest(){
+        TireCompound linear = LinearTireCompound.INSTANCE;
+        TireForceTable table = new TireForceTable( linear );
+
+        assertEquals( linear.getMaxSlipAngle(), table.getMaxSlipAngle(), 0 );
+        assertEquals( linear.limitSlipAngle( 0.09 ), table.limitSlipAngle( 0.09 ), 0 );
+        assertEquals( linear.limitSlipRatio( -0.07 ), table.limitSlipRatio( -0.07 ), 0 );
+        assertTrue( maxError( linear, table ) < 0.01 );
+    }
+
+    @Test
+    public void tableOfPacejkaCompoundTest(){
+        PacejkaTireCompound pacejka = new PacejkaTireCompound();
+        TireForceTable table = new TireForceTable( pacejka );
+
+        assertTrue( maxError( pacejka, table ) < 0.03 );
+    }
+
+    @Test
+    public void pacejkaCombinedSlipTest(){
+        PacejkaTireCompound pacejka = new PacejkaTireCompound();
+        double angle = pacejka.getPeakSlipAngle();
+
+        //small slip behaves like linear model
+        assertEquals( LinearTireCompound.INSTANCE.getLateralCoefficient( 0.001, 0 ), pacejka.getLateralCoefficient( 0.001, 0 ), 0.001 );
+        //longitudinal slip reduces lateral force
+        assertTrue( pacejka.getLateralCoefficient( angle, pacejka.getPeakSlipRatio() ) < pacejka.getLateralCoefficient( angle, 0 ) );
+        assertEquals( -pacejka.getLateralCoefficient( angle, 0 ), pacejka.getLateralCoefficient( -angle, 0 ), 1e-12 );
+        assertEquals( 0, pacejka.getLongitudinalCoefficient( angle, 0 ), 0 );
+    }
+
+}
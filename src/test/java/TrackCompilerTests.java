@@ -0,0 +1,119 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+import szewoj.race2d.model.BarrierIndex;
+import szewoj.race2d.model.CheckpointIndex;
+import szewoj.race2d.model.Contact;
+import szewoj.race2d.model.OrientedBox;
+import szewoj.race2d.model.SegmentGrid;
+import szewoj.race2d.model.Track;
+import szewoj.race2d.model.TrackCompiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Random;
+
+
+public class TrackCompilerTests {
+
+    /**
+     * Default track written in binary format and memory-mapped back gives the same geometry and the same queries.
+     */
+    @Test
+    public void compiledTrackRoundTripTest() throws IOException {
+        Track compiled = TrackCompiler.load( null );
+        assertEquals( 40, compiled.getBarriers().getCount() );
+        assertEquals( 3, compiled.getCheckpoints().getCount() );
+        assertEquals( 1, compiled.getPitZoneCount() );
+
+        File file = File.createTempFile( "default", ".r2dt" );
+        file.deleteOnExit();
+        compiled.save( file );
+        Track loaded = TrackCompiler.load( file.getPath() );
+
+        assertEquals( compiled.getImage(), loaded.getImage() );
+        assertEquals( compiled.getFriction(), loaded.getFriction() );
+        assertNull( loaded.getTiles() );
+        assertArrayEquals( compiled.getWorldToTrackTransform( new double[6] ), loaded.getWorldToTrackTransform( new double[6] ), 0 );
+        assertArrayEquals( compiled.getBarrierSegments(), loaded.getBarrierSegments(), 0 );
+        for( int value = 0; value < 5; ++value )
+            assertEquals( compiled.getPitZone( 0, value ), loaded.getPitZone( 0, value ), 0 );
+        assertEquals( new File( file.getParentFile(), "mask.png" ).toURI().toURL(), loaded.resolve( loaded.getFriction() ) );
+
+        BarrierIndex compiledBarriers = new BarrierIndex( compiled.getBarriers() );
+        BarrierIndex loadedBarriers = new BarrierIndex( loaded.getBarriers() );
+        CheckpointIndex compiledCheckpoints = new CheckpointIndex( compiled.getCheckpoints() );
+        CheckpointIndex loadedCheckpoints = new CheckpointIndex( loaded.getCheckpoints() );
+        OrientedBox box = new OrientedBox();
+        Contact compiledContact = new Contact();
+        Contact loadedContact = new Contact();
+        int[] compiledCrossed = new int[3];
+        int[] loadedCrossed = new int[3];
+        double[] compiledFractions = new double[3];
+        double[] loadedFractions = new double[3];
+        boolean[] compiledForward = new boolean[3];
+        boolean[] loadedForward = new boolean[3];
+        Random random = new Random( 21 );
+        int collisions = 0;
+        for( int i = 0; i < 10000; ++i ){
+            double x = random.nextDouble() * 1200 - 300;
+            double y = random.nextDouble() * 1200 - 700;
+            double heading = random.nextDouble() * 2 * Math.PI;
+            box.setCar( x, y, heading );
+            boolean collided = compiledBarriers.collide( box, compiledContact );
+            assertEquals( collided, loadedBarriers.collide( box, loadedContact ) );
+            if( collided ){
+                ++collisions;
+                assertEquals( compiledContact.getDepth(), loadedContact.getDepth(), 0 );
+            }
+
+            int crossings = compiledCheckpoints.findCrossings( x, y, x + 30 * Math.sin( heading ), y - 30 * Math.cos( heading ),
+                    compiledCrossed, compiledFractions, compiledForward );
+            assertEquals( crossings, loadedCheckpoints.findCrossings( x, y, x + 30 * Math.sin( heading ), y - 30 * Math.cos( heading ),
+                    loadedCrossed, loadedFractions, loadedForward ) );
+            for( int j = 0; j < crossings; ++j ){
+                assertEquals( compiledCrossed[j], loadedCrossed[j] );
+                assertEquals( compiledForward[j], loadedForward[j] );
+            }
+        }
+        assertTrue( collisions > 0 );
+    }
+
+    /**
+     * Spawn is the world origin, so the car starting at rest does not touch barriers and is behind the start line.
+     */
+    @Test
+    public void spawnIsWorldOriginTest() throws IOException {
+        Track track = TrackCompiler.compile( new StringReader(
+                "tiles tiles\nscale 2\nspawn 100 50 90\nbarrierWidth 1\nbarrier 90 40 110 40 110 60\n"
+                + "checkpoint 120 40 120 60 # start\npit 100 40 100 60 5\n" ) );
+        assertEquals( 2, track.getBarriers().getCount() );
+        assertEquals( 0.25, track.getBarriers().getRadius(), 1e-12 );
+
+        //heading 90 degrees faces +x of track, so the start line 20 pixels ahead is 10 m ahead of the car
+        SegmentGrid checkpoints = track.getCheckpoints();
+        assertEquals( -5, checkpoints.getCoordinate( 0, 0 ), 1e-12 );
+        assertEquals( -10, checkpoints.getCoordinate( 0, 1 ), 1e-12 );
+        assertEquals( 5, checkpoints.getCoordinate( 0, 2 ), 1e-12 );
+        assertEquals( -10, checkpoints.getCoordinate( 0, 3 ), 1e-12 );
+        assertEquals( 2.5, track.getPitZone( 0, 4 ), 1e-12 );
+        assertArrayEquals( new double[]{ 90, 40, 110, 40, 110, 40, 110, 60 }, track.getBarrierSegments(), 1e-9 );
+    }
+
+    @Test
+    public void invalidDefinitionTest(){
+        try {
+            TrackCompiler.compile( new StringReader( "image a.png\nfriction b.png\nscale 1\nbarrier 0 0 1 1\n" ) );
+            fail();
+        } catch( IOException e ){
+            assertTrue( e.getMessage().startsWith( "Line 4:" ) );
+        }
+        try {
+            TrackCompiler.compile( new StringReader( "image a.png\nfriction b.png\nscale 1\nspawn 0 0 0\n" ) );
+            fail();
+        } catch( IOException e ){
+            assertEquals( "Track needs start line", e.getMessage() );
+        }
+    }
+
+}
@@ -0,0 +1,99 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+import szewoj.race2d.model.Vehicle;
+import szewoj.race2d.model.VehicleState;
+import szewoj.race2d.utilities.TrigBackend;
+
+
+public class TrigBackendTests {
+
+    private static final int TICKS = 3600;
+    private static final int STRAIGHT = Vehicle.INPUT_THROTTLE;
+    private static final int LEFT = Vehicle.INPUT_THROTTLE | Vehicle.INPUT_LEFT;
+    private static final int RIGHT = Vehicle.INPUT_THROTTLE | Vehicle.INPUT_RIGHT;
+    private static final double CRAWL_THROTTLE = 0.3;
+
+    @Test
+    public void fastErrorBoundsTest(){
+        double sinError = 0;
+        double tanError = 0;
+        double atanError = 0;
+
+        for( double angle = -20; angle < 20; angle += 0.000123 ){
+            sinError = Math.max( sinError, Math.abs( TrigBackend.FAST.sin( angle ) - StrictMath.sin( angle ) ) );
+            sinError = Math.max( sinError, Math.abs( TrigBackend.FAST.cos( angle ) - StrictMath.cos( angle ) ) );
+            if( Math.abs( angle ) <= Math.PI / 4 )
+                tanError = Math.max( tanError, Math.abs( TrigBackend.FAST.tan( angle ) - StrictMath.tan( angle ) ) );
+            atanError = Math.max( atanError, Math.abs( TrigBackend.FAST.atan( angle ) - StrictMath.atan( angle ) ) );
+        }
+
+        assertTrue( sinError < 3e-7 );
+        assertTrue( tanError < 1e-6 );
+        assertTrue( atanError < 2e-5 );
+    }
+
+    /**
+     * Drives with shifting and alternating full steering lock.
+     */
+    private static VehicleState drive( TrigBackend backend, int ticks ){
+        Vehicle vehicle = new Vehicle();
+        vehicle.setTrigBackend( backend );
+        vehicle.setFrontFriction( 1 );
+        vehicle.setRearFriction( 1 );
+
+        for( int tick = 0; tick < ticks; ++tick ){
+            if( tick % 300 == 0 && vehicle.getGear() < 4 ){
+                vehicle.upShiftReady();
+                vehicle.shift();
+            }
+            int phase = tick / 120 % 4;
+            vehicle.updateInputs( phase == 1 ? LEFT : phase == 3 ? RIGHT : STRAIGHT );
+            vehicle.step();
+        }
+        return vehicle.getState( new VehicleState() );
+    }
+
+    /**
+     * Crawls in first gear with part throttle, turning left, going straight and turning right in turns.
+     * The car stays under critical speed, where it follows its turn radius without sliding, so differences do not grow.
+     */
+    private static VehicleState crawl( TrigBackend backend, int ticks ){
+        Vehicle vehicle = new Vehicle();
+        vehicle.setTrigBackend( backend );
+        vehicle.setFrontFriction( 1 );
+        vehicle.setRearFriction( 1 );
+        vehicle.upShiftReady();
+        vehicle.shift();
+        VehicleState state = new VehicleState();
+
+        for( int tick = 0; tick < ticks; ++tick ){
+            int phase = tick / 300 % 4;
+            vehicle.setInputs( CRAWL_THROTTLE, 0, phase == 1 ? 1 : phase == 3 ? -0.5 : 0 );
+            vehicle.step( state );
+            assertTrue( Math.abs( state.getLongitudinalVelocity() ) < 5 );
+        }
+        return state;
+    }
+
+    private static double distance( VehicleState a, VehicleState b ){
+        return Math.hypot( a.getX() - b.getX(), a.getY() - b.getY() );
+    }
+
+    /**
+     * Sliding in full steering lock is chaotic, so FAST is compared with STRICT only before the car starts to slide
+     * in the first turn, and over a minute of turning under critical speed, where the trajectory is stable.
+     */
+    @Test
+    public void trajectoryDriftTest(){
+        int firstTurn = 150;
+        assertEquals( 0, distance( drive( TrigBackend.STRICT, firstTurn ), drive( TrigBackend.JAVA, firstTurn ) ), 1e-9 );
+        assertEquals( 0, distance( drive( TrigBackend.STRICT, firstTurn ), drive( TrigBackend.FAST, firstTurn ) ), 1e-3 );
+
+        VehicleState strict = crawl( TrigBackend.STRICT, TICKS );
+        VehicleState fast = crawl( TrigBackend.FAST, TICKS );
+        assertTrue( distance( strict, crawl( TrigBackend.STRICT, 0 ) ) > 10 );
+        assertEquals( 0, distance( strict, fast ), 0.01 );
+        assertEquals( strict.getHeading(), fast.getHeading(), 1e-5 );
+    }
+
+}
@@ -0,0 +1,195 @@
+import javafx.event.EventType;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyEvent;
+import org.junit.Assume;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import szewoj.race2d.controller.GameController;
+import szewoj.race2d.model.Track;
+import szewoj.race2d.model.Vehicle;
+import szewoj.race2d.model.VehicleState;
+import szewoj.race2d.utilities.Vector2;
+import szewoj.race2d.view.HudState;
+import szewoj.race2d.view.ViewManager;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+
+public class VehicleAllocationTests {
+
+    private static final int WARMUP_TICKS = 50000;
+    private static final int MEASURED_TICKS = 10000;
+    private static final int MEASURED_WINDOWS = 5;
+    private static final long FRAME_NANOS = 1000000000L / GameController.DEFAULT_PHYSICS_RATE;
+
+    private static com.sun.management.ThreadMXBean getAllocationBean(){
+        //allocation counters are an extension of HotSpot, other JVMs cannot run these tests
+        ThreadMXBean platformBean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue( platformBean instanceof com.sun.management.ThreadMXBean );
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) platformBean;
+        Assume.assumeTrue( bean.isThreadAllocatedMemorySupported() );
+        bean.setThreadAllocatedMemoryEnabled( true );
+        return bean;
+    }
+
+    private static long allocatedBytes( com.sun.management.ThreadMXBean bean ){
+        return bean.getThreadAllocatedBytes( Thread.currentThread().getId() );
+    }
+
+    //reading the counter may allocate itself, so allocation of one reading is measured and subtracted from results
+    private static long getProbeOverhead( com.sun.management.ThreadMXBean bean ){
+        long probeBefore = allocatedBytes( bean );
+        long probeAfter = allocatedBytes( bean );
+        return probeAfter - probeBefore;
+    }
+
+    /**
+     * Measures allocation of a few runs of the same window and returns the lowest one, stopping at the first run without allocation.
+     * A method deoptimized by JIT during a window runs interpreted for a while and allocates objects,
+     * which compiled code keeps in registers, so a single window can allocate even if the measured code does not.
+     * Code allocating in steady state allocates in every window.
+     */
+    private static long measureQuietestWindow( com.sun.management.ThreadMXBean bean, Runnable window ){
+        long probeOverhead = getProbeOverhead( bean );
+        long quietest = Long.MAX_VALUE;
+        for( int i = 0; i < MEASURED_WINDOWS && quietest > 0; ++i ){
+            long before = allocatedBytes( bean );
+            window.run();
+            long after = allocatedBytes( bean );
+            quietest = Math.min( quietest, after - before - probeOverhead );
+        }
+        return quietest;
+    }
+
+    /**
+     * ViewManager without scene graph: the game is started, no buttons are pressed,
+     * and frames are laid out right after they are rendered.
+     */
+    private static class HeadlessView extends ViewManager {
+        private Runnable frameListener;
+
+        @Override
+        public void setTrack( Track track ){
+        }
+
+        @Override
+        public void setupKeyListeners( GameController controller ){
+        }
+
+        @Override
+        public void addFrameListener( Runnable listener ){
+            frameListener = listener;
+        }
+
+        @Override
+        public boolean isHomeScreenDisabled(){
+            return true;
+        }
+
+        @Override
+        public boolean isFuelButtonPressed(){
+            return false;
+        }
+
+        @Override
+        public boolean isTiresButtonPressed(){
+            return false;
+        }
+
+        @Override
+        public boolean isLatencyOverlayVisible(){
+            return false;
+        }
+
+        @Override
+        public void updatePitstopPane( boolean visible, double fuel, double tireChange ){
+        }
+
+        @Override
+        public void render( double[] poses, int carCount, HudState hud ){
+            frameListener.run();
+        }
+    }
+
+    private static KeyEvent keyEvent( EventType<KeyEvent> type, KeyCode code ){
+        return new KeyEvent( type, "", "", code, false, false, false, false );
+    }
+
+    private static void drive( Vehicle vehicle, VehicleState state, Vector2 collision, int ticks ){
+        for( int i = 0; i < ticks; ++i ){
+            //alternate between straight line, turning and braking to visit every branch of physics
+            int inputs = Vehicle.INPUT_THROTTLE;
+            if( i % 600 < 200 )
+                inputs |= Vehicle.INPUT_RIGHT;
+            if( i % 600 > 500 )
+                inputs |= Vehicle.INPUT_BRAKE;
+            vehicle.updateInputs( inputs );
+            vehicle.step( state );
+            collision.setX( 0 );
+            collision.setY( 0 );
+            vehicle.addCollision( collision );
+        }
+    }
+
+    @Test
+    public void steadyStateTickDoesNotAllocateTest(){
+        com.sun.management.ThreadMXBean bean = getAllocationBean();
+
+        Vehicle vehicle = new Vehicle();
+        VehicleState state = new VehicleState();
+        Vector2 collision = new Vector2();
+        vehicle.setFrontFriction( 1 );
+        vehicle.setRearFriction( 1 );
+        vehicle.upShiftReady();
+        vehicle.shift();
+
+        drive( vehicle, state, collision, WARMUP_TICKS );
+
+        assertEquals( 0, measureQuietestWindow( bean, () -> drive( vehicle, state, collision, MEASURED_TICKS ) ) );
+    }
+
+    private static long play( GameController controller, long frameTime, int frames, KeyEvent[] steering ){
+        for( int frame = 0; frame < frames; ++frame ){
+            //press and release right, then left steering, so inputs change while driving
+            if( frame % 100 == 0 ){
+                KeyEvent event = steering[frame / 100 % steering.length];
+                if( event.getEventType() == KeyEvent.KEY_PRESSED )
+                    controller.onKeyPressedHandle( event );
+                else
+                    controller.onKeyReleasedHandle( event );
+            }
+            frameTime += FRAME_NANOS;
+            controller.refresh( frameTime );
+        }
+        return frameTime;
+    }
+
+    /**
+     * Frames of the game through GameController: fixed step scheduling, key events, race session tick with friction,
+     * collisions and checkpoints, HUD values, interpolated poses, rendering and latency tracing of key events.
+     */
+    @Test
+    public void steadyStateFrameDoesNotAllocateTest(){
+        com.sun.management.ThreadMXBean bean = getAllocationBean();
+
+        GameController controller = new GameController( new HeadlessView() );
+        KeyEvent[] steering = { keyEvent( KeyEvent.KEY_PRESSED, KeyCode.RIGHT ), keyEvent( KeyEvent.KEY_RELEASED, KeyCode.RIGHT ),
+                                keyEvent( KeyEvent.KEY_PRESSED, KeyCode.LEFT ), keyEvent( KeyEvent.KEY_RELEASED, KeyCode.LEFT ) };
+        controller.onKeyPressedHandle( keyEvent( KeyEvent.KEY_PRESSED, KeyCode.M ) );
+        controller.onKeyReleasedHandle( keyEvent( KeyEvent.KEY_RELEASED, KeyCode.M ) );
+        controller.onKeyPressedHandle( keyEvent( KeyEvent.KEY_PRESSED, KeyCode.UP ) );
+
+        long[] frameTime = { play( controller, System.nanoTime(), WARMUP_TICKS, steering ) };
+        assertEquals( 1, controller.getCarState().getGear() );
+
+        assertEquals( 0, measureQuietestWindow( bean, () -> frameTime[0] = play( controller, frameTime[0], MEASURED_TICKS, steering ) ) );
+    }
+
+    @Test
+    public void stepWithoutParameterReusesStateTest(){
+        Vehicle vehicle = new Vehicle();
+        assertSame( vehicle.step(), vehicle.step() );
+    }
+
+}
@@ -0,0 +1,117 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+import szewoj.race2d.model.ParallelStepper;
+import szewoj.race2d.model.Vehicle;
+import szewoj.race2d.model.VehicleBatch;
+import szewoj.race2d.model.VehicleState;
+
+
+public class VehicleBatchTests {
+
+    private static final double TOLERANCE = 1e-9;
+    private static final int TICKS = 3000;
+
+    /**
+     * Returns keys held by car number i in given tick, so every car drives differently.
+     */
+    private static int inputs( int i, int tick ){
+        int inputs = 0;
+        int phase = (tick + 97 * i) % 900;
+        if( phase < 600 )
+            inputs |= Vehicle.INPUT_THROTTLE;
+        if( phase > 700 )
+            inputs |= Vehicle.INPUT_BRAKE;
+        if( phase > 200 && phase < 200 + 20 * (i % 5) )
+            inputs |= i % 2 == 0 ? Vehicle.INPUT_LEFT : Vehicle.INPUT_RIGHT;
+        if( i == 3 && phase > 850 )
+            inputs |= Vehicle.INPUT_HANDBRAKE;
+        return inputs;
+    }
+
+    private static void assertSameState( VehicleState expected, VehicleState actual ){
+        assertEquals( expected.getX(), actual.getX(), TOLERANCE );
+        assertEquals( expected.getY(), actual.getY(), TOLERANCE );
+        assertEquals( expected.getHeading(), actual.getHeading(), TOLERANCE );
+        assertEquals( expected.getLateralVelocity(), actual.getLateralVelocity(), TOLERANCE );
+        assertEquals( expected.getLongitudinalVelocity(), actual.getLongitudinalVelocity(), TOLERANCE );
+        assertEquals( expected.getYawRate(), actual.getYawRate(), TOLERANCE );
+        assertEquals( expected.getFrontWheelSpeed(), actual.getFrontWheelSpeed(), TOLERANCE );
+        assertEquals( expected.getRearWheelSpeed(), actual.getRearWheelSpeed(), TOLERANCE );
+        assertEquals( expected.getRpm(), actual.getRpm(), TOLERANCE );
+        assertEquals( expected.getGear(), actual.getGear() );
+        assertEquals( expected.getFuel(), actual.getFuel(), TOLERANCE );
+        assertEquals( expected.getFrontDurability(), actual.getFrontDurability(), TOLERANCE );
+        assertEquals( expected.getRearDurability(), actual.getRearDurability(), TOLERANCE );
+    }
+
+    @Test
+    public void batchMatchesSingleVehiclesTest(){
+        int cars = 8;
+        VehicleBatch batch = new VehicleBatch( cars );
+        Vehicle[] vehicles = new Vehicle[cars];
+        VehicleState expected = new VehicleState();
+        VehicleState actual = new VehicleState();
+
+        for( int i = 0; i < cars; ++i ){
+            vehicles[i] = new Vehicle();
+            double friction = 0.5 + 0.5 * i / cars;
+            vehicles[i].setFrontFriction( friction );
+            vehicles[i].setRearFriction( friction );
+            batch.setFriction( i, friction, friction );
+            for( int gear = 0; gear < 1 + i % 3; ++gear ){
+                vehicles[i].upShiftReady();
+                vehicles[i].shift();
+                batch.upShiftReady( i );
+                batch.shift( i );
+            }
+        }
+
+        for( int tick = 0; tick < TICKS; ++tick ){
+            for( int i = 0; i < cars; ++i ){
+                int inputs = inputs( i, tick );
+                vehicles[i].updateInputs( inputs );
+                batch.setControls( i, vehicles[i].getThrottle(), vehicles[i].getBrake(), vehicles[i].getSteering(), (inputs & Vehicle.INPUT_HANDBRAKE) != 0 );
+                vehicles[i].step();
+            }
+            batch.step();
+        }
+
+        for( int i = 0; i < cars; ++i ){
+            vehicles[i].getState( expected );
+            batch.getState( i, actual );
+            assertSameState( expected, actual );
+        }
+    }
+
+    @Test
+    public void parallelSteppingMatchesSequentialSteppingTest(){
+        int cars = 1000;
+        VehicleBatch sequential = new VehicleBatch( cars );
+        VehicleBatch parallel = new VehicleBatch( cars );
+        VehicleState expected = new VehicleState();
+        VehicleState actual = new VehicleState();
+
+        for( VehicleBatch batch : new VehicleBatch[]{ sequential, parallel } ){
+            for( int i = 0; i < cars; ++i ){
+                batch.setFriction( i, 1, 1 );
+                batch.upShiftReady( i );
+                batch.shift( i );
+                batch.setControls( i, 1, 0, (i % 21 - 10) / 10.0, false );
+            }
+        }
+
+        try( ParallelStepper stepper = new ParallelStepper( 4 ) ){
+            for( int tick = 0; tick < 600; ++tick ){
+                sequential.step();
+                stepper.step( parallel );
+            }
+        }
+
+        for( int i = 0; i < cars; ++i ){
+            sequential.getState( i, expected );
+            parallel.getState( i, actual );
+            assertSameState( expected, actual );
+        }
+    }
+
+}
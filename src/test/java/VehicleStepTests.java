@@ -0,0 +1,76 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+import szewoj.race2d.model.Vehicle;
+import szewoj.race2d.model.VehicleState;
+
+
+public class VehicleStepTests {
+
+    private static Vehicle createRollingCar( double x, double y, double heading, double speed ){
+        Vehicle vehicle = new Vehicle();
+        vehicle.setFrontFriction( 1 );
+        vehicle.setRearFriction( 1 );
+        vehicle.setPose( x, y, heading );
+        vehicle.setVelocity( 0, speed );
+        return vehicle;
+    }
+
+    /**
+     * Car rolling straight from a set pose moves every tick along its heading by its speed times time step,
+     * and keeps its heading.
+     */
+    @Test
+    public void straightStepFollowsHeadingTest(){
+        double heading = 0.6;
+        Vehicle vehicle = createRollingCar( 10, 20, heading, 20 );
+        VehicleState previous = vehicle.getState( new VehicleState() );
+        VehicleState state = new VehicleState();
+        assertEquals( 10, previous.getX(), 0 );
+        assertEquals( 20, previous.getY(), 0 );
+
+        for( int tick = 0; tick < 60; ++tick ){
+            vehicle.step( state );
+            double dx = state.getX() - previous.getX();
+            double dy = state.getY() - previous.getY();
+            //forward is -y at heading 0, and positive heading turns clockwise
+            double forward = dx * Math.sin( heading ) - dy * Math.cos( heading );
+            double sideways = dx * Math.cos( heading ) + dy * Math.sin( heading );
+            double meanSpeed = ( previous.getLongitudinalVelocity() + state.getLongitudinalVelocity() ) / 2;
+            assertEquals( meanSpeed * vehicle.getTimeStep(), forward, 0.01 * meanSpeed * vehicle.getTimeStep() );
+            assertEquals( 0, sideways, 1e-9 );
+            assertEquals( heading, state.getHeading(), 1e-12 );
+            assertTrue( state.getLongitudinalVelocity() > 0 );
+            previous.copy( state );
+        }
+    }
+
+    /**
+     * Car steering right turns clockwise by its yaw rate times time step, and every tick moves it forward
+     * along its mean heading of the tick by about longitudinal speed times time step. Turn pivots around a point
+     * behind centre of gravity, so the centre also drifts sideways and covers a bit longer arc than the speed gives.
+     */
+    @Test
+    public void turningStepFollowsHeadingTest(){
+        Vehicle vehicle = createRollingCar( -5, 3, -1.2, 15 );
+        VehicleState previous = vehicle.getState( new VehicleState() );
+        VehicleState state = new VehicleState();
+
+        for( int tick = 0; tick < 60; ++tick ){
+            vehicle.setInputs( 0, 0, 1 );
+            vehicle.step( state );
+            double turn = state.getHeading() - previous.getHeading();
+            assertTrue( turn > 0 );
+            assertEquals( state.getYawRate() * vehicle.getTimeStep(), turn, 0.1 * turn );
+
+            double dx = state.getX() - previous.getX();
+            double dy = state.getY() - previous.getY();
+            double middle = ( previous.getHeading() + state.getHeading() ) / 2;
+            double forward = dx * Math.sin( middle ) - dy * Math.cos( middle );
+            double axleDistance = previous.getLongitudinalVelocity() * vehicle.getTimeStep();
+            assertTrue( forward > 0.9 * axleDistance && forward < 1.2 * axleDistance );
+            previous.copy( state );
+        }
+        assertTrue( state.getHeading() > 0 );
+    }
+
+}